@@ -17,7 +17,6 @@
 
 package com.nridge.connector.common.con_com;
 
-import com.nridge.core.base.std.StrUtl;
 import org.apache.commons.lang.time.DateUtils;
 
 /**
@@ -33,8 +32,9 @@ public class Connector
     public static final String QUEUE_EXTRACT_NAME = "extract";
     public static final String QUEUE_TRANSFORM_NAME = "transform";
     public static final String QUEUE_PUBLISH_NAME = "publish";
+    public static final String QUEUE_CONTENT_NAME = "content";
 
-// Queue item markers to indicate state changes in the phase processing.
+// Queue item marker names to indicate state changes in the phase processing (see QueueItem).
 
     public static final String QUEUE_ITEM_CRAWL_ABORT = "NSD-CrawlAbort";
     public static final String QUEUE_ITEM_CRAWL_START = "NSD-CrawlStart";
@@ -43,6 +43,8 @@ public class Connector
     public static final String PROPERTY_MAIL_NAME = "Mail";
     public static final String PROPERTY_SCHEMA_NAME = "Schema";
     public static final String PROPERTY_CRAWL_QUEUE = "CrawlQueue";
+    public static final String PROPERTY_INDEX_CACHE = "IndexCache";
+    public static final String PROPERTY_STATE_STORE = "StateStore";
 
     public static final String STATUS_MAIL_ERROR = "Error";
 
@@ -64,6 +66,16 @@ public class Connector
     public static final int PUBLISH_BATCH_DOC_COUNT = 100;
     public static final int PUBLISH_COMMIT_DOC_COUNT = 1000;
     public static final long PUBLISH_MAX_DOC_COUNT = 500000;
+    public static final int PUBLISH_SENDER_THREAD_COUNT = 2;
+    public static final int PUBLISH_RETRY_COUNT = 3;
+    public static final long PUBLISH_RETRY_DELAY = 1000L;     // milliseconds
+
+// Executor modes for I/O bound work (see ElasticExecutor).
+
+    public static final String EXECUTOR_MODE_FIXED = "fixed";
+    public static final String EXECUTOR_MODE_ELASTIC = "elastic";
+    public static final int ELASTIC_CONCURRENCY_LIMIT = 256;
+    public static final long ELASTIC_THREAD_STACK_SIZE = 256L * 1024L;  // bytes
 
     public static final int RUN_STARTUP_SLEEP_DELAY = 2 * 60; // 2 minutes
 
@@ -74,97 +86,4 @@ public class Connector
     private Connector()
     {
     }
-
-    /**
-     * Used for the connector metric reporting module, this method will
-     * encode a queue item string based on the parameters provided.
-     *
-     * @param aName Unique document identifier.
-     * @param aPhase ETL phase (extract, transform, publish).
-     * @param aTime Duration time (in milliseconds).
-     *
-     * @return Queue item string.
-     */
-    public static String queueItemIdPhaseTime(String aName, String aPhase, long aTime)
-    {
-        return String.format("%s%c%s%c%d", aName, StrUtl.CHAR_PIPE,
-                             aPhase, StrUtl.CHAR_COLON, aTime);
-    }
-
-    /**
-     * Extracts the document identifier from the previously encoded
-     * queue item.
-     *
-     * @param aQueueItem Queue item string.
-     *
-     * @return Unique document identifier.
-     */
-    public static String docIdFromQueueItem(String aQueueItem)
-    {
-        int offset = aQueueItem.indexOf(StrUtl.CHAR_PIPE);
-        if (offset == -1)
-            return aQueueItem;
-        else
-            return aQueueItem.substring(0, offset);
-    }
-
-    /**
-     * Extracts an array of ETL phase/time components from the previously
-     * encoded queue item.
-     *
-     * @param aQueueItem Queue item string.
-     *
-     * @return Phase/Time array.
-     */
-    public static String[] phaseTimeFromQueueItem(String aQueueItem)
-    {
-        int offset = aQueueItem.indexOf(StrUtl.CHAR_PIPE);
-        if (offset != -1)
-        {
-            String phaseString = aQueueItem.substring(offset+1);
-            String delimiterString = String.format("%c%c", StrUtl.CHAR_BACKSLASH, StrUtl.CHAR_PIPE);
-            String regExPattern = String.format("(?<!\\\\)%s", delimiterString);
-
-            return phaseString.split(regExPattern);
-        }
-
-        return new String[0];
-    }
-
-    /**
-     * Extracts an ETL phase (e.g. extract, transform, publish) from the
-     * phase/time string.
-     *
-     * @param aPhaseTime Phase/time string.
-     *
-     * @return Phase name.
-     */
-    public static String phaseFromPhaseTime(String aPhaseTime)
-    {
-        int offset = aPhaseTime.indexOf(StrUtl.CHAR_COLON);
-        if (offset == -1)
-            return aPhaseTime;
-        else
-            return aPhaseTime.substring(0, offset);
-    }
-
-    /**
-     * Extracts the duration time (in milliseconds) from the phase/time
-     * string.
-     *
-     * @param aPhaseTime Phase/time string.
-     *
-     * @return Duration time.
-     */
-    public static long timeFromPhaseTime(String aPhaseTime)
-    {
-        int offset = aPhaseTime.indexOf(StrUtl.CHAR_COLON);
-        if (offset != -1)
-        {
-            String timeString = aPhaseTime.substring(offset+1);
-            return Long.parseLong(timeString);
-        }
-
-        return -1L;
-    }
 }
@@ -0,0 +1,167 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2015.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.connector.common.con_com;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ElasticExecutor runs I/O bound tasks (e.g. network share reads
+ * or Solr update requests) on a pool of threads that grows and shrinks
+ * with demand, so the pool does not have to be sized per deployment.
+ * The number of tasks running at once is capped by a semaphore rather
+ * than the pool size - once the cap is reached, <code>execute()</code>
+ * blocks the submitting thread until a running task completes, which
+ * provides back pressure to the producer.
+ * <p>
+ * Pool threads are daemon threads created with a reduced stack size
+ * and they are retired after being idle for a short period, which keeps
+ * a large concurrency limit affordable.  CPU bound work (e.g. content
+ * parsing) should remain bounded by the number of processors and not
+ * be scaled with this executor.
+ * </p>
+ *
+ * @see <a href="http://docs.oracle.com/javase/7/docs/api/java/util/concurrent/ThreadPoolExecutor.html">JavaDoc ThreadPoolExecutor</a>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class ElasticExecutor extends ThreadPoolExecutor
+{
+    private static final long THREAD_KEEP_ALIVE = 30L;     // seconds
+
+    private final int mConcurrencyLimit;
+    private final Semaphore mTaskPermits;
+
+    /**
+     * Constructor initializes the executor with the parameters provided.
+     *
+     * @param aName Name used as a prefix for the pool thread names.
+     * @param aConcurrencyLimit Maximum number of tasks running at once.
+     * @param aStackSize Pool thread stack size (in bytes) or zero for the JVM default.
+     */
+    public ElasticExecutor(String aName, int aConcurrencyLimit, long aStackSize)
+    {
+        super(0, Integer.MAX_VALUE, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+              new SynchronousQueue<Runnable>(), createThreadFactory(aName, aStackSize));
+        mConcurrencyLimit = Math.max(aConcurrencyLimit, 1);
+        mTaskPermits = new Semaphore(mConcurrencyLimit);
+    }
+
+    /**
+     * Constructor initializes the executor with the default concurrency
+     * limit and thread stack size.
+     *
+     * @param aName Name used as a prefix for the pool thread names.
+     */
+    public ElasticExecutor(String aName)
+    {
+        this(aName, Connector.ELASTIC_CONCURRENCY_LIMIT, Connector.ELASTIC_THREAD_STACK_SIZE);
+    }
+
+    private static ThreadFactory createThreadFactory(final String aName, final long aStackSize)
+    {
+        return new ThreadFactory()
+        {
+            private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable aRunnable)
+            {
+                String threadName = String.format("%s-%d", aName, mThreadNumber.getAndIncrement());
+                Thread ioThread = new Thread(null, aRunnable, threadName, Math.max(aStackSize, 0L));
+                ioThread.setDaemon(true);
+
+                return ioThread;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of tasks that may run at once.
+     *
+     * @return Concurrency limit.
+     */
+    public int getConcurrencyLimit()
+    {
+        return mConcurrencyLimit;
+    }
+
+    /**
+     * Returns the number of tasks that are currently running.
+     *
+     * @return Count of running tasks.
+     */
+    public int getRunningCount()
+    {
+        return mConcurrencyLimit - mTaskPermits.availablePermits();
+    }
+
+    /**
+     * Executes the given task on a pool thread.  If the concurrency
+     * limit has been reached, the calling thread blocks until a
+     * running task completes.
+     *
+     * @param aCommand Task to execute.
+     *
+     * @throws RejectedExecutionException If the executor has been shut
+     * down or the calling thread was interrupted while waiting.
+     */
+    @Override
+    public void execute(Runnable aCommand)
+    {
+        try
+        {
+            mTaskPermits.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            // Restore the interrupted status so parent can handle (if it wants to).
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a task permit.", e);
+        }
+
+        try
+        {
+            super.execute(aCommand);
+        }
+        catch (RejectedExecutionException e)
+        {
+            mTaskPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the task permit once the task completes.
+     *
+     * @param aRunnable Task that completed.
+     * @param aThrowable Exception that caused termination or <i>null</i>.
+     */
+    @Override
+    protected void afterExecute(Runnable aRunnable, Throwable aThrowable)
+    {
+        super.afterExecute(aRunnable, aThrowable);
+        mTaskPermits.release();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.connector.common.con_com.crawl;
+
+import com.nridge.core.app.mgr.AppMgr;
+import com.nridge.core.base.ds.DSException;
+import com.nridge.ds.solr.SolrDS;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.slf4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * The CrawlIndexCache captures the identifiers and content hashes of
+ * the documents already stored in the search index, so an incremental
+ * crawl can answer "is this document indexed" and "has it changed"
+ * locally instead of querying the index once per document.
+ * <p>
+ * The cache is loaded once at the start of a crawl by paging through
+ * the index with a Solr cursor mark.  Each document identifier and
+ * content hash is reduced to a 64-bit hash and stored in an open
+ * addressing table that lives outside of the Java heap, so millions of
+ * documents cost roughly 16 bytes each.
+ * </p>
+ * <p>
+ * <b>Note:</b> The cache is populated by a single thread and may then
+ * be read concurrently.  Because identifiers are hashed, a lookup has
+ * an extremely small chance of a false positive.
+ * </p>
+ *
+ * @see <a href="https://lucene.apache.org/solr/guide/7_5/pagination-of-results.html">Solr Cursor Pagination</a>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class CrawlIndexCache
+{
+    public static final int PAGE_SIZE_DEFAULT = 10000;
+
+    private final int CAPACITY_MINIMUM = 1024;
+    private final int CAPACITY_MAXIMUM = 1 << 27;       // largest power of two a direct buffer of longs can hold
+    private final long HASH_EMPTY_SLOT = 0L;
+
+    private int mCount;
+    private int mCapacity;
+    private LongBuffer mIdHashes;
+    private LongBuffer mDocHashes;
+    private final AppMgr mAppMgr;
+
+    /**
+     * Constructor accepts an application manager parameter and initializes
+     * the object accordingly.
+     *
+     * @param anAppMgr Application manager.
+     */
+    public CrawlIndexCache(final AppMgr anAppMgr)
+    {
+        mAppMgr = anAppMgr;
+        allocate(CAPACITY_MINIMUM);
+    }
+
+    /**
+     * Returns the count of documents captured in the cache.
+     *
+     * @return Document count.
+     */
+    public int count()
+    {
+        return mCount;
+    }
+
+    private void allocate(int aCapacity)
+    {
+        mCount = 0;
+        mCapacity = aCapacity;
+        long byteCount = (long) aCapacity * Long.BYTES;
+        if (byteCount > Integer.MAX_VALUE)
+            throw new IllegalStateException(String.format("Index cache capacity of %d exceeds the direct buffer limit.", aCapacity));
+        mIdHashes = ByteBuffer.allocateDirect((int) byteCount).asLongBuffer();
+        mDocHashes = ByteBuffer.allocateDirect((int) byteCount).asLongBuffer();
+    }
+
+/* FNV-1a over the characters followed by the MurmurHash3 finalizer, which
+spreads the bits well enough for power-of-two table sizes. */
+
+    private long hash64(String aValue)
+    {
+        long hashValue = 0xcbf29ce484222325L;
+        int strLength = aValue.length();
+        for (int i = 0; i < strLength; i++)
+        {
+            hashValue ^= aValue.charAt(i);
+            hashValue *= 0x100000001b3L;
+        }
+        hashValue ^= (hashValue >>> 33);
+        hashValue *= 0xff51afd7ed558ccdL;
+        hashValue ^= (hashValue >>> 33);
+        hashValue *= 0xc4ceb9fe1a85ec53L;
+        hashValue ^= (hashValue >>> 33);
+
+        if (hashValue == HASH_EMPTY_SLOT)
+            return 1L;
+        else
+            return hashValue;
+    }
+
+    private int slotOffset(long anIdHash)
+    {
+        int slotMask = mCapacity - 1;
+        int slotOffset = (int) (anIdHash & slotMask);
+        long slotHash = mIdHashes.get(slotOffset);
+        while ((slotHash != HASH_EMPTY_SLOT) && (slotHash != anIdHash))
+        {
+            slotOffset = (slotOffset + 1) & slotMask;
+            slotHash = mIdHashes.get(slotOffset);
+        }
+
+        return slotOffset;
+    }
+
+    private void grow()
+    {
+        long idHash;
+
+        LongBuffer idHashes = mIdHashes;
+        LongBuffer docHashes = mDocHashes;
+        int prevCapacity = mCapacity;
+        int prevCount = mCount;
+        allocate(prevCapacity * 2);
+        for (int slot = 0; slot < prevCapacity; slot++)
+        {
+            idHash = idHashes.get(slot);
+            if (idHash != HASH_EMPTY_SLOT)
+            {
+                int slotOffset = slotOffset(idHash);
+                mIdHashes.put(slotOffset, idHash);
+                mDocHashes.put(slotOffset, docHashes.get(slot));
+            }
+        }
+        mCount = prevCount;
+    }
+
+    /**
+     * Adds the document identifier and content hash to the cache.
+     *
+     * @param aDocId Document identifier.
+     * @param aDocHash Document content hash (may be empty).
+     */
+    public void put(String aDocId, String aDocHash)
+    {
+        if (StringUtils.isNotEmpty(aDocId))
+        {
+            if ((mCount + 1) * 10L > mCapacity * 7L)
+            {
+                if (mCapacity < CAPACITY_MAXIMUM)
+                    grow();
+                else if (mCount + 1 >= mCapacity)
+                    throw new IllegalStateException(String.format("Index cache is full (%d documents).", mCount));
+            }
+
+            long idHash = hash64(aDocId);
+            int slotOffset = slotOffset(idHash);
+            if (mIdHashes.get(slotOffset) == HASH_EMPTY_SLOT)
+            {
+                mIdHashes.put(slotOffset, idHash);
+                mCount++;
+            }
+            if (StringUtils.isEmpty(aDocHash))
+                mDocHashes.put(slotOffset, HASH_EMPTY_SLOT);
+            else
+                mDocHashes.put(slotOffset, hash64(aDocHash));
+        }
+    }
+
+    /**
+     * Returns <i>true</i> if the document identifier is stored in the
+     * index or <i>false</i> otherwise.
+     *
+     * @param aDocId Document identifier.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean contains(String aDocId)
+    {
+        if (StringUtils.isEmpty(aDocId))
+            return false;
+        else
+            return mIdHashes.get(slotOffset(hash64(aDocId))) != HASH_EMPTY_SLOT;
+    }
+
+    /**
+     * Returns <i>true</i> if the document is stored in the index with
+     * the same content hash as the parameter or <i>false</i> if it is
+     * missing or its content has changed.
+     *
+     * @param aDocId Document identifier.
+     * @param aDocHash Document content hash.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isUnchanged(String aDocId, String aDocHash)
+    {
+        if ((StringUtils.isEmpty(aDocId)) || (StringUtils.isEmpty(aDocHash)))
+            return false;
+
+        int slotOffset = slotOffset(hash64(aDocId));
+        if (mIdHashes.get(slotOffset) == HASH_EMPTY_SLOT)
+            return false;
+        else
+            return mDocHashes.get(slotOffset) == hash64(aDocHash);
+    }
+
+    /**
+     * Empties the cache and releases its table for a smaller one.
+     */
+    public void clear()
+    {
+        allocate(CAPACITY_MINIMUM);
+    }
+
+    /**
+     * Loads the cache by paging through every document in the index
+     * with a cursor mark, retrieving only the identifier and content
+     * hash fields.  If an identifier prefix is provided, then only
+     * documents whose identifiers start with it are loaded.
+     *
+     * @param aSolrDS Solr data source instance.
+     * @param anIdFieldName Name of the unique identifier field.
+     * @param aHashFieldName Name of the content hash field.
+     * @param anIdPrefix Identifier prefix (may be empty).
+     * @param aPageSize Number of documents retrieved per request.
+     *
+     * @throws DSException Data source related exception.
+     */
+    public void load(SolrDS aSolrDS, String anIdFieldName, String aHashFieldName,
+                     String anIdPrefix, int aPageSize)
+        throws DSException
+    {
+        Object fieldValue;
+        QueryResponse queryResponse;
+        SolrDocumentList solrDocumentList;
+        Logger appLogger = mAppMgr.getLogger(this, "load");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        SolrQuery solrQuery = new SolrQuery("*:*");
+        solrQuery.setFields(anIdFieldName, aHashFieldName);
+        if (StringUtils.isNotEmpty(anIdPrefix))
+            solrQuery.addFilterQuery(String.format("{!prefix f=%s}%s", anIdFieldName, anIdPrefix));
+        solrQuery.setRows(Math.max(1, aPageSize));
+        solrQuery.setSort(anIdFieldName, SolrQuery.ORDER.asc);
+
+        String nextCursorMark;
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        do
+        {
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            queryResponse = aSolrDS.queryExecute(solrQuery);
+            solrDocumentList = queryResponse.getResults();
+            if (solrDocumentList != null)
+            {
+                for (SolrDocument solrDocument : solrDocumentList)
+                {
+                    fieldValue = solrDocument.getFirstValue(aHashFieldName);
+                    put(String.valueOf(solrDocument.getFirstValue(anIdFieldName)),
+                        fieldValue == null ? StringUtils.EMPTY : fieldValue.toString());
+                }
+            }
+            nextCursorMark = queryResponse.getNextCursorMark();
+            if ((nextCursorMark == null) || (nextCursorMark.equals(cursorMark)))
+                break;
+            cursorMark = nextCursorMark;
+        }
+        while (mAppMgr.isAlive());
+
+        appLogger.debug(String.format("Index cache loaded with %d document(s).", mCount));
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+}
@@ -0,0 +1,901 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.connector.common.con_com.crawl;
+
+import com.google.gson.stream.JsonReader;
+import com.nridge.core.app.mgr.AppMgr;
+import com.nridge.core.base.doc.Document;
+import com.nridge.core.io.gson.DocumentJSON;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The CrawlJournal is an alternative storage backend for the crawl
+ * queue.  Rather than saving each queued document to its own XML file
+ * and renaming it between phase folders, documents are appended to a
+ * small number of segment files and each phase maintains an index of
+ * the document identifiers it holds and where their records are.
+ * <p>
+ * Every record is length-prefixed and check-summed.  A document record
+ * holds the document encoded with the streaming <i>DocumentJSON</i>
+ * codec.  Moving an unchanged document to the next phase appends a
+ * small move record and re-points the index entry, while a transformed
+ * document is appended as a new record.  A segment file is deleted as
+ * soon as no phase references any of its records.
+ * </p>
+ * <p>
+ * The phase indexes are checkpointed periodically.  When a journal is
+ * opened, the last checkpoint is loaded and the records appended after
+ * it are replayed, which recovers the queue state after a crash.  A
+ * torn record at the end of the journal is discarded.
+ * </p>
+ * <p>
+ * <b>Note:</b> The methods are synchronized, except for the reading
+ * and decoding of document records, so the journal may be shared by
+ * the phase worker threads.  A segment being read is not closed or
+ * deleted until its readers are done with it.
+ * </p>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class CrawlJournal
+{
+    public static final String JOURNAL_PATH_NAME = "journal";
+    public static final long SEGMENT_SIZE_DEFAULT = 64L * 1024L * 1024L;
+    public static final int CHECKPOINT_INTERVAL_DEFAULT = 10000;
+
+    private final int POINTER_OFFSET_BITS = 40;
+    private final int RECORD_HEADER_LENGTH = 8;
+    private final byte RECORD_DOCUMENT = 1;
+    private final byte RECORD_MOVE = 2;
+    private final byte RECORD_REMOVE = 3;
+    private final String SEGMENT_FILE_PREFIX = "segment-";
+    private final String SEGMENT_FILE_EXTENSION = ".jnl";
+    private final String CHECKPOINT_FILE_NAME = "checkpoint.idx";
+
+    private final AppMgr mAppMgr;
+    private final String mPathName;
+    private long mSegmentSize;
+    private int mCheckpointInterval;
+    private int mActiveSegmentId;
+    private long mActivePosition;
+    private int mRecordsSinceCheckpoint;
+    private HashMap<Integer,FileChannel> mSegmentChannels;
+    private HashMap<Integer,Integer> mSegmentReferences;
+    private HashMap<Integer,Integer> mSegmentReaders;
+    private HashMap<Integer,FileChannel> mRetiredChannels;
+    private HashSet<Integer> mRetiredSegmentIds;
+    private HashMap<String,HashMap<String,Long>> mQueueIndex;
+
+    /**
+     * Constructor accepts an application manager parameter and the
+     * path name where the journal segments will be maintained.
+     *
+     * @param anAppMgr Application manager.
+     * @param aPathName Journal path name.
+     */
+    public CrawlJournal(final AppMgr anAppMgr, String aPathName)
+    {
+        mAppMgr = anAppMgr;
+        mPathName = aPathName;
+        mSegmentSize = SEGMENT_SIZE_DEFAULT;
+        mCheckpointInterval = CHECKPOINT_INTERVAL_DEFAULT;
+        mSegmentChannels = new HashMap<Integer,FileChannel>();
+        mSegmentReferences = new HashMap<Integer,Integer>();
+        mSegmentReaders = new HashMap<Integer,Integer>();
+        mRetiredChannels = new HashMap<Integer,FileChannel>();
+        mRetiredSegmentIds = new HashSet<Integer>();
+        mQueueIndex = new HashMap<String,HashMap<String,Long>>();
+    }
+
+    /**
+     * Assigns the size a segment file may grow to before a new one is
+     * started.
+     *
+     * @param aSegmentSize Segment size in bytes.
+     */
+    public void setSegmentSize(long aSegmentSize)
+    {
+        if (aSegmentSize > 0L)
+            mSegmentSize = aSegmentSize;
+    }
+
+    /**
+     * Assigns the number of records appended between checkpoints of the
+     * phase indexes.  A value of zero limits checkpoints to <code>close()</code>.
+     *
+     * @param aCheckpointInterval Record count.
+     */
+    public void setCheckpointInterval(int aCheckpointInterval)
+    {
+        mCheckpointInterval = Math.max(0, aCheckpointInterval);
+    }
+
+    /**
+     * Returns the count of documents held in the queue identified by the
+     * parameter.
+     *
+     * @param aQueueName Queue name (e.g. extract, transform)
+     *
+     * @return Document count.
+     */
+    public synchronized int count(String aQueueName)
+    {
+        HashMap<String,Long> queueIndex = mQueueIndex.get(aQueueName);
+        if (queueIndex == null)
+            return 0;
+        else
+            return queueIndex.size();
+    }
+
+    /**
+     * Returns <i>true</i> if the queue identified by the parameter holds
+     * the document or <i>false</i> otherwise.
+     *
+     * @param aQueueName Queue name (e.g. extract, transform)
+     * @param aDocId Unique document identifier.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public synchronized boolean contains(String aQueueName, String aDocId)
+    {
+        HashMap<String,Long> queueIndex = mQueueIndex.get(aQueueName);
+        return (queueIndex != null) && (queueIndex.containsKey(aDocId));
+    }
+
+    private String segmentPathFileName(int aSegmentId)
+    {
+        return String.format("%s%c%s%06d%s", mPathName, File.separatorChar, SEGMENT_FILE_PREFIX,
+                             aSegmentId, SEGMENT_FILE_EXTENSION);
+    }
+
+    private String checkpointPathFileName()
+    {
+        return String.format("%s%c%s", mPathName, File.separatorChar, CHECKPOINT_FILE_NAME);
+    }
+
+    private long toPointer(int aSegmentId, long anOffset)
+    {
+        return ((long) aSegmentId << POINTER_OFFSET_BITS) | anOffset;
+    }
+
+    private int pointerSegmentId(long aPointer)
+    {
+        return (int) (aPointer >>> POINTER_OFFSET_BITS);
+    }
+
+    private long pointerOffset(long aPointer)
+    {
+        return aPointer & ((1L << POINTER_OFFSET_BITS) - 1L);
+    }
+
+    private HashMap<String,Long> queueIndex(String aQueueName)
+    {
+        HashMap<String,Long> queueIndex = mQueueIndex.get(aQueueName);
+        if (queueIndex == null)
+        {
+            queueIndex = new HashMap<String,Long>();
+            mQueueIndex.put(aQueueName, queueIndex);
+        }
+
+        return queueIndex;
+    }
+
+    private FileChannel segmentChannel(int aSegmentId)
+        throws IOException
+    {
+        FileChannel fileChannel = mSegmentChannels.get(aSegmentId);
+        if (fileChannel == null)
+        {
+            File segmentFile = new File(segmentPathFileName(aSegmentId));
+            fileChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE,
+                                           StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mSegmentChannels.put(aSegmentId, fileChannel);
+        }
+
+        return fileChannel;
+    }
+
+    private ArrayList<Integer> segmentIdList()
+    {
+        ArrayList<Integer> segmentIds = new ArrayList<Integer>();
+        File[] journalFiles = new File(mPathName).listFiles();
+        if (journalFiles != null)
+        {
+            for (File journalFile : journalFiles)
+            {
+                String fileName = journalFile.getName();
+                if ((fileName.startsWith(SEGMENT_FILE_PREFIX)) && (fileName.endsWith(SEGMENT_FILE_EXTENSION)))
+                {
+                    String segmentId = StringUtils.substringBetween(fileName, SEGMENT_FILE_PREFIX, SEGMENT_FILE_EXTENSION);
+                    if (StringUtils.isNumeric(segmentId))
+                        segmentIds.add(Integer.valueOf(segmentId));
+                }
+            }
+        }
+        Collections.sort(segmentIds);
+
+        return segmentIds;
+    }
+
+    private void addReference(long aPointer)
+    {
+        int segmentId = pointerSegmentId(aPointer);
+        Integer refCount = mSegmentReferences.get(segmentId);
+        if (refCount == null)
+            mSegmentReferences.put(segmentId, 1);
+        else
+            mSegmentReferences.put(segmentId, refCount + 1);
+    }
+
+/* Segments other than the active one only ever lose references, so once the
+last reference to a segment is gone its file can be deleted. */
+
+    private void releaseReference(long aPointer)
+        throws IOException
+    {
+        int segmentId = pointerSegmentId(aPointer);
+        Integer refCount = mSegmentReferences.get(segmentId);
+        if ((refCount == null) || (refCount <= 1))
+        {
+            mSegmentReferences.remove(segmentId);
+            if (segmentId != mActiveSegmentId)
+                deleteSegment(segmentId);
+        }
+        else
+            mSegmentReferences.put(segmentId, refCount - 1);
+    }
+
+    private void deleteSegment(int aSegmentId)
+        throws IOException
+    {
+        FileChannel fileChannel = mSegmentChannels.remove(aSegmentId);
+        if (mSegmentReaders.containsKey(aSegmentId))
+        {
+            if (fileChannel != null)
+                mRetiredChannels.put(aSegmentId, fileChannel);
+            mRetiredSegmentIds.add(aSegmentId);
+        }
+        else
+        {
+            if (fileChannel != null)
+                fileChannel.close();
+            Files.deleteIfExists(new File(segmentPathFileName(aSegmentId)).toPath());
+        }
+    }
+
+/* A document record is read outside of the journal lock, so the reader
+holds the segment open for the duration of the read.  A segment that is
+deleted (or a journal that is closed) while it is being read has its channel
+retired instead, and the last reader to finish closes it and deletes the file. */
+
+    private void addReader(int aSegmentId)
+    {
+        Integer readerCount = mSegmentReaders.get(aSegmentId);
+        if (readerCount == null)
+            mSegmentReaders.put(aSegmentId, 1);
+        else
+            mSegmentReaders.put(aSegmentId, readerCount + 1);
+    }
+
+    private void releaseReader(int aSegmentId)
+        throws IOException
+    {
+        Integer readerCount = mSegmentReaders.get(aSegmentId);
+        if ((readerCount == null) || (readerCount <= 1))
+        {
+            mSegmentReaders.remove(aSegmentId);
+            FileChannel fileChannel = mRetiredChannels.remove(aSegmentId);
+            if (fileChannel != null)
+                fileChannel.close();
+            if (mRetiredSegmentIds.remove(aSegmentId))
+                Files.deleteIfExists(new File(segmentPathFileName(aSegmentId)).toPath());
+        }
+        else
+            mSegmentReaders.put(aSegmentId, readerCount - 1);
+    }
+
+/* Fills in the record header - the body length and its CRC-32 checksum. */
+
+    private byte[] sealRecord(byte[] aRecordBytes)
+    {
+        int bodyLength = aRecordBytes.length - RECORD_HEADER_LENGTH;
+        CRC32 crc32 = new CRC32();
+        crc32.update(aRecordBytes, RECORD_HEADER_LENGTH, bodyLength);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(aRecordBytes, 0, RECORD_HEADER_LENGTH);
+        headerBuffer.putInt(bodyLength);
+        headerBuffer.putInt((int) crc32.getValue());
+
+        return aRecordBytes;
+    }
+
+    private byte[] encodeRecord(byte aRecordType, String aQueueName, String aDocId,
+                                String aSrcQueueName, Document aDocument)
+        throws IOException
+    {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        dataOutputStream.writeInt(0);
+        dataOutputStream.writeInt(0);
+        dataOutputStream.writeByte(aRecordType);
+        dataOutputStream.writeUTF(aQueueName);
+        dataOutputStream.writeUTF(aDocId);
+        if (aRecordType == RECORD_MOVE)
+            dataOutputStream.writeUTF(aSrcQueueName);
+        dataOutputStream.flush();
+        if (aRecordType == RECORD_DOCUMENT)
+        {
+            DocumentJSON documentJSON = new DocumentJSON(aDocument);
+            documentJSON.save(byteArrayOutputStream);
+        }
+
+        return sealRecord(byteArrayOutputStream.toByteArray());
+    }
+
+    private long appendRecord(byte[] aRecordBytes)
+        throws IOException
+    {
+        if ((mActivePosition > 0L) && (mActivePosition + aRecordBytes.length > mSegmentSize))
+        {
+            segmentChannel(mActiveSegmentId).force(false);
+            if (! mSegmentReferences.containsKey(mActiveSegmentId))
+                deleteSegment(mActiveSegmentId);
+            mActiveSegmentId++;
+            mActivePosition = 0L;
+        }
+
+        FileChannel fileChannel = segmentChannel(mActiveSegmentId);
+        ByteBuffer recordBuffer = ByteBuffer.wrap(aRecordBytes);
+        long writePosition = mActivePosition;
+        while (recordBuffer.hasRemaining())
+            writePosition += fileChannel.write(recordBuffer, writePosition);
+
+        long recordPointer = toPointer(mActiveSegmentId, mActivePosition);
+        mActivePosition = writePosition;
+        mRecordsSinceCheckpoint++;
+
+        return recordPointer;
+    }
+
+    private void checkpointIfDue()
+        throws IOException
+    {
+        if ((mCheckpointInterval > 0) && (mRecordsSinceCheckpoint >= mCheckpointInterval))
+            checkpoint();
+    }
+
+    /**
+     * Stores the document in the queue identified by the parameter,
+     * replacing any record previously held by that queue.
+     *
+     * @param aQueueName Queue name (e.g. extract, transform)
+     * @param aDocId Unique document identifier.
+     * @param aDocument Document instance.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public void put(String aQueueName, String aDocId, Document aDocument)
+        throws IOException
+    {
+        byte[] recordBytes = encodeRecord(RECORD_DOCUMENT, aQueueName, aDocId, null, aDocument);
+        synchronized (this)
+        {
+            long recordPointer = appendRecord(recordBytes);
+            addReference(recordPointer);
+            Long prevPointer = queueIndex(aQueueName).put(aDocId, recordPointer);
+            if (prevPointer != null)
+                releaseReference(prevPointer);
+            checkpointIfDue();
+        }
+    }
+
+    /**
+     * Moves the document from the source queue to the destination queue
+     * without rewriting it.
+     *
+     * @param aSrcQueueName Source queue name (e.g. extract, transform)
+     * @param aDstQueueName Destination queue name (e.g. transform, publish)
+     * @param aDocId Unique document identifier.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void move(String aSrcQueueName, String aDstQueueName, String aDocId)
+        throws IOException
+    {
+        Long recordPointer = queueIndex(aSrcQueueName).remove(aDocId);
+        if (recordPointer == null)
+            throw new IOException(String.format("%s: Does not exist in the '%s' queue.", aDocId, aSrcQueueName));
+
+        appendRecord(encodeRecord(RECORD_MOVE, aDstQueueName, aDocId, aSrcQueueName, null));
+        Long prevPointer = queueIndex(aDstQueueName).put(aDocId, recordPointer);
+        if (prevPointer != null)
+            releaseReference(prevPointer);
+        checkpointIfDue();
+    }
+
+    /**
+     * Stores the document in the destination queue and removes it from
+     * the source queue.
+     *
+     * @param aSrcQueueName Source queue name (e.g. extract, transform)
+     * @param aDstQueueName Destination queue name (e.g. transform, publish)
+     * @param aDocId Unique document identifier.
+     * @param aDocument Document instance.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public void transition(String aSrcQueueName, String aDstQueueName, String aDocId, Document aDocument)
+        throws IOException
+    {
+        byte[] recordBytes = encodeRecord(RECORD_DOCUMENT, aDstQueueName, aDocId, null, aDocument);
+        synchronized (this)
+        {
+            long recordPointer = appendRecord(recordBytes);
+            addReference(recordPointer);
+            Long prevPointer = queueIndex(aDstQueueName).put(aDocId, recordPointer);
+            if (prevPointer != null)
+                releaseReference(prevPointer);
+            remove(aSrcQueueName, aDocId);
+        }
+    }
+
+    /**
+     * Removes the document from the queue identified by the parameter.
+     *
+     * @param aQueueName Queue name (e.g. extract, transform)
+     * @param aDocId Unique document identifier.
+     *
+     * @return <i>true</i> if the document was removed or <i>false</i>
+     * if the queue did not hold it.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized boolean remove(String aQueueName, String aDocId)
+        throws IOException
+    {
+        Long recordPointer = queueIndex(aQueueName).remove(aDocId);
+        if (recordPointer == null)
+            return false;
+
+        appendRecord(encodeRecord(RECORD_REMOVE, aQueueName, aDocId, null, null));
+        releaseReference(recordPointer);
+        checkpointIfDue();
+
+        return true;
+    }
+
+    private byte[] readRecordBody(FileChannel aFileChannel, long anOffset)
+        throws IOException
+    {
+        ByteBuffer headerBuffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        long readPosition = anOffset;
+        while (headerBuffer.hasRemaining())
+        {
+            int readCount = aFileChannel.read(headerBuffer, readPosition);
+            if (readCount < 0)
+                throw new EOFException();
+            readPosition += readCount;
+        }
+        headerBuffer.flip();
+        int bodyLength = headerBuffer.getInt();
+        int bodyChecksum = headerBuffer.getInt();
+        if ((bodyLength <= 0) || (anOffset + RECORD_HEADER_LENGTH + bodyLength > aFileChannel.size()))
+            throw new EOFException();
+
+        ByteBuffer bodyBuffer = ByteBuffer.allocate(bodyLength);
+        while (bodyBuffer.hasRemaining())
+        {
+            int readCount = aFileChannel.read(bodyBuffer, readPosition);
+            if (readCount < 0)
+                throw new EOFException();
+            readPosition += readCount;
+        }
+        byte[] recordBody = bodyBuffer.array();
+        CRC32 crc32 = new CRC32();
+        crc32.update(recordBody, 0, bodyLength);
+        if ((int) crc32.getValue() != bodyChecksum)
+            throw new IOException(String.format("Journal record at offset %d failed its checksum.", anOffset));
+
+        return recordBody;
+    }
+
+    /**
+     * Returns the document held by the queue identified by the parameter.
+     *
+     * @param aQueueName Queue name (e.g. extract, transform)
+     * @param aDocId Unique document identifier.
+     *
+     * @return Document instance.
+     *
+     * @throws IOException I/O related error condition (including a
+     * document that does not exist in the queue).
+     */
+    public Document get(String aQueueName, String aDocId)
+        throws IOException
+    {
+        int segmentId;
+        byte[] recordBody;
+        long recordOffset;
+        FileChannel fileChannel;
+
+        synchronized (this)
+        {
+            Long recordPointer = queueIndex(aQueueName).get(aDocId);
+            if (recordPointer == null)
+                throw new IOException(String.format("%s: Does not exist in the '%s' queue.", aDocId, aQueueName));
+            segmentId = pointerSegmentId(recordPointer);
+            fileChannel = segmentChannel(segmentId);
+            recordOffset = pointerOffset(recordPointer);
+            addReader(segmentId);
+        }
+
+        try
+        {
+            recordBody = readRecordBody(fileChannel, recordOffset);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                releaseReader(segmentId);
+            }
+        }
+        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(recordBody);
+        DataInputStream dataInputStream = new DataInputStream(byteArrayInputStream);
+        if (dataInputStream.readByte() != RECORD_DOCUMENT)
+            throw new IOException(String.format("%s: Journal record is not a document.", aDocId));
+        dataInputStream.readUTF();
+        dataInputStream.readUTF();
+
+        DocumentJSON documentJSON = new DocumentJSON();
+        documentJSON.load(new JsonReader(new InputStreamReader(byteArrayInputStream, StandardCharsets.UTF_8)));
+
+        return documentJSON.getDocument();
+    }
+
+    private void loadCheckpoint()
+        throws IOException
+    {
+        String queueName;
+        int queueCount, entryCount;
+
+        File checkpointFile = new File(checkpointPathFileName());
+        if (checkpointFile.exists())
+        {
+            try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile))))
+            {
+                mActiveSegmentId = dataInputStream.readInt();
+                mActivePosition = dataInputStream.readLong();
+                queueCount = dataInputStream.readInt();
+                for (int queue = 0; queue < queueCount; queue++)
+                {
+                    queueName = dataInputStream.readUTF();
+                    entryCount = dataInputStream.readInt();
+                    HashMap<String,Long> queueIndex = queueIndex(queueName);
+                    for (int entry = 0; entry < entryCount; entry++)
+                        queueIndex.put(dataInputStream.readUTF(), dataInputStream.readLong());
+                }
+            }
+        }
+    }
+
+    private void replayRecord(byte[] aRecordBody, long aRecordPointer)
+        throws IOException
+    {
+        Long prevPointer;
+
+        DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(aRecordBody));
+        byte recordType = dataInputStream.readByte();
+        String queueName = dataInputStream.readUTF();
+        String docId = dataInputStream.readUTF();
+        switch (recordType)
+        {
+            case RECORD_DOCUMENT:
+                queueIndex(queueName).put(docId, aRecordPointer);
+                break;
+            case RECORD_MOVE:
+                prevPointer = queueIndex(dataInputStream.readUTF()).remove(docId);
+                if (prevPointer != null)
+                    queueIndex(queueName).put(docId, prevPointer);
+                break;
+            case RECORD_REMOVE:
+                queueIndex(queueName).remove(docId);
+                break;
+            default:
+                throw new IOException(String.format("Unknown journal record type %d.", recordType));
+        }
+    }
+
+/* Replays the records appended after the checkpoint.  The scan stops at the first
+record that is incomplete or fails its checksum - the segment is truncated there,
+since that record was being written when the process stopped. */
+
+    private void replayJournal(ArrayList<Integer> aSegmentIds)
+        throws IOException
+    {
+        long offset;
+        byte[] recordBody;
+        Logger appLogger = mAppMgr.getLogger(this, "replayJournal");
+
+        int replayCount = 0;
+        boolean isTorn = false;
+        int checkpointSegmentId = mActiveSegmentId;
+        for (Integer segmentId : aSegmentIds)
+        {
+            if (segmentId < checkpointSegmentId)
+                continue;
+            if (isTorn)
+            {
+                deleteSegment(segmentId);
+                continue;
+            }
+
+            FileChannel fileChannel = segmentChannel(segmentId);
+            offset = (segmentId == checkpointSegmentId) ? mActivePosition : 0L;
+            while (offset < fileChannel.size())
+            {
+                try
+                {
+                    recordBody = readRecordBody(fileChannel, offset);
+                }
+                catch (IOException e)
+                {
+                    appLogger.warn(String.format("%s: Discarding torn record at offset %d.",
+                                                 segmentPathFileName(segmentId), offset));
+                    fileChannel.truncate(offset);
+                    isTorn = true;
+                    break;
+                }
+                replayRecord(recordBody, toPointer(segmentId, offset));
+                offset += RECORD_HEADER_LENGTH + recordBody.length;
+                replayCount++;
+            }
+            mActiveSegmentId = segmentId;
+            mActivePosition = offset;
+        }
+
+        appLogger.debug(String.format("%s: Replayed %d records.", mPathName, replayCount));
+    }
+
+    /**
+     * Opens the journal, recovering the phase indexes from the last
+     * checkpoint and the records appended after it.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void open()
+        throws IOException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "open");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        File journalPath = new File(mPathName);
+        if ((! journalPath.exists()) && (! journalPath.mkdirs()))
+            throw new IOException(String.format("%s: Unable to create folder.", mPathName));
+
+        mQueueIndex.clear();
+        mSegmentReferences.clear();
+        mActiveSegmentId = 1;
+        mActivePosition = 0L;
+        loadCheckpoint();
+
+        ArrayList<Integer> segmentIds = segmentIdList();
+        if (! segmentIds.contains(mActiveSegmentId))
+            mActivePosition = 0L;
+        replayJournal(segmentIds);
+        segmentIds = segmentIdList();
+
+        for (HashMap<String,Long> queueIndex : mQueueIndex.values())
+        {
+            for (Long recordPointer : queueIndex.values())
+                addReference(recordPointer);
+        }
+        for (Integer segmentId : segmentIds)
+        {
+            if ((segmentId != mActiveSegmentId) && (! mSegmentReferences.containsKey(segmentId)))
+                deleteSegment(segmentId);
+        }
+        mRecordsSinceCheckpoint = 0;
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    /**
+     * Forces the active segment to storage and writes a checkpoint of
+     * the phase indexes, so a later recovery only needs to replay the
+     * records that follow it.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void checkpoint()
+        throws IOException
+    {
+        FileChannel fileChannel = mSegmentChannels.get(mActiveSegmentId);
+        if (fileChannel != null)
+            fileChannel.force(false);
+
+        File checkpointFile = new File(checkpointPathFileName());
+        File tmpFile = new File(String.format("%s.tmp", checkpointPathFileName()));
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile))))
+        {
+            dataOutputStream.writeInt(mActiveSegmentId);
+            dataOutputStream.writeLong(mActivePosition);
+            dataOutputStream.writeInt(mQueueIndex.size());
+            for (Map.Entry<String,HashMap<String,Long>> queueEntry : mQueueIndex.entrySet())
+            {
+                dataOutputStream.writeUTF(queueEntry.getKey());
+                dataOutputStream.writeInt(queueEntry.getValue().size());
+                for (Map.Entry<String,Long> indexEntry : queueEntry.getValue().entrySet())
+                {
+                    dataOutputStream.writeUTF(indexEntry.getKey());
+                    dataOutputStream.writeLong(indexEntry.getValue());
+                }
+            }
+        }
+        Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        mRecordsSinceCheckpoint = 0;
+    }
+
+/* A document record that was moved between queues still names the queue it was
+first written to, so compaction re-encodes it with the queue that holds it now. */
+
+    private byte[] rewriteRecord(byte[] aRecordBody, String aQueueName)
+        throws IOException
+    {
+        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(aRecordBody);
+        DataInputStream dataInputStream = new DataInputStream(byteArrayInputStream);
+        byte recordType = dataInputStream.readByte();
+        dataInputStream.readUTF();
+        String docId = dataInputStream.readUTF();
+        int payloadLength = byteArrayInputStream.available();
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(aRecordBody.length + RECORD_HEADER_LENGTH);
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        dataOutputStream.writeInt(0);
+        dataOutputStream.writeInt(0);
+        dataOutputStream.writeByte(recordType);
+        dataOutputStream.writeUTF(aQueueName);
+        dataOutputStream.writeUTF(docId);
+        dataOutputStream.flush();
+        byteArrayOutputStream.write(aRecordBody, aRecordBody.length - payloadLength, payloadLength);
+
+        return sealRecord(byteArrayOutputStream.toByteArray());
+    }
+
+    /**
+     * Rewrites the documents that remain in the queues into a new
+     * segment and deletes all of the older segments.  This is intended
+     * to be invoked when a crawl finishes and the queue is retained.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void compact()
+        throws IOException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "compact");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        ArrayList<Integer> prevSegmentIds = new ArrayList<Integer>(mSegmentChannels.keySet());
+        for (Integer segmentId : segmentIdList())
+        {
+            if (! prevSegmentIds.contains(segmentId))
+                prevSegmentIds.add(segmentId);
+        }
+
+        HashMap<String,HashMap<String,Long>> prevQueueIndex = mQueueIndex;
+        mQueueIndex = new HashMap<String,HashMap<String,Long>>();
+        mSegmentReferences.clear();
+        for (Integer segmentId : prevSegmentIds)
+            mActiveSegmentId = Math.max(mActiveSegmentId, segmentId);
+        mActiveSegmentId++;
+        mActivePosition = 0L;
+
+        int docCount = 0;
+        for (Map.Entry<String,HashMap<String,Long>> queueEntry : prevQueueIndex.entrySet())
+        {
+            for (Map.Entry<String,Long> indexEntry : queueEntry.getValue().entrySet())
+            {
+                long prevPointer = indexEntry.getValue();
+                byte[] recordBody = readRecordBody(segmentChannel(pointerSegmentId(prevPointer)),
+                                                   pointerOffset(prevPointer));
+                long recordPointer = appendRecord(rewriteRecord(recordBody, queueEntry.getKey()));
+                addReference(recordPointer);
+                queueIndex(queueEntry.getKey()).put(indexEntry.getKey(), recordPointer);
+                docCount++;
+            }
+        }
+
+        checkpoint();
+        for (Integer segmentId : prevSegmentIds)
+        {
+            if (segmentId != mActiveSegmentId)
+                deleteSegment(segmentId);
+        }
+
+        appLogger.debug(String.format("%s: Compacted %d documents.", mPathName, docCount));
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    /**
+     * Checkpoints the journal and releases its segment files.
+     */
+    public synchronized void close()
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "close");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        try
+        {
+            checkpoint();
+        }
+        catch (IOException e)
+        {
+            appLogger.error(String.format("%s: %s", mPathName, e.getMessage()), e);
+        }
+        for (Map.Entry<Integer,FileChannel> channelEntry : mSegmentChannels.entrySet())
+        {
+            if (mSegmentReaders.containsKey(channelEntry.getKey()))
+            {
+                mRetiredChannels.put(channelEntry.getKey(), channelEntry.getValue());
+                continue;
+            }
+            try
+            {
+                channelEntry.getValue().close();
+            }
+            catch (IOException e)
+            {
+                appLogger.error(String.format("%s: %s", mPathName, e.getMessage()), e);
+            }
+        }
+        mSegmentChannels.clear();
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+}
@@ -20,6 +20,11 @@ package com.nridge.connector.common.con_com.crawl;
 import com.nridge.connector.common.con_com.Connector;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
+import com.nridge.core.base.doc.Relationship;
+import com.nridge.core.base.field.FieldRow;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.field.data.DataTable;
 import com.nridge.core.base.io.xml.DocumentXML;
 import com.nridge.core.base.std.NSException;
 import com.nridge.core.base.std.StrUtl;
@@ -27,16 +32,22 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
+import javax.xml.parsers.ParserConfigurationException;
 
 /**
  * The CrawlQueue is responsible for managing the files associated
@@ -49,14 +60,36 @@ import java.util.zip.Checksum;
 public class CrawlQueue
 {
 	private final int CRAWL_BEGINNING_OF_TIME = -100;
+	private final int MEMORY_DOCUMENT_LIMIT_DEFAULT = 1000;
+	private final int MEMORY_LIMIT_MB_DEFAULT = 64;
+	private final int MEMORY_VALUE_OVERHEAD = 64;
 
 	private long mCrawlId;
 	private String mCrawlType;
 	private final AppMgr mAppMgr;
 	private Date mCrawlLastModified;
+	private CrawlJournal mCrawlJournal;
+	private long mMemoryByteLimit;
+	private int mMemoryDocumentLimit;
+	private AtomicLong mMemoryByteCount;
+	private ConcurrentHashMap<String,ConcurrentHashMap<String,MemoryEntry>> mMemoryQueues;
 	private HashMap<String,AtomicBoolean> mPhaseComplete;
+	private ConcurrentHashMap<String,AtomicInteger> mPhaseWorkers;
+	private ConcurrentHashMap<String,QueueItem> mPhaseMarkers;
 	private String mCfgPropertyPrefix = Connector.CFG_PROPERTY_PREFIX;
 
+	private static class MemoryEntry
+	{
+		private final Document mDocument;
+		private final long mByteCount;
+
+		private MemoryEntry(Document aDocument, long aByteCount)
+		{
+			mDocument = aDocument;
+			mByteCount = aByteCount;
+		}
+	}
+
 	/**
      * Constructor accepts an application manager parameter and initializes
 	 * the object accordingly.
@@ -71,6 +104,8 @@ public class CrawlQueue
 		mPhaseComplete.put(Connector.PHASE_EXTRACT, new AtomicBoolean(false));
 		mPhaseComplete.put(Connector.PHASE_TRANSFORM, new AtomicBoolean(false));
 		mPhaseComplete.put(Connector.PHASE_PUBLISH, new AtomicBoolean(false));
+		mPhaseWorkers = new ConcurrentHashMap<String,AtomicInteger>();
+		mPhaseMarkers = new ConcurrentHashMap<String,QueueItem>();
 		mCrawlLastModified = DateUtils.addYears(new Date(), CRAWL_BEGINNING_OF_TIME);
 	}
 
@@ -400,7 +435,17 @@ public class CrawlQueue
 				createPathName(crawlPathName(Connector.QUEUE_EXTRACT_NAME));
 				createPathName(crawlPathName(Connector.QUEUE_TRANSFORM_NAME));
 				createPathName(crawlPathName(Connector.QUEUE_PUBLISH_NAME));
+				createPathName(crawlPathName(Connector.QUEUE_CONTENT_NAME));
 				acquireLock();
+				if (isCfgStringTrue("queue.journal_enabled"))
+					openJournal();
+				if (isCfgStringTrue("queue.memory_handoff"))
+				{
+					mMemoryDocumentLimit = getCfgInteger("queue.memory_document_limit", MEMORY_DOCUMENT_LIMIT_DEFAULT);
+					mMemoryByteLimit = getCfgInteger("queue.memory_limit_mb", MEMORY_LIMIT_MB_DEFAULT) * 1024L * 1024L;
+					mMemoryByteCount = new AtomicLong(0L);
+					mMemoryQueues = new ConcurrentHashMap<String,ConcurrentHashMap<String,MemoryEntry>>();
+				}
 			}
 		}
 		else
@@ -409,6 +454,37 @@ public class CrawlQueue
 		appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 	}
 
+	private void openJournal()
+		throws NSException
+	{
+		CrawlJournal crawlJournal = new CrawlJournal(mAppMgr, crawlPathName(CrawlJournal.JOURNAL_PATH_NAME));
+		crawlJournal.setSegmentSize(getCfgInteger("queue.journal_segment_size",
+												  (int) CrawlJournal.SEGMENT_SIZE_DEFAULT));
+		crawlJournal.setCheckpointInterval(getCfgInteger("queue.journal_checkpoint_interval",
+														 CrawlJournal.CHECKPOINT_INTERVAL_DEFAULT));
+		try
+		{
+			crawlJournal.open();
+		}
+		catch (IOException e)
+		{
+			throw new NSException(String.format("%s: %s", crawlPathName(CrawlJournal.JOURNAL_PATH_NAME), e.getMessage()));
+		}
+		mCrawlJournal = crawlJournal;
+	}
+
+	/**
+	 * Returns <i>true</i> if queued documents are stored in the crawl
+	 * journal or <i>false</i> if they are stored as XML files in the
+	 * queue folders.
+	 *
+	 * @return <i>true</i> or <i>false</i>
+	 */
+	public boolean isJournalEnabled()
+	{
+		return mCrawlJournal != null;
+	}
+
 	/**
 	 * Initiates a new crawl queue in the file system. As part of the
 	 * process, new crawl id, lock file, date last modified timestamp
@@ -448,9 +524,9 @@ public class CrawlQueue
 	 * Places the queue item marker into the queue identified by queue name.
 	 *
 	 * @param aQueueName Queue name (e.g. extract, transform, publish)
-	 * @param aQueueItemMarker Queue item marker (e.g. NSD-CrawlFinish)
+	 * @param aQueueItemMarker Queue item marker (e.g. QueueItem.CRAWL_FINISH)
 	 */
-	public void putMarkerIntoQueue(String aQueueName, String aQueueItemMarker)
+	public void putMarkerIntoQueue(String aQueueName, QueueItem aQueueItemMarker)
 	{
 		Logger appLogger = mAppMgr.getLogger(this, "putMarkerIntoQueue");
 
@@ -487,9 +563,9 @@ public class CrawlQueue
 	 *
 	 * @return <i>true</i> or <i>false</i>
 	 */
-	public boolean isQueueItemValid(String aQueueItem)
+	public boolean isQueueItemValid(QueueItem aQueueItem)
 	{
-		return StringUtils.isNotEmpty(aQueueItem);
+		return aQueueItem != null;
 	}
 
 	/**
@@ -499,18 +575,9 @@ public class CrawlQueue
 	 *
 	 * @return <i>true</i> or <i>false</i>
 	 */
-	public boolean isQueueItemMarker(String aQueueItem)
+	public boolean isQueueItemMarker(QueueItem aQueueItem)
 	{
-		if (isQueueItemValid(aQueueItem))
-		{
-			boolean queueIsAborted = StringUtils.equals(aQueueItem, Connector.QUEUE_ITEM_CRAWL_ABORT);
-			boolean queueIsStarted = StringUtils.equals(aQueueItem, Connector.QUEUE_ITEM_CRAWL_START);
-			boolean queueIsFinished = StringUtils.equals(aQueueItem, Connector.QUEUE_ITEM_CRAWL_FINISH);
-
-			return ((queueIsAborted) || (queueIsStarted) || (queueIsFinished));
-		}
-		else
-			return false;
+		return (isQueueItemValid(aQueueItem)) && (aQueueItem.isMarker());
 	}
 
 	/**
@@ -520,12 +587,9 @@ public class CrawlQueue
 	 *
 	 * @return <i>true</i> or <i>false</i>
 	 */
-	public boolean isQueueItemDocument(String aQueueItem)
+	public boolean isQueueItemDocument(QueueItem aQueueItem)
 	{
-		if ((isQueueItemValid(aQueueItem)) && (! isQueueItemMarker(aQueueItem)))
-			return true;
-		else
-			return false;
+		return (isQueueItemValid(aQueueItem)) && (aQueueItem.isDocument());
 	}
 
 	/**
@@ -538,7 +602,7 @@ public class CrawlQueue
 	 *
 	 * @return <i>true</i> or <i>false</i>
 	 */
-	public boolean isPhaseComplete(String aPhase, String aQueueItem)
+	public boolean isPhaseComplete(String aPhase, QueueItem aQueueItem)
 	{
 		boolean isPhaseAlreadyComplete;
 		Logger appLogger = mAppMgr.getLogger(this, "isPhaseComplete");
@@ -556,8 +620,8 @@ public class CrawlQueue
 
 		boolean appMgrIsAlive = mAppMgr.isAlive();
 		boolean queueItemIsValid = isQueueItemValid(aQueueItem);
-		boolean queueIsAborted = StringUtils.equals(aQueueItem, Connector.QUEUE_ITEM_CRAWL_ABORT);
-		boolean queueIsFinished = StringUtils.equals(aQueueItem, Connector.QUEUE_ITEM_CRAWL_FINISH);
+		boolean queueIsAborted = (queueItemIsValid) && (aQueueItem.getType() == QueueItem.Type.CrawlAbort);
+		boolean queueIsFinished = (queueItemIsValid) && (aQueueItem.getType() == QueueItem.Type.CrawlFinish);
 
 		boolean isComplete = ((! appMgrIsAlive) || (isPhaseAlreadyComplete) || (queueIsAborted) || (queueIsFinished));
 
@@ -568,7 +632,7 @@ public class CrawlQueue
 			appLogger.debug(String.format("Phase Complete %s: queueItemIsValid = %s, isPhaseAlreadyComplete = %s, appMgrIsAlive = %s, queueIsAborted = %s, queueIsFinished = %s",
 											aPhase, queueItemIsValid, isPhaseAlreadyComplete, appMgrIsAlive, queueIsAborted, queueIsFinished));
 		}
-		else
+		else if (appLogger.isDebugEnabled())
 			appLogger.debug(String.format("Phase Continue %s: queueItemIsValid = %s, isPhaseAlreadyComplete = %s, appMgrIsAlive = %s, queueIsAborted = %s, queueIsFinished = %s",
 										  aPhase, queueItemIsValid, isPhaseAlreadyComplete, appMgrIsAlive, queueIsAborted, queueIsFinished));
 
@@ -577,6 +641,124 @@ public class CrawlQueue
 		return isComplete;
 	}
 
+	/**
+	 * Registers the number of worker threads that will consume the queue
+	 * feeding the phase.  This method must be invoked before the workers
+	 * are started, so the phase barrier knows how many workers need to
+	 * depart before the phase is done.
+	 *
+	 * @param aPhase Name of the phase (e.g. transform, publish).
+	 * @param aWorkerCount Number of worker threads.
+	 */
+	public void registerPhaseWorkers(String aPhase, int aWorkerCount)
+	{
+		mPhaseWorkers.put(aPhase, new AtomicInteger(aWorkerCount));
+		mPhaseMarkers.remove(aPhase);
+	}
+
+	/**
+	 * Returns the count of worker threads that have not yet departed
+	 * the phase.
+	 *
+	 * @param aPhase Name of the phase (e.g. transform, publish).
+	 *
+	 * @return Active worker count.
+	 */
+	public int activePhaseWorkers(String aPhase)
+	{
+		AtomicInteger phaseWorkers = mPhaseWorkers.get(aPhase);
+		if (phaseWorkers == null)
+			return 0;
+		else
+			return phaseWorkers.get();
+	}
+
+	private BlockingQueue blockingQueue(String aQueueName)
+	{
+		if (aQueueName == null)
+			return null;
+		else
+			return (BlockingQueue) mAppMgr.getProperty(aQueueName);
+	}
+
+	/**
+	 * Phase barrier that every worker thread invokes once its processing
+	 * loop has completed.  The first worker that departs with a marker
+	 * places a copy of it back into its input queue for each worker that
+	 * is still active, so idle workers wake up immediately rather than
+	 * waiting out their poll timeout.  The last worker to depart removes
+	 * any unclaimed marker copies and forwards the marker to the next
+	 * queue - at that point every document handled by the phase has been
+	 * placed into the output queue ahead of it.
+	 *
+	 * @param aPhase Name of the phase (e.g. transform, publish).
+	 * @param aQueueItem Last queue item taken by the worker (may be <i>null</i>).
+	 * @param anInQueueName Queue name the phase consumes from.
+	 * @param anOutQueueName Queue name the phase produces to (may be <i>null</i>).
+	 *
+	 * @return <i>true</i> if this was the last worker to depart or
+	 * 		   <i>false</i> otherwise.
+	 */
+	public boolean departPhase(String aPhase, QueueItem aQueueItem, String anInQueueName, String anOutQueueName)
+	{
+		int activeWorkers;
+		Logger appLogger = mAppMgr.getLogger(this, "departPhase");
+
+		appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+		boolean isMarker = isQueueItemMarker(aQueueItem);
+		boolean isFirstMarker = (isMarker) && (mPhaseMarkers.putIfAbsent(aPhase, aQueueItem) == null);
+
+		AtomicInteger phaseWorkers = mPhaseWorkers.get(aPhase);
+		if (phaseWorkers == null)
+			activeWorkers = 0;
+		else
+			activeWorkers = Math.max(0, phaseWorkers.decrementAndGet());
+
+		int removeCount = 0;
+		BlockingQueue inQueue = blockingQueue(anInQueueName);
+		if (activeWorkers > 0)
+		{
+			if ((isFirstMarker) && (inQueue != null))
+			{
+				for (int worker = 0; worker < activeWorkers; worker++)
+					inQueue.offer(aQueueItem);
+			}
+		}
+		else
+		{
+			QueueItem queueItemMarker = mPhaseMarkers.get(aPhase);
+			if (queueItemMarker != null)
+			{
+				if (inQueue != null)
+				{
+					while (inQueue.remove(queueItemMarker))
+						removeCount++;
+				}
+				BlockingQueue outQueue = blockingQueue(anOutQueueName);
+				if (outQueue != null)
+				{
+					try
+					{
+						// If queue is full, this thread may block.
+						outQueue.put(queueItemMarker);
+					}
+					catch (InterruptedException e)
+					{
+						// Restore the interrupted status so parent can handle (if it wants to).
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+			appLogger.debug(String.format("Phase '%s' barrier reached by all workers (%d unclaimed markers removed).",
+										  aPhase, removeCount));
+		}
+
+		appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+
+		return activeWorkers == 0;
+	}
+
 	/**
 	 * Composes a path/file name for documents stored in the queue folder
 	 * identified by the parameter.
@@ -591,6 +773,306 @@ public class CrawlQueue
 		return String.format("%s%c%s.xml", crawlPathName(aQueueName), File.separatorChar, aDocId);
 	}
 
+	private ConcurrentHashMap<String,MemoryEntry> memoryQueue(String aQueueName)
+	{
+		ConcurrentHashMap<String,MemoryEntry> memoryQueue = mMemoryQueues.get(aQueueName);
+		if (memoryQueue == null)
+		{
+			mMemoryQueues.putIfAbsent(aQueueName, new ConcurrentHashMap<String,MemoryEntry>());
+			memoryQueue = mMemoryQueues.get(aQueueName);
+		}
+
+		return memoryQueue;
+	}
+
+/* The size of a document is estimated from the lengths of its field values (two
+bytes per character) plus a fixed overhead for each value - it is only meant to
+keep the memory held by the hand-off within the configured budget. */
+
+	private long estimateBytes(DataBag aBag)
+	{
+		long byteCount = 0L;
+		for (DataField dataField : aBag.getFields())
+		{
+			byteCount += MEMORY_VALUE_OVERHEAD;
+			for (String fieldValue : dataField.getValues())
+				byteCount += MEMORY_VALUE_OVERHEAD + 2L * StringUtils.length(fieldValue);
+		}
+
+		return byteCount;
+	}
+
+	private long estimateBytes(Document aDocument)
+	{
+		long byteCount = estimateBytes(aDocument.getBag());
+
+		DataTable dataTable = aDocument.getTable();
+		int colCount = dataTable.columnCount();
+		int rowCount = dataTable.rowCount();
+		for (int row = 0; row < rowCount; row++)
+		{
+			FieldRow fieldRow = dataTable.getRow(row);
+			for (int col = 0; col < colCount; col++)
+			{
+				for (String cellValue : dataTable.getValuesByColumn(fieldRow, col))
+					byteCount += MEMORY_VALUE_OVERHEAD + 2L * StringUtils.length(cellValue);
+			}
+		}
+		for (Relationship relationship : aDocument.getRelationships())
+		{
+			byteCount += estimateBytes(relationship.getBag());
+			for (Document relatedDocument : relationship.getDocuments())
+				byteCount += estimateBytes(relatedDocument);
+		}
+
+		return byteCount;
+	}
+
+/* Holds the document in memory when hand-off is enabled, the queue has not
+reached its document limit and the estimated size of the documents held by all
+the queues stays within the memory limit - the caller is responsible for
+persisting it otherwise.  The document limit is checked without locking, so
+concurrent workers may exceed it by a few documents. */
+
+	private boolean holdInMemory(String aQueueName, String aDocId, Document aDocument)
+	{
+		boolean isHeld = false;
+
+		if (mMemoryQueues != null)
+		{
+			ConcurrentHashMap<String,MemoryEntry> memoryQueue = memoryQueue(aQueueName);
+			if (memoryQueue.size() < mMemoryDocumentLimit)
+			{
+				long byteCount = estimateBytes(aDocument);
+				if (mMemoryByteCount.addAndGet(byteCount) <= mMemoryByteLimit)
+				{
+					MemoryEntry prevEntry = memoryQueue.put(aDocId, new MemoryEntry(aDocument, byteCount));
+					if (prevEntry != null)
+						mMemoryByteCount.addAndGet(-prevEntry.mByteCount);
+					isHeld = true;
+				}
+				else
+					mMemoryByteCount.addAndGet(-byteCount);
+			}
+		}
+
+		return isHeld;
+	}
+
+	private Document takeFromMemory(String aQueueName, String aDocId)
+	{
+		if (mMemoryQueues == null)
+			return null;
+		else
+		{
+			MemoryEntry memoryEntry = memoryQueue(aQueueName).remove(aDocId);
+			if (memoryEntry == null)
+				return null;
+			else
+			{
+				mMemoryByteCount.addAndGet(-memoryEntry.mByteCount);
+				return memoryEntry.mDocument;
+			}
+		}
+	}
+
+	private void persist(String aQueueName, Document aDocument, String aDocId)
+		throws IOException
+	{
+		if (mCrawlJournal == null)
+		{
+			DocumentXML documentXML = new DocumentXML(aDocument);
+			documentXML.save(docPathFileName(aQueueName, aDocId));
+		}
+		else
+			mCrawlJournal.put(aQueueName, aDocId, aDocument);
+	}
+
+/* Writes any documents still held in memory to storage (the queue folders or
+the crawl journal), so a queue that is retained after the crawl finishes is
+complete. */
+
+	private void spillMemory()
+	{
+		Logger appLogger = mAppMgr.getLogger(this, "spillMemory");
+
+		if (mMemoryQueues != null)
+		{
+			for (Map.Entry<String,ConcurrentHashMap<String,MemoryEntry>> queueEntry : mMemoryQueues.entrySet())
+			{
+				for (Map.Entry<String,MemoryEntry> docEntry : queueEntry.getValue().entrySet())
+				{
+					try
+					{
+						persist(queueEntry.getKey(), docEntry.getValue().mDocument, docEntry.getKey());
+					}
+					catch (IOException e)
+					{
+						appLogger.error(String.format("%s: %s", docEntry.getKey(), e.getMessage()), e);
+					}
+				}
+				queueEntry.getValue().clear();
+			}
+			mMemoryByteCount.set(0L);
+		}
+	}
+
+	/**
+	 * Returns <i>true</i> if documents are handed off between phases
+	 * in memory or <i>false</i> if every document is persisted.
+	 *
+	 * @return <i>true</i> or <i>false</i>
+	 */
+	public boolean isMemoryHandoffEnabled()
+	{
+		return mMemoryQueues != null;
+	}
+
+	/**
+	 * Returns the count of documents held in memory for the queue
+	 * identified by the parameter.
+	 *
+	 * @param aQueueName Queue name (e.g. extract, transform, publish)
+	 *
+	 * @return Document count.
+	 */
+	public int memoryCount(String aQueueName)
+	{
+		if (mMemoryQueues == null)
+			return 0;
+		else
+			return memoryQueue(aQueueName).size();
+	}
+
+	/**
+	 * Returns the estimated size (in bytes) of the documents held in
+	 * memory by all of the queues.
+	 *
+	 * @return Estimated byte count.
+	 */
+	public long memoryByteCount()
+	{
+		if (mMemoryQueues == null)
+			return 0L;
+		else
+			return mMemoryByteCount.get();
+	}
+
+	/**
+	 * Stores the document in the queue identified by the parameter.
+	 * If memory hand-off is enabled, then the document is held in
+	 * memory until the queue reaches its document limit or the held
+	 * documents reach the memory limit, after which it is spilled to
+	 * storage.  Stored documents are appended to the crawl journal if
+	 * it is enabled, otherwise they are saved as XML files in the queue
+	 * folder.
+	 * <p>
+	 * <b>Note:</b> A document held in memory is not written to the
+	 * journal, so it does not survive a process failure - the crawl
+	 * state of such a document is only committed once it has been
+	 * published, so the next crawl will simply extract it again.
+	 * </p>
+	 *
+	 * @param aQueueName Queue name (e.g. extract, transform, publish)
+	 * @param aDocument Document of fields to store.
+	 * @param aDocId Unique document identifier.
+	 *
+	 * @throws IOException Indicates and I/O error condition.
+	 */
+	public void save(String aQueueName, Document aDocument, String aDocId)
+		throws IOException
+	{
+		if (! holdInMemory(aQueueName, aDocId, aDocument))
+			persist(aQueueName, aDocument, aDocId);
+	}
+
+	/**
+	 * Loads the document held in the queue identified by the parameter.
+	 * A document held in memory is returned without being parsed.
+	 *
+	 * @param aQueueName Queue name (e.g. extract, transform, publish)
+	 * @param aDocId Unique document identifier.
+	 *
+	 * @return Document instance.
+	 *
+	 * @throws NSException Indicates a parsing error condition.
+	 * @throws IOException Indicates and I/O error condition.
+	 */
+	public Document load(String aQueueName, String aDocId)
+		throws NSException, IOException
+	{
+		Document queueDocument = null;
+
+		if (mMemoryQueues != null)
+		{
+			MemoryEntry memoryEntry = memoryQueue(aQueueName).get(aDocId);
+			if (memoryEntry != null)
+				queueDocument = memoryEntry.mDocument;
+		}
+
+		if (queueDocument == null)
+		{
+			if (mCrawlJournal == null)
+			{
+				String docPathFileName = docPathFileName(aQueueName, aDocId);
+				DocumentXML documentXML = new DocumentXML();
+				try
+				{
+					documentXML.load(docPathFileName);
+				}
+				catch (ParserConfigurationException | SAXException e)
+				{
+					throw new NSException(String.format("%s: %s", docPathFileName, e.getMessage()));
+				}
+				queueDocument = documentXML.getDocument();
+			}
+			else
+				queueDocument = mCrawlJournal.get(aQueueName, aDocId);
+		}
+
+		return queueDocument;
+	}
+
+	/**
+	 * Removes the document from the queue identified by the parameter.
+	 *
+	 * @param aQueueName Queue name (e.g. extract, transform, publish)
+	 * @param aDocId Unique document identifier.
+	 *
+	 * @return <i>true</i> if the document was removed or <i>false</i>
+	 * 		   otherwise.
+	 */
+	public boolean remove(String aQueueName, String aDocId)
+	{
+		boolean isRemoved;
+		Logger appLogger = mAppMgr.getLogger(this, "remove");
+
+		Document memoryDocument = takeFromMemory(aQueueName, aDocId);
+		if (memoryDocument != null)
+			isRemoved = true;
+		else if (mCrawlJournal == null)
+		{
+			File docFile = new File(docPathFileName(aQueueName, aDocId));
+			isRemoved = docFile.delete();
+			if (! isRemoved)
+				appLogger.warn(String.format("%s: Unable to delete.", docFile.getAbsolutePath()));
+		}
+		else
+		{
+			try
+			{
+				isRemoved = mCrawlJournal.remove(aQueueName, aDocId);
+			}
+			catch (IOException e)
+			{
+				isRemoved = false;
+				appLogger.warn(String.format("%s: %s", aDocId, e.getMessage()));
+			}
+		}
+
+		return isRemoved;
+	}
+
 	private void renameQueuePathFileName(String aSrcPathFileName, String aDstPathFileName,
 										 boolean aIsSrcRequired)
 		throws NSException
@@ -611,7 +1093,10 @@ public class CrawlQueue
 
 	/**
 	 * Using the file system, this method will perform an atomic rename
-	 * of the document from one queue folder to another.
+	 * of the document from one queue folder to another.  If the crawl
+	 * journal is enabled, then the document is moved by its index entry
+	 * instead.  A document held in memory is moved to the destination
+	 * queue in memory (or spilled to storage if that queue is full).
 	 *
 	 * @param aSrcQueueName Source queue name (e.g. extract, transform)
 	 * @param aDstQueueName Destination queue name (e.g. transform, publish)
@@ -626,10 +1111,29 @@ public class CrawlQueue
 
 		appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-		String srcDocPathFileName = docPathFileName(aSrcQueueName, aDocId);
-		String dstDocPathFileName = docPathFileName(aDstQueueName, aDocId);
+		Document memoryDocument = takeFromMemory(aSrcQueueName, aDocId);
+		boolean isHeld = (memoryDocument != null) && (holdInMemory(aDstQueueName, aDocId, memoryDocument));
+		try
+		{
+			if (memoryDocument != null)
+			{
+				if (! isHeld)
+					persist(aDstQueueName, memoryDocument, aDocId);
+			}
+			else if (mCrawlJournal != null)
+				mCrawlJournal.move(aSrcQueueName, aDstQueueName, aDocId);
+			else
+			{
+				String srcDocPathFileName = docPathFileName(aSrcQueueName, aDocId);
+				String dstDocPathFileName = docPathFileName(aDstQueueName, aDocId);
 
-		renameQueuePathFileName(srcDocPathFileName, dstDocPathFileName, true);
+				renameQueuePathFileName(srcDocPathFileName, dstDocPathFileName, true);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new NSException(String.format("%s: %s", aDocId, e.getMessage()));
+		}
 
 		appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 	}
@@ -639,7 +1143,9 @@ public class CrawlQueue
 	 * from its source queue folder to the destination.  The document
 	 * parameter will be used to represent the document in its destination
 	 * queue.  The source document will simply be deleted from the file
-	 * system.
+	 * system (or the crawl journal, if it is enabled).  If memory hand-off
+	 * is enabled, then the document parameter is held in memory unless the
+	 * destination queue is full.
 	 *
 	 * @param aSrcQueueName Source queue name (e.g. extract, transform)
 	 * @param aDstQueueName Destination queue name (e.g. transform, publish)
@@ -656,15 +1162,33 @@ public class CrawlQueue
 
 		appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-		String srcDocPathFileName = docPathFileName(aSrcQueueName, aDocId);
-		String dstDocPathFileName = docPathFileName(aDstQueueName, aDocId);
-
-		DocumentXML documentXML = new DocumentXML(aDocument);
-		documentXML.save(dstDocPathFileName);
+		Document memoryDocument = takeFromMemory(aSrcQueueName, aDocId);
+		boolean isHeld = holdInMemory(aDstQueueName, aDocId, aDocument);
+		if (mCrawlJournal == null)
+		{
+			if (! isHeld)
+			{
+				DocumentXML documentXML = new DocumentXML(aDocument);
+				documentXML.save(docPathFileName(aDstQueueName, aDocId));
+			}
 
-		File srcFile = new File(srcDocPathFileName);
-		if (! srcFile.delete())
-			throw new NSException(String.format("%s: Unable to delete.", srcDocPathFileName));
+			if (memoryDocument == null)
+			{
+				String srcDocPathFileName = docPathFileName(aSrcQueueName, aDocId);
+				File srcFile = new File(srcDocPathFileName);
+				if (! srcFile.delete())
+					throw new NSException(String.format("%s: Unable to delete.", srcDocPathFileName));
+			}
+		}
+		else if (memoryDocument != null)
+		{
+			if (! isHeld)
+				mCrawlJournal.put(aDstQueueName, aDocId, aDocument);
+		}
+		else if (isHeld)
+			mCrawlJournal.remove(aSrcQueueName, aDocId);
+		else
+			mCrawlJournal.transition(aSrcQueueName, aDstQueueName, aDocId, aDocument);
 
 		appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 	}
@@ -689,7 +1213,15 @@ public class CrawlQueue
 		mPhaseComplete.put(Connector.PHASE_EXTRACT, new AtomicBoolean(false));
 		mPhaseComplete.put(Connector.PHASE_TRANSFORM, new AtomicBoolean(false));
 		mPhaseComplete.put(Connector.PHASE_PUBLISH, new AtomicBoolean(false));
+		mPhaseWorkers = new ConcurrentHashMap<String,AtomicInteger>();
+		mPhaseMarkers = new ConcurrentHashMap<String,QueueItem>();
 		mCrawlLastModified = DateUtils.addYears(new Date(), CRAWL_BEGINNING_OF_TIME);
+		mMemoryQueues = null;
+		if (mCrawlJournal != null)
+		{
+			mCrawlJournal.close();
+			mCrawlJournal = null;
+		}
 
 		appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 
@@ -758,7 +1290,21 @@ public class CrawlQueue
 		if (isActive())
 		{
 			if (aIsQueueNeeded)
+			{
+				spillMemory();
+				if (mCrawlJournal != null)
+				{
+					try
+					{
+						mCrawlJournal.compact();
+					}
+					catch (IOException e)
+					{
+						appLogger.error(String.format("Journal compaction: %s", e.getMessage()), e);
+					}
+				}
 				clear();
+			}
 			else
 				reset();
 		}
@@ -0,0 +1,702 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.connector.common.con_com.crawl;
+
+import com.nridge.core.app.mgr.AppMgr;
+import com.nridge.core.base.doc.Document;
+import com.nridge.core.base.ds.DSException;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.std.NSException;
+import com.nridge.ds.solr.SolrDS;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The CrawlStateStore persists what a connector knows about each
+ * document it has crawled - its location (path or URL), size, last
+ * modified time, content hash and the identifier of the last crawl
+ * that saw it.  The state is keyed by document identifier and survives
+ * between crawls, so change detection becomes a local lookup and the
+ * documents that were not seen by a completed crawl can be deleted
+ * from the search index.
+ * <p>
+ * The store is an append-only log file of tab delimited records that
+ * is replayed into an in-memory index when opened.  Each update, seen
+ * marker or removal appends one record.  When the log grows well past
+ * the number of live documents, it is compacted on close by rewriting
+ * the current state to a new file that replaces the old one.  The log
+ * is flushed every <i>FLUSH_INTERVAL</i> records and whenever pending
+ * states are committed.
+ * </p>
+ * <p>
+ * The state of a document that is being sent to the search index is
+ * recorded as pending (see {@link #updatePending}) and only written to
+ * the log by {@link #commitPending()} once the crawl has published it.
+ * If the process stops first, or a publish failure cancels the pending
+ * states, the documents are simply treated as changed by the next crawl.
+ * </p>
+ * <p>
+ * <b>Note:</b> The methods are synchronized, so a store may be shared
+ * by the extraction threads of a crawl.
+ * </p>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class CrawlStateStore
+{
+    public static final String STATE_PATH_NAME = "state";
+    public static final String STATE_NAME_DEFAULT = "crawl_state";
+    public static final int DELETE_BATCH_SIZE_DEFAULT = 500;
+
+    private final int COMPACT_RATIO = 2;
+    private final int COMPACT_MINIMUM = 1000;
+    private final int FLUSH_INTERVAL = 1000;
+    private final char FIELD_SEPARATOR = '\t';
+    private final String RECORD_SEEN = "S";
+    private final String RECORD_UPDATE = "U";
+    private final String RECORD_REMOVE = "R";
+    private final String STATE_FILE_EXTENSION = "log";
+
+    private final String mName;
+    private int mRecordCount;
+    private int mUnflushedCount;
+    private boolean mIsErrorReported;
+    private boolean mIsPendingCancelled;
+    private Writer mLogWriter;
+    private final AppMgr mAppMgr;
+    private HashMap<String,DocState> mStateMap;
+    private HashMap<String,DocState> mPendingMap;
+
+    private static class DocState
+    {
+        private long mSize;
+        private long mCrawlId;
+        private long mModified;
+        private String mHash;
+        private String mLocation;
+    }
+
+    /**
+     * Constructor accepts an application manager parameter and the
+     * name of the store (typically the connector name).
+     *
+     * @param anAppMgr Application manager.
+     * @param aName Name of the store.
+     */
+    public CrawlStateStore(final AppMgr anAppMgr, String aName)
+    {
+        mName = aName;
+        mAppMgr = anAppMgr;
+        mStateMap = new HashMap<String,DocState>();
+        mPendingMap = new HashMap<String,DocState>();
+    }
+
+    /**
+     * Returns the path name where crawl state stores are maintained.
+     *
+     * @return Path name.
+     */
+    public String statePathName()
+    {
+        return String.format("%s%c%s", mAppMgr.getString(mAppMgr.APP_PROPERTY_INS_PATH), File.separatorChar,
+                             STATE_PATH_NAME);
+    }
+
+    /**
+     * Returns the path/file name of the store log.
+     *
+     * @return Path/file name.
+     */
+    public String statePathFileName()
+    {
+        return String.format("%s%c%s.%s", statePathName(), File.separatorChar, mName, STATE_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the count of documents tracked by the store.
+     *
+     * @return Document count.
+     */
+    public synchronized int count()
+    {
+        return mStateMap.size();
+    }
+
+    private String escapeField(String aValue)
+    {
+        if (StringUtils.isEmpty(aValue))
+            return StringUtils.EMPTY;
+
+        StringBuilder stringBuilder = new StringBuilder(aValue.length());
+        int strLength = aValue.length();
+        for (int i = 0; i < strLength; i++)
+        {
+            char ch = aValue.charAt(i);
+            switch (ch)
+            {
+                case '\\':
+                    stringBuilder.append("\\\\");
+                    break;
+                case '\t':
+                    stringBuilder.append("\\t");
+                    break;
+                case '\n':
+                    stringBuilder.append("\\n");
+                    break;
+                case '\r':
+                    stringBuilder.append("\\r");
+                    break;
+                default:
+                    stringBuilder.append(ch);
+                    break;
+            }
+        }
+
+        return stringBuilder.toString();
+    }
+
+    private String unescapeField(String aValue)
+    {
+        if (StringUtils.indexOf(aValue, '\\') == -1)
+            return aValue;
+
+        StringBuilder stringBuilder = new StringBuilder(aValue.length());
+        int strLength = aValue.length();
+        for (int i = 0; i < strLength; i++)
+        {
+            char ch = aValue.charAt(i);
+            if ((ch == '\\') && (i + 1 < strLength))
+            {
+                ch = aValue.charAt(++i);
+                if (ch == 't')
+                    stringBuilder.append('\t');
+                else if (ch == 'n')
+                    stringBuilder.append('\n');
+                else if (ch == 'r')
+                    stringBuilder.append('\r');
+                else
+                    stringBuilder.append(ch);
+            }
+            else
+                stringBuilder.append(ch);
+        }
+
+        return stringBuilder.toString();
+    }
+
+/* A record that cannot be parsed (for example, a partial line written before the
+process was stopped) is skipped - the document will simply be treated as new. */
+
+    private void replayRecord(String aRecord)
+    {
+        DocState docState;
+
+        String[] recordFields = StringUtils.splitPreserveAllTokens(aRecord, FIELD_SEPARATOR);
+        if ((recordFields == null) || (recordFields.length < 2))
+            return;
+
+        String docId = unescapeField(recordFields[1]);
+        try
+        {
+            if ((recordFields[0].equals(RECORD_UPDATE)) && (recordFields.length == 7))
+            {
+                docState = new DocState();
+                docState.mLocation = unescapeField(recordFields[2]);
+                docState.mSize = Long.parseLong(recordFields[3]);
+                docState.mModified = Long.parseLong(recordFields[4]);
+                docState.mHash = unescapeField(recordFields[5]);
+                docState.mCrawlId = Long.parseLong(recordFields[6]);
+                mStateMap.put(docId, docState);
+            }
+            else if ((recordFields[0].equals(RECORD_SEEN)) && (recordFields.length == 3))
+            {
+                docState = mStateMap.get(docId);
+                if (docState != null)
+                    docState.mCrawlId = Long.parseLong(recordFields[2]);
+            }
+            else if (recordFields[0].equals(RECORD_REMOVE))
+                mStateMap.remove(docId);
+        }
+        catch (NumberFormatException ignored)
+        {
+        }
+    }
+
+    private Writer openWriter(File aFile, boolean anIsAppend)
+        throws IOException
+    {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(aFile, anIsAppend),
+                                                         StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the store by replaying its log file (if one exists) into
+     * memory and preparing the log for new records.
+     *
+     * @throws NSException Unable to create the state folder.
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void open()
+        throws NSException, IOException
+    {
+        String logRecord;
+        Logger appLogger = mAppMgr.getLogger(this, "open");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        File pathFile = new File(statePathName());
+        if ((! pathFile.exists()) && (! pathFile.mkdirs()))
+            throw new NSException(String.format("%s: Unable to create folder.", pathFile.getAbsolutePath()));
+
+        mRecordCount = 0;
+        mUnflushedCount = 0;
+        mStateMap.clear();
+        mPendingMap.clear();
+        mIsErrorReported = false;
+        mIsPendingCancelled = false;
+        File logFile = new File(statePathFileName());
+        if (logFile.exists())
+        {
+            try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile),
+                                                                                          StandardCharsets.UTF_8)))
+            {
+                while ((logRecord = bufferedReader.readLine()) != null)
+                {
+                    replayRecord(logRecord);
+                    mRecordCount++;
+                }
+            }
+        }
+        mLogWriter = openWriter(logFile, true);
+
+        appLogger.debug(String.format("%s: %d documents from %d records.", logFile.getName(),
+                                      mStateMap.size(), mRecordCount));
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    private void appendRecord(String... aFields)
+        throws IOException
+    {
+        if (mLogWriter == null)
+            throw new IOException(String.format("%s: Crawl state store is not open.", mName));
+
+        for (int i = 0; i < aFields.length; i++)
+        {
+            if (i > 0)
+                mLogWriter.write(FIELD_SEPARATOR);
+            mLogWriter.write(aFields[i]);
+        }
+        mLogWriter.write('\n');
+        mRecordCount++;
+        if (++mUnflushedCount >= FLUSH_INTERVAL)
+            flushRecords();
+    }
+
+    private void flushRecords()
+        throws IOException
+    {
+        if (mLogWriter != null)
+            mLogWriter.flush();
+        mUnflushedCount = 0;
+    }
+
+    /**
+     * Flushes the records appended to the store log to the file system.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void flush()
+        throws IOException
+    {
+        flushRecords();
+    }
+
+    /**
+     * Returns <i>true</i> if the document identifier is tracked by the
+     * store or <i>false</i> otherwise.
+     *
+     * @param aDocId Document identifier.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public synchronized boolean contains(String aDocId)
+    {
+        return mStateMap.containsKey(aDocId);
+    }
+
+    /**
+     * Returns <i>true</i> if the document is unknown to the store or
+     * its size or last modified time differ from the ones recorded
+     * or <i>false</i> if they are the same.
+     *
+     * @param aDocId Document identifier.
+     * @param aSize Document size.
+     * @param aModified Document last modified time (in milliseconds).
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public synchronized boolean isModified(String aDocId, long aSize, long aModified)
+    {
+        DocState docState = mStateMap.get(aDocId);
+        if (docState == null)
+            return true;
+        else
+            return (docState.mSize != aSize) || (docState.mModified != aModified);
+    }
+
+    /**
+     * Returns <i>true</i> if the document is known to the store with
+     * the same content hash as the parameter or <i>false</i> otherwise.
+     *
+     * @param aDocId Document identifier.
+     * @param aHash Document content hash.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public synchronized boolean isUnchanged(String aDocId, String aHash)
+    {
+        DocState docState = mStateMap.get(aDocId);
+        if ((docState == null) || (StringUtils.isEmpty(aHash)))
+            return false;
+        else
+            return StringUtils.equals(docState.mHash, aHash);
+    }
+
+    /**
+     * Records the current state of the document and marks it as seen
+     * by the crawl.
+     *
+     * @param aDocId Document identifier.
+     * @param aLocation Document location (path or URL).
+     * @param aSize Document size.
+     * @param aModified Document last modified time (in milliseconds).
+     * @param aHash Document content hash (may be empty).
+     * @param aCrawlId Crawl identifier.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void update(String aDocId, String aLocation, long aSize, long aModified,
+                                    String aHash, long aCrawlId)
+        throws IOException
+    {
+        if (StringUtils.isNotEmpty(aDocId))
+        {
+            mPendingMap.remove(aDocId);
+            commitState(aDocId, createState(aLocation, aSize, aModified, aHash, aCrawlId));
+        }
+    }
+
+    private DocState createState(String aLocation, long aSize, long aModified, String aHash, long aCrawlId)
+    {
+        DocState docState = new DocState();
+        docState.mLocation = StringUtils.defaultString(aLocation);
+        docState.mSize = aSize;
+        docState.mModified = aModified;
+        docState.mHash = StringUtils.defaultString(aHash);
+        docState.mCrawlId = aCrawlId;
+
+        return docState;
+    }
+
+    private void commitState(String aDocId, DocState aDocState)
+        throws IOException
+    {
+        appendRecord(RECORD_UPDATE, escapeField(aDocId), escapeField(aDocState.mLocation),
+                     Long.toString(aDocState.mSize), Long.toString(aDocState.mModified),
+                     escapeField(aDocState.mHash), Long.toString(aDocState.mCrawlId));
+        mStateMap.put(aDocId, aDocState);
+    }
+
+    /**
+     * Records the current state of a document that is being published
+     * as pending.  A pending state does not affect change detection and
+     * is only written to the log by {@link #commitPending()}, but the
+     * document is treated as seen by the crawl.
+     *
+     * @param aDocId Document identifier.
+     * @param aLocation Document location (path or URL).
+     * @param aSize Document size.
+     * @param aModified Document last modified time (in milliseconds).
+     * @param aHash Document content hash (may be empty).
+     * @param aCrawlId Crawl identifier.
+     */
+    public synchronized void updatePending(String aDocId, String aLocation, long aSize, long aModified,
+                                           String aHash, long aCrawlId)
+    {
+        if (StringUtils.isNotEmpty(aDocId))
+            mPendingMap.put(aDocId, createState(aLocation, aSize, aModified, aHash, aCrawlId));
+    }
+
+    /**
+     * Returns the count of document states waiting to be committed.
+     *
+     * @return Pending document count.
+     */
+    public synchronized int pendingCount()
+    {
+        return mPendingMap.size();
+    }
+
+    /**
+     * Cancels the commit of the pending document states.  This should
+     * be invoked when a publish failure means that some of the pending
+     * documents may not have reached the search index - they will be
+     * treated as changed by the next crawl.
+     */
+    public synchronized void cancelPending()
+    {
+        mIsPendingCancelled = true;
+    }
+
+    /**
+     * Records that the crawl failed to visit some of its documents (for
+     * example, a file that could not be read or a start path that could
+     * not be enumerated).  Such documents are not marked as seen, so
+     * they must not be purged as unseen documents.
+     */
+    public synchronized void reportError()
+    {
+        mIsErrorReported = true;
+    }
+
+    /**
+     * Returns <i>true</i> if the crawl reported an error since the store
+     * was opened or <i>false</i> otherwise.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public synchronized boolean isErrorReported()
+    {
+        return mIsErrorReported;
+    }
+
+    /**
+     * Writes the pending document states to the log and flushes it.
+     * This should be invoked once the crawl has published its documents.
+     * If the pending states were cancelled, they are discarded instead -
+     * a document the store already tracks keeps its previous state and
+     * is only marked as seen, so it is neither purged nor treated as
+     * unchanged by the next crawl.
+     *
+     * @return Count of document states committed.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized int commitPending()
+        throws IOException
+    {
+        int commitCount = 0;
+        for (Map.Entry<String,DocState> pendingEntry : mPendingMap.entrySet())
+        {
+            if (mIsPendingCancelled)
+                markSeen(pendingEntry.getKey(), pendingEntry.getValue().mCrawlId);
+            else
+            {
+                commitState(pendingEntry.getKey(), pendingEntry.getValue());
+                commitCount++;
+            }
+        }
+        mPendingMap.clear();
+        mIsPendingCancelled = false;
+        flushRecords();
+
+        return commitCount;
+    }
+
+    /**
+     * Marks an unchanged document as seen by the crawl.
+     *
+     * @param aDocId Document identifier.
+     * @param aCrawlId Crawl identifier.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void markSeen(String aDocId, long aCrawlId)
+        throws IOException
+    {
+        DocState docState = mStateMap.get(aDocId);
+        if ((docState != null) && (docState.mCrawlId != aCrawlId))
+        {
+            appendRecord(RECORD_SEEN, escapeField(aDocId), Long.toString(aCrawlId));
+            docState.mCrawlId = aCrawlId;
+        }
+    }
+
+    /**
+     * Removes the document from the store.
+     *
+     * @param aDocId Document identifier.
+     *
+     * @throws IOException I/O related error condition.
+     */
+    public synchronized void remove(String aDocId)
+        throws IOException
+    {
+        if (mStateMap.remove(aDocId) != null)
+            appendRecord(RECORD_REMOVE, escapeField(aDocId));
+    }
+
+    /**
+     * Returns the list of document identifiers that were not seen
+     * by the crawl.
+     *
+     * @param aCrawlId Crawl identifier.
+     *
+     * @return List of document identifiers.
+     */
+    public synchronized ArrayList<String> unseenDocIds(long aCrawlId)
+    {
+        ArrayList<String> docIdList = new ArrayList<String>();
+        for (Map.Entry<String,DocState> stateEntry : mStateMap.entrySet())
+        {
+            if ((stateEntry.getValue().mCrawlId != aCrawlId) && (! mPendingMap.containsKey(stateEntry.getKey())))
+                docIdList.add(stateEntry.getKey());
+        }
+
+        return docIdList;
+    }
+
+    /**
+     * Deletes the documents that were not seen by the crawl from the
+     * search index (in batches) and removes them from the store.  This
+     * method should only be invoked after a crawl has visited every
+     * document in its scope - an interrupted crawl would otherwise
+     * delete the documents it did not reach.
+     *
+     * @param aSolrDS Solr data source instance.
+     * @param aDocType Document type.
+     * @param aBag Schema bag with a primary key field.
+     * @param anIdFieldName Name of the unique identifier field.
+     * @param aCrawlId Crawl identifier.
+     * @param aBatchSize Number of documents deleted per request.
+     *
+     * @return Count of documents deleted.
+     *
+     * @throws DSException Data source related exception.
+     * @throws IOException I/O related error condition.
+     */
+    public int purgeUnseen(SolrDS aSolrDS, String aDocType, DataBag aBag, String anIdFieldName,
+                           long aCrawlId, int aBatchSize)
+        throws DSException, IOException
+    {
+        Document document;
+        Logger appLogger = mAppMgr.getLogger(this, "purgeUnseen");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        int batchSize = Math.max(1, aBatchSize);
+        ArrayList<String> docIdList = unseenDocIds(aCrawlId);
+        ArrayList<Document> documentList = new ArrayList<Document>(Math.min(batchSize, docIdList.size()));
+        int docCount = docIdList.size();
+        for (int offset = 0; offset < docCount; offset += batchSize)
+        {
+            documentList.clear();
+            int batchEnd = Math.min(docCount, offset + batchSize);
+            for (int i = offset; i < batchEnd; i++)
+            {
+                document = new Document(aDocType, aBag);
+                document.getBag().setValueByName(anIdFieldName, docIdList.get(i));
+                documentList.add(document);
+            }
+            aSolrDS.delete(documentList);
+            for (int i = offset; i < batchEnd; i++)
+                remove(docIdList.get(i));
+            appLogger.debug(String.format("Deleted %d unseen documents.", batchEnd - offset));
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+
+        return docCount;
+    }
+
+    private void compact()
+        throws IOException
+    {
+        DocState docState;
+
+        File logFile = new File(statePathFileName());
+        File compactFile = new File(String.format("%s.tmp", statePathFileName()));
+        mLogWriter = openWriter(compactFile, false);
+        mRecordCount = 0;
+        try
+        {
+            for (Map.Entry<String,DocState> stateEntry : mStateMap.entrySet())
+            {
+                docState = stateEntry.getValue();
+                appendRecord(RECORD_UPDATE, escapeField(stateEntry.getKey()), escapeField(docState.mLocation),
+                             Long.toString(docState.mSize), Long.toString(docState.mModified),
+                             escapeField(docState.mHash), Long.toString(docState.mCrawlId));
+            }
+        }
+        finally
+        {
+            mLogWriter.close();
+            mLogWriter = null;
+        }
+        Files.move(compactFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Closes the store log, compacting it first if it has grown well
+     * beyond the number of documents it tracks.  Pending document states
+     * that were not committed are discarded.
+     */
+    public synchronized void close()
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "close");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        if (mLogWriter != null)
+        {
+            try
+            {
+                mPendingMap.clear();
+                mLogWriter.close();
+                mLogWriter = null;
+                if ((mRecordCount > COMPACT_MINIMUM) && (mRecordCount > mStateMap.size() * COMPACT_RATIO))
+                    compact();
+            }
+            catch (IOException e)
+            {
+                appLogger.error(String.format("%s: %s", statePathFileName(), e.getMessage()), e);
+            }
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.connector.common.con_com.crawl;
+
+import com.nridge.connector.common.con_com.Connector;
+
+import java.util.Arrays;
+
+/**
+ * A QueueItem is the unit of work passed between the extract, transform
+ * and publish phase queues.  A document item carries the unique document
+ * identifier and the time (in nanoseconds) each phase spent processing
+ * it.  A single instance is created when a document is extracted and it
+ * travels through every phase, so no strings are formatted or parsed
+ * along the way.
+ * <p>
+ * Marker items signal state changes in the phase processing (e.g. the
+ * crawl has finished).  They are shared constants and should be compared
+ * by their type.
+ * </p>
+ * <p>
+ * <b>Note:</b> A document item is only updated by the phase that holds
+ * it, so it does not need to be synchronized - the hand-off through a
+ * blocking queue makes the earlier phase times visible.
+ * </p>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class QueueItem
+{
+    public enum Type
+    {
+        Document, CrawlStart, CrawlFinish, CrawlAbort
+    }
+
+    public static final QueueItem CRAWL_START = new QueueItem(Type.CrawlStart, Connector.QUEUE_ITEM_CRAWL_START);
+    public static final QueueItem CRAWL_FINISH = new QueueItem(Type.CrawlFinish, Connector.QUEUE_ITEM_CRAWL_FINISH);
+    public static final QueueItem CRAWL_ABORT = new QueueItem(Type.CrawlAbort, Connector.QUEUE_ITEM_CRAWL_ABORT);
+
+    private static final int PHASE_EXTRACT_OFFSET = 0;
+    private static final int PHASE_TRANSFORM_OFFSET = 1;
+    private static final int PHASE_PUBLISH_OFFSET = 2;
+    private static final int PHASE_COUNT = 3;
+    private static final long PHASE_TIME_UNASSIGNED = -1L;
+
+    private final Type mType;
+    private final String mDocId;
+    private final long[] mPhaseTimes;
+
+    private QueueItem(Type aType, String aName)
+    {
+        mType = aType;
+        mDocId = aName;
+        mPhaseTimes = new long[0];
+    }
+
+    /**
+     * Constructor accepts a unique document identifier and creates
+     * a document queue item with no phase times assigned.
+     *
+     * @param aDocId Unique document identifier.
+     */
+    public QueueItem(String aDocId)
+    {
+        mType = Type.Document;
+        mDocId = aDocId;
+        mPhaseTimes = new long[PHASE_COUNT];
+        Arrays.fill(mPhaseTimes, PHASE_TIME_UNASSIGNED);
+    }
+
+    /**
+     * Returns the type of the queue item.
+     *
+     * @return Queue item type.
+     */
+    public Type getType()
+    {
+        return mType;
+    }
+
+    /**
+     * Returns the unique document identifier.  For marker items, the
+     * marker name (e.g. NSD-CrawlFinish) is returned.
+     *
+     * @return Unique document identifier.
+     */
+    public String getDocId()
+    {
+        return mDocId;
+    }
+
+    /**
+     * Returns <i>true</i> if the queue item represents a document or
+     * <i>false</i> if it is a marker.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isDocument()
+    {
+        return mType == Type.Document;
+    }
+
+    /**
+     * Returns <i>true</i> if the queue item represents a marker or
+     * <i>false</i> if it is a document.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isMarker()
+    {
+        return mType != Type.Document;
+    }
+
+    private int phaseOffset(String aPhase)
+    {
+        switch (aPhase)
+        {
+            case Connector.PHASE_EXTRACT:
+                return PHASE_EXTRACT_OFFSET;
+            case Connector.PHASE_TRANSFORM:
+                return PHASE_TRANSFORM_OFFSET;
+            case Connector.PHASE_PUBLISH:
+                return PHASE_PUBLISH_OFFSET;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown phase name '%s'.", aPhase));
+        }
+    }
+
+    /**
+     * Assigns the time the phase spent processing the document.
+     *
+     * @param aPhase ETL phase (extract, transform, publish).
+     * @param aNanoTime Duration time (in nanoseconds).
+     */
+    public void setPhaseTime(String aPhase, long aNanoTime)
+    {
+        if (isDocument())
+            mPhaseTimes[phaseOffset(aPhase)] = Math.max(0L, aNanoTime);
+    }
+
+    /**
+     * Returns <i>true</i> if a processing time was assigned for the
+     * phase or <i>false</i> otherwise.
+     *
+     * @param aPhase ETL phase (extract, transform, publish).
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isPhaseTimeAssigned(String aPhase)
+    {
+        return (isDocument()) && (mPhaseTimes[phaseOffset(aPhase)] != PHASE_TIME_UNASSIGNED);
+    }
+
+    /**
+     * Returns the time the phase spent processing the document or
+     * <i>-1</i> if it was not assigned.
+     *
+     * @param aPhase ETL phase (extract, transform, publish).
+     *
+     * @return Duration time (in nanoseconds).
+     */
+    public long getPhaseTime(String aPhase)
+    {
+        if (isDocument())
+            return mPhaseTimes[phaseOffset(aPhase)];
+        else
+            return PHASE_TIME_UNASSIGNED;
+    }
+
+    /**
+     * Returns a string representation of the queue item.
+     *
+     * @return String summary representation of this queue item.
+     */
+    @Override
+    public String toString()
+    {
+        if (isDocument())
+            return String.format("%s [%s:%d, %s:%d, %s:%d]", mDocId,
+                                 Connector.PHASE_EXTRACT, mPhaseTimes[PHASE_EXTRACT_OFFSET],
+                                 Connector.PHASE_TRANSFORM, mPhaseTimes[PHASE_TRANSFORM_OFFSET],
+                                 Connector.PHASE_PUBLISH, mPhaseTimes[PHASE_PUBLISH_OFFSET]);
+        else
+            return mDocId;
+    }
+}
@@ -18,10 +18,13 @@
 package com.nridge.connector.common.con_com.publish;
 
 import com.nridge.connector.common.con_com.Connector;
+import com.nridge.connector.common.con_com.ElasticExecutor;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
+import com.nridge.core.base.ds.DSException;
 import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
 import com.nridge.core.base.std.FilUtl;
 import com.nridge.core.base.std.NSException;
 import com.nridge.core.base.std.StrUtl;
@@ -30,16 +33,37 @@ import com.nridge.ds.solr.Solr;
 import com.nridge.ds.solr.SolrDS;
 import com.nridge.ds.solr.SolrDocumentXML;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Publisher Solr class is responsible for publishing the
  * documents to the search index service.  The logic is currently
  * dedicated to supporting the Apache Solr search index.
+ * <p>
+ * When the <i>publish.async_enabled</i> property is true, batches are
+ * sent by a dedicated pool of sender threads and the publish thread
+ * only blocks once <i>publish.async_batch_limit</i> batches are in
+ * flight.  Transient failures are retried with a jittered exponential
+ * back off and a positive <i>publish.commit_within</i> value (in
+ * milliseconds) replaces the periodic hard commits.  Setting the
+ * <i>publish.executor_mode</i> property to <i>elastic</i> sends each
+ * in-flight batch on its own thread, so only the batch limit needs
+ * to be configured.  A batch that still fails after its retries is
+ * kept and resent by the publish thread before the next batch or
+ * commit, so its documents are never dropped.
+ * </p>
  *
  * @see <a href="http://lucene.apache.org/solr/">Apache Solr</a>
  *
@@ -54,6 +78,20 @@ public class PSolr implements PublishInterface
     private int mBatchDocCount;
     private long mTotalDocCount;
     private int mCommitDocCount;
+    private int mRetryCount;
+    private long mRetryDelay;
+    private int mCommitWithin;
+    private int mBatchLimit;
+    private int mSenderCount;
+    private int mMaxBatchDepth;
+    private long mBatchCount;
+    private long mRetryTotal;
+    private long mBatchTimeTotal;
+    private long mBatchTimeMaximum;
+    private boolean mIsCommitPending;
+    private Semaphore mBatchPermits;
+    private ExecutorService mSenderExecutor;
+    private final ConcurrentLinkedQueue<ArrayList<Document>> mFailedBatches;
     private final AppMgr mAppMgr;
     private String mCfgPropertyPrefix;
     private final CrawlQueue mCrawlQueue;
@@ -74,6 +112,7 @@ public class PSolr implements PublishInterface
         mAppMgr = anAppMgr;
         mCrawlQueue = aCrawlQueue;
         mDocuments = new ArrayList<>();
+        mFailedBatches = new ConcurrentLinkedQueue<ArrayList<Document>>();
         mCfgPropertyPrefix = Connector.CFG_PROPERTY_PREFIX;
 
         mCurDocCount = 0;
@@ -82,6 +121,8 @@ public class PSolr implements PublishInterface
         mMaxDocCount = Connector.PUBLISH_MAX_DOC_COUNT;
         mBatchDocCount = Connector.PUBLISH_BATCH_DOC_COUNT;
         mCommitDocCount = Connector.PUBLISH_COMMIT_DOC_COUNT;
+        mRetryCount = Connector.PUBLISH_RETRY_COUNT;
+        mRetryDelay = Connector.PUBLISH_RETRY_DELAY;
     }
 
     /**
@@ -304,11 +345,292 @@ public class PSolr implements PublishInterface
         if (mCommitDocCount <= 0L)
             mCommitDocCount = Integer.MAX_VALUE;
 
+        mRetryCount = getCfgInteger("publish.retry_count", Connector.PUBLISH_RETRY_COUNT);
+        mRetryDelay = getCfgLong("publish.retry_delay", Connector.PUBLISH_RETRY_DELAY);
+        mCommitWithin = getCfgInteger("publish.commit_within", 0);
+        resetBatchMetrics();
+        startSenders();
+
         createOpenSolrFile();
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
+    private void resetBatchMetrics()
+    {
+        mBatchCount = 0L;
+        mRetryTotal = 0L;
+        mMaxBatchDepth = 0;
+        mFailedBatches.clear();
+        mBatchTimeTotal = 0L;
+        mBatchTimeMaximum = 0L;
+        mIsCommitPending = false;
+    }
+
+    private synchronized void recordBatch(long aBatchTime, int aRetryCount)
+    {
+        mBatchCount++;
+        mRetryTotal += aRetryCount;
+        mBatchTimeTotal += aBatchTime;
+        mBatchTimeMaximum = Math.max(mBatchTimeMaximum, aBatchTime);
+    }
+
+    private synchronized void writeBatchMetrics()
+    {
+        double avgMilliseconds;
+        Logger appLogger = mAppMgr.getLogger(this, "writeBatchMetrics");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        if (mBatchCount > 0L)
+        {
+            avgMilliseconds = (mBatchTimeTotal / (double) mBatchCount) / 1000000.0;
+            String msgStr = String.format("Publish metric for Solr (%d senders): %d batches, %.2f ms avg latency, %.2f ms max latency, %d max queue depth, %d retries",
+                                          mSenderCount, mBatchCount, avgMilliseconds,
+                                          mBatchTimeMaximum / 1000000.0, mMaxBatchDepth, mRetryTotal);
+            appLogger.info(msgStr);
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    /**
+     * Returns a bag summarizing the batch publishing metrics gathered
+     * since the publisher was initialized.  The metrics are also logged
+     * at each commit checkpoint and when the publisher is shutdown.
+     *
+     * @return Data bag instance.
+     */
+    public synchronized DataBag getBatchMetrics()
+    {
+        DataBag metricsBag = new DataBag("Solr Publish Metrics");
+        metricsBag.add(new DataField("sender_count", "Sender Count", mSenderCount));
+        metricsBag.add(new DataField("batch_count", "Batch Count", mBatchCount));
+        metricsBag.add(new DataField("batch_time_total", "Batch Time Total (ns)", mBatchTimeTotal));
+        metricsBag.add(new DataField("batch_time_maximum", "Batch Time Maximum (ns)", mBatchTimeMaximum));
+        metricsBag.add(new DataField("max_batch_depth", "Maximum Batch Depth", mMaxBatchDepth));
+        metricsBag.add(new DataField("retry_total", "Retry Total", mRetryTotal));
+        metricsBag.add(new DataField("failed_batch_count", "Failed Batch Count", mFailedBatches.size()));
+
+        return metricsBag;
+    }
+
+    private boolean isTransientFailure(DSException aException)
+    {
+        Throwable failureCause = aException.getCause();
+        if ((failureCause instanceof IOException) || (failureCause instanceof SolrServerException))
+            return true;
+        else if (failureCause instanceof SolrException)
+            return ((SolrException) failureCause).code() >= 500;
+        else
+            return false;
+    }
+
+    private int addWithRetry(ArrayList<Document> aDocuments)
+        throws DSException
+    {
+        long retryDelay;
+        Logger appLogger = mAppMgr.getLogger(this, "addWithRetry");
+
+        int commitWithin = mCommitWithin > 0 ? mCommitWithin : -1;
+        for (int attempt = 0; ; attempt++)
+        {
+            try
+            {
+                mSolrDS.add(aDocuments, commitWithin);
+                return attempt;
+            }
+            catch (DSException e)
+            {
+                if ((attempt >= mRetryCount) || (! isTransientFailure(e)))
+                    throw e;
+
+// Exponential back off with full jitter keeps retrying senders from hitting Solr in lock step.
+
+                retryDelay = Math.max(mRetryDelay, 1L) << Math.min(attempt, 10);
+                retryDelay = ThreadLocalRandom.current().nextLong(retryDelay / 2, retryDelay + 1);
+                appLogger.warn(String.format("Solr batch of %d documents failed (%s) - retry %d of %d in %d ms.",
+                                             aDocuments.size(), e.getMessage(), attempt + 1, mRetryCount, retryDelay));
+                try
+                {
+                    Thread.sleep(retryDelay);
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+/* Batches that failed on a sender thread are resent on the publish thread.
+ * A batch that fails again is put back so that a later flush can retry it
+ * and the failure is reported to the caller. */
+
+    private void resendFailedBatches()
+        throws NSException
+    {
+        ArrayList<Document> failedBatch;
+        Logger appLogger = mAppMgr.getLogger(this, "resendFailedBatches");
+
+        while ((failedBatch = mFailedBatches.poll()) != null)
+        {
+            appLogger.warn(String.format("Resending failed Solr batch of %d documents.", failedBatch.size()));
+            try
+            {
+                long startTime = System.nanoTime();
+                int retryCount = addWithRetry(failedBatch);
+                recordBatch(System.nanoTime() - startTime, retryCount);
+                mIsCommitPending = true;
+            }
+            catch (DSException e)
+            {
+                mFailedBatches.add(failedBatch);
+                throw new NSException(String.format("Solr batch of %d documents failed: %s",
+                                                    failedBatch.size(), e.getMessage()));
+            }
+        }
+    }
+
+    private void startSenders()
+    {
+        stopSenders();
+        if ((isCfgStringTrue("publish.upload_enabled")) && (isCfgStringTrue("publish.async_enabled")))
+        {
+            mSenderCount = Math.max(getCfgInteger("publish.async_thread_count", Connector.PUBLISH_SENDER_THREAD_COUNT), 1);
+            mBatchLimit = Math.max(getCfgInteger("publish.async_batch_limit", mSenderCount * 2), mSenderCount);
+            mBatchPermits = new Semaphore(mBatchLimit);
+
+// In elastic mode, every in-flight batch is sent on its own thread - the batch limit is the only cap.
+
+            String executorMode = getCfgString("publish.executor_mode", Connector.EXECUTOR_MODE_FIXED);
+            if (StringUtils.equalsIgnoreCase(executorMode, Connector.EXECUTOR_MODE_ELASTIC))
+            {
+                mSenderCount = mBatchLimit;
+                mSenderExecutor = new ElasticExecutor("psolr-sender", mBatchLimit, Connector.ELASTIC_THREAD_STACK_SIZE);
+            }
+            else
+                mSenderExecutor = Executors.newFixedThreadPool(mSenderCount);
+        }
+        else
+        {
+            mBatchLimit = 1;
+            mSenderCount = 1;
+        }
+    }
+
+    private void stopSenders()
+    {
+        if (mSenderExecutor != null)
+        {
+            mSenderExecutor.shutdown();
+            try
+            {
+                while (! mSenderExecutor.awaitTermination(1, TimeUnit.SECONDS))
+                    mAppMgr.getLogger(this, "stopSenders").debug("Waiting for in-flight Solr batches to complete.");
+            }
+            catch (InterruptedException e)
+            {
+                mSenderExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            mSenderExecutor = null;
+            mBatchPermits = null;
+        }
+    }
+
+    private void awaitBatches()
+        throws NSException
+    {
+        if (mBatchPermits != null)
+        {
+            try
+            {
+                mBatchPermits.acquire(mBatchLimit);
+                mBatchPermits.release(mBatchLimit);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new NSException("Interrupted while waiting for in-flight Solr batches.");
+            }
+        }
+        resendFailedBatches();
+    }
+
+/* A batch that is still in flight (or waiting to be resent) when a periodic commit
+starts may reach Solr after it, so the commit remains pending - otherwise
+flushAndCommit() would skip the final commit. */
+
+    private boolean isBatchOutstanding()
+    {
+        if ((mBatchPermits != null) && (mBatchPermits.availablePermits() < mBatchLimit))
+            return true;
+        else
+            return ! mFailedBatches.isEmpty();
+    }
+
+    private void sendBatch(final ArrayList<Document> aDocuments)
+        throws NSException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "sendBatch");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        resendFailedBatches();
+        mIsCommitPending = true;
+        if (mSenderExecutor == null)
+        {
+            mMaxBatchDepth = 1;
+            long startTime = System.nanoTime();
+            int retryCount = addWithRetry(aDocuments);
+            recordBatch(System.nanoTime() - startTime, retryCount);
+        }
+        else
+        {
+            try
+            {
+                mBatchPermits.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new NSException("Interrupted while waiting for an in-flight Solr batch.");
+            }
+            int batchDepth = mBatchLimit - mBatchPermits.availablePermits();
+            if (batchDepth > mMaxBatchDepth)
+                mMaxBatchDepth = batchDepth;
+            appLogger.debug(String.format("Queueing Solr batch of %d documents (%d in flight).",
+                                          aDocuments.size(), batchDepth));
+            final Semaphore batchPermits = mBatchPermits;
+            mSenderExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        long startTime = System.nanoTime();
+                        int retryCount = addWithRetry(aDocuments);
+                        recordBatch(System.nanoTime() - startTime, retryCount);
+                    }
+                    catch (Exception e)
+                    {
+                        mAppMgr.getLogger(PSolr.this, "sendBatch").error(e.getMessage(), e);
+                        mFailedBatches.add(aDocuments);
+                    }
+                    finally
+                    {
+                        batchPermits.release();
+                    }
+                }
+            });
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
     /**
      * Adds the document to the configured publishing endpoint (e.g. search index,
      * NoSQL storage)..
@@ -333,18 +655,20 @@ public class PSolr implements PublishInterface
             mCurDocCount++;
             mTotalDocCount++;
 
+// The feed file is written first, since Solr deletes content spool files once it accepts a batch.
+
             if (mCurDocCount >= mBatchDocCount)
             {
-                if (isCfgStringTrue("publish.upload_enabled"))
-                    mSolrDS.add(mDocuments);
                 if (mSolrDocumentXML != null)
                 {
                     mSolrDocumentXML.writeContent(mDocuments, 1);
                     mSolrDocumentXML.writeTrailerAndClose();
                     createOpenSolrFile();
                 }
+                if (isCfgStringTrue("publish.upload_enabled"))
+                    sendBatch(mDocuments);
                 mCurDocCount = 0;
-                mDocuments.clear();
+                mDocuments = new ArrayList<>();
             }
 
             if (isCfgStringTrue("publish.upload_enabled"))
@@ -353,9 +677,15 @@ public class PSolr implements PublishInterface
                 {
                     if ((mTotalDocCount % mCommitDocCount) == 0)
                     {
-                        mSolrDS.commit();
+                        if (mCommitWithin <= 0)
+                        {
+                            boolean isBatchOutstanding = isBatchOutstanding();
+                            mSolrDS.commit();
+                            mIsCommitPending = isBatchOutstanding;
+                        }
                         if (mSolrDocumentXML != null)
                             mSolrDocumentXML.writeCommit();
+                        writeBatchMetrics();
                     }
                 }
             }
@@ -379,17 +709,26 @@ public class PSolr implements PublishInterface
 
         if (mDocuments.size() > 0)
         {
+            if (mSolrDocumentXML != null)
+                mSolrDocumentXML.writeContent(mDocuments, 1);
             if (isCfgStringTrue("publish.upload_enabled"))
             {
-                mSolrDS.add(mDocuments);
-                mSolrDS.commit();
+                sendBatch(mDocuments);
                 mTotalDocCount += mDocuments.size();
             }
-            if (mSolrDocumentXML != null)
-                mSolrDocumentXML.writeContent(mDocuments, 1);
 
             mCurDocCount = 0;
-            mDocuments.clear();
+            mDocuments = new ArrayList<>();
+        }
+
+        if (isCfgStringTrue("publish.upload_enabled"))
+        {
+            awaitBatches();
+            if (mIsCommitPending)
+            {
+                mSolrDS.commit();
+                mIsCommitPending = false;
+            }
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -410,7 +749,15 @@ public class PSolr implements PublishInterface
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        flushAndCommit();
+        try
+        {
+            flushAndCommit();
+        }
+        finally
+        {
+            stopSenders();
+        }
+        writeBatchMetrics();
 
         if (isCfgStringTrue("publish.upload_enabled"))
         {
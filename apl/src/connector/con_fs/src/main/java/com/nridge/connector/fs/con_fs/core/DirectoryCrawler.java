@@ -0,0 +1,167 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.connector.fs.con_fs.core;
+
+import com.nridge.core.app.mgr.AppMgr;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The DirectoryCrawler enumerates a single directory on a fork/join
+ * pool.  Each sub-directory that the <i>FileCrawler</i> elects to
+ * follow is forked as its own DirectoryCrawler (allowing idle pool
+ * threads to steal them) and each file is handed to the extraction
+ * executor, where the <i>FileCrawler</i> performs the content
+ * extraction and places the document into the extract queue.
+ * <p>
+ * <b>Note:</b> Like <code>Files.walkFileTree()</code>, symbolic links
+ * are not followed and are visited as files.  A directory that cannot
+ * be read is reported and skipped rather than ending the crawl.
+ * </p>
+ *
+ * @see <a href="https://docs.oracle.com/javase/tutorial/essential/concurrency/forkjoin.html">Fork/Join</a>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DirectoryCrawler extends RecursiveAction
+{
+    private final Path mDirectory;
+    private final AppMgr mAppMgr;
+    private final FileCrawler mFileCrawler;
+    private final ExecutorService mFileExecutor;
+
+    /**
+     * Constructor initializes the internal state of the class with
+     * the parameters provided.
+     *
+     * @param anAppMgr Application manager instance.
+     * @param aFileCrawler File crawler instance shared by all directories.
+     * @param aFileExecutor Executor that extracts the content of files.
+     * @param aDirectory Directory that should be enumerated.
+     */
+    public DirectoryCrawler(final AppMgr anAppMgr, FileCrawler aFileCrawler,
+                            ExecutorService aFileExecutor, Path aDirectory)
+    {
+        mAppMgr = anAppMgr;
+        mDirectory = aDirectory;
+        mFileCrawler = aFileCrawler;
+        mFileExecutor = aFileExecutor;
+    }
+
+    private void visitFailed(Path aPath, IOException anException)
+    {
+        try
+        {
+            mFileCrawler.visitFileFailed(aPath, anException);
+        }
+        catch (IOException e)
+        {
+            mFileCrawler.reportError();
+            Logger appLogger = mAppMgr.getLogger(this, "visitFailed");
+            appLogger.error(String.format("%s: %s", aPath.toAbsolutePath().toString(), e.getMessage()));
+        }
+    }
+
+    private void extractFile(final Path aPath, final BasicFileAttributes aFileAttributes)
+    {
+        mFileExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (mAppMgr.isAlive())
+                {
+                    try
+                    {
+                        mFileCrawler.visitFile(aPath, aFileAttributes);
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        mFileCrawler.reportError();
+                        Logger appLogger = mAppMgr.getLogger(this, "run");
+                        appLogger.error(String.format("%s: %s", aPath.toAbsolutePath().toString(), e.getMessage()), e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Enumerates the directory, handing files to the extraction
+     * executor and forking the sub-directories that should be
+     * followed.  The method returns once all sub-directories have
+     * been enumerated - files may still be in the process of being
+     * extracted.
+     */
+    @Override
+    protected void compute()
+    {
+        BasicFileAttributes fileAttributes;
+        Logger appLogger = mAppMgr.getLogger(this, "compute");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        ArrayList<DirectoryCrawler> subCrawlerList = new ArrayList<DirectoryCrawler>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(mDirectory))
+        {
+            for (Path pathEntry : directoryStream)
+            {
+                if (! mAppMgr.isAlive())
+                    break;
+
+                try
+                {
+                    fileAttributes = Files.readAttributes(pathEntry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                }
+                catch (IOException e)
+                {
+                    visitFailed(pathEntry, e);
+                    continue;
+                }
+
+                if (fileAttributes.isDirectory())
+                {
+                    if (mFileCrawler.preVisitDirectory(pathEntry, fileAttributes) == FileVisitResult.CONTINUE)
+                        subCrawlerList.add(new DirectoryCrawler(mAppMgr, mFileCrawler, mFileExecutor, pathEntry));
+                }
+                else
+                    extractFile(pathEntry, fileAttributes);
+            }
+        }
+        catch (IOException e)
+        {
+            visitFailed(mDirectory, e);
+        }
+
+        if (subCrawlerList.size() > 0)
+            invokeAll(subCrawlerList);
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+}
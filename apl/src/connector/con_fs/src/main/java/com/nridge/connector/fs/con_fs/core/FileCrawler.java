@@ -20,7 +20,10 @@ package com.nridge.connector.fs.con_fs.core;
 import com.nridge.connector.common.con_com.Connector;
 import com.nridge.connector.common.con_com.crawl.CrawlFollow;
 import com.nridge.connector.common.con_com.crawl.CrawlIgnore;
+import com.nridge.connector.common.con_com.crawl.CrawlIndexCache;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
+import com.nridge.connector.common.con_com.crawl.CrawlStateStore;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
 import com.nridge.core.base.ds.DSCriteria;
@@ -28,13 +31,13 @@ import com.nridge.core.base.ds.DSException;
 import com.nridge.core.base.field.Field;
 import com.nridge.core.base.field.data.DataBag;
 import com.nridge.core.base.field.data.DataField;
-import com.nridge.core.base.io.xml.DocumentXML;
+import com.nridge.core.base.std.DigitalHash;
 import com.nridge.core.base.std.NSException;
 import com.nridge.ds.content.ds_content.Content;
 import com.nridge.ds.content.ds_content.ContentExtractor;
+import com.nridge.ds.content.ds_content.ContentSpoolWriter;
 import com.nridge.ds.solr.Solr;
 import com.nridge.ds.solr.SolrDS;
-import org.apache.commons.lang.time.StopWatch;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
@@ -46,13 +49,34 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.util.Date;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The FileCrawler uses the Visitor design pattern to traverse a
  * file system hierarchy.  Please note that not all of the overridden
  * methods are used - they are kept here in case there is need in the
  * future for overriding them.
+ * <p>
+ * <b>Note:</b> A single instance may be shared by the directory and
+ * extraction threads of a parallel crawl (see <i>DirectoryCrawler</i>),
+ * so its state must remain read-only once constructed.
+ * </p>
+ * <p>
+ * When the <code>extract.executor_mode</code> property is <i>elastic</i>,
+ * the number of files being parsed at once is capped by the
+ * <code>extract.parse_concurrency_limit</code> property (defaults to
+ * the processor count), since content parsing is CPU bound while the
+ * rest of the file processing is waiting on I/O.
+ * </p>
+ * <p>
+ * Index lookups borrow a Solr data source from a pool that is bounded
+ * by the <code>extract.solr_pool_size</code> property (defaults to the
+ * processor count), regardless of how many crawl threads are running.
+ * </p>
  *
  * @see <a href="http://docs.oracle.com/javase/tutorial/essential/io/walk.html">Walking the File Tree</a>
  * @see <a href="http://www.concretepage.com/java/jdk7/traverse-directory-structure-using-files-walkfiletree-java-nio2">Traverse a Directory Structure Using Files.walkFileTree in Java NIO 2</a>
@@ -62,6 +86,8 @@ import java.util.concurrent.BlockingQueue;
 @SuppressWarnings("unchecked")
 public class FileCrawler extends SimpleFileVisitor<Path>
 {
+    private final String[] HASH_EXCLUDED_FIELDS = {"nsd_doc_hash", "nsd_doc_modified_ts", "nsd_crawl_type"};
+
     private DataBag mBag;
     private SolrDS mSolrDS;
     private final AppMgr mAppMgr;
@@ -71,7 +97,14 @@ public class FileCrawler extends SimpleFileVisitor<Path>
     private boolean mIsCSVRowToDocument;
     private BlockingQueue mExtractQueue;
     private final CrawlQueue mCrawlQueue;
+    private CrawlIndexCache mIndexCache;
+    private CrawlStateStore mStateStore;
+    private Semaphore mParsePermits;
     private String mIdValuePrefix = StringUtils.EMPTY;
+    private Semaphore mSolrDSPermits;
+    private final AtomicBoolean mIsSolrDSClaimed = new AtomicBoolean();
+    private final ConcurrentLinkedQueue<SolrDS> mIdleSolrDS = new ConcurrentLinkedQueue<SolrDS>();
+    private final ConcurrentLinkedQueue<SolrDS> mCreatedSolrDS = new ConcurrentLinkedQueue<SolrDS>();
 
     /**
      * Creates and instance of the class and initializes it with
@@ -117,6 +150,20 @@ public class FileCrawler extends SimpleFileVisitor<Path>
         mCrawlIgnore.load();
 
         mExtractQueue = (BlockingQueue) mAppMgr.getProperty(Connector.QUEUE_EXTRACT_NAME);
+        mIndexCache = (CrawlIndexCache) mAppMgr.getProperty(Connector.PROPERTY_INDEX_CACHE);
+        mStateStore = (CrawlStateStore) mAppMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+
+        propertyName = Constants.CFG_PROPERTY_PREFIX + ".extract.solr_pool_size";
+        int poolSize = mAppMgr.getInt(propertyName, Runtime.getRuntime().availableProcessors());
+        mSolrDSPermits = new Semaphore(Math.max(poolSize, 1));
+
+        propertyName = Constants.CFG_PROPERTY_PREFIX + ".extract.executor_mode";
+        if (StringUtils.equalsIgnoreCase(mAppMgr.getString(propertyName), Connector.EXECUTOR_MODE_ELASTIC))
+        {
+            propertyName = Constants.CFG_PROPERTY_PREFIX + ".extract.parse_concurrency_limit";
+            int parseLimit = mAppMgr.getInt(propertyName, Runtime.getRuntime().availableProcessors());
+            mParsePermits = new Semaphore(Math.max(parseLimit, 1));
+        }
     }
 
     /**
@@ -150,6 +197,37 @@ public class FileCrawler extends SimpleFileVisitor<Path>
             return FileVisitResult.TERMINATE;
     }
 
+/* A SolrDS instance is not safe for concurrent queries, so each lookup borrows an
+ * idle instance from a pool whose size is bounded by the permits.  The instance
+ * provided to the constructor is used first and any additional instances are
+ * released by shutdown(). */
+
+    private SolrDS borrowSolrDS()
+        throws InterruptedException
+    {
+        mSolrDSPermits.acquire();
+        SolrDS solrDS = mIdleSolrDS.poll();
+        if (solrDS == null)
+        {
+            if (mIsSolrDSClaimed.compareAndSet(false, true))
+                solrDS = mSolrDS;
+            else
+            {
+                solrDS = new SolrDS(mAppMgr);
+                solrDS.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".solr");
+                mCreatedSolrDS.add(solrDS);
+            }
+        }
+
+        return solrDS;
+    }
+
+    private void returnSolrDS(SolrDS aSolrDS)
+    {
+        mIdleSolrDS.add(aSolrDS);
+        mSolrDSPermits.release();
+    }
+
     private boolean documentExistsInIndex(String aDocId)
     {
         Logger appLogger = mAppMgr.getLogger(this, "documentExistsInIndex");
@@ -158,7 +236,9 @@ public class FileCrawler extends SimpleFileVisitor<Path>
 
         boolean docExists = false;
         String propertyName = Constants.CFG_PROPERTY_PREFIX + ".publish.upload_enabled";
-        if (mAppMgr.getBoolean(propertyName))
+        if (mIndexCache != null)
+            docExists = mIndexCache.contains(aDocId);
+        else if (mAppMgr.getBoolean(propertyName))
         {
             propertyName = Constants.CFG_PROPERTY_PREFIX + ".solr.request_uri";
             String solrURI = mAppMgr.getString(propertyName);
@@ -173,9 +253,22 @@ public class FileCrawler extends SimpleFileVisitor<Path>
                 dsCriteria.add(Solr.FIELD_URL_NAME, Field.Operator.EQUAL, solrURL);
                 try
                 {
-                    int docCount = mSolrDS.count(dsCriteria);
-                    docExists = docCount > 0;
-                    appLogger.debug(String.format("[%d] %s", docCount, solrURL));
+                    SolrDS solrDS = borrowSolrDS();
+                    try
+                    {
+                        int docCount = solrDS.count(dsCriteria);
+                        docExists = docCount > 0;
+                        appLogger.debug(String.format("[%d] %s", docCount, solrURL));
+                    }
+                    finally
+                    {
+                        returnSolrDS(solrDS);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    appLogger.error(String.format("%s: Interrupted while waiting for a Solr data source.", solrURL));
                 }
                 catch (DSException e)
                 {
@@ -223,29 +316,53 @@ public class FileCrawler extends SimpleFileVisitor<Path>
                 (StringUtils.equals(aMimeType, Content.CONTENT_TYPE_TXT_CSV))));
     }
 
-    private void saveAddQueueDocument(Document aDocument, StopWatch aStopWatch)
+/* Content spooled for a document that is not queued would never be published
+(which deletes the spool file), so it is deleted here. */
+
+    private void discardContent(DataBag aBag)
+    {
+        if (! ContentSpoolWriter.deleteSpoolFiles(aBag))
+        {
+            Logger appLogger = mAppMgr.getLogger(this, "discardContent");
+            appLogger.warn(String.format("%s: Unable to delete the content spool file.",
+                                         aBag.getValueAsString("nsd_url")));
+        }
+    }
+
+    private void saveAddQueueDocument(Document aDocument, long aStartTime)
         throws IOException
     {
         Logger appLogger = mAppMgr.getLogger(this, "saveAddQueueDocument");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        if (! mIsValidationOnly)
+        DataBag dataBag = aDocument.getBag();
+        if (mIsValidationOnly)
+            discardContent(dataBag);
+        else
         {
-            DataBag dataBag = aDocument.getBag();
             DataField dataField = dataBag.getPrimaryKeyField();
             if (dataField == null)
+            {
+                discardContent(dataBag);
                 appLogger.error("Primary key field is missing from bag - cannot add to queue.");
+            }
             else
             {
                 String docId = dataField.getValueAsString();
 
-                String queueBagPathFileName = mCrawlQueue.docPathFileName(Connector.QUEUE_EXTRACT_NAME, docId);
-                DocumentXML documentXML = new DocumentXML(aDocument);
-                documentXML.save(queueBagPathFileName);
+                try
+                {
+                    mCrawlQueue.save(Connector.QUEUE_EXTRACT_NAME, aDocument, docId);
+                }
+                catch (IOException e)
+                {
+                    discardContent(dataBag);
+                    throw e;
+                }
 
-                aStopWatch.stop();
-                String queueItem = Connector.queueItemIdPhaseTime(docId, Connector.PHASE_EXTRACT, aStopWatch.getTime());
+                QueueItem queueItem = new QueueItem(docId);
+                queueItem.setPhaseTime(Connector.PHASE_EXTRACT, System.nanoTime() - aStartTime);
                 try
                 {
                     // If queue is full, this thread may block.
@@ -266,7 +383,7 @@ public class FileCrawler extends SimpleFileVisitor<Path>
         throws IOException
     {
         String docId;
-        StopWatch stopWatch;
+        long startTime;
         Document fsDocument;
         Logger appLogger = mAppMgr.getLogger(this, "processCSVFile");
 
@@ -284,8 +401,7 @@ public class FileCrawler extends SimpleFileVisitor<Path>
         DataBag csvBag = csvDocument.extractNext();
         while (csvBag != null)
         {
-            stopWatch = new StopWatch();
-            stopWatch.start();
+            startTime = System.nanoTime();
 
             docId = csvBag.generateUniqueHash(true);
             appLogger.debug(String.format(" Expanding Row [%d]: %s", row++, docId));
@@ -304,9 +420,9 @@ public class FileCrawler extends SimpleFileVisitor<Path>
             csvBag.setValueByName("nsd_doc_modified_ts", lmDate);
             csvBag.setValueByName("nsd_crawl_type", mCrawlQueue.getCrawlType());
             fsDocument = new Document(Constants.FS_DOCUMENT_TYPE, csvBag);
-            csvBag.setValueByName("nsd_doc_hash", fsDocument.generateUniqueHash(false));
+            csvBag.setValueByName("nsd_doc_hash", generateContentHash(csvBag));
 
-            saveAddQueueDocument(fsDocument, stopWatch);
+            saveAddQueueDocument(fsDocument, startTime);
 
             csvBag = csvDocument.extractNext();
         }
@@ -316,12 +432,97 @@ public class FileCrawler extends SimpleFileVisitor<Path>
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
+/* The document hash identifies the content of a file, so it excludes the fields
+that change on every crawl (otherwise an unchanged file would never match its
+indexed hash) and hashes spooled content from its file. */
+
+    private String generateContentHash(DataBag aBag)
+    {
+        String hashId;
+        String contentPathFileName;
+
+        DigitalHash digitalHash = new DigitalHash();
+        try
+        {
+            for (DataField dataField : aBag.getFields())
+            {
+                if (StringUtils.equalsAny(dataField.getName(), HASH_EXCLUDED_FIELDS))
+                    continue;
+                digitalHash.processBuffer(dataField.getName());
+                contentPathFileName = dataField.getFeature(Field.FEATURE_CONTENT_FILE);
+                if (StringUtils.isNotEmpty(contentPathFileName))
+                    digitalHash.processFile(contentPathFileName);
+                else if (dataField.isMultiValue())
+                    digitalHash.processBuffer(dataField.collapse());
+                else
+                    digitalHash.processBuffer(dataField.getValue());
+            }
+            hashId = digitalHash.getHashSequence();
+        }
+        catch (IOException e)
+        {
+            UUID uniqueId = UUID.randomUUID();
+            hashId = uniqueId.toString();
+        }
+
+        return hashId;
+    }
+
+/* The state of a file queued for publishing is held as pending by the store until
+the crawl has published it - otherwise a failed publish would leave the file
+recorded as unchanged and the next incremental crawl would never resend it. */
+
+    private void updateState(String aDocId, String aPathFileName, BasicFileAttributes aFileAttributes,
+                             String aDocHash, boolean anIsQueued)
+        throws IOException
+    {
+        if ((mStateStore != null) && (! mIsValidationOnly))
+        {
+            long fileSize = aFileAttributes.size();
+            long lastModified = aFileAttributes.lastModifiedTime().toMillis();
+            if (anIsQueued)
+                mStateStore.updatePending(aDocId, aPathFileName, fileSize, lastModified,
+                                          aDocHash, mCrawlQueue.getCrawlId());
+            else
+                mStateStore.update(aDocId, aPathFileName, fileSize, lastModified,
+                                   aDocHash, mCrawlQueue.getCrawlId());
+        }
+    }
+
     private String generateDocumentId(Path aPath)
     {
         String pathFileName = aPath.toAbsolutePath().toString();
         return  mIdValuePrefix + Content.hashId(pathFileName);
     }
 
+    private void extractContent(ContentExtractor aContentExtractor, String aPathFileName,
+                                String aMimeType, DataField aContentField)
+        throws NSException
+    {
+        if (mParsePermits == null)
+            aContentExtractor.process(aPathFileName, aMimeType, aContentField);
+        else
+        {
+            try
+            {
+                mParsePermits.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new NSException(String.format("%s: Interrupted while waiting for a parse permit.", aPathFileName));
+            }
+            try
+            {
+                aContentExtractor.process(aPathFileName, aMimeType, aContentField);
+            }
+            finally
+            {
+                mParsePermits.release();
+            }
+        }
+    }
+
     private void processFile(Path aPath, BasicFileAttributes aFileAttributes)
         throws IOException
     {
@@ -329,8 +530,7 @@ public class FileCrawler extends SimpleFileVisitor<Path>
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
+        long startTime = System.nanoTime();
 
         File fsFile = aPath.toFile();
         String docId = generateDocumentId(aPath);
@@ -363,6 +563,7 @@ public class FileCrawler extends SimpleFileVisitor<Path>
         {
             ContentExtractor contentExtractor = new ContentExtractor(mAppMgr);
             contentExtractor.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".extract");
+            contentExtractor.setSpoolPathName(mCrawlQueue.crawlPathName(Connector.QUEUE_CONTENT_NAME));
             try
             {
                 String mimeType = contentExtractor.detectType(fsFile);
@@ -374,7 +575,7 @@ public class FileCrawler extends SimpleFileVisitor<Path>
                     processCSVFile(aPath, aFileAttributes, viewURL);
                 }
                 else
-                    contentExtractor.process(pathFileName, dataField);
+                    extractContent(contentExtractor, pathFileName, mimeType, dataField);
             }
             catch (NSException e)
             {
@@ -385,9 +586,27 @@ public class FileCrawler extends SimpleFileVisitor<Path>
 
         if (isFileFlat)
         {
-            fileBag.setValueByName("nsd_doc_hash", fsDocument.generateUniqueHash(false));
-            saveAddQueueDocument(fsDocument, stopWatch);
+            String docHash = generateContentHash(fileBag);
+            fileBag.setValueByName("nsd_doc_hash", docHash);
+
+// An incremental crawl can skip a touched file whose content is already indexed.
+
+            if ((StringUtils.equals(mCrawlQueue.getCrawlType(), Connector.CRAWL_TYPE_INCREMENTAL)) &&
+                (((mIndexCache != null) && (mIndexCache.isUnchanged(docId, docHash))) ||
+                 ((mStateStore != null) && (mStateStore.isUnchanged(docId, docHash)))))
+            {
+                appLogger.debug(String.format("Unchanged File (%s): %s", docId, pathFileName));
+                discardContent(fileBag);
+                updateState(docId, pathFileName, aFileAttributes, docHash, false);
+            }
+            else
+            {
+                saveAddQueueDocument(fsDocument, startTime);
+                updateState(docId, pathFileName, aFileAttributes, docHash, true);
+            }
         }
+        else
+            updateState(docId, pathFileName, aFileAttributes, StringUtils.EMPTY, true);
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -418,23 +637,39 @@ public class FileCrawler extends SimpleFileVisitor<Path>
                 if (StringUtils.equals(crawlType, Connector.CRAWL_TYPE_INCREMENTAL))
                 {
                     String docId = generateDocumentId(aPath);
-                    boolean docExistsInIndex = documentExistsInIndex(docId);
-                    if (docExistsInIndex)
+                    if ((mStateStore != null) && (mStateStore.contains(docId)))
                     {
-                        Date incDate = mCrawlQueue.getCrawlLastModified();
-                        FileTime lastModifiedTime = aFileAttributes.lastModifiedTime();
-                        Date lmDate = new Date(lastModifiedTime.toMillis());
-                        if (lmDate.after(incDate))
+                        if (mStateStore.isModified(docId, aFileAttributes.size(),
+                                                   aFileAttributes.lastModifiedTime().toMillis()))
                             processFile(aPath, aFileAttributes);
+                        else if (! mIsValidationOnly)
+                            mStateStore.markSeen(docId, mCrawlQueue.getCrawlId());
                     }
                     else
-                        processFile(aPath, aFileAttributes);
+                    {
+                        boolean docExistsInIndex = documentExistsInIndex(docId);
+                        if (docExistsInIndex)
+                        {
+                            Date incDate = mCrawlQueue.getCrawlLastModified();
+                            FileTime lastModifiedTime = aFileAttributes.lastModifiedTime();
+                            Date lmDate = new Date(lastModifiedTime.toMillis());
+                            if (lmDate.after(incDate))
+                                processFile(aPath, aFileAttributes);
+                            else
+                                updateState(docId, pathFileName, aFileAttributes, StringUtils.EMPTY, false);
+                        }
+                        else
+                            processFile(aPath, aFileAttributes);
+                    }
                 }
                 else
                     processFile(aPath, aFileAttributes);
             }
             else
+            {
+                reportError();
                 appLogger.warn(String.format("Access Failed: %s", pathFileName));
+            }
         }
 
         if (mAppMgr.isAlive())
@@ -457,6 +692,7 @@ public class FileCrawler extends SimpleFileVisitor<Path>
     {
         Logger appLogger = mAppMgr.getLogger(this, "visitFileFailed");
 
+        reportError();
         String pathFileName = aPathFile.toAbsolutePath().toString();
         appLogger.warn(String.format("%s: %s", pathFileName, anException.getMessage()));
 
@@ -480,4 +716,27 @@ public class FileCrawler extends SimpleFileVisitor<Path>
     {
         return super.postVisitDirectory(aDirectory, anException);
     }
+
+/* A file that could not be visited is not marked as seen by the crawl, so the
+error is reported to the state store to prevent it from being purged. */
+
+    void reportError()
+    {
+        if (mStateStore != null)
+            mStateStore.reportError();
+    }
+
+    /**
+     * Releases the Solr data source instances that were created for
+     * the index lookup pool of a parallel crawl.  The instance provided
+     * to the constructor remains the responsibility of the caller.
+     */
+    public void shutdown()
+    {
+        SolrDS solrDS;
+
+        mIdleSolrDS.clear();
+        while ((solrDS = mCreatedSolrDS.poll()) != null)
+            solrDS.shutdown();
+    }
 }
@@ -18,31 +18,61 @@
 package com.nridge.connector.fs.con_fs.core;
 
 import com.nridge.connector.common.con_com.Connector;
+import com.nridge.connector.common.con_com.ElasticExecutor;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.CrawlStateStore;
 import com.nridge.core.app.mail.MailManager;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.std.NSException;
 import com.nridge.ds.solr.SolrDS;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The RunExtractFSLocal is responsible traversing a hierarchy
  * of folder and files with the goal of extracting their
  * content into the crawl queue.  This class is intended to
  * support local file system crawls.
+ * <p>
+ * By default, the hierarchy is walked and extracted on the calling
+ * thread.  When the <code>extract.directory_thread_count</code> or
+ * <code>extract.file_thread_count</code> properties exceed one, the
+ * directory enumeration fans out over a fork/join pool (see
+ * <i>DirectoryCrawler</i>) and the discovered files are extracted by
+ * a bounded pool of worker threads.  In either case, the
+ * <code>run()</code> method does not return until every document
+ * has been placed into the extract queue.
+ * </p>
+ * <p>
+ * When the <code>extract.executor_mode</code> property is <i>elastic</i>,
+ * the files are extracted by an <i>ElasticExecutor</i> instead - its
+ * threads grow with demand up to <code>extract.io_concurrency_limit</code>
+ * concurrent files, which suits network shares where most of the time is
+ * spent waiting on reads.
+ * </p>
  *
  * @see <a href="http://docs.oracle.com/javase/7/docs/api/java/util/concurrent/BlockingQueue.html">JavaDoc BlockingQueue</a>
  * @see <a href="http://tutorials.jenkov.com/java-util-concurrent/blockingqueue.html">Java BlockingQueue Tutorial</a>
  * @see <a href="http://docs.oracle.com/javase/tutorial/essential/io/walk.html">Walking the File Tree</a>
  * @see <a href="http://www.concretepage.com/java/jdk7/traverse-directory-structure-using-files-walkfiletree-java-nio2">Traverse a Directory Structure Using Files.walkFileTree in Java NIO 2</a>
+ * @see <a href="https://docs.oracle.com/javase/tutorial/essential/concurrency/forkjoin.html">Fork/Join</a>
  */
 public class RunExtractFSLocal implements Runnable
 {
+    private final int FILE_BACKLOG_FACTOR = 4;
+
     private final AppMgr mAppMgr;
     private String mPathFileName;
     private final CrawlQueue mCrawlQueue;
@@ -63,6 +93,65 @@ public class RunExtractFSLocal implements Runnable
         mPathFileName = aPathFileName;
     }
 
+    private void crawlParallel(FileCrawler aFileCrawler, Path aCrawlPathFile,
+                               int aDirectoryThreadCount, int aFileThreadCount,
+                               boolean anIsElastic)
+        throws IOException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "crawlParallel");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+/* The extraction backlog is bounded - once it fills, the directory thread that
+is submitting a file extracts it itself, which throttles the enumeration.  The
+elastic executor throttles the enumeration by blocking the submitting thread
+once its concurrency limit is reached. */
+
+        ThreadPoolExecutor fileExecutor;
+        if (anIsElastic)
+        {
+            int ioConcurrencyLimit = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".extract.io_concurrency_limit",
+                                                    Connector.ELASTIC_CONCURRENCY_LIMIT);
+            fileExecutor = new ElasticExecutor("fs-extract", ioConcurrencyLimit, Connector.ELASTIC_THREAD_STACK_SIZE);
+        }
+        else
+            fileExecutor = new ThreadPoolExecutor(aFileThreadCount, aFileThreadCount, 0L,
+                                                  TimeUnit.MILLISECONDS,
+                                                  new ArrayBlockingQueue<Runnable>(aFileThreadCount * FILE_BACKLOG_FACTOR),
+                                                  new ThreadPoolExecutor.CallerRunsPolicy());
+        ForkJoinPool directoryPool = new ForkJoinPool(aDirectoryThreadCount);
+        try
+        {
+            BasicFileAttributes fileAttributes = Files.readAttributes(aCrawlPathFile, BasicFileAttributes.class,
+                                                                      LinkOption.NOFOLLOW_LINKS);
+            if (fileAttributes.isDirectory())
+            {
+                if (aFileCrawler.preVisitDirectory(aCrawlPathFile, fileAttributes) == FileVisitResult.CONTINUE)
+                    directoryPool.invoke(new DirectoryCrawler(mAppMgr, aFileCrawler, fileExecutor, aCrawlPathFile));
+            }
+            else
+                aFileCrawler.visitFile(aCrawlPathFile, fileAttributes);
+        }
+        finally
+        {
+            directoryPool.shutdown();
+            fileExecutor.shutdown();
+            try
+            {
+                while (! fileExecutor.awaitTermination(1L, TimeUnit.SECONDS))
+                    appLogger.debug(String.format("%s: %d file(s) pending extraction.", mPathFileName,
+                                                  fileExecutor.getQueue().size() + fileExecutor.getActiveCount()));
+            }
+            catch (InterruptedException e)
+            {
+                // Restore the interrupted status so parent can handle (if it wants to).
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
     /**
      * Initiates the local file system crawl and the corresponding
      * document content extraction.
@@ -87,14 +176,28 @@ public class RunExtractFSLocal implements Runnable
         SolrDS solrDS = new SolrDS(mAppMgr);
         solrDS.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".solr");
 
+        int directoryThreadCount = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".extract.directory_thread_count", 1);
+        int fileThreadCount = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".extract.file_thread_count", 1);
+        String executorMode = mAppMgr.getString(Constants.CFG_PROPERTY_PREFIX + ".extract.executor_mode",
+                                                Connector.EXECUTOR_MODE_FIXED);
+        boolean isElastic = StringUtils.equalsIgnoreCase(executorMode, Connector.EXECUTOR_MODE_ELASTIC);
+
+        FileCrawler fileCrawler = null;
         try
         {
-            FileCrawler fileCrawler = new FileCrawler(mAppMgr, mCrawlQueue, solrDS);
+            fileCrawler = new FileCrawler(mAppMgr, mCrawlQueue, solrDS);
             Path crawlPathFile = Paths.get(mPathFileName);
-            Files.walkFileTree(crawlPathFile, fileCrawler);
+            if ((isElastic) || (directoryThreadCount > 1) || (fileThreadCount > 1))
+                crawlParallel(fileCrawler, crawlPathFile, Math.max(directoryThreadCount, 1),
+                              Math.max(fileThreadCount, 1), isElastic);
+            else
+                Files.walkFileTree(crawlPathFile, fileCrawler);
         }
         catch (IOException | NSException e)
         {
+            CrawlStateStore crawlStateStore = (CrawlStateStore) mAppMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+            if (crawlStateStore != null)
+                crawlStateStore.reportError();
             String msgStr = String.format("%s: %s", mPathFileName, e.getMessage());
             appLogger.error(msgStr, e);
             MailManager mailManager = (MailManager) mAppMgr.getProperty(Connector.PROPERTY_MAIL_NAME);
@@ -103,6 +206,8 @@ public class RunExtractFSLocal implements Runnable
         }
         finally
         {
+            if (fileCrawler != null)
+                fileCrawler.shutdown();
             solrDS.shutdown();
         }
 
@@ -19,13 +19,12 @@ package com.nridge.connector.fs.con_fs.core;
 
 import com.nridge.connector.common.con_com.Connector;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
 import com.nridge.connector.common.con_com.transform.Pipeline;
 import com.nridge.core.app.mail.MailManager;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
 import com.nridge.core.base.io.xml.DocumentXML;
-import org.apache.commons.lang.time.StopWatch;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.slf4j.Logger;
 
@@ -43,7 +42,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class RunMetricReport implements Runnable
 {
-    private final double MILLISECONDS_IN_A_SECOND = 1000.0;
+    private final double NANOSECONDS_IN_A_SECOND = 1000000000.0;
 
     private final AppMgr mAppMgr;
     private final CrawlQueue mCrawlQueue;
@@ -89,10 +88,9 @@ public class RunMetricReport implements Runnable
     @Override
     public void run()
     {
-        long msTime;
-        String[] phaseTimes;
-        double secondsTime, docsPerSecond;
-        String docId, queueItem, phaseName;
+        String docId;
+        QueueItem queueItem;
+        double docsPerSecond;
         Logger appLogger = mAppMgr.getLogger(this, "run");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
@@ -110,48 +108,33 @@ public class RunMetricReport implements Runnable
         {
             try
             {
-                queueItem = (String) publishQueue.poll(Constants.QUEUE_POLL_TIMEOUT_DEFAULT, TimeUnit.SECONDS);
+                queueItem = (QueueItem) publishQueue.poll(Constants.QUEUE_POLL_TIMEOUT_DEFAULT, TimeUnit.SECONDS);
                 if (mCrawlQueue.isQueueItemDocument(queueItem))
                 {
-                    StopWatch stopWatch = new StopWatch();
-                    stopWatch.start();
-
-                    docId = Connector.docIdFromQueueItem(queueItem);
+                    docId = queueItem.getDocId();
 
                     appLogger.debug(String.format("Publish Queue Item: %s", docId));
 
-                    phaseTimes = Connector.phaseTimeFromQueueItem(queueItem);
-                    if (phaseTimes != null)
+                    if (queueItem.isPhaseTimeAssigned(Connector.PHASE_EXTRACT))
+                    {
+                        extractCount++;
+                        dsExtract.addValue(queueItem.getPhaseTime(Connector.PHASE_EXTRACT) / NANOSECONDS_IN_A_SECOND);
+                    }
+                    if (queueItem.isPhaseTimeAssigned(Connector.PHASE_TRANSFORM))
+                    {
+                        transformCount++;
+                        dsTransform.addValue(queueItem.getPhaseTime(Connector.PHASE_TRANSFORM) / NANOSECONDS_IN_A_SECOND);
+                    }
+                    if (queueItem.isPhaseTimeAssigned(Connector.PHASE_PUBLISH))
                     {
-                        for (String phaseTime : phaseTimes)
-                        {
-                            phaseName = Connector.phaseFromPhaseTime(phaseTime);
-                            msTime = Connector.timeFromPhaseTime(phaseTime);
-                            if (StringUtils.equals(phaseName, Connector.PHASE_EXTRACT))
-                            {
-                                extractCount++;
-                                secondsTime = msTime / MILLISECONDS_IN_A_SECOND;
-                                dsExtract.addValue(secondsTime);
-                            }
-                            else if (StringUtils.equals(phaseName, Connector.PHASE_TRANSFORM))
-                            {
-                                transformCount++;
-                                secondsTime = msTime / MILLISECONDS_IN_A_SECOND;
-                                dsTransform.addValue(secondsTime);
-                            }
-                            else if (StringUtils.equals(phaseName, Connector.PHASE_PUBLISH))
-                            {
-                                publishCount++;
-                                secondsTime = msTime / MILLISECONDS_IN_A_SECOND;
-                                dsPublish.addValue(secondsTime);
-                            }
-                        }
+                        publishCount++;
+                        dsPublish.addValue(queueItem.getPhaseTime(Connector.PHASE_PUBLISH) / NANOSECONDS_IN_A_SECOND);
                     }
                 }
             }
             catch (InterruptedException e)
             {
-                queueItem = StringUtils.EMPTY;
+                queueItem = null;
             }
         }
         while (! mCrawlQueue.isPhaseComplete(Connector.PHASE_PUBLISH, queueItem));
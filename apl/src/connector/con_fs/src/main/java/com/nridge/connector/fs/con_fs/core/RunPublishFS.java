@@ -19,18 +19,16 @@ package com.nridge.connector.fs.con_fs.core;
 
 import com.nridge.connector.common.con_com.Connector;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.CrawlStateStore;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
 import com.nridge.connector.common.con_com.publish.Publishers;
 import com.nridge.core.app.mail.MailManager;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
 import com.nridge.core.base.field.data.DataBag;
-import com.nridge.core.base.io.xml.DocumentXML;
 import com.nridge.core.base.std.NSException;
-import org.apache.commons.lang.time.StopWatch;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -58,6 +56,16 @@ public class RunPublishFS implements Runnable
         mCrawlQueue = aCrawlQueue;
     }
 
+/* A publish failure means some documents may not have reached the search index,
+so the crawl state recorded for them must not be committed. */
+
+    private void cancelPendingState()
+    {
+        CrawlStateStore crawlStateStore = (CrawlStateStore) mAppMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+        if (crawlStateStore != null)
+            crawlStateStore.cancelPending();
+    }
+
     /**
      * When an object implementing interface <code>Runnable</code> is used
      * to create a thread, starting the thread causes the object's
@@ -72,9 +80,10 @@ public class RunPublishFS implements Runnable
     @Override
     public void run()
     {
+        String docId;
+        long startTime;
         Document conDoc;
-        DocumentXML documentXML;
-        String docId, queueItem, srcPathFileName;
+        QueueItem queueItem = null;
         Logger appLogger = mAppMgr.getLogger(this, "run");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
@@ -89,6 +98,7 @@ public class RunPublishFS implements Runnable
         catch (NSException e)
         {
             isPublisherInitialized = false;
+            cancelPendingState();
             appLogger.error("Publisher initialization: " + e.getMessage());
         }
 
@@ -103,30 +113,23 @@ public class RunPublishFS implements Runnable
             {
                 try
                 {
-                    queueItem = (String) transformQueue.poll(queueWaitTimeout, TimeUnit.SECONDS);
+                    queueItem = (QueueItem) transformQueue.poll(queueWaitTimeout, TimeUnit.SECONDS);
                     if (mCrawlQueue.isQueueItemDocument(queueItem))
                     {
-                        StopWatch stopWatch = new StopWatch();
-                        stopWatch.start();
+                        startTime = System.nanoTime();
 
-                        docId = Connector.docIdFromQueueItem(queueItem);
+                        docId = queueItem.getDocId();
 
                         appLogger.debug(String.format("Transform Queue Item: %s", docId));
-                        srcPathFileName = mCrawlQueue.docPathFileName(Connector.QUEUE_TRANSFORM_NAME, docId);
                         try
                         {
-                            documentXML = new DocumentXML();
-                            documentXML.load(srcPathFileName);
-                            conDoc = documentXML.getDocument();
+                            conDoc = mCrawlQueue.load(Connector.QUEUE_TRANSFORM_NAME, docId);
 
                             indexPublishers.send(conDoc);
 
-                            File srcFile = new File(srcPathFileName);
-                            if (! srcFile.delete())
-                                appLogger.warn(String.format("%s: Unable to delete.", srcPathFileName));
+                            mCrawlQueue.remove(Connector.QUEUE_TRANSFORM_NAME, docId);
 
-                            stopWatch.stop();
-                            queueItem = Connector.queueItemIdPhaseTime(queueItem, Connector.PHASE_PUBLISH, stopWatch.getTime());
+                            queueItem.setPhaseTime(Connector.PHASE_PUBLISH, System.nanoTime() - startTime);
                             try
                             {
                                 // If queue is full, this thread may block.
@@ -140,6 +143,7 @@ public class RunPublishFS implements Runnable
                         }
                         catch (Exception e)
                         {
+                            cancelPendingState();
                             String msgStr = String.format("%s: %s", docId, e.getMessage());
                             appLogger.error(msgStr, e);
                             MailManager mailManager = (MailManager) mAppMgr.getProperty(Connector.PROPERTY_MAIL_NAME);
@@ -150,27 +154,11 @@ public class RunPublishFS implements Runnable
                 }
                 catch (InterruptedException e)
                 {
-                    queueItem = StringUtils.EMPTY;
+                    queueItem = null;
                 }
             }
             while (! mCrawlQueue.isPhaseComplete(Connector.PHASE_TRANSFORM, queueItem));
 
-// Forward the marker queue item to the next queue.
-
-            if (mCrawlQueue.isQueueItemMarker(queueItem))
-            {
-                try
-                {
-                    // If queue is full, this thread may block.
-                    publishQueue.put(queueItem);
-                }
-                catch (InterruptedException e)
-                {
-                    // Restore the interrupted status so parent can handle (if it wants to).
-                    Thread.currentThread().interrupt();
-                }
-            }
-
 // Now we can shutdown our search indexer publisher.
 
             try
@@ -179,10 +167,16 @@ public class RunPublishFS implements Runnable
             }
             catch (NSException e)
             {
+                cancelPendingState();
                 appLogger.error("Publisher shutdown: " + e.getMessage());
             }
         }
 
+// Depart the phase barrier - the last publish worker forwards the marker queue item to the next queue.
+
+        mCrawlQueue.departPhase(Connector.PHASE_PUBLISH, queueItem, Connector.QUEUE_TRANSFORM_NAME,
+                                Connector.QUEUE_PUBLISH_NAME);
+
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 }
@@ -18,8 +18,11 @@
 package com.nridge.connector.fs.con_fs.task;
 
 import com.nridge.connector.common.con_com.Connector;
+import com.nridge.connector.common.con_com.crawl.CrawlIndexCache;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
 import com.nridge.connector.common.con_com.crawl.CrawlStart;
+import com.nridge.connector.common.con_com.crawl.CrawlStateStore;
 import com.nridge.connector.common.con_com.publish.Publishers;
 import com.nridge.connector.common.con_com.transform.Pipeline;
 import com.nridge.connector.fs.con_fs.core.*;
@@ -31,10 +34,13 @@ import com.nridge.core.app.mgr.Task;
 import com.nridge.core.base.field.Field;
 import com.nridge.core.base.field.data.*;
 import com.nridge.core.base.io.xml.DataBagXML;
+import com.nridge.core.base.ds.DSException;
 import com.nridge.core.base.std.NSException;
 import com.nridge.core.base.std.Platform;
 import com.nridge.core.base.std.Sleep;
 import com.nridge.ds.content.ds_content.Content;
+import com.nridge.ds.content.ds_content.ContentExtractor;
+import com.nridge.ds.solr.SolrDS;
 import org.apache.commons.lang3.StringUtils;
 import org.restlet.Server;
 import org.restlet.data.Protocol;
@@ -417,7 +423,20 @@ public class TaskConnectorFS implements Task
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-// Update RDBMS with new crawl and snapshot information.
+// The crawl state store tracks every document seen so changes and deletes can be detected.
+
+        mAppMgr.removeProperty(Connector.PROPERTY_STATE_STORE);
+        CrawlStateStore crawlStateStore = new CrawlStateStore(mAppMgr, CrawlStateStore.STATE_NAME_DEFAULT);
+        try
+        {
+            crawlStateStore.open();
+            mAppMgr.addProperty(Connector.PROPERTY_STATE_STORE, crawlStateStore);
+            appLogger.debug(String.format("Crawl state store opened with %d documents.", crawlStateStore.count()));
+        }
+        catch (NSException | IOException e)
+        {
+            appLogger.error(String.format("%s: %s", crawlStateStore.statePathFileName(), e.getMessage()), e);
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -428,7 +447,121 @@ public class TaskConnectorFS implements Task
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-// Update RDBMS with new crawl and snapshot information.
+        CrawlStateStore crawlStateStore = (CrawlStateStore) mAppMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+        if (crawlStateStore != null)
+        {
+/* The crawl has published its documents, so their pending states can now be
+committed - unless the crawl was stopped before it could publish all of them. */
+
+            if (! mAppMgr.isAlive())
+                crawlStateStore.cancelPending();
+            try
+            {
+                int commitCount = crawlStateStore.commitPending();
+                appLogger.debug(String.format("Committed the crawl state of %d published documents.", commitCount));
+            }
+            catch (IOException e)
+            {
+                appLogger.error(String.format("%s: %s", crawlStateStore.statePathFileName(), e.getMessage()), e);
+            }
+
+/* Documents that were not seen by a crawl that ran to completion have been removed
+from the file system, so they are deleted from the index.  As a safeguard against
+an unreachable crawl start path, nothing is deleted if the unseen documents exceed
+the configured percentage of all the documents tracked by the store, or if the
+crawl reported files or paths it failed to visit.  The deletion is opt-in. */
+
+            if ((mAppMgr.isAlive()) && (executePhase(Connector.PHASE_EXTRACT)) &&
+                (mAppMgr.getBoolean(Constants.CFG_PROPERTY_PREFIX + ".publish.upload_enabled")) &&
+                (mAppMgr.getBoolean(Constants.CFG_PROPERTY_PREFIX + ".snapshot.delete_unseen", false)))
+            {
+                int docCount = crawlStateStore.count();
+                int unseenCount = crawlStateStore.unseenDocIds(aCrawlQueue.getCrawlId()).size();
+                int deleteLimit = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".snapshot.delete_limit_percent", 50);
+                if ((unseenCount > 0) && (crawlStateStore.isErrorReported()))
+                    appLogger.warn(String.format("Skipping the deletion of %d unseen documents - the crawl reported file errors.",
+                                                 unseenCount));
+                else if ((unseenCount > 0) && (unseenCount * 100L > docCount * (long) deleteLimit))
+                    appLogger.warn(String.format("Skipping the deletion of %d unseen documents (%d tracked) - limit of %d%% exceeded.",
+                                                 unseenCount, docCount, deleteLimit));
+                else if (unseenCount > 0)
+                {
+                    SolrDS solrDS = new SolrDS(mAppMgr);
+                    solrDS.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".solr");
+                    DataBag schemaBag = (DataBag) mAppMgr.getProperty(Connector.PROPERTY_SCHEMA_NAME);
+                    int batchSize = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".snapshot.delete_batch_size",
+                                                   CrawlStateStore.DELETE_BATCH_SIZE_DEFAULT);
+                    try
+                    {
+                        int deleteCount = crawlStateStore.purgeUnseen(solrDS, Constants.FS_DOCUMENT_TYPE, schemaBag,
+                                                                      "nsd_id", aCrawlQueue.getCrawlId(), batchSize);
+                        solrDS.commit();
+                        appLogger.info(String.format("Deleted %d documents no longer found in the file system.",
+                                                     deleteCount));
+                    }
+                    catch (DSException | IOException e)
+                    {
+                        appLogger.error(String.format("Unseen document deletion failed: %s", e.getMessage()), e);
+                    }
+                    finally
+                    {
+                        solrDS.shutdown();
+                    }
+                }
+            }
+
+            crawlStateStore.close();
+            mAppMgr.removeProperty(Connector.PROPERTY_STATE_STORE);
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    private void loadIndexCache(CrawlQueue aCrawlQueue)
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "loadIndexCache");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        mAppMgr.removeProperty(Connector.PROPERTY_INDEX_CACHE);
+
+/* An incremental crawl needs to know which documents are already indexed and
+whether their content has changed.  Rather than asking Solr once per file, the
+identifiers and content hashes are fetched once here and consulted locally. If
+the prefetch fails, the file crawler falls back to its per-document queries. */
+
+        String crawlType = aCrawlQueue.getCrawlType();
+        if ((StringUtils.equals(crawlType, Connector.CRAWL_TYPE_INCREMENTAL)) &&
+            (mAppMgr.getBoolean(Constants.CFG_PROPERTY_PREFIX + ".publish.upload_enabled")) &&
+            (mAppMgr.getBoolean(Constants.CFG_PROPERTY_PREFIX + ".extract.index_prefetch", true)))
+        {
+            String solrURI = mAppMgr.getString(Constants.CFG_PROPERTY_PREFIX + ".solr.request_uri");
+            String zkHostNames = mAppMgr.getString(Constants.CFG_PROPERTY_PREFIX + ".solr.cloud_zk_host_names");
+            if ((StringUtils.isNotEmpty(solrURI)) || (StringUtils.isNotEmpty(zkHostNames)))
+            {
+                SolrDS solrDS = new SolrDS(mAppMgr);
+                solrDS.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".solr");
+                CrawlIndexCache crawlIndexCache = new CrawlIndexCache(mAppMgr);
+                String idValuePrefix = mAppMgr.getString(Constants.CFG_PROPERTY_PREFIX + ".extract.id_value_prefix");
+                int pageSize = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".extract.index_prefetch_page_size",
+                                              CrawlIndexCache.PAGE_SIZE_DEFAULT);
+                try
+                {
+                    crawlIndexCache.load(solrDS, "nsd_id", "nsd_doc_hash", idValuePrefix, pageSize);
+                    mAppMgr.addProperty(Connector.PROPERTY_INDEX_CACHE, crawlIndexCache);
+                    appLogger.info(String.format("Index prefetch loaded %d document identifiers.",
+                                                 crawlIndexCache.count()));
+                }
+                catch (DSException | IllegalStateException e)
+                {
+                    appLogger.error(String.format("Index prefetch failed: %s", e.getMessage()));
+                }
+                finally
+                {
+                    solrDS.shutdown();
+                }
+            }
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -441,6 +574,8 @@ public class TaskConnectorFS implements Task
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
+        loadIndexCache(aCrawlQueue);
+
         CrawlStart crawlStart = new CrawlStart(mAppMgr);
         crawlStart.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".extract");
         crawlStart.load();
@@ -476,6 +611,7 @@ will control how many threads run concurrently based on how it was configured. *
 
         int transformThreadCount = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".transform.thread_count", 1);
         mTransformExecutor = Executors.newFixedThreadPool(transformThreadCount);
+        aCrawlQueue.registerPhaseWorkers(Connector.PHASE_TRANSFORM, transformThreadCount);
 
         for (int thread = 0; thread < transformThreadCount; thread++)
         {
@@ -500,6 +636,7 @@ will control how many threads run concurrently based on how it was configured. *
 
         int publishThreadCount = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".publish.thread_count", 1);
         mPublishExecutor = Executors.newFixedThreadPool(publishThreadCount);
+        aCrawlQueue.registerPhaseWorkers(Connector.PHASE_PUBLISH, publishThreadCount);
 
         for (int thread = 0; thread < publishThreadCount; thread++)
         {
@@ -543,7 +680,7 @@ will control how many threads run concurrently based on how it was configured. *
 
 // Place a queue item marker into the queue to mark the end of the document extraction process.
 
-            aCrawlQueue.putMarkerIntoQueue(Connector.QUEUE_EXTRACT_NAME, Connector.QUEUE_ITEM_CRAWL_FINISH);
+            aCrawlQueue.putMarkerIntoQueue(Connector.QUEUE_EXTRACT_NAME, QueueItem.CRAWL_FINISH);
         }
 
         if (mTransformExecutor != null)
@@ -579,7 +716,7 @@ will control how many threads run concurrently based on how it was configured. *
         BlockingQueue blockingQueue = (BlockingQueue) mAppMgr.getProperty(aQueueName);
         if (blockingQueue != null)
         {
-            ArrayList<String> drainToList = new ArrayList<>();
+            ArrayList<QueueItem> drainToList = new ArrayList<>();
             blockingQueue.drainTo(drainToList);
         }
 
@@ -668,6 +805,7 @@ will control how many threads run concurrently based on how it was configured. *
         if (executePhase(Connector.PHASE_EXTRACT))
             executeExtract(aCrawlQueue);
         waitForCompletion(aCrawlQueue);
+        mAppMgr.removeProperty(Connector.PROPERTY_INDEX_CACHE);
         if (executePhase(Connector.PHASE_SNAPSHOT))
             resolveSnapshot(aCrawlQueue);
 
@@ -723,6 +861,7 @@ will control how many threads run concurrently based on how it was configured. *
         {
             tsNow = new Date();
             crawlQueue = new CrawlQueue(mAppMgr);
+            crawlQueue.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX);
 
             try
             {
@@ -834,6 +973,7 @@ will control how many threads run concurrently based on how it was configured. *
         {
             appLogger.info("The shutdown method was invoked.");
             executeReset();
+            ContentExtractor.shutdownForkParser();
             Sleep.forSeconds(1);
             appLogger.info("Stopping Restlet Server.");
             try
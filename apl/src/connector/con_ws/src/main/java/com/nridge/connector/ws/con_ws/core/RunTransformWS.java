@@ -19,16 +19,14 @@ package com.nridge.connector.ws.con_ws.core;
 
 import com.nridge.connector.common.con_com.Connector;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
 import com.nridge.connector.common.con_com.transform.Pipeline;
 import com.nridge.core.app.mail.MailManager;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
 import com.nridge.core.base.field.data.DataBag;
 import com.nridge.core.base.io.xml.DataBagXML;
-import com.nridge.core.base.io.xml.DocumentXML;
 import com.nridge.core.base.std.NSException;
-import org.apache.commons.lang.time.StopWatch;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -72,9 +70,10 @@ public class RunTransformWS implements Runnable
     @Override
     public void run()
     {
-        DocumentXML documentXML;
+        String docId;
+        long startTime;
+        QueueItem queueItem;
         Document srcDoc, dstDoc;
-        String docId, queueItem, srcPathFileName;
         Logger appLogger = mAppMgr.getLogger(this, "run");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
@@ -90,28 +89,23 @@ public class RunTransformWS implements Runnable
         {
             try
             {
-                queueItem = (String) extractQueue.poll(queueWaitTimeout, TimeUnit.SECONDS);
+                queueItem = (QueueItem) extractQueue.poll(queueWaitTimeout, TimeUnit.SECONDS);
                 if (mCrawlQueue.isQueueItemDocument(queueItem))
                 {
-                    StopWatch stopWatch = new StopWatch();
-                    stopWatch.start();
+                    startTime = System.nanoTime();
 
-                    docId = Connector.docIdFromQueueItem(queueItem);
+                    docId = queueItem.getDocId();
 
                     appLogger.debug(String.format("Extract Queue Item: %s", docId));
-                    srcPathFileName = mCrawlQueue.docPathFileName(Connector.QUEUE_EXTRACT_NAME, docId);
                     try
                     {
-                        documentXML = new DocumentXML();
-                        documentXML.load(srcPathFileName);
-                        srcDoc = documentXML.getDocument();
+                        srcDoc = mCrawlQueue.load(Connector.QUEUE_EXTRACT_NAME, docId);
 
                         dstDoc = pipeline.execute(srcDoc);
 
                         mCrawlQueue.transition(Connector.QUEUE_EXTRACT_NAME, Connector.QUEUE_TRANSFORM_NAME,
                                                dstDoc, docId);
-                        stopWatch.stop();
-                        queueItem = Connector.queueItemIdPhaseTime(queueItem, Connector.PHASE_TRANSFORM, stopWatch.getTime());
+                        queueItem.setPhaseTime(Connector.PHASE_TRANSFORM, System.nanoTime() - startTime);
                         try
                         {
                             // If queue is full, this thread may block.
@@ -135,26 +129,15 @@ public class RunTransformWS implements Runnable
             }
             catch (InterruptedException e)
             {
-                queueItem = StringUtils.EMPTY;
+                queueItem = null;
             }
         }
         while (! mCrawlQueue.isPhaseComplete(Connector.PHASE_EXTRACT, queueItem));
 
-// Forward the marker queue item to the next queue.
+// Depart the phase barrier - the last transform worker forwards the marker queue item to the next queue.
 
-        if (mCrawlQueue.isQueueItemMarker(queueItem))
-        {
-            try
-            {
-                // If queue is full, this thread may block.
-                transformQueue.put(queueItem);
-            }
-            catch (InterruptedException e)
-            {
-                // Restore the interrupted status so parent can handle (if it wants to).
-                Thread.currentThread().interrupt();
-            }
-        }
+        mCrawlQueue.departPhase(Connector.PHASE_TRANSFORM, queueItem, Connector.QUEUE_EXTRACT_NAME,
+                                Connector.QUEUE_TRANSFORM_NAME);
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
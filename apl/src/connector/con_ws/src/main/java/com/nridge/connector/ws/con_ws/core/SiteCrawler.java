@@ -18,21 +18,23 @@
 package com.nridge.connector.ws.con_ws.core;
 
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.CrawlStateStore;
 import com.nridge.core.base.field.Field;
 import com.nridge.core.base.field.data.DataField;
-import com.nridge.core.base.io.xml.DocumentXML;
 import com.nridge.core.base.std.NSException;
 import com.nridge.ds.content.ds_content.ContentExtractor;
 import edu.uci.ics.crawler4j.parser.BinaryParseData;
 import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpStatus;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.nridge.connector.common.con_com.Connector;
 import com.nridge.connector.common.con_com.crawl.CrawlFollow;
 import com.nridge.connector.common.con_com.crawl.CrawlIgnore;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.doc.Document;
 import com.nridge.core.base.field.data.DataBag;
@@ -42,7 +44,6 @@ import edu.uci.ics.crawler4j.crawler.CrawlController;
 import edu.uci.ics.crawler4j.crawler.Page;
 import edu.uci.ics.crawler4j.crawler.WebCrawler;
 import edu.uci.ics.crawler4j.url.WebURL;
-import org.apache.commons.lang.time.StopWatch;
 import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 
@@ -286,7 +287,7 @@ then the crawl4j Tika-based content will be used. */
                 String mimeType = contentExtractor.detectType(docURL);
                 if (StringUtils.isNotEmpty(mimeType))
                     wsBag.setValueByName("nsd_mime_type", mimeType);
-                String docContent = contentExtractor.process(docURL);
+                String docContent = contentExtractor.process(docURL, mimeType);
                 if (StringUtils.isNotEmpty(docContent))
                     dataField.setValue(docContent);
             }
@@ -300,6 +301,79 @@ then the crawl4j Tika-based content will be used. */
         appLogger.trace(anAppMgr.LOGMSG_TRACE_DEPART);
     }
 
+/* An incremental crawl skips a page whose Last-Modified date and size match the
+ones recorded by the crawl state store - the page is only marked as seen so it
+will not be deleted at the end of the crawl.  The state of a changed page is held
+as pending until the crawl has published it. */
+
+    private Document updateState(AppMgr anAppMgr, CrawlQueue aCrawlQueue, CrawlStateStore aStateStore,
+                                 Document aDocument, String aURL)
+    {
+        Logger appLogger = anAppMgr.getLogger(this, "updateState");
+
+        appLogger.trace(anAppMgr.LOGMSG_TRACE_ENTER);
+
+        DataBag wsBag = aDocument.getBag();
+        String docId = wsBag.getValueAsString("nsd_id");
+        long docSize = wsBag.getValueAsLong("nsd_file_size");
+        DataField dataField = wsBag.getFieldByName("nsd_doc_modified_ts");
+        long docModified = ((dataField != null) && (dataField.isAssigned())) ? dataField.getValueAsDateLong() : 0L;
+
+        Document wsDocument = aDocument;
+        try
+        {
+            if ((StringUtils.equals(aCrawlQueue.getCrawlType(), Connector.CRAWL_TYPE_INCREMENTAL)) &&
+                (docModified > 0L) && (! aStateStore.isModified(docId, docSize, docModified)))
+            {
+                aStateStore.markSeen(docId, aCrawlQueue.getCrawlId());
+                appLogger.debug(String.format("Unchanged Page (%s): %s", docId, aURL));
+                wsDocument = null;
+            }
+            else
+                aStateStore.updatePending(docId, aURL, docSize, docModified, wsBag.getValueAsString("nsd_doc_hash"),
+                                          aCrawlQueue.getCrawlId());
+        }
+        catch (IOException e)
+        {
+            appLogger.error(String.format("%s: %s", aStateStore.statePathFileName(), e.getMessage()));
+        }
+
+        appLogger.trace(anAppMgr.LOGMSG_TRACE_DEPART);
+
+        return wsDocument;
+    }
+
+/* A page that could not be fetched or parsed is not marked as seen by the crawl,
+so the error is reported to the state store to prevent it from being purged. */
+
+    private void reportError(AppMgr anAppMgr)
+    {
+        CrawlStateStore crawlStateStore = (CrawlStateStore) anAppMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+        if (crawlStateStore != null)
+            crawlStateStore.reportError();
+    }
+
+    /**
+     * This method is called once the headers of a page have been
+     * fetched.  A server error leaves the page unseen, so it is
+     * reported as a crawl error.
+     *
+     * @param aWebURL Web URL of the page.
+     * @param aStatusCode HTTP status code.
+     * @param aStatusDescription HTTP status description.
+     */
+    @Override
+    protected void handlePageStatusCode(WebURL aWebURL, int aStatusCode, String aStatusDescription)
+    {
+        if (aStatusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR)
+        {
+            AppMgr appMgr = (AppMgr) getMyController().getCustomData();
+            Logger appLogger = appMgr.getLogger(this, "handlePageStatusCode");
+            appLogger.warn(String.format("%s: %d %s", aWebURL.getURL(), aStatusCode, aStatusDescription));
+            reportError(appMgr);
+        }
+    }
+
     /**
      * This method is called when a page is fetched and ready
      * to be processed by your program.
@@ -325,8 +399,7 @@ then the crawl4j Tika-based content will be used. */
             appLogger.error("Internal Error: Crawl/Extract queue is null.");
         else
         {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
+            long startTime = System.nanoTime();
 
             Document wsDocument = createDocument(appMgr, crawlQueue, aPage);
             DataBag wsBag = wsDocument.getBag();
@@ -353,32 +426,33 @@ then the crawl4j Tika-based content will be used. */
             else
             {
                 wsDocument = null;
+                reportError(appMgr);
                 String msgStr = String.format("Unknown Parse Date Type '%s': %s", aPage.getParseData(), urlString);
                 appLogger.error(msgStr);
             }
 
+            CrawlStateStore crawlStateStore = (CrawlStateStore) appMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+            if ((wsDocument != null) && (crawlStateStore != null))
+                wsDocument = updateState(appMgr, crawlQueue, crawlStateStore, wsDocument, urlString);
+
             if (wsDocument != null)
             {
                 String docId = wsBag.getValueAsString("nsd_id");
-                String queueBagPathFileName = crawlQueue.docPathFileName(Connector.QUEUE_EXTRACT_NAME, docId);
-                DocumentXML documentXML = new DocumentXML(wsDocument);
                 try
                 {
-                    documentXML.save(queueBagPathFileName);
+                    crawlQueue.save(Connector.QUEUE_EXTRACT_NAME, wsDocument, docId);
                 }
                 catch (IOException e)
                 {
                     wsDocument = null;
-                    String msgStr = String.format("%s: %s", queueBagPathFileName, e.getMessage());
+                    String msgStr = String.format("%s: %s", docId, e.getMessage());
                     appLogger.error(msgStr);
                 }
 
-                stopWatch.stop();
-
                 if (wsDocument != null)
                 {
-                    String queueItem = Connector.queueItemIdPhaseTime(docId, Connector.PHASE_EXTRACT,
-                                                                      stopWatch.getTime());
+                    QueueItem queueItem = new QueueItem(docId);
+                    queueItem.setPhaseTime(Connector.PHASE_EXTRACT, System.nanoTime() - startTime);
                     try
                     {
                         // If queue is full, this thread may block.
@@ -21,7 +21,9 @@ import com.nridge.connector.common.con_com.Connector;
 import com.nridge.connector.common.con_com.crawl.CrawlFollow;
 import com.nridge.connector.common.con_com.crawl.CrawlIgnore;
 import com.nridge.connector.common.con_com.crawl.CrawlQueue;
+import com.nridge.connector.common.con_com.crawl.QueueItem;
 import com.nridge.connector.common.con_com.crawl.CrawlStart;
+import com.nridge.connector.common.con_com.crawl.CrawlStateStore;
 import com.nridge.connector.common.con_com.publish.Publishers;
 import com.nridge.connector.common.con_com.transform.Pipeline;
 import com.nridge.connector.ws.con_ws.core.*;
@@ -32,10 +34,13 @@ import com.nridge.core.app.mgr.Task;
 import com.nridge.core.base.field.Field;
 import com.nridge.core.base.field.data.*;
 import com.nridge.core.base.io.xml.DataBagXML;
+import com.nridge.core.base.ds.DSException;
 import com.nridge.core.base.std.NSException;
 import com.nridge.core.base.std.Platform;
 import com.nridge.core.base.std.Sleep;
 import com.nridge.ds.content.ds_content.Content;
+import com.nridge.ds.content.ds_content.ContentExtractor;
+import com.nridge.ds.solr.SolrDS;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.CrawlController;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
@@ -431,7 +436,20 @@ public class TaskConnectorWS implements Task
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-// Update Solr with new crawl and snapshot information.
+// The crawl state store tracks every document seen so changes and deletes can be detected.
+
+        mAppMgr.removeProperty(Connector.PROPERTY_STATE_STORE);
+        CrawlStateStore crawlStateStore = new CrawlStateStore(mAppMgr, CrawlStateStore.STATE_NAME_DEFAULT);
+        try
+        {
+            crawlStateStore.open();
+            mAppMgr.addProperty(Connector.PROPERTY_STATE_STORE, crawlStateStore);
+            appLogger.debug(String.format("Crawl state store opened with %d documents.", crawlStateStore.count()));
+        }
+        catch (NSException | IOException e)
+        {
+            appLogger.error(String.format("%s: %s", crawlStateStore.statePathFileName(), e.getMessage()), e);
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -442,7 +460,72 @@ public class TaskConnectorWS implements Task
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-// Update Solr with new crawl and snapshot information.
+        CrawlStateStore crawlStateStore = (CrawlStateStore) mAppMgr.getProperty(Connector.PROPERTY_STATE_STORE);
+        if (crawlStateStore != null)
+        {
+/* The crawl has published its pages, so their pending states can now be
+committed - unless the crawl was stopped before it could publish all of them. */
+
+            if (! mAppMgr.isAlive())
+                crawlStateStore.cancelPending();
+            try
+            {
+                int commitCount = crawlStateStore.commitPending();
+                appLogger.debug(String.format("Committed the crawl state of %d published pages.", commitCount));
+            }
+            catch (IOException e)
+            {
+                appLogger.error(String.format("%s: %s", crawlStateStore.statePathFileName(), e.getMessage()), e);
+            }
+
+/* Pages that were not seen by a crawl that ran to completion are no longer reachable
+from the crawl start URLs, so they are deleted from the index.  As a safeguard against
+an unreachable site, nothing is deleted if the unseen pages exceed the configured
+percentage of all the pages tracked by the store, or if the crawl reported pages
+it failed to fetch.  The deletion is opt-in. */
+
+            if ((mAppMgr.isAlive()) && (executePhase(Connector.PHASE_EXTRACT)) &&
+                (mAppMgr.getBoolean(Constants.CFG_PROPERTY_PREFIX + ".publish.upload_enabled")) &&
+                (mAppMgr.getBoolean(Constants.CFG_PROPERTY_PREFIX + ".snapshot.delete_unseen", false)))
+            {
+                int docCount = crawlStateStore.count();
+                int unseenCount = crawlStateStore.unseenDocIds(aCrawlQueue.getCrawlId()).size();
+                int deleteLimit = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".snapshot.delete_limit_percent", 50);
+                if ((unseenCount > 0) && (crawlStateStore.isErrorReported()))
+                    appLogger.warn(String.format("Skipping the deletion of %d unseen pages - the crawl reported page errors.",
+                                                 unseenCount));
+                else if ((unseenCount > 0) && (unseenCount * 100L > docCount * (long) deleteLimit))
+                    appLogger.warn(String.format("Skipping the deletion of %d unseen documents (%d tracked) - limit of %d%% exceeded.",
+                                                 unseenCount, docCount, deleteLimit));
+                else if (unseenCount > 0)
+                {
+                    SolrDS solrDS = new SolrDS(mAppMgr);
+                    solrDS.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX + ".solr");
+                    DataBag schemaBag = (DataBag) mAppMgr.getProperty(Connector.PROPERTY_SCHEMA_NAME);
+                    int batchSize = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".snapshot.delete_batch_size",
+                                                   CrawlStateStore.DELETE_BATCH_SIZE_DEFAULT);
+                    try
+                    {
+                        int deleteCount = crawlStateStore.purgeUnseen(solrDS, Constants.WS_DOCUMENT_TYPE, schemaBag,
+                                                                      "nsd_id", aCrawlQueue.getCrawlId(), batchSize);
+                        solrDS.commit();
+                        appLogger.info(String.format("Deleted %d documents no longer found on the crawled sites.",
+                                                     deleteCount));
+                    }
+                    catch (DSException | IOException e)
+                    {
+                        appLogger.error(String.format("Unseen document deletion failed: %s", e.getMessage()), e);
+                    }
+                    finally
+                    {
+                        solrDS.shutdown();
+                    }
+                }
+            }
+
+            crawlStateStore.close();
+            mAppMgr.removeProperty(Connector.PROPERTY_STATE_STORE);
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -511,7 +594,7 @@ public class TaskConnectorWS implements Task
 
 // Place a queue item marker into the queue to mark the end of the document extraction process.
 
-            aCrawlQueue.putMarkerIntoQueue(Connector.QUEUE_EXTRACT_NAME, Connector.QUEUE_ITEM_CRAWL_FINISH);
+            aCrawlQueue.putMarkerIntoQueue(Connector.QUEUE_EXTRACT_NAME, QueueItem.CRAWL_FINISH);
         }
         catch (Exception e)
         {
@@ -547,6 +630,7 @@ will control how many threads run concurrently based on how it was configured. *
 
         int transformThreadCount = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".transform.thread_count", 1);
         mTransformExecutor = Executors.newFixedThreadPool(transformThreadCount);
+        aCrawlQueue.registerPhaseWorkers(Connector.PHASE_TRANSFORM, transformThreadCount);
 
         for (int thread = 0; thread < transformThreadCount; thread++)
         {
@@ -571,6 +655,7 @@ will control how many threads run concurrently based on how it was configured. *
 
         int publishThreadCount = mAppMgr.getInt(Constants.CFG_PROPERTY_PREFIX + ".publish.thread_count", 1);
         mPublishExecutor = Executors.newFixedThreadPool(publishThreadCount);
+        aCrawlQueue.registerPhaseWorkers(Connector.PHASE_PUBLISH, publishThreadCount);
 
         for (int thread = 0; thread < publishThreadCount; thread++)
         {
@@ -639,7 +724,7 @@ will control how many threads run concurrently based on how it was configured. *
         BlockingQueue blockingQueue = (BlockingQueue) mAppMgr.getProperty(aQueueName);
         if (blockingQueue != null)
         {
-            ArrayList<String> drainToList = new ArrayList<>();
+            ArrayList<QueueItem> drainToList = new ArrayList<>();
             blockingQueue.drainTo(drainToList);
         }
 
@@ -783,6 +868,7 @@ will control how many threads run concurrently based on how it was configured. *
         {
             tsNow = new Date();
             crawlQueue = new CrawlQueue(mAppMgr);
+            crawlQueue.setCfgPropertyPrefix(Constants.CFG_PROPERTY_PREFIX);
 
             try
             {
@@ -894,6 +980,7 @@ will control how many threads run concurrently based on how it was configured. *
         {
             appLogger.info("The shutdown method was invoked.");
             executeReset();
+            ContentExtractor.shutdownForkParser();
             Sleep.forSeconds(1);
             mIsAlive.set(false);
         }
@@ -0,0 +1,626 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.ds;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.FieldRow;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataColumn;
+import com.nridge.core.base.field.data.DataColumnRow;
+import com.nridge.core.base.field.data.DataColumnStore;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.field.data.DataTable;
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A DSCriteriaEvaluator compiles a {@link DSCriteria} into a predicate
+ * tree once and then evaluates it against the rows of a {@link DataTable}.
+ * Operands are parsed to their native types (numbers, dates and booleans)
+ * and regular expressions are compiled when the evaluator is created, so
+ * the per-row work is limited to a single native comparison.
+ * <p>
+ * Criterion entries are combined using their boolean operators with the
+ * conventional precedence of <i>AND</i> over <i>OR</i>.  Criterions that
+ * share a single entry are combined with <i>AND</i>.  Evaluation is done
+ * a criterion at a time over a row-id bitmap, so rows eliminated by an
+ * earlier criterion of a group are never visited again.
+ * </p>
+ * <p>
+ * <b>Note:</b> Comparisons use the type of the table column rather than
+ * the type of the criterion field.  Empty or unparseable cells fail every
+ * comparison except the negated ones (e.g. <i>NOT_EQUAL</i>, <i>NOT_IN</i>)
+ * and <i>EMPTY</i>.  A criterion operand that cannot be parsed as the
+ * native type of its column is rejected, rather than silently compared
+ * as text (where "10" would sort before "9").  Instances are not
+ * thread-safe.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DSCriteriaEvaluator
+{
+    private static final int MODE_TEXT = 0;
+    private static final int MODE_LONG = 1;
+    private static final int MODE_DOUBLE = 2;
+
+    private ArrayList<ArrayList<Predicate>> mGroups;
+
+    private static class Predicate
+    {
+        private int mMode;
+        private int mColOffset;
+        private boolean mIsNegated;
+        private Field.Operator mOperator;
+        private boolean mIsCaseInsensitive;
+        private boolean mIsDateOrTime;
+        private boolean mIsBoolean;
+        private long mLongValue1;
+        private long mLongValue2;
+        private double mDoubleValue1;
+        private double mDoubleValue2;
+        private String mTextValue1;
+        private String mTextValue2;
+        private HashSet<Object> mValueSet;
+        private Matcher mMatcher;
+        private SimpleDateFormat mDateFormat;
+
+        private long parseLong(String aValue)
+            throws NumberFormatException
+        {
+            if (StringUtils.isEmpty(aValue))
+                throw new NumberFormatException("Empty value");
+            if (mIsBoolean)
+                return Field.isValueTrue(aValue) ? 1L : 0L;
+            if (mIsDateOrTime)
+            {
+                if (aValue.equals(Field.VALUE_DATETIME_TODAY))
+                    return System.currentTimeMillis();
+                if (mDateFormat == null)
+                    mDateFormat = new SimpleDateFormat(Field.FORMAT_DATETIME_DEFAULT);
+                Date dateValue = mDateFormat.parse(aValue, new ParsePosition(0));
+                if (dateValue == null)
+                    throw new NumberFormatException(aValue);
+                return dateValue.getTime();
+            }
+            return Long.parseLong(aValue);
+        }
+
+        private String foldCase(String aValue)
+        {
+            if (mIsCaseInsensitive)
+                return aValue.toLowerCase();
+            else
+                return aValue;
+        }
+
+        private int compareText(String aCellValue, String anOperand)
+        {
+            if (mIsCaseInsensitive)
+                return aCellValue.compareToIgnoreCase(anOperand);
+            else
+                return aCellValue.compareTo(anOperand);
+        }
+
+        private boolean testCompare(int aCompareValue1, int aCompareValue2)
+        {
+            switch (mOperator)
+            {
+                case EQUAL:
+                case NOT_EQUAL:
+                    return (aCompareValue1 == 0);
+                case GREATER_THAN:
+                    return (aCompareValue1 > 0);
+                case GREATER_THAN_EQUAL:
+                    return (aCompareValue1 >= 0);
+                case LESS_THAN:
+                    return (aCompareValue1 < 0);
+                case LESS_THAN_EQUAL:
+                    return (aCompareValue1 <= 0);
+                case BETWEEN:
+                case NOT_BETWEEN:
+                    return ((aCompareValue1 > 0) && (aCompareValue2 < 0));
+                case BETWEEN_INCLUSIVE:
+                    return ((aCompareValue1 >= 0) && (aCompareValue2 <= 0));
+                default:
+                    return false;
+            }
+        }
+
+        private boolean testLong(long aValue)
+        {
+            if ((mOperator == Field.Operator.IN) || (mOperator == Field.Operator.NOT_IN))
+                return mValueSet.contains(aValue);
+            else
+                return testCompare(Long.compare(aValue, mLongValue1), Long.compare(aValue, mLongValue2));
+        }
+
+        private boolean testDouble(double aValue)
+        {
+            if ((mOperator == Field.Operator.IN) || (mOperator == Field.Operator.NOT_IN))
+                return mValueSet.contains(aValue);
+            else
+                return testCompare(Double.compare(aValue, mDoubleValue1), Double.compare(aValue, mDoubleValue2));
+        }
+
+        private boolean testText(String aValue)
+        {
+            switch (mOperator)
+            {
+                case CONTAINS:
+                case NOT_CONTAINS:
+                    if (mIsCaseInsensitive)
+                        return StringUtils.containsIgnoreCase(aValue, mTextValue1);
+                    else
+                        return aValue.contains(mTextValue1);
+                case STARTS_WITH:
+                case NOT_STARTS_WITH:
+                    if (mIsCaseInsensitive)
+                        return StringUtils.startsWithIgnoreCase(aValue, mTextValue1);
+                    else
+                        return aValue.startsWith(mTextValue1);
+                case ENDS_WITH:
+                case NOT_ENDS_WITH:
+                    if (mIsCaseInsensitive)
+                        return StringUtils.endsWithIgnoreCase(aValue, mTextValue1);
+                    else
+                        return aValue.endsWith(mTextValue1);
+                case REGEX:
+                    mMatcher.reset(aValue);
+                    return mMatcher.find();
+                case IN:
+                case NOT_IN:
+                    return mValueSet.contains(foldCase(aValue));
+                case EQUAL:
+                case NOT_EQUAL:
+                    if (mIsCaseInsensitive)
+                        return aValue.equalsIgnoreCase(mTextValue1);
+                    else
+                        return aValue.equals(mTextValue1);
+                default:
+                    return testCompare(compareText(aValue, mTextValue1), compareText(aValue, mTextValue2));
+            }
+        }
+
+        private boolean test(FieldRow aRow, DataColumn aColumn, int aRowId)
+        {
+            String cellValue;
+            boolean isMatch;
+
+            if ((aColumn != null) && (aRowId != -1) && (mMode != MODE_TEXT) &&
+                (mOperator != Field.Operator.EMPTY) && (mOperator != Field.Operator.NOT_EMPTY) &&
+                (aColumn.getStorage() != DataColumn.Storage.TEXT))
+            {
+                if (! aColumn.isAssigned(aRowId))
+                    return mIsNegated;
+                if (mMode == MODE_LONG)
+                {
+                    long longValue = aColumn.getLong(aRowId);
+                    if (longValue == Long.MIN_VALUE)
+                        return mIsNegated;
+                    isMatch = testLong(longValue);
+                }
+                else
+                {
+                    double doubleValue = aColumn.getDouble(aRowId);
+                    if (doubleValue == Double.MIN_VALUE)
+                        return mIsNegated;
+                    isMatch = testDouble(doubleValue);
+                }
+                return (isMatch != mIsNegated);
+            }
+
+            if ((aColumn != null) && (aRowId != -1))
+                cellValue = aColumn.getValue(aRowId);
+            else
+                cellValue = aRow.getValue(mColOffset);
+            if (mOperator == Field.Operator.EMPTY)
+                return StringUtils.isEmpty(cellValue);
+            else if (mOperator == Field.Operator.NOT_EMPTY)
+                return StringUtils.isNotEmpty(cellValue);
+            else if (StringUtils.isEmpty(cellValue))
+                return mIsNegated;
+
+            switch (mMode)
+            {
+                case MODE_LONG:
+                    try
+                    {
+                        isMatch = testLong(parseLong(cellValue));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return mIsNegated;
+                    }
+                    break;
+                case MODE_DOUBLE:
+                    try
+                    {
+                        isMatch = testDouble(Double.parseDouble(cellValue));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return mIsNegated;
+                    }
+                    break;
+                default:
+                    isMatch = testText(cellValue);
+                    break;
+            }
+
+            return (isMatch != mIsNegated);
+        }
+    }
+
+    /**
+     * Constructor accepts the column bag of the tables that will be
+     * evaluated and the criteria parameter and compiles the criteria
+     * into a predicate tree.
+     *
+     * @param aColumnBag Bag of table column fields.
+     * @param aCriteria Data source criteria.
+     *
+     * @throws DSException If a criterion operand is not a valid value
+     * for the type of its column.
+     */
+    public DSCriteriaEvaluator(DataBag aColumnBag, DSCriteria aCriteria)
+        throws DSException
+    {
+        Predicate predicate;
+        ArrayList<Predicate> predicateGroup = null;
+
+        mGroups = new ArrayList<ArrayList<Predicate>>();
+        if (aCriteria != null)
+        {
+            for (DSCriterionEntry ce : aCriteria.getCriterionEntries())
+            {
+                if ((predicateGroup == null) || (ce.getBooleanOperator() == Field.Operator.OR))
+                {
+                    predicateGroup = new ArrayList<Predicate>();
+                    mGroups.add(predicateGroup);
+                }
+                for (DSCriterion dsCriterion : ce.getCriterions())
+                {
+                    predicate = compile(aColumnBag, dsCriterion);
+                    if (predicate != null)
+                        predicateGroup.add(predicate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the count of <i>OR</i> groups in the compiled criteria.
+     *
+     * @return Group count.
+     */
+    public int groupCount()
+    {
+        return mGroups.size();
+    }
+
+    private int columnOffset(DataBag aColumnBag, String aName)
+    {
+        int colCount = aColumnBag.count();
+        for (int col = 0; col < colCount; col++)
+        {
+            if (StringUtils.equals(aColumnBag.getByOffset(col).getName(), aName))
+                return col;
+        }
+
+        return -1;
+    }
+
+    private Predicate compile(DataBag aColumnBag, DSCriterion aCriterion)
+        throws DSException
+    {
+        Field.Operator logicalOperator = aCriterion.getLogicalOperator();
+        if ((logicalOperator == Field.Operator.SORT) || (logicalOperator == Field.Operator.UNDEFINED))
+            return null;
+
+        Predicate predicate = new Predicate();
+        predicate.mOperator = logicalOperator;
+        predicate.mIsCaseInsensitive = aCriterion.isCaseInsensitive();
+        predicate.mColOffset = columnOffset(aColumnBag, aCriterion.getName());
+
+        // An undefined column can never match, so it is compiled as an empty IN set.
+        if (predicate.mColOffset == -1)
+        {
+            predicate.mMode = MODE_TEXT;
+            predicate.mOperator = Field.Operator.IN;
+            predicate.mValueSet = new HashSet<Object>();
+            return predicate;
+        }
+
+        switch (logicalOperator)
+        {
+            case NOT_EQUAL:
+            case NOT_CONTAINS:
+            case NOT_STARTS_WITH:
+            case NOT_ENDS_WITH:
+            case NOT_BETWEEN:
+            case NOT_IN:
+                predicate.mIsNegated = true;
+                break;
+        }
+
+        DataField columnField = aColumnBag.getByOffset(predicate.mColOffset);
+        ArrayList<String> criterionValues = aCriterion.getValues();
+        String value1 = StringUtils.EMPTY;
+        String value2 = StringUtils.EMPTY;
+        if (criterionValues.size() > 0)
+            value1 = StringUtils.defaultString(criterionValues.get(0));
+        if (criterionValues.size() > 1)
+            value2 = StringUtils.defaultString(criterionValues.get(1));
+
+        switch (columnField.getType())
+        {
+            case Integer:
+            case Long:
+            case Boolean:
+            case Date:
+            case Time:
+            case DateTime:
+                predicate.mMode = MODE_LONG;
+                break;
+            case Float:
+            case Double:
+                predicate.mMode = MODE_DOUBLE;
+                break;
+            default:
+                predicate.mMode = MODE_TEXT;
+                break;
+        }
+        predicate.mIsBoolean = columnField.isTypeBoolean();
+        predicate.mIsDateOrTime = columnField.isTypeDateOrTime();
+
+        boolean isRelational;
+        switch (logicalOperator)
+        {
+            case CONTAINS:
+            case NOT_CONTAINS:
+            case STARTS_WITH:
+            case NOT_STARTS_WITH:
+            case ENDS_WITH:
+            case NOT_ENDS_WITH:
+            case REGEX:
+                isRelational = false;
+                break;
+            default:
+                isRelational = true;
+                break;
+        }
+
+        // Pattern matching operators are always evaluated against the cell text.
+        if (! isRelational)
+            predicate.mMode = MODE_TEXT;
+        if ((predicate.mMode != MODE_TEXT) && (logicalOperator != Field.Operator.EMPTY) &&
+            (logicalOperator != Field.Operator.NOT_EMPTY))
+        {
+            try
+            {
+                if ((logicalOperator == Field.Operator.IN) || (logicalOperator == Field.Operator.NOT_IN))
+                {
+                    predicate.mValueSet = new HashSet<Object>();
+                    for (String criterionValue : criterionValues)
+                    {
+                        if (StringUtils.isEmpty(criterionValue))
+                            continue;
+                        if (predicate.mMode == MODE_LONG)
+                            predicate.mValueSet.add(predicate.parseLong(criterionValue));
+                        else
+                            predicate.mValueSet.add(Double.parseDouble(criterionValue));
+                    }
+                }
+                else if (StringUtils.isEmpty(value1))
+                    predicate.mMode = MODE_TEXT;
+                else if (predicate.mMode == MODE_LONG)
+                {
+                    predicate.mLongValue1 = predicate.parseLong(value1);
+                    if (StringUtils.isNotEmpty(value2))
+                        predicate.mLongValue2 = predicate.parseLong(value2);
+                }
+                else
+                {
+                    predicate.mDoubleValue1 = Double.parseDouble(value1);
+                    if (StringUtils.isNotEmpty(value2))
+                        predicate.mDoubleValue2 = Double.parseDouble(value2);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                throw new DSException(String.format("Criterion '%s' has an operand that is not a valid %s value: %s",
+                                                    aCriterion.getName(), columnField.getType().name(), e.getMessage()));
+            }
+        }
+
+        if (predicate.mMode == MODE_TEXT)
+        {
+            predicate.mTextValue1 = value1;
+            predicate.mTextValue2 = value2;
+            if (logicalOperator == Field.Operator.REGEX)
+            {
+                Pattern regexPattern;
+                if (predicate.mIsCaseInsensitive)
+                    regexPattern = Pattern.compile(value1, Pattern.CASE_INSENSITIVE);
+                else
+                    regexPattern = Pattern.compile(value1);
+                predicate.mMatcher = regexPattern.matcher(StringUtils.EMPTY);
+            }
+            else if ((logicalOperator == Field.Operator.IN) || (logicalOperator == Field.Operator.NOT_IN))
+            {
+                predicate.mValueSet = new HashSet<Object>();
+                for (String criterionValue : criterionValues)
+                    predicate.mValueSet.add(predicate.foldCase(StringUtils.defaultString(criterionValue)));
+            }
+        }
+
+        return predicate;
+    }
+
+    private int columnRowId(DataColumnStore aStore, FieldRow aRow)
+    {
+        if ((aStore != null) && (aRow instanceof DataColumnRow))
+        {
+            DataColumnRow columnRow = (DataColumnRow) aRow;
+            if (columnRow.getStore() == aStore)
+                return columnRow.getRowId();
+        }
+
+        return -1;
+    }
+
+    private void filter(Predicate aPredicate, ArrayList<FieldRow> aRows, DataColumnStore aStore, BitSet aRowBits)
+    {
+        FieldRow fieldRow;
+
+        DataColumn dataColumn = null;
+        if (aStore != null)
+            dataColumn = aStore.getColumn(aPredicate.mColOffset);
+        for (int row = aRowBits.nextSetBit(0); row >= 0; row = aRowBits.nextSetBit(row + 1))
+        {
+            fieldRow = aRows.get(row);
+            if (! aPredicate.test(fieldRow, dataColumn, columnRowId(aStore, fieldRow)))
+                aRowBits.clear(row);
+        }
+    }
+
+    /**
+     * Evaluates the compiled criteria against every row of the table
+     * and returns a bitmap where each set bit identifies the offset
+     * of a matching row.  An empty criteria matches every row.
+     *
+     * @param aTable Data table instance.
+     *
+     * @return Bitmap of matching row offsets.
+     */
+    public BitSet evaluate(DataTable aTable)
+    {
+        return evaluate(aTable, null);
+    }
+
+    /**
+     * Evaluates the compiled criteria against the candidate rows of the
+     * table and returns a bitmap where each set bit identifies the offset
+     * of a matching row.  Rows whose bit is clear in the candidate bitmap
+     * are never visited, which allows bitmaps produced by other criteria
+     * (or indexes) to be intersected cheaply.
+     *
+     * @param aTable Data table instance.
+     * @param aCandidates Bitmap of candidate row offsets (<i>null</i>
+     *                    implies all rows).
+     *
+     * @return Bitmap of matching row offsets.
+     */
+    public BitSet evaluate(DataTable aTable, BitSet aCandidates)
+    {
+        BitSet groupBits;
+
+        ArrayList<FieldRow> fieldRows = aTable.getRows();
+        DataColumnStore columnStore = aTable.getColumnStore();
+        int rowCount = fieldRows.size();
+        BitSet candidateBits = new BitSet(rowCount);
+        if (aCandidates == null)
+            candidateBits.set(0, rowCount);
+        else
+        {
+            candidateBits.or(aCandidates);
+            if (candidateBits.length() > rowCount)
+                candidateBits.clear(rowCount, candidateBits.length());
+        }
+        if (mGroups.size() == 0)
+            return candidateBits;
+
+        BitSet matchingBits = new BitSet(rowCount);
+        for (ArrayList<Predicate> predicateGroup : mGroups)
+        {
+            groupBits = (BitSet) candidateBits.clone();
+            groupBits.andNot(matchingBits);
+            for (Predicate predicate : predicateGroup)
+            {
+                if (groupBits.isEmpty())
+                    break;
+                filter(predicate, fieldRows, columnStore, groupBits);
+            }
+            matchingBits.or(groupBits);
+        }
+
+        return matchingBits;
+    }
+
+    /**
+     * Returns <i>true</i> if the field row satisfies the compiled
+     * criteria or <i>false</i> otherwise.
+     *
+     * @param aRow Field row (must share the column layout of the
+     *             bag used to compile the criteria).
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isMatch(FieldRow aRow)
+    {
+        boolean isGroupMatch;
+
+        if (mGroups.size() == 0)
+            return true;
+        for (ArrayList<Predicate> predicateGroup : mGroups)
+        {
+            isGroupMatch = true;
+            for (Predicate predicate : predicateGroup)
+            {
+                if (! predicate.test(aRow, null, -1))
+                {
+                    isGroupMatch = false;
+                    break;
+                }
+            }
+            if (isGroupMatch)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the rows of the table that satisfy the compiled criteria
+     * in table order.
+     *
+     * @param aTable Data table instance.
+     *
+     * @return Array list of matching field rows.
+     */
+    public ArrayList<FieldRow> findRows(DataTable aTable)
+    {
+        BitSet matchingBits = evaluate(aTable);
+        ArrayList<FieldRow> fieldRows = aTable.getRows();
+        ArrayList<FieldRow> matchingRows = new ArrayList<FieldRow>(matchingBits.cardinality());
+        for (int row = matchingBits.nextSetBit(0); row >= 0; row = matchingBits.nextSetBit(row + 1))
+            matchingRows.add(fieldRows.get(row));
+
+        return matchingRows;
+    }
+}
@@ -45,4 +45,16 @@ public class DSException extends NSException
     {
         super(aMessage);
     }
+
+    /**
+     * Constructor accepts a default message and the underlying cause
+     * of the exception.
+     *
+     * @param aMessage Message describing the exception.
+     * @param aCause Underlying cause of the exception.
+     */
+    public DSException(String aMessage, Throwable aCause)
+    {
+        super(aMessage, aCause);
+    }
 }
\ No newline at end of file
@@ -95,6 +95,10 @@ public class Field
     public static final String FEATURE_DESCRIPTION = "fieldDescription";
     public static final String FEATURE_INDEX_FIELD_TYPE = "indexFieldType";
 
+// Identifies a file holding the field value when it was too large to keep in memory.
+
+    public static final String FEATURE_CONTENT_FILE = "contentFile";
+
 // SQL field feature constants.
 
     public static final String FEATURE_TYPE_ID = "typeId";
@@ -38,6 +38,15 @@ public class FieldRow
     private CellValue[] mCells;
     private transient HashMap<String, Object> mProperties;
 
+    /**
+     * Constructor used by derived row views that do not manage
+     * their own cells.
+     */
+    protected FieldRow()
+    {
+        mCells = new CellValue[0];
+    }
+
     /**
      * Constructor accepts a count of columns it must manage for
      * the newly created row.
@@ -88,7 +97,14 @@ public class FieldRow
         return mCells.length;
     }
 
-    public final CellValue getCellValue(int aColOffset)
+    /**
+     * Returns the cell identified by the column offset.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return Cell value or <i>null</i> if the offset is out of range.
+     */
+    public CellValue getCellValue(int aColOffset)
     {
         if ((aColOffset >= 0) && (aColOffset < mCells.length))
             return mCells[aColOffset];
@@ -148,7 +164,7 @@ public class FieldRow
      *
      * @return List of cell values.
      */
-    public final ArrayList<String> getValues(int aColOffset)
+    public ArrayList<String> getValues(int aColOffset)
     {
         if ((aColOffset >= 0) && (aColOffset < mCells.length))
             return mCells[aColOffset].getValues();
@@ -237,7 +253,7 @@ public class FieldRow
     {
         if (aRow != null)
         {
-            if (mCells.length == aRow.count())
+            if (count() == aRow.count())
             {
                 int colCount = aRow.count();
                 for (int col = 0; col < colCount; col++)
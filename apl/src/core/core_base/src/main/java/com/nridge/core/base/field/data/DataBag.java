@@ -24,6 +24,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
 /**
@@ -37,6 +38,11 @@ import java.util.zip.CRC32;
  * </p>
  * You can also use SQLBag to model information that needs to be
  * stored in an RDBMS.
+ * <p>
+ * Name based lookups are resolved through a name to offset index that
+ * is built on first use and rebuilt whenever fields are added, removed
+ * or renamed.
+ * </p>
  *
  * @author Al Cole
  * @since 1.0
@@ -48,8 +54,29 @@ public class DataBag
     private String mName = StringUtils.EMPTY;
     private String mTitle = StringUtils.EMPTY;
     private HashMap<String, String> mFeatures;
+    private transient volatile NameIndex mNameIndex;
     private transient HashMap<String, Object> mProperties;
 
+    private static final AtomicInteger RENAME_STAMP = new AtomicInteger();
+
+    private static final class NameIndex
+    {
+        private final int mFieldCount;
+        private final int mRenameStamp;
+        private final HashMap<String, Integer> mNameOffsetMap;
+        private final HashMap<String, Integer> mFoldedNameOffsetMap;
+
+        private NameIndex(int aFieldCount, int aRenameStamp,
+                          HashMap<String, Integer> aNameOffsetMap,
+                          HashMap<String, Integer> aFoldedNameOffsetMap)
+        {
+            mFieldCount = aFieldCount;
+            mRenameStamp = aRenameStamp;
+            mNameOffsetMap = aNameOffsetMap;
+            mFoldedNameOffsetMap = aFoldedNameOffsetMap;
+        }
+    }
+
     /**
      * Default constructor.
      */
@@ -169,6 +196,10 @@ public class DataBag
      *     for (DataField DataField : DataBag.getFields())
      *          // Process field
      * </code>
+     * <p>
+     * <b>Note:</b> Use the add and remove methods of the bag to change
+     * its fields, so that the name index remains current.
+     * </p>
      *
      * @return An array of fields.
      */
@@ -440,6 +471,55 @@ public class DataBag
         return mFields.get(anOffset);
     }
 
+    /**
+     * Invoked when a field whose name has been indexed by a bag is
+     * renamed, which invalidates the name to offset index of every bag.
+     */
+    static void fieldRenamed()
+    {
+        RENAME_STAMP.incrementAndGet();
+    }
+
+/* The name index is rebuilt whenever the field count or the rename stamp
+ * changes and is published as a single immutable instance, so readers never
+ * observe a partially built index.  Fields hold no reference to the bags that
+ * index them - an indexed field is only marked, and renaming it advances a
+ * stamp shared by all bags.  Renames of indexed fields are rare (schemas are
+ * named once), so the occasional rebuild is cheaper than a back-reference
+ * that keeps a bag reachable from every field it ever indexed. */
+
+    private NameIndex nameIndex()
+    {
+        NameIndex nameIndex = mNameIndex;
+        int fieldCount = mFields.size();
+        int renameStamp = RENAME_STAMP.get();
+        if ((nameIndex == null) || (nameIndex.mFieldCount != fieldCount) || (nameIndex.mRenameStamp != renameStamp))
+        {
+            String fieldName;
+            DataField dataField;
+
+// The first field wins when names repeat, which matches the order of a linear scan.
+
+            HashMap<String, Integer> nameOffsetMap = new HashMap<String, Integer>(fieldCount * 2);
+            HashMap<String, Integer> foldedNameOffsetMap = new HashMap<String, Integer>(fieldCount * 2);
+            for (int offset = 0; offset < fieldCount; offset++)
+            {
+                dataField = mFields.get(offset);
+                dataField.markNameIndexed();
+                fieldName = dataField.getName();
+                if (fieldName != null)
+                {
+                    nameOffsetMap.putIfAbsent(fieldName, offset);
+                    foldedNameOffsetMap.putIfAbsent(fieldName.toLowerCase(Locale.ROOT), offset);
+                }
+            }
+            nameIndex = new NameIndex(fieldCount, renameStamp, nameOffsetMap, foldedNameOffsetMap);
+            mNameIndex = nameIndex;
+        }
+
+        return nameIndex;
+    }
+
     /**
      * Returns the offset of the field in the bag collection that
      * matches the field name parameter.
@@ -449,13 +529,20 @@ public class DataBag
      */
     public int getOffsetByName(String aName)
     {
-        int offset = 0;
-        for (DataField dataField : mFields)
+        if (aName == null)
+            return -1;
+
+        Integer offset = nameIndex().mNameOffsetMap.get(aName);
+        if (offset == null)
+            return -1;
+        else if (aName.equals(mFields.get(offset).getName()))
+            return offset;
+
+        int fieldCount = mFields.size();
+        for (int i = 0; i < fieldCount; i++)
         {
-            if (dataField.getName().equals(aName))
-                return offset;
-            else
-                offset++;
+            if (aName.equals(mFields.get(i).getName()))
+                return i;
         }
 
         return -1;
@@ -471,13 +558,20 @@ public class DataBag
      */
     public int getOffsetByNameIgnoreCase(String aName)
     {
-        int offset = 0;
-        for (DataField dataField : mFields)
+        if (aName == null)
+            return -1;
+
+        Integer offset = nameIndex().mFoldedNameOffsetMap.get(aName.toLowerCase(Locale.ROOT));
+        if (offset == null)
+            return -1;
+        else if (aName.equalsIgnoreCase(mFields.get(offset).getName()))
+            return offset;
+
+        int fieldCount = mFields.size();
+        for (int i = 0; i < fieldCount; i++)
         {
-            if (StringUtils.equalsIgnoreCase(dataField.getName(), aName))
-                return offset;
-            else
-                offset++;
+            if (aName.equalsIgnoreCase(mFields.get(i).getName()))
+                return i;
         }
 
         return -1;
@@ -566,13 +660,11 @@ public class DataBag
      */
     public DataField getFieldByName(String aName)
     {
-        for (DataField dataField : mFields)
-        {
-            if (dataField.getName().equals(aName))
-                return dataField;
-        }
-
-        return null;
+        int offset = getOffsetByName(aName);
+        if (offset == -1)
+            return null;
+        else
+            return mFields.get(offset);
     }
 
     /**
@@ -584,13 +676,11 @@ public class DataBag
      */
     public DataField getByNameIgnoreCase(String aName)
     {
-        for (DataField dataField : mFields)
-        {
-            if (dataField.getName().equalsIgnoreCase(aName))
-                return dataField;
-        }
-
-        return null;
+        int offset = getOffsetByNameIgnoreCase(aName);
+        if (offset == -1)
+            return null;
+        else
+            return mFields.get(offset);
     }
 
     /**
@@ -639,7 +729,10 @@ public class DataBag
     {
         DataField dataField = getFieldByName(aName);
         if (dataField != null)
+        {
             mFields.remove(dataField);
+            mNameIndex = null;
+        }
     }
 
     /**
@@ -0,0 +1,969 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.field.data;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.std.BufUtl;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A DataColumn stores the cell values of a single table column in
+ * a typed, contiguous form.  Integer columns are kept in an
+ * <i>int[]</i>, long and date/time columns in a <i>long[]</i>
+ * (date/time values as milliseconds since the epoch), float and
+ * double columns in a <i>double[]</i> and all remaining types as
+ * dictionary encoded text.  A null bitmap tracks which cells have
+ * been assigned.
+ * <p>
+ * Cell values that cannot be reproduced exactly from their native
+ * representation (e.g. a number with leading zeros or an
+ * unparseable date) are retained verbatim in a sparse map, so the
+ * string view of the column always matches what was assigned.
+ * Multi-value cells are also held in a sparse map with their first
+ * value mirrored into the native array.
+ * </p>
+ *
+ * @see DataColumnStore
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataColumn
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+/* SimpleDateFormat is not thread-safe, so concurrent readers of a column each
+format its date/time cells with their own instance. */
+
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>()
+    {
+        @Override
+        protected SimpleDateFormat initialValue()
+        {
+            return new SimpleDateFormat(Field.FORMAT_DATETIME_DEFAULT);
+        }
+    };
+
+    public static enum Storage
+    {
+        INT, LONG, DOUBLE, DATE, TEXT
+    }
+
+    private int mSize;
+    private int[] mInts;
+    private long[] mLongs;
+    private int[] mCodes;
+    private double[] mDoubles;
+    private BitSet mAssigned;
+    private Storage mStorage;
+    private Field.Type mType;
+    private ArrayList<String> mDictionary;
+    private HashMap<String, Integer> mDictionaryMap;
+    private HashMap<Integer, String> mRawValues;
+    private HashMap<Integer, ArrayList<String>> mMultiValues;
+
+    /**
+     * Constructor accepts a field type and initializes the column
+     * storage accordingly.
+     *
+     * @param aType Field type.
+     */
+    public DataColumn(Field.Type aType)
+    {
+        mType = aType;
+        mStorage = storageForType(aType);
+        mAssigned = new BitSet();
+        mRawValues = new HashMap<Integer, String>();
+        mMultiValues = new HashMap<Integer, ArrayList<String>>();
+        switch (mStorage)
+        {
+            case INT:
+                mInts = new int[INITIAL_CAPACITY];
+                break;
+            case LONG:
+            case DATE:
+                mLongs = new long[INITIAL_CAPACITY];
+                break;
+            case DOUBLE:
+                mDoubles = new double[INITIAL_CAPACITY];
+                break;
+            default:
+                mCodes = new int[INITIAL_CAPACITY];
+                mDictionary = new ArrayList<String>();
+                mDictionaryMap = new HashMap<String, Integer>();
+                break;
+        }
+    }
+
+    /**
+     * Constructor accepts a field type and a byte buffer positioned at
+     * a column block previously written by <code>save()</code> and
+     * restores the column from it.  Native values are bulk copied from
+     * the buffer, so a memory mapped buffer is read at I/O speed.
+     *
+     * @param aType Field type.
+     * @param aBuffer Byte buffer positioned at the column block.
+     */
+    public DataColumn(Field.Type aType, ByteBuffer aBuffer)
+    {
+        int rowId;
+
+        mType = aType;
+        mStorage = storageForType(aType);
+        mRawValues = new HashMap<Integer, String>();
+        mMultiValues = new HashMap<Integer, ArrayList<String>>();
+        mSize = aBuffer.getInt();
+        int capacity = Math.max(mSize, INITIAL_CAPACITY);
+        long[] assignedWords = new long[aBuffer.getInt()];
+        aBuffer.asLongBuffer().get(assignedWords);
+        aBuffer.position(aBuffer.position() + (assignedWords.length * BufUtl.getSize(0L)));
+        mAssigned = BitSet.valueOf(assignedWords);
+        switch (mStorage)
+        {
+            case INT:
+                mInts = new int[capacity];
+                aBuffer.asIntBuffer().get(mInts, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0)));
+                break;
+            case LONG:
+            case DATE:
+                mLongs = new long[capacity];
+                aBuffer.asLongBuffer().get(mLongs, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0L)));
+                break;
+            case DOUBLE:
+                mDoubles = new double[capacity];
+                aBuffer.asDoubleBuffer().get(mDoubles, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0.0)));
+                break;
+            default:
+                int dictionarySize = aBuffer.getInt();
+                mDictionary = new ArrayList<String>(dictionarySize);
+                mDictionaryMap = new HashMap<String, Integer>(dictionarySize * 2);
+                for (int dictCode = 0; dictCode < dictionarySize; dictCode++)
+                {
+                    String dictValue = BufUtl.getString(aBuffer);
+                    mDictionary.add(dictValue);
+                    mDictionaryMap.put(dictValue, dictCode);
+                }
+                mCodes = new int[capacity];
+                aBuffer.asIntBuffer().get(mCodes, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0)));
+                break;
+        }
+        int rawCount = aBuffer.getInt();
+        for (int raw = 0; raw < rawCount; raw++)
+        {
+            rowId = aBuffer.getInt();
+            mRawValues.put(rowId, BufUtl.getString(aBuffer));
+        }
+        int multiCount = aBuffer.getInt();
+        for (int multi = 0; multi < multiCount; multi++)
+        {
+            rowId = aBuffer.getInt();
+            int valueCount = aBuffer.getInt();
+            ArrayList<String> multiValues = new ArrayList<String>(valueCount);
+            for (int value = 0; value < valueCount; value++)
+                multiValues.add(BufUtl.getString(aBuffer));
+            mMultiValues.put(rowId, multiValues);
+        }
+    }
+
+    /**
+     * Returns the storage class that will be used to persist values
+     * of the field type parameter.
+     *
+     * @param aType Field type.
+     *
+     * @return Storage class.
+     */
+    public static Storage storageForType(Field.Type aType)
+    {
+        switch (aType)
+        {
+            case Integer:
+                return Storage.INT;
+            case Long:
+                return Storage.LONG;
+            case Float:
+            case Double:
+                return Storage.DOUBLE;
+            case Date:
+            case Time:
+            case DateTime:
+                return Storage.DATE;
+            default:
+                return Storage.TEXT;
+        }
+    }
+
+    /**
+     * Returns a string summary representation of a DataColumn.
+     *
+     * @return String summary representation of this DataColumn.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("Column [%s, %d rows]", mStorage.name(), mSize);
+    }
+
+    /**
+     * Returns the field type of the column.
+     *
+     * @return Field type.
+     */
+    public Field.Type getType()
+    {
+        return mType;
+    }
+
+    /**
+     * Returns the storage class of the column.
+     *
+     * @return Storage class.
+     */
+    public Storage getStorage()
+    {
+        return mStorage;
+    }
+
+    /**
+     * Returns the number of cells stored in the column.
+     *
+     * @return Cell count.
+     */
+    public int size()
+    {
+        return mSize;
+    }
+
+    private void ensureCapacity(int aRowId)
+    {
+        int curCapacity;
+
+        switch (mStorage)
+        {
+            case INT:
+                curCapacity = mInts.length;
+                break;
+            case LONG:
+            case DATE:
+                curCapacity = mLongs.length;
+                break;
+            case DOUBLE:
+                curCapacity = mDoubles.length;
+                break;
+            default:
+                curCapacity = mCodes.length;
+                break;
+        }
+        if (aRowId >= curCapacity)
+        {
+            int newCapacity = Math.max(curCapacity * 2, aRowId + 1);
+            switch (mStorage)
+            {
+                case INT:
+                    mInts = Arrays.copyOf(mInts, newCapacity);
+                    break;
+                case LONG:
+                case DATE:
+                    mLongs = Arrays.copyOf(mLongs, newCapacity);
+                    break;
+                case DOUBLE:
+                    mDoubles = Arrays.copyOf(mDoubles, newCapacity);
+                    break;
+                default:
+                    mCodes = Arrays.copyOf(mCodes, newCapacity);
+                    break;
+            }
+        }
+    }
+
+    private SimpleDateFormat dateFormat()
+    {
+        return DATE_FORMAT.get();
+    }
+
+    private int encode(String aValue)
+    {
+        Integer dictCode = mDictionaryMap.get(aValue);
+        if (dictCode == null)
+        {
+            dictCode = mDictionary.size();
+            mDictionary.add(aValue);
+            mDictionaryMap.put(aValue, dictCode);
+        }
+
+        return dictCode;
+    }
+
+    private void storeNative(int aRowId, String aValue)
+    {
+        String nativeString;
+
+        mRawValues.remove(aRowId);
+        switch (mStorage)
+        {
+            case INT:
+                int intValue;
+                try
+                {
+                    intValue = Integer.parseInt(aValue);
+                    nativeString = Integer.toString(intValue);
+                }
+                catch (NumberFormatException e)
+                {
+                    intValue = Integer.MIN_VALUE;
+                    nativeString = null;
+                }
+                mInts[aRowId] = intValue;
+                break;
+            case LONG:
+                long longValue;
+                try
+                {
+                    longValue = Long.parseLong(aValue);
+                    nativeString = Long.toString(longValue);
+                }
+                catch (NumberFormatException e)
+                {
+                    longValue = Long.MIN_VALUE;
+                    nativeString = null;
+                }
+                mLongs[aRowId] = longValue;
+                break;
+            case DOUBLE:
+                double doubleValue;
+                try
+                {
+                    doubleValue = Double.parseDouble(aValue);
+                    nativeString = Double.toString(doubleValue);
+                }
+                catch (NumberFormatException e)
+                {
+                    doubleValue = Double.MIN_VALUE;
+                    nativeString = null;
+                }
+                mDoubles[aRowId] = doubleValue;
+                break;
+            case DATE:
+                long dateValue = Long.MIN_VALUE;
+                nativeString = null;
+                if (StringUtils.isNotEmpty(aValue))
+                {
+                    SimpleDateFormat simpleDateFormat = dateFormat();
+                    Date parsedDate = simpleDateFormat.parse(aValue, new ParsePosition(0));
+                    if (parsedDate != null)
+                    {
+                        dateValue = parsedDate.getTime();
+                        nativeString = simpleDateFormat.format(parsedDate);
+                    }
+                }
+                mLongs[aRowId] = dateValue;
+                break;
+            default:
+                mCodes[aRowId] = encode(aValue);
+                nativeString = aValue;
+                break;
+        }
+        if (! StringUtils.equals(aValue, nativeString))
+            mRawValues.put(aRowId, aValue);
+    }
+
+    /**
+     * Appends an unassigned cell to the end of the column.
+     *
+     * @return Row id of the new cell.
+     */
+    public int add()
+    {
+        int rowId = mSize++;
+        ensureCapacity(rowId);
+        mAssigned.clear(rowId);
+
+        return rowId;
+    }
+
+    /**
+     * Appends a cell to the end of the column and assigns its values.
+     *
+     * @param aValues Cell values (an empty list leaves the cell unassigned).
+     * @param anIsAssigned Has the cell been assigned a value.
+     *
+     * @return Row id of the new cell.
+     */
+    public int add(ArrayList<String> aValues, boolean anIsAssigned)
+    {
+        int rowId = add();
+        if (anIsAssigned)
+            setValues(rowId, aValues);
+
+        return rowId;
+    }
+
+    /**
+     * Returns <i>true</i> if the cell identified by the row id has
+     * been assigned a value or <i>false</i> otherwise.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isAssigned(int aRowId)
+    {
+        return mAssigned.get(aRowId);
+    }
+
+    /**
+     * Returns <i>true</i> if the cell identified by the row id holds
+     * more than one value.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isMultiValue(int aRowId)
+    {
+        return mMultiValues.containsKey(aRowId);
+    }
+
+    /**
+     * Returns <i>true</i> if the native value of the cell identified by
+     * the row id is an exact representation of its assigned string value.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isNative(int aRowId)
+    {
+        return mAssigned.get(aRowId) && (! mRawValues.containsKey(aRowId));
+    }
+
+    /**
+     * Assigns the value to the cell identified by the row id.
+     *
+     * @param aRowId Row id within the column.
+     * @param aValue Value formatted appropriately for the column type.
+     */
+    public void setValue(int aRowId, String aValue)
+    {
+        if ((aValue != null) && (aRowId >= 0) && (aRowId < mSize))
+        {
+            mMultiValues.remove(aRowId);
+            storeNative(aRowId, aValue);
+            mAssigned.set(aRowId);
+        }
+    }
+
+    /**
+     * Assigns the value list to the cell identified by the row id.
+     *
+     * @param aRowId Row id within the column.
+     * @param aValues Value list formatted appropriately for the column type.
+     */
+    public void setValues(int aRowId, ArrayList<String> aValues)
+    {
+        if ((aValues != null) && (aRowId >= 0) && (aRowId < mSize))
+        {
+            int valueCount = aValues.size();
+            if (valueCount == 0)
+            {
+                mMultiValues.remove(aRowId);
+                mRawValues.remove(aRowId);
+                mAssigned.clear(aRowId);
+            }
+            else
+            {
+                storeNative(aRowId, aValues.get(0));
+                if (valueCount > 1)
+                    mMultiValues.put(aRowId, new ArrayList<String>(aValues));
+                else
+                    mMultiValues.remove(aRowId);
+                mAssigned.set(aRowId);
+            }
+        }
+    }
+
+    private boolean assignNative(int aRowId)
+    {
+        if ((aRowId >= 0) && (aRowId < mSize))
+        {
+            mMultiValues.remove(aRowId);
+            mRawValues.remove(aRowId);
+            mAssigned.set(aRowId);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Assigns the native <i>int</i> value to the cell identified by the
+     * row id without formatting it as a string.  Columns that do not
+     * store whole numbers natively fall back to the string assignment.
+     *
+     * @param aRowId Row id within the column.
+     * @param aValue Native value.
+     */
+    public void setInt(int aRowId, int aValue)
+    {
+        if (mStorage == Storage.INT)
+        {
+            if (assignNative(aRowId))
+                mInts[aRowId] = aValue;
+        }
+        else if (mStorage == Storage.LONG)
+            setLong(aRowId, aValue);
+        else
+            setValue(aRowId, Integer.toString(aValue));
+    }
+
+    /**
+     * Assigns the native <i>long</i> value to the cell identified by the
+     * row id without formatting it as a string.  Columns that do not
+     * store long values natively fall back to the string assignment.
+     *
+     * @param aRowId Row id within the column.
+     * @param aValue Native value.
+     */
+    public void setLong(int aRowId, long aValue)
+    {
+        if (mStorage == Storage.LONG)
+        {
+            if (assignNative(aRowId))
+                mLongs[aRowId] = aValue;
+        }
+        else if ((mStorage == Storage.INT) && (aValue > Integer.MIN_VALUE) && (aValue <= Integer.MAX_VALUE))
+        {
+            if (assignNative(aRowId))
+                mInts[aRowId] = (int) aValue;
+        }
+        else
+            setValue(aRowId, Long.toString(aValue));
+    }
+
+    /**
+     * Assigns the native <i>double</i> value to the cell identified by
+     * the row id without formatting it as a string.  Columns that do not
+     * store floating point values natively fall back to the string
+     * assignment.
+     *
+     * @param aRowId Row id within the column.
+     * @param aValue Native value.
+     */
+    public void setDouble(int aRowId, double aValue)
+    {
+        if (mStorage == Storage.DOUBLE)
+        {
+            if (assignNative(aRowId))
+                mDoubles[aRowId] = aValue;
+        }
+        else
+            setValue(aRowId, Double.toString(aValue));
+    }
+
+    /**
+     * Assigns the <i>Date</i> value to the cell identified by the row id
+     * as milliseconds since the epoch, so it is not formatted and parsed
+     * back again.  Columns that do not store date/time values natively
+     * fall back to the default date/time string format.
+     *
+     * @param aRowId Row id within the column.
+     * @param aValue Date value.
+     */
+    public void setDate(int aRowId, Date aValue)
+    {
+        if (aValue != null)
+        {
+            if (mStorage == Storage.DATE)
+            {
+                if (assignNative(aRowId))
+                    mLongs[aRowId] = aValue.getTime();
+            }
+            else
+                setValue(aRowId, dateFormat().format(aValue));
+        }
+    }
+
+    /**
+     * Returns the (first) value of the cell identified by the row id.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Cell value or an empty string if unassigned.
+     */
+    public String getValue(int aRowId)
+    {
+        if ((aRowId < 0) || (aRowId >= mSize) || (! mAssigned.get(aRowId)))
+            return StringUtils.EMPTY;
+
+        String rawValue = mRawValues.get(aRowId);
+        if (rawValue != null)
+            return rawValue;
+
+        switch (mStorage)
+        {
+            case INT:
+                return Integer.toString(mInts[aRowId]);
+            case LONG:
+                return Long.toString(mLongs[aRowId]);
+            case DOUBLE:
+                return Double.toString(mDoubles[aRowId]);
+            case DATE:
+                return dateFormat().format(new Date(mLongs[aRowId]));
+            default:
+                return mDictionary.get(mCodes[aRowId]);
+        }
+    }
+
+    /**
+     * Returns the list of values for the cell identified by the row id.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Cell values (a new list instance).
+     */
+    public ArrayList<String> getValues(int aRowId)
+    {
+        ArrayList<String> multiValues = mMultiValues.get(aRowId);
+        if (multiValues != null)
+            return new ArrayList<String>(multiValues);
+
+        ArrayList<String> cellValues = new ArrayList<String>(1);
+        if ((aRowId >= 0) && (aRowId < mSize) && (mAssigned.get(aRowId)))
+            cellValues.add(getValue(aRowId));
+
+        return cellValues;
+    }
+
+    /**
+     * Returns the count of values stored in the cell identified by
+     * the row id.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Count of values.
+     */
+    public int valueCount(int aRowId)
+    {
+        ArrayList<String> multiValues = mMultiValues.get(aRowId);
+        if (multiValues != null)
+            return multiValues.size();
+        else if ((aRowId >= 0) && (aRowId < mSize) && (mAssigned.get(aRowId)))
+            return 1;
+        else
+            return 0;
+    }
+
+    private boolean isValueAssigned(int aRowId)
+    {
+        return (aRowId >= 0) && (aRowId < mSize) && (mAssigned.get(aRowId));
+    }
+
+    /**
+     * Returns the cell value as an <i>int</i>.  Cells that are
+     * unassigned or do not hold a parseable number return
+     * <i>Integer.MIN_VALUE</i> (the same "no value" that
+     * <code>Field.createInt()</code> returns for an empty string).
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Native value.
+     */
+    public int getInt(int aRowId)
+    {
+        if (! isValueAssigned(aRowId))
+            return Integer.MIN_VALUE;
+
+        switch (mStorage)
+        {
+            case INT:
+                return mInts[aRowId];
+            case LONG:
+            case DATE:
+                long longValue = mLongs[aRowId];
+                if (longValue == Long.MIN_VALUE)
+                    return Integer.MIN_VALUE;
+                else
+                    return (int) longValue;
+            case DOUBLE:
+                double doubleValue = mDoubles[aRowId];
+                if (doubleValue == Double.MIN_VALUE)
+                    return Integer.MIN_VALUE;
+                else
+                    return (int) doubleValue;
+            default:
+                return Field.createInt(getValue(aRowId));
+        }
+    }
+
+    /**
+     * Returns the cell value as a <i>long</i>.  Date/time cells are
+     * returned as milliseconds since the epoch.  Cells that are
+     * unassigned or do not hold a parseable value return
+     * <i>Long.MIN_VALUE</i>.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Native value.
+     */
+    public long getLong(int aRowId)
+    {
+        if (! isValueAssigned(aRowId))
+            return Long.MIN_VALUE;
+
+        switch (mStorage)
+        {
+            case INT:
+                int intValue = mInts[aRowId];
+                if (intValue == Integer.MIN_VALUE)
+                    return Long.MIN_VALUE;
+                else
+                    return intValue;
+            case LONG:
+            case DATE:
+                return mLongs[aRowId];
+            case DOUBLE:
+                double doubleValue = mDoubles[aRowId];
+                if (doubleValue == Double.MIN_VALUE)
+                    return Long.MIN_VALUE;
+                else
+                    return (long) doubleValue;
+            default:
+                return Field.createLong(getValue(aRowId));
+        }
+    }
+
+    /**
+     * Returns the cell value as a <i>double</i>.  Cells that are
+     * unassigned or do not hold a parseable value return
+     * <i>Double.MIN_VALUE</i>.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Native value.
+     */
+    public double getDouble(int aRowId)
+    {
+        if (! isValueAssigned(aRowId))
+            return Double.MIN_VALUE;
+
+        switch (mStorage)
+        {
+            case INT:
+                int intValue = mInts[aRowId];
+                if (intValue == Integer.MIN_VALUE)
+                    return Double.MIN_VALUE;
+                else
+                    return intValue;
+            case LONG:
+            case DATE:
+                long longValue = mLongs[aRowId];
+                if (longValue == Long.MIN_VALUE)
+                    return Double.MIN_VALUE;
+                else
+                    return longValue;
+            case DOUBLE:
+                return mDoubles[aRowId];
+            default:
+                return Field.createDouble(getValue(aRowId));
+        }
+    }
+
+    /**
+     * Returns the dictionary code for the text cell identified by the
+     * row id.  Equal codes imply equal (first) values.
+     *
+     * @param aRowId Row id within the column.
+     *
+     * @return Dictionary code or -1 if the column is not text or the
+     * cell is unassigned.
+     */
+    public int getCode(int aRowId)
+    {
+        if ((mStorage == Storage.TEXT) && (isValueAssigned(aRowId)))
+            return mCodes[aRowId];
+        else
+            return -1;
+    }
+
+    /**
+     * Returns the dictionary code assigned to the value parameter.
+     *
+     * @param aValue Text value.
+     *
+     * @return Dictionary code or -1 if the value is not in the
+     * dictionary.
+     */
+    public int lookupCode(String aValue)
+    {
+        if (mDictionaryMap != null)
+        {
+            Integer dictCode = mDictionaryMap.get(aValue);
+            if (dictCode != null)
+                return dictCode;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the count of unique values in the text dictionary.
+     *
+     * @return Dictionary size.
+     */
+    public int dictionarySize()
+    {
+        if (mDictionary == null)
+            return 0;
+        else
+            return mDictionary.size();
+    }
+
+    /**
+     * Returns the dictionary value for the code parameter.
+     *
+     * @param aCode Dictionary code.
+     *
+     * @return Text value.
+     */
+    public String getDictionaryValue(int aCode)
+    {
+        return mDictionary.get(aCode);
+    }
+
+    /**
+     * Returns the count of cells that have been assigned a value.
+     *
+     * @return Assigned cell count.
+     */
+    public int assignedCount()
+    {
+        return mAssigned.cardinality();
+    }
+
+    /**
+     * Returns the number of bytes that <code>save()</code> will write
+     * for this column.
+     *
+     * @return Size in bytes.
+     */
+    public int binarySize()
+    {
+        int byteSize = BufUtl.getSize(mSize) + BufUtl.getSize(0);
+        byteSize += mAssigned.toLongArray().length * BufUtl.getSize(0L);
+        switch (mStorage)
+        {
+            case INT:
+                byteSize += mSize * BufUtl.getSize(0);
+                break;
+            case LONG:
+            case DATE:
+                byteSize += mSize * BufUtl.getSize(0L);
+                break;
+            case DOUBLE:
+                byteSize += mSize * BufUtl.getSize(0.0);
+                break;
+            default:
+                byteSize += BufUtl.getSize(0);
+                for (String dictValue : mDictionary)
+                    byteSize += BufUtl.getSize(dictValue);
+                byteSize += mSize * BufUtl.getSize(0);
+                break;
+        }
+        byteSize += BufUtl.getSize(0);
+        for (String rawValue : mRawValues.values())
+            byteSize += BufUtl.getSize(0) + BufUtl.getSize(rawValue);
+        byteSize += BufUtl.getSize(0);
+        for (ArrayList<String> multiValues : mMultiValues.values())
+        {
+            byteSize += BufUtl.getSize(0) * 2;
+            for (String multiValue : multiValues)
+                byteSize += BufUtl.getSize(multiValue);
+        }
+
+        return byteSize;
+    }
+
+    /**
+     * Writes the column as a binary block into the byte buffer.  The
+     * block holds the cell count, the null bitmap, the native value
+     * array (preceded by the string dictionary for text columns) and
+     * the sparse raw and multi-value cells.
+     *
+     * @param aBuffer Byte buffer with at least <code>binarySize()</code>
+     *                bytes remaining.
+     */
+    public void save(ByteBuffer aBuffer)
+    {
+        aBuffer.putInt(mSize);
+        long[] assignedWords = mAssigned.toLongArray();
+        aBuffer.putInt(assignedWords.length);
+        aBuffer.asLongBuffer().put(assignedWords);
+        aBuffer.position(aBuffer.position() + (assignedWords.length * BufUtl.getSize(0L)));
+        switch (mStorage)
+        {
+            case INT:
+                aBuffer.asIntBuffer().put(mInts, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0)));
+                break;
+            case LONG:
+            case DATE:
+                aBuffer.asLongBuffer().put(mLongs, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0L)));
+                break;
+            case DOUBLE:
+                aBuffer.asDoubleBuffer().put(mDoubles, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0.0)));
+                break;
+            default:
+                aBuffer.putInt(mDictionary.size());
+                for (String dictValue : mDictionary)
+                    BufUtl.putString(aBuffer, StringUtils.defaultString(dictValue));
+                aBuffer.asIntBuffer().put(mCodes, 0, mSize);
+                aBuffer.position(aBuffer.position() + (mSize * BufUtl.getSize(0)));
+                break;
+        }
+        aBuffer.putInt(mRawValues.size());
+        for (Map.Entry<Integer, String> rawEntry : mRawValues.entrySet())
+        {
+            aBuffer.putInt(rawEntry.getKey());
+            BufUtl.putString(aBuffer, StringUtils.defaultString(rawEntry.getValue()));
+        }
+        aBuffer.putInt(mMultiValues.size());
+        for (Map.Entry<Integer, ArrayList<String>> multiEntry : mMultiValues.entrySet())
+        {
+            aBuffer.putInt(multiEntry.getKey());
+            aBuffer.putInt(multiEntry.getValue().size());
+            for (String multiValue : multiEntry.getValue())
+                BufUtl.putString(aBuffer, StringUtils.defaultString(multiValue));
+        }
+    }
+}
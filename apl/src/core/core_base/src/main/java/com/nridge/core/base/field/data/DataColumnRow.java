@@ -0,0 +1,223 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.field.data;
+
+import com.nridge.core.base.field.CellValue;
+import com.nridge.core.base.field.FieldRow;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+
+/**
+ * A DataColumnRow is a lightweight <i>FieldRow</i> view over a single
+ * row of a {@link DataColumnStore}.  Reads and writes are delegated to
+ * the typed columns of the store, so no per-cell objects are held by
+ * the row itself.
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataColumnRow extends FieldRow
+{
+    private final int mRowId;
+    private final DataColumnStore mStore;
+
+    /**
+     * Constructor accepts the store and row id that the view represents.
+     *
+     * @param aStore Column store.
+     * @param aRowId Row id within the store.
+     */
+    public DataColumnRow(DataColumnStore aStore, int aRowId)
+    {
+        super();
+        mStore = aStore;
+        mRowId = aRowId;
+    }
+
+    /**
+     * Returns a string representation of a DataColumnRow.
+     *
+     * @return String summary representation of this DataColumnRow.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("Row [%d cols, id %d]", mStore.columnCount(), mRowId);
+    }
+
+    /**
+     * Returns the column store backing this row.
+     *
+     * @return Column store.
+     */
+    public DataColumnStore getStore()
+    {
+        return mStore;
+    }
+
+    /**
+     * Returns the row id of this view within its column store.
+     *
+     * @return Row id.
+     */
+    public int getRowId()
+    {
+        return mRowId;
+    }
+
+    /**
+     * Returns the count of cells in the row.
+     *
+     * @return Count of cells in the row.
+     */
+    @Override
+    public int count()
+    {
+        return mStore.columnCount();
+    }
+
+    /**
+     * Returns a detached copy of the cell identified by the column
+     * offset.  Changes to the returned cell are not reflected in the
+     * store.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return Cell value or <i>null</i> if the offset is out of range.
+     */
+    @Override
+    public CellValue getCellValue(int aColOffset)
+    {
+        DataColumn dataColumn = mStore.getColumn(aColOffset);
+        if (dataColumn == null)
+            return null;
+
+        CellValue cellValue = new CellValue();
+        if (dataColumn.isAssigned(mRowId))
+        {
+            if (dataColumn.isMultiValue(mRowId))
+                cellValue.setValues(dataColumn.getValues(mRowId));
+            else
+                cellValue.setValue(dataColumn.getValue(mRowId));
+        }
+
+        return cellValue;
+    }
+
+    /**
+     * Return a the cell value identified by the column offset.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return Cell value.
+     */
+    @Override
+    public String getValue(int aColOffset)
+    {
+        DataColumn dataColumn = mStore.getColumn(aColOffset);
+        if (dataColumn == null)
+            return StringUtils.EMPTY;
+        else
+            return dataColumn.getValue(mRowId);
+    }
+
+    /**
+     * Assigns the parameter value to the cell identified by the
+     * column offset parameter.
+     *
+     * @param aColOffset Column offset in the row.
+     * @param aValue A cell value that is formatted appropriately for
+     *                the data type it represents.
+     */
+    @Override
+    public void setValue(int aColOffset, String aValue)
+    {
+        DataColumn dataColumn = mStore.getColumn(aColOffset);
+        if (dataColumn != null)
+            dataColumn.setValue(mRowId, aValue);
+    }
+
+    /**
+     * Returns the count of cell values identified by the
+     * column offset parameter.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return List of cell values.
+     */
+    @Override
+    public int cellValueCount(int aColOffset)
+    {
+        DataColumn dataColumn = mStore.getColumn(aColOffset);
+        if (dataColumn == null)
+            return 0;
+        else
+            return dataColumn.valueCount(mRowId);
+    }
+
+    /**
+     * Return a copy of the cell value list.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return List of cell values.
+     */
+    @Override
+    public ArrayList<String> getValues(int aColOffset)
+    {
+        DataColumn dataColumn = mStore.getColumn(aColOffset);
+        if (dataColumn == null)
+            return new ArrayList<String>();
+        else
+            return dataColumn.getValues(mRowId);
+    }
+
+    /**
+     * Assigns the cell value list parameter to the cell.
+     *
+     * @param aColOffset Column offset in the row.
+     * @param aValues A value list that is formatted appropriately for
+     *                the data type it represents.
+     */
+    @Override
+    public void setValues(int aColOffset, ArrayList<String> aValues)
+    {
+        DataColumn dataColumn = mStore.getColumn(aColOffset);
+        if (dataColumn != null)
+            dataColumn.setValues(mRowId, aValues);
+    }
+
+    /**
+     * Returns a hash code value for the object. This method is
+     * supported for the benefit of hash tables such as those provided by
+     * {@link java.util.HashMap}.
+     *
+     * @return A hash code value for this object.
+     */
+    @Override
+    public int hashCode()
+    {
+        int hashCode = 1;
+        int colCount = count();
+        for (int col = 0; col < colCount; col++)
+            hashCode = 31 * hashCode + collapse(col).hashCode();
+
+        return hashCode;
+    }
+}
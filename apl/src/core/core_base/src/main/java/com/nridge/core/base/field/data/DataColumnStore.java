@@ -0,0 +1,209 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.field.data;
+
+import com.nridge.core.base.field.CellValue;
+import com.nridge.core.base.field.FieldRow;
+import com.nridge.core.base.std.BufUtl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+/**
+ * A DataColumnStore is the columnar backing of a {@link DataTable}.
+ * It manages one {@link DataColumn} per table column and hands out
+ * {@link DataColumnRow} views that expose each stored row through
+ * the standard <i>FieldRow</i> API.
+ * <p>
+ * <b>Note:</b> Rows removed from the owning table remain in the
+ * store until the table rebuilds it - once the removed rows outnumber
+ * the remaining ones, or when the table rows are emptied.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataColumnStore
+{
+    private int mRowCount;
+    private DataColumn[] mColumns;
+
+    /**
+     * Constructor accepts a bag of column fields and creates a typed
+     * column for each one.
+     *
+     * @param aBag Bag of column fields.
+     */
+    public DataColumnStore(DataBag aBag)
+    {
+        int colCount = aBag.count();
+        mColumns = new DataColumn[colCount];
+        for (int col = 0; col < colCount; col++)
+            mColumns[col] = new DataColumn(aBag.getByOffset(col).getType());
+    }
+
+    /**
+     * Constructor accepts a bag of column fields and a byte buffer
+     * positioned at a store block previously written by
+     * <code>save()</code> and restores the columns from it.
+     *
+     * @param aBag Bag of column fields.
+     * @param aBuffer Byte buffer positioned at the store block.
+     */
+    public DataColumnStore(DataBag aBag, ByteBuffer aBuffer)
+    {
+        mRowCount = aBuffer.getInt();
+        int colCount = aBag.count();
+        mColumns = new DataColumn[colCount];
+        for (int col = 0; col < colCount; col++)
+            mColumns[col] = new DataColumn(aBag.getByOffset(col).getType(), aBuffer);
+    }
+
+    /**
+     * Returns a string summary representation of a DataColumnStore.
+     *
+     * @return String summary representation of this DataColumnStore.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("Column Store [%d cols x %d rows]", mColumns.length, mRowCount);
+    }
+
+    /**
+     * Returns the count of columns in the store.
+     *
+     * @return Column count.
+     */
+    public int columnCount()
+    {
+        return mColumns.length;
+    }
+
+    /**
+     * Returns the count of rows that have been appended to the store.
+     *
+     * @return Row count.
+     */
+    public int rowCount()
+    {
+        return mRowCount;
+    }
+
+    /**
+     * Returns the column identified by the offset parameter.
+     *
+     * @param aColOffset Column offset.
+     *
+     * @return Data column or <i>null</i> if the offset is out of range.
+     */
+    public DataColumn getColumn(int aColOffset)
+    {
+        if ((aColOffset >= 0) && (aColOffset < mColumns.length))
+            return mColumns[aColOffset];
+        else
+            return null;
+    }
+
+    /**
+     * Appends the cells of the field row parameter to the store and
+     * returns a view of the newly stored row.
+     *
+     * @param aRow Field row whose cells should be copied.
+     *
+     * @return Row view backed by the store.
+     */
+    public DataColumnRow appendRow(FieldRow aRow)
+    {
+        CellValue cellValue;
+
+        int rowId = mRowCount++;
+        int rowColCount = aRow.count();
+        for (int col = 0; col < mColumns.length; col++)
+        {
+            if (col < rowColCount)
+            {
+                cellValue = aRow.getCellValue(col);
+                mColumns[col].add(cellValue.getValues(), cellValue.isAssigned());
+            }
+            else
+                mColumns[col].add();
+        }
+
+        return new DataColumnRow(this, rowId);
+    }
+
+    /**
+     * Appends an empty row to the store and returns a view of it.
+     *
+     * @return Row view backed by the store.
+     */
+    public DataColumnRow appendRow()
+    {
+        int rowId = mRowCount++;
+        for (DataColumn dataColumn : mColumns)
+            dataColumn.add();
+
+        return new DataColumnRow(this, rowId);
+    }
+
+    /**
+     * Creates a list of row views covering every row in the store in
+     * the order they were appended.
+     *
+     * @return List of row views.
+     */
+    public ArrayList<FieldRow> createRowViews()
+    {
+        ArrayList<FieldRow> fieldRows = new ArrayList<FieldRow>(mRowCount);
+        for (int rowId = 0; rowId < mRowCount; rowId++)
+            fieldRows.add(new DataColumnRow(this, rowId));
+
+        return fieldRows;
+    }
+
+    /**
+     * Writes the row count followed by a binary block for each column
+     * to the channel.  Each column is staged in its own buffer, so the
+     * memory overhead is limited to the size of the largest column.
+     *
+     * @param aChannel Writable byte channel.
+     *
+     * @throws IOException I/O related exception.
+     */
+    public void save(WritableByteChannel aChannel)
+        throws IOException
+    {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(BufUtl.getSize(mRowCount));
+        byteBuffer.putInt(mRowCount);
+        byteBuffer.flip();
+        while (byteBuffer.hasRemaining())
+            aChannel.write(byteBuffer);
+
+        for (DataColumn dataColumn : mColumns)
+        {
+            byteBuffer = ByteBuffer.allocate(dataColumn.binarySize());
+            dataColumn.save(byteBuffer);
+            byteBuffer.flip();
+            while (byteBuffer.hasRemaining())
+                aChannel.write(byteBuffer);
+        }
+    }
+}
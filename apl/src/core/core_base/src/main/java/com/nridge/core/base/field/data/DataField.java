@@ -27,14 +27,21 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The DataField class models a simple meta data field.  This is the class
  * you should go to when you are looking for a basic data type, name, title
  * and value representation of a piece of information.
  * <p>
+ * Cloned fields share the feature map of their source field until
+ * either of them changes a feature, so the schema meta data of the
+ * many bags materialized from a table or document is held only once.
+ * </p>
+ * <p>
  * Alternative classes for modeling fields include SQLField where
  * where each offers progressively more properties to describe the meta data.
  * </p>
@@ -48,11 +55,31 @@ public class DataField
     private FieldRange mRange;
     private FieldValue mFieldValue;
     private String mName = StringUtils.EMPTY;
-    private HashMap<String, String> mFeatures;
+    private FeatureMap mFeatures;
     private String mTitle = StringUtils.EMPTY;
     private Field.Type mType = Field.Type.Text;
     private transient HashMap<String, Object> mProperties;
     private Field.Order mSortOrder = Field.Order.UNDEFINED;
+    private transient volatile boolean mIsNameIndexed;
+
+/* Feature maps are shared between cloned fields.  Once a map has been shared it is
+never changed in place - the first change made through any of its fields is applied
+to a private copy - while a map that was never shared is changed directly. */
+
+    private static final class FeatureMap extends HashMap<String, String>
+    {
+        private volatile boolean mIsShared;
+
+        private FeatureMap()
+        {
+            super();
+        }
+
+        private FeatureMap(Map<String, String> aFeatures)
+        {
+            super(aFeatures);
+        }
+    }
 
     /**
      * Default constructor.
@@ -60,11 +87,13 @@ public class DataField
     public DataField()
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
     }
 
     /**
-     * Constructor clones an existing data field.
+     * Constructor clones an existing data field.  The feature map is
+     * shared with the source field and copied by whichever field
+     * changes it first.
      *
      * @param aField Source field instance to clone.
      */
@@ -73,7 +102,8 @@ public class DataField
         if (aField != null)
         {
             this.mFieldValue = new FieldValue(aField.getFieldValue());
-            this.mFeatures = new HashMap<String, String>(aField.getFeatures());
+            aField.mFeatures.mIsShared = true;
+            this.mFeatures = aField.mFeatures;
 
             this.setName(aField.getName());
             this.setType(aField.getType());
@@ -97,7 +127,7 @@ public class DataField
     public DataField(Field.Type aType)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(aType);
     }
 
@@ -111,7 +141,7 @@ public class DataField
     public DataField(Field.Type aType, String aName)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(aType);
         setName(aName);
     }
@@ -127,7 +157,7 @@ public class DataField
     public DataField(Field.Type aType, String aName, String aTitle)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(aType);
         setName(aName);
         setTitle(aTitle);
@@ -145,7 +175,7 @@ public class DataField
     public DataField(Field.Type aType, String aName, String aTitle, String aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(aType);
         setName(aName);
         setTitle(aTitle);
@@ -164,7 +194,7 @@ public class DataField
     public DataField(Field.Type aType, String aName, String aTitle, String ... aValues)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(aType);
         setName(aName);
         setTitle(aTitle);
@@ -183,7 +213,7 @@ public class DataField
     public DataField(Field.Type aType, String aName, String aTitle, ArrayList<String> aValues)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(aType);
         setName(aName);
         setTitle(aTitle);
@@ -201,7 +231,7 @@ public class DataField
     public DataField(String aName, String aTitle, int aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(Field.Type.Integer);
         setName(aName);
         setTitle(aTitle);
@@ -219,7 +249,7 @@ public class DataField
     public DataField(String aName, String aTitle, long aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(Field.Type.Long);
         setName(aName);
         setTitle(aTitle);
@@ -237,7 +267,7 @@ public class DataField
     public DataField(String aName, String aTitle, float aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(Field.Type.Float);
         setName(aName);
         setTitle(aTitle);
@@ -255,7 +285,7 @@ public class DataField
     public DataField(String aName, String aTitle, double aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(Field.Type.Double);
         setName(aName);
         setTitle(aTitle);
@@ -273,7 +303,7 @@ public class DataField
     public DataField(String aName, String aTitle, boolean aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(Field.Type.Boolean);
         setName(aName);
         setTitle(aTitle);
@@ -291,7 +321,7 @@ public class DataField
     public DataField(String aName, String aTitle, Date aValue)
     {
         mFieldValue = new FieldValue();
-        mFeatures = new HashMap<String, String>();
+        mFeatures = new FeatureMap();
         setType(Field.Type.DateTime);
         setName(aName);
         setTitle(aTitle);
@@ -329,7 +359,21 @@ public class DataField
      */
     public void setName(String aName)
     {
-        mName = aName;
+        if (! StringUtils.equals(mName, aName))
+        {
+            mName = aName;
+            if (mIsNameIndexed)
+                DataBag.fieldRenamed();
+        }
+    }
+
+    /**
+     * Records that the name of this field has been indexed by a bag,
+     * so that later renames invalidate the bag name indexes.
+     */
+    void markNameIndexed()
+    {
+        mIsNameIndexed = true;
     }
 
     /**
@@ -1397,6 +1441,14 @@ public class DataField
         return true;
     }
 
+    private FeatureMap writableFeatures()
+    {
+        if (mFeatures.mIsShared)
+            mFeatures = new FeatureMap(mFeatures);
+
+        return mFeatures;
+    }
+
     /**
      * Add a unique feature to this field.  A feature enhances the core
      * capability of the field.  Standard features are listed below.
@@ -1424,7 +1476,7 @@ public class DataField
      */
     public void addFeature(String aName, String aValue)
     {
-        mFeatures.put(aName, aValue);
+        writableFeatures().put(aName, aValue);
     }
 
     /**
@@ -1447,7 +1499,7 @@ public class DataField
      */
     public void enableFeature(String aName)
     {
-        mFeatures.put(aName, StrUtl.STRING_TRUE);
+        writableFeatures().put(aName, StrUtl.STRING_TRUE);
     }
 
     /**
@@ -1458,7 +1510,8 @@ public class DataField
      */
     public void disableFeature(String aName)
     {
-        mFeatures.remove(aName);
+        if (mFeatures.containsKey(aName))
+            writableFeatures().remove(aName);
     }
 
     /**
@@ -1556,18 +1609,22 @@ public class DataField
      */
     public void clearFeatures()
     {
-        mFeatures.clear();
+        if (mFeatures.mIsShared)
+            mFeatures = new FeatureMap();
+        else
+            mFeatures.clear();
     }
 
     /**
-     * Returns a read-only copy of the internal map containing
-     * feature list.
+     * Returns a read-only view of the internal map containing
+     * feature list.  The map may be shared with cloned fields, so
+     * use the feature methods of this class to change it.
      *
-     * @return Internal feature map instance.
+     * @return Unmodifiable feature map.
      */
-    public final HashMap<String, String> getFeatures()
+    public final Map<String, String> getFeatures()
     {
-        return mFeatures;
+        return Collections.unmodifiableMap(mFeatures);
     }
 
     /**
@@ -0,0 +1,404 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.field.data;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.FieldRow;
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A DataRowSorter orders the rows of a {@link DataTable} by one or more
+ * columns.  Each sort column is decoded exactly once per row into a
+ * primitive key array (numbers, booleans and dates) or a string key
+ * array (text), the row offsets are sorted against those keys and
+ * the table rows are then permuted into place.  Columnar tables supply
+ * their native values directly, so no cell parsing is needed at all.
+ * <p>
+ * <b>Note:</b> The sort is stable, so rows with equal keys retain
+ * their relative order.  Empty, unassigned or unparseable cells sort
+ * as the smallest value of their column, whether the table is columnar
+ * or not.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataRowSorter
+{
+    private static final int INSERTION_SORT_LIMIT = 32;
+    private static final int PARALLEL_SORT_MINIMUM = 8192;
+
+    private boolean mIsParallel;
+    private final DataTable mTable;
+    private ArrayList<SortKey> mSortKeys;
+
+    private static class SortKey
+    {
+        private final boolean mIsDescending;
+        private final BitSet mMissingKeys;
+        private long[] mLongKeys;
+        private double[] mDoubleKeys;
+        private String[] mTextKeys;
+
+        private SortKey(Field.Order anOrder)
+        {
+            mIsDescending = (anOrder == Field.Order.DESCENDING);
+            mMissingKeys = new BitSet();
+        }
+
+        private int compare(int anOffset1, int anOffset2)
+        {
+            int compareValue;
+
+            boolean isMissing1 = mMissingKeys.get(anOffset1);
+            boolean isMissing2 = mMissingKeys.get(anOffset2);
+            if ((isMissing1) || (isMissing2))
+                compareValue = Boolean.compare(isMissing2, isMissing1);
+            else if (mLongKeys != null)
+                compareValue = Long.compare(mLongKeys[anOffset1], mLongKeys[anOffset2]);
+            else if (mDoubleKeys != null)
+                compareValue = Double.compare(mDoubleKeys[anOffset1], mDoubleKeys[anOffset2]);
+            else
+                compareValue = mTextKeys[anOffset1].compareToIgnoreCase(mTextKeys[anOffset2]);
+
+            if (mIsDescending)
+                return -compareValue;
+            else
+                return compareValue;
+        }
+    }
+
+/* A stable merge sort of the primitive row offsets - the JDK only offers comparator
+based sorts for object arrays, which would box every offset.  Halves larger than
+PARALLEL_SORT_MINIMUM are sorted concurrently when the task runs in a fork/join pool. */
+
+    private static class OffsetSortTask extends RecursiveAction
+    {
+        private final SortKey[] mSortKeys;
+        private final int[] mOffsets;
+        private final int[] mBuffer;
+        private final int mStart;
+        private final int mEnd;
+        private final boolean mIsParallel;
+
+        private OffsetSortTask(SortKey[] aSortKeys, int[] anOffsets, int[] aBuffer,
+                               int aStart, int anEnd, boolean anIsParallel)
+        {
+            mSortKeys = aSortKeys;
+            mOffsets = anOffsets;
+            mBuffer = aBuffer;
+            mStart = aStart;
+            mEnd = anEnd;
+            mIsParallel = anIsParallel;
+        }
+
+        private int compare(int anOffset1, int anOffset2)
+        {
+            int compareValue;
+
+            for (SortKey sortKey : mSortKeys)
+            {
+                compareValue = sortKey.compare(anOffset1, anOffset2);
+                if (compareValue != 0)
+                    return compareValue;
+            }
+
+            return 0;
+        }
+
+        private void insertionSort()
+        {
+            int offset, row;
+
+            for (int start = mStart + 1; start < mEnd; start++)
+            {
+                offset = mOffsets[start];
+                for (row = start - 1; (row >= mStart) && (compare(mOffsets[row], offset) > 0); row--)
+                    mOffsets[row + 1] = mOffsets[row];
+                mOffsets[row + 1] = offset;
+            }
+        }
+
+        private void merge(int aMiddle)
+        {
+            if (compare(mOffsets[aMiddle - 1], mOffsets[aMiddle]) <= 0)
+                return;
+
+            System.arraycopy(mOffsets, mStart, mBuffer, mStart, mEnd - mStart);
+            int left = mStart;
+            int right = aMiddle;
+            for (int row = mStart; row < mEnd; row++)
+            {
+                if ((right >= mEnd) || ((left < aMiddle) && (compare(mBuffer[left], mBuffer[right]) <= 0)))
+                    mOffsets[row] = mBuffer[left++];
+                else
+                    mOffsets[row] = mBuffer[right++];
+            }
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (mEnd - mStart <= INSERTION_SORT_LIMIT)
+            {
+                insertionSort();
+                return;
+            }
+
+            int middle = (mStart + mEnd) >>> 1;
+            OffsetSortTask leftTask = new OffsetSortTask(mSortKeys, mOffsets, mBuffer, mStart, middle, mIsParallel);
+            OffsetSortTask rightTask = new OffsetSortTask(mSortKeys, mOffsets, mBuffer, middle, mEnd, mIsParallel);
+            if ((mIsParallel) && (mEnd - mStart > PARALLEL_SORT_MINIMUM))
+                invokeAll(leftTask, rightTask);
+            else
+            {
+                leftTask.compute();
+                rightTask.compute();
+            }
+            merge(middle);
+        }
+    }
+
+    /**
+     * Constructor accepts the data table whose rows should be sorted.
+     *
+     * @param aTable Data table instance.
+     */
+    public DataRowSorter(DataTable aTable)
+    {
+        mTable = aTable;
+        mSortKeys = new ArrayList<SortKey>();
+    }
+
+    /**
+     * Returns <i>true</i> if the sort will be performed across multiple
+     * threads or <i>false</i> otherwise.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isParallel()
+    {
+        return mIsParallel;
+    }
+
+    /**
+     * Assigns the parallel sort flag.  A parallel sort splits the row
+     * offsets across the common fork/join pool and is only worth
+     * enabling for large tables.
+     *
+     * @param anIsParallel Parallel sort flag.
+     */
+    public void setParallel(boolean anIsParallel)
+    {
+        mIsParallel = anIsParallel;
+    }
+
+    /**
+     * Returns the count of sort columns that have been added.
+     *
+     * @return Sort column count.
+     */
+    public int count()
+    {
+        return mSortKeys.size();
+    }
+
+    private long dateKey(SimpleDateFormat aDateFormat, String aValue)
+    {
+        if (StringUtils.isEmpty(aValue))
+            return Long.MIN_VALUE;
+        if (aValue.equals(Field.VALUE_DATETIME_TODAY))
+            return System.currentTimeMillis();
+        Date dateValue = aDateFormat.parse(aValue, new ParsePosition(0));
+        if (dateValue == null)
+            return Long.MIN_VALUE;
+        else
+            return dateValue.getTime();
+    }
+
+    private long longKey(String aValue)
+    {
+        try
+        {
+            return Long.parseLong(aValue);
+        }
+        catch (NumberFormatException e)
+        {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private double doubleKey(String aValue)
+    {
+        try
+        {
+            return Double.parseDouble(aValue);
+        }
+        catch (NumberFormatException | NullPointerException e)
+        {
+            return Double.MIN_VALUE;
+        }
+    }
+
+    private int columnRowId(DataColumnStore aStore, FieldRow aRow)
+    {
+        if ((aStore != null) && (aRow instanceof DataColumnRow))
+        {
+            DataColumnRow columnRow = (DataColumnRow) aRow;
+            if (columnRow.getStore() == aStore)
+                return columnRow.getRowId();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a sort column to the sorter.  Columns are applied in the
+     * order they are added, so the first column is the primary key
+     * and later columns break ties.  Sort keys are decoded from the
+     * table rows at the time this method is invoked.
+     *
+     * @param aName Column name.
+     * @param anOrder Sort order (ascending, descending).
+     *
+     * @return <i>true</i> if the column was added or <i>false</i> if
+     * the column is not defined or the order is undefined.
+     */
+    public boolean add(String aName, Field.Order anOrder)
+    {
+        int rowId;
+        String cellValue;
+        FieldRow fieldRow;
+
+        DataBag columnBag = mTable.getColumnBag();
+        DataField dataField = columnBag.getFieldByName(aName);
+        if ((dataField == null) || (anOrder == null) || (anOrder == Field.Order.UNDEFINED))
+            return false;
+
+        int colOffset = columnBag.getOffsetByName(aName);
+        if (colOffset == -1)
+            return false;
+
+        DataColumnStore columnStore = mTable.getColumnStore();
+        DataColumn nativeColumn = null;
+        if (columnStore != null)
+        {
+            nativeColumn = columnStore.getColumn(colOffset);
+            if ((nativeColumn != null) && (nativeColumn.getStorage() == DataColumn.Storage.TEXT))
+                nativeColumn = null;
+        }
+
+        ArrayList<FieldRow> fieldRows = mTable.getRows();
+        int rowCount = fieldRows.size();
+        SortKey sortKey = new SortKey(anOrder);
+        SimpleDateFormat dateFormat = null;
+        switch (dataField.getType())
+        {
+            case Integer:
+            case Long:
+            case Boolean:
+            case Date:
+            case Time:
+            case DateTime:
+                sortKey.mLongKeys = new long[rowCount];
+                if (dataField.isTypeDateOrTime())
+                    dateFormat = new SimpleDateFormat(Field.FORMAT_DATETIME_DEFAULT);
+                for (int row = 0; row < rowCount; row++)
+                {
+                    fieldRow = fieldRows.get(row);
+                    rowId = columnRowId(columnStore, fieldRow);
+                    if ((nativeColumn != null) && (rowId != -1))
+                        sortKey.mLongKeys[row] = nativeColumn.getLong(rowId);
+                    else
+                    {
+                        cellValue = fieldRow.getValue(colOffset);
+                        if (StringUtils.isEmpty(cellValue))
+                            sortKey.mLongKeys[row] = Long.MIN_VALUE;
+                        else if (dataField.isTypeBoolean())
+                            sortKey.mLongKeys[row] = Field.isValueTrue(cellValue) ? 1L : 0L;
+                        else if (dateFormat != null)
+                            sortKey.mLongKeys[row] = dateKey(dateFormat, cellValue);
+                        else
+                            sortKey.mLongKeys[row] = longKey(cellValue);
+                    }
+                    if (sortKey.mLongKeys[row] == Long.MIN_VALUE)
+                        sortKey.mMissingKeys.set(row);
+                }
+                break;
+            case Float:
+            case Double:
+                sortKey.mDoubleKeys = new double[rowCount];
+                for (int row = 0; row < rowCount; row++)
+                {
+                    fieldRow = fieldRows.get(row);
+                    rowId = columnRowId(columnStore, fieldRow);
+                    if ((nativeColumn != null) && (rowId != -1))
+                        sortKey.mDoubleKeys[row] = nativeColumn.getDouble(rowId);
+                    else
+                        sortKey.mDoubleKeys[row] = doubleKey(fieldRow.getValue(colOffset));
+                    if (sortKey.mDoubleKeys[row] == Double.MIN_VALUE)
+                        sortKey.mMissingKeys.set(row);
+                }
+                break;
+            default:
+                sortKey.mTextKeys = new String[rowCount];
+                for (int row = 0; row < rowCount; row++)
+                    sortKey.mTextKeys[row] = StringUtils.defaultString(fieldRows.get(row).getValue(colOffset));
+                break;
+        }
+        mSortKeys.add(sortKey);
+
+        return true;
+    }
+
+    /**
+     * Sorts the table rows using the sort columns that have been added.
+     * The rows are permuted in place, so any columnar storage behind
+     * the table is left untouched.
+     */
+    public void sort()
+    {
+        ArrayList<FieldRow> fieldRows = mTable.getRows();
+        int rowCount = fieldRows.size();
+        if ((rowCount < 2) || (mSortKeys.size() == 0))
+            return;
+
+        int[] rowOffsets = new int[rowCount];
+        for (int row = 0; row < rowCount; row++)
+            rowOffsets[row] = row;
+
+        SortKey[] sortKeys = mSortKeys.toArray(new SortKey[mSortKeys.size()]);
+        OffsetSortTask sortTask = new OffsetSortTask(sortKeys, rowOffsets, new int[rowCount], 0, rowCount, mIsParallel);
+        if (mIsParallel)
+            ForkJoinPool.commonPool().invoke(sortTask);
+        else
+            sortTask.invoke();
+
+        FieldRow[] unsortedRows = fieldRows.toArray(new FieldRow[rowCount]);
+        for (int row = 0; row < rowCount; row++)
+            fieldRows.set(row, unsortedRows[rowOffsets[row]]);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.field.data;
+
+import com.nridge.core.base.field.CellValue;
+import com.nridge.core.base.field.FieldRow;
+
+import java.util.ArrayList;
+
+/**
+ * A DataRowView is a copy-on-write <i>FieldRow</i> that shares the
+ * cells of a source row.  Reads are delegated to the source row until
+ * the first write, at which point the view materializes a private copy
+ * of the source and all subsequent reads and writes use that copy.
+ * The source row is never modified through a view.
+ * <p>
+ * <b>Note:</b> Until a view is written to, changes made directly to
+ * the source row are visible through the view.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataRowView extends FieldRow
+{
+    private FieldRow mRow;
+    private boolean mIsCopied;
+
+    /**
+     * Constructor accepts the source row that the view represents.
+     * Views of views share the original source row.
+     *
+     * @param aRow Source field row.
+     */
+    public DataRowView(FieldRow aRow)
+    {
+        super();
+        if ((aRow instanceof DataRowView) && (! ((DataRowView) aRow).isCopied()))
+            mRow = ((DataRowView) aRow).mRow;
+        else
+            mRow = aRow;
+    }
+
+    /**
+     * Returns a string representation of a DataRowView.
+     *
+     * @return String summary representation of this DataRowView.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("Row [%d cols, %s]", mRow.count(), mIsCopied ? "copied" : "shared");
+    }
+
+    /**
+     * Returns <i>true</i> if the view has materialized its own copy
+     * of the source row or <i>false</i> if it still shares it.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isCopied()
+    {
+        return mIsCopied;
+    }
+
+    private FieldRow writableRow()
+    {
+        if (! mIsCopied)
+        {
+            mRow = new FieldRow(mRow);
+            mIsCopied = true;
+        }
+
+        return mRow;
+    }
+
+    /**
+     * Returns the count of cells in the row.
+     *
+     * @return Count of cells in the row.
+     */
+    @Override
+    public int count()
+    {
+        return mRow.count();
+    }
+
+    /**
+     * Returns the cell identified by the column offset.  While the
+     * source row is shared, a detached copy of the cell is returned,
+     * so changes to it are not reflected in the row.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return Cell value or <i>null</i> if the offset is out of range.
+     */
+    @Override
+    public CellValue getCellValue(int aColOffset)
+    {
+        CellValue cellValue = mRow.getCellValue(aColOffset);
+        if ((mIsCopied) || (cellValue == null))
+            return cellValue;
+        else
+            return new CellValue(cellValue);
+    }
+
+    /**
+     * Return a the cell value identified by the column offset.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return Cell value.
+     */
+    @Override
+    public String getValue(int aColOffset)
+    {
+        return mRow.getValue(aColOffset);
+    }
+
+    /**
+     * Assigns the parameter value to the cell identified by the
+     * column offset parameter.  The source row is copied prior to
+     * the first assignment.
+     *
+     * @param aColOffset Column offset in the row.
+     * @param aValue A cell value that is formatted appropriately for
+     *                the data type it represents.
+     */
+    @Override
+    public void setValue(int aColOffset, String aValue)
+    {
+        writableRow().setValue(aColOffset, aValue);
+    }
+
+    /**
+     * Returns the count of cell values identified by the
+     * column offset parameter.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return List of cell values.
+     */
+    @Override
+    public int cellValueCount(int aColOffset)
+    {
+        return mRow.cellValueCount(aColOffset);
+    }
+
+    /**
+     * Returns the cell value list.  While the source row is shared, a
+     * detached copy of the list is returned, so changes to it are not
+     * reflected in the source row.
+     *
+     * @param aColOffset Column offset in the row.
+     *
+     * @return List of cell values.
+     */
+    @Override
+    public ArrayList<String> getValues(int aColOffset)
+    {
+        if (mIsCopied)
+            return mRow.getValues(aColOffset);
+        else
+            return new ArrayList<String>(mRow.getValues(aColOffset));
+    }
+
+    /**
+     * Assigns the cell value list parameter to the cell.  The source
+     * row is copied prior to the first assignment.
+     *
+     * @param aColOffset Column offset in the row.
+     * @param aValues A value list that is formatted appropriately for
+     *                the data type it represents.
+     */
+    @Override
+    public void setValues(int aColOffset, ArrayList<String> aValues)
+    {
+        writableRow().setValues(aColOffset, aValues);
+    }
+
+    /**
+     * Returns a hash code value for the object. This method is
+     * supported for the benefit of hash tables such as those provided by
+     * {@link java.util.HashMap}.
+     *
+     * @return A hash code value for this object.
+     */
+    @Override
+    public int hashCode()
+    {
+        return mRow.hashCode();
+    }
+}
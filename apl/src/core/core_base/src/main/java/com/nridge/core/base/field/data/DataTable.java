@@ -45,11 +45,14 @@ import java.util.regex.Pattern;
  */
 public class DataTable
 {
+    private static final int COLUMN_STORE_COMPACT_MINIMUM = 1000;
+
     private int mColumnCount;
     private FieldRow mNewRow;
     private DataBag mColumns;
-    private String[] mOffsetNameMap;
+    private HashMap<String, Integer> mOffsetNameMap;
     private ArrayList<FieldRow> mRows;
+    private DataColumnStore mColumnStore;
     private String mName = StringUtils.EMPTY;
     private HashMap<String, String> mFeatures;
     private String mSortFieldName = StringUtils.EMPTY;
@@ -110,6 +113,8 @@ public class DataTable
             this.setSortFieldName(aTable.getSortFieldName());
             this.mFeatures = new HashMap<String, String>(aTable.getFeatures());
             this.setColumns(new DataBag(aTable.getColumnBag()));
+            if (aTable.isColumnar())
+                this.enableColumnStore();
             int rowCount = aTable.rowCount();
             if (rowCount > 0)
             {
@@ -145,6 +150,8 @@ public class DataTable
             this.setSortFieldName(aTable.getSortFieldName());
             this.mFeatures = new HashMap<String, String>(aTable.getFeatures());
             this.setColumns(new DataBag(aTable.getColumnBag()));
+            if (aTable.isColumnar())
+                this.enableColumnStore();
             for (FieldRow fieldRow : aTable.getRows())
                 this.addRow(new FieldRow(fieldRow));
         }
@@ -341,7 +348,10 @@ public class DataTable
         if ((aBag != null) && ((mRows == null) || (mRows.size() == 0)))
         {
             mColumns = aBag;
+            mOffsetNameMap = null;
             mColumnCount = mColumns.count();
+            if (mColumnStore != null)
+                mColumnStore = new DataColumnStore(mColumns);
         }
     }
 
@@ -383,17 +393,87 @@ public class DataTable
         return dataBagList;
     }
 
+    private DataTable viewTable(int aRowCount)
+    {
+        DataTable viewTable = new DataTable(mColumns);
+        viewTable.setName(getName());
+        viewTable.setSortFieldName(getSortFieldName());
+        viewTable.mFeatures = new HashMap<String, String>(mFeatures);
+        viewTable.mRows = new ArrayList<FieldRow>(aRowCount);
+
+        return viewTable;
+    }
+
+    /**
+     * Creates a view over a slice of the rows of this table.  The view
+     * copies the columns, but each of its rows is a {@link DataRowView}
+     * that shares the cells of the source row, so creating a view costs
+     * time proportional to the limit rather than the table size.  Rows
+     * written through the view are copied on their first change and the
+     * source table is never modified.
+     * <p>
+     * <b>Note:</b> Until a view row is written to, changes made directly
+     * to its source row are visible through the view.
+     * </p>
+     *
+     * @param aStartOffset Starting offset into table.
+     * @param aLimit Maximum number of rows.
+     *
+     * @return Data table view.
+     */
+    public DataTable createView(int aStartOffset, int aLimit)
+    {
+        int startOffset = Math.max(aStartOffset, 0);
+        int endOffset = Math.min(startOffset + Math.max(aLimit, 0), mRows.size());
+        DataTable viewTable = viewTable(Math.max(endOffset - startOffset, 0));
+        for (int row = startOffset; row < endOffset; row++)
+            viewTable.mRows.add(new DataRowView(mRows.get(row)));
+
+        return viewTable;
+    }
+
+    /**
+     * Creates a view over the rows of this table whose offsets are set
+     * in the bit set parameter (e.g. the result of a criteria evaluation).
+     * The starting offset and limit page through the set rows, so only
+     * the rows of the requested page are wrapped.  Refer to
+     * <code>createView(int, int)</code> for the view semantics.
+     *
+     * @param aRowOffsets Bit set of row offsets into this table.
+     * @param aStartOffset Starting offset into the set rows.
+     * @param aLimit Maximum number of rows.
+     *
+     * @return Data table view.
+     */
+    public DataTable createView(BitSet aRowOffsets, int aStartOffset, int aLimit)
+    {
+        int rowCount = mRows.size();
+        int viewLimit = Math.max(aLimit, 0);
+        DataTable viewTable = viewTable(Math.min(viewLimit, aRowOffsets.cardinality()));
+
+        int matchCount = 0;
+        int startOffset = Math.max(aStartOffset, 0);
+        for (int row = aRowOffsets.nextSetBit(0); (row >= 0) && (row < rowCount); row = aRowOffsets.nextSetBit(row + 1))
+        {
+            if (viewTable.mRows.size() == viewLimit)
+                break;
+            if (matchCount++ >= startOffset)
+                viewTable.mRows.add(new DataRowView(mRows.get(row)));
+        }
+
+        return viewTable;
+    }
+
     private void populateOffsetNameMap()
     {
         if (mOffsetNameMap == null)
         {
-            int offset = 0;
             mColumnCount = mColumns.count();
-            mOffsetNameMap = new String[mColumnCount];
+            mOffsetNameMap = new HashMap<String, Integer>(mColumnCount * 2);
             ArrayList<DataField> bagFields = mColumns.getFields();
 
-            for (DataField dataField : bagFields)
-                mOffsetNameMap[offset++] = dataField.getName();
+            for (int offset = mColumnCount - 1; offset >= 0; offset--)
+                mOffsetNameMap.put(bagFields.get(offset).getName(), offset);
         }
     }
 
@@ -413,13 +493,15 @@ public class DataTable
             if (fieldRow.count() == mColumns.count())
             {
                 populateOffsetNameMap();
+                if (mColumnStore != null)
+                    mColumnStore = new DataColumnStore(mColumns);
                 mRows = new ArrayList<FieldRow>(rowCount);
                 for (int row = 0; row < rowCount; row++)
                     addRow(new FieldRow(aRows.get(row)));
             }
         }
         else
-            mRows = new ArrayList<FieldRow>();
+            emptyRows();
     }
 
     /**
@@ -435,7 +517,12 @@ public class DataTable
     public void add(DataField aField)
     {
         if (mRows.size() == 0)
+        {
             mColumns.add(aField);
+            mOffsetNameMap = null;
+            if (mColumnStore != null)
+                mColumnStore = new DataColumnStore(mColumns);
+        }
     }
 
     /**
@@ -569,13 +656,24 @@ public class DataTable
     {
         CellValue cellValue;
 
+// Rows that already live in our column store are checked natively (no detached cell copies).
+
+        int rowId = columnRowId(aRow);
         for (int col = 0; col < mColumnCount; col++)
         {
-            cellValue = aRow.getCellValue(col);
-            if (cellValue.isAssigned())
+            if (rowId == -1)
+            {
+                cellValue = aRow.getCellValue(col);
+                if (cellValue.isAssigned())
+                    markColumnAssigned(col);
+            }
+            else if (mColumnStore.getColumn(col).isAssigned(rowId))
                 markColumnAssigned(col);
         }
-        mRows.add(aRow);
+        if ((mColumnStore != null) && (rowId == -1))
+            mRows.add(mColumnStore.appendRow(aRow));
+        else
+            mRows.add(aRow);
     }
 
     /**
@@ -588,25 +686,52 @@ public class DataTable
     {
         if (mNewRow != null)
         {
-            mRows.add(mNewRow);
+            if (mColumnStore != null)
+                mRows.add(mColumnStore.appendRow(mNewRow));
+            else
+                mRows.add(mNewRow);
             mNewRow = null;
         }
     }
 
+/* A row removed from a columnar table leaves its cells behind in the column store,
+so the store is rebuilt from the remaining rows once the removed rows outnumber
+them.  Row views obtained before the rebuild remain valid over the old store. */
+
+    private void compactColumnStore()
+    {
+        if ((mColumnStore != null) && (mColumnStore.rowCount() > COLUMN_STORE_COMPACT_MINIMUM) &&
+            (mColumnStore.rowCount() > mRows.size() * 2))
+        {
+            DataColumnStore columnStore = new DataColumnStore(mColumns);
+            ArrayList<FieldRow> columnRows = new ArrayList<FieldRow>(mRows.size());
+            for (FieldRow fieldRow : mRows)
+                columnRows.add(columnStore.appendRow(fieldRow));
+            mColumnStore = columnStore;
+            mRows = columnRows;
+        }
+    }
+
     /**
      * Removes the row identified by the offset parameter from the table.
+     * A columnar table reclaims the cells of removed rows once they
+     * outnumber the remaining rows.
      *
      * @param aRowOffset Row offset.
      */
     public void removeRow(int aRowOffset)
     {
         if (aRowOffset < rowCount())
+        {
             mRows.remove(aRowOffset);
+            compactColumnStore();
+        }
     }
 
     /**
      * Removes the field row identified by the <i>FieldRow</i> parameter
-     * from the table.
+     * from the table.  A columnar table reclaims the cells of removed
+     * rows once they outnumber the remaining rows.
      *
      * @param aRow Field row.
      */
@@ -620,6 +745,7 @@ public class DataTable
                 if (fieldRow.isEqual(aRow))
                 {
                     mRows.remove(rowOffset);
+                    compactColumnStore();
                     break;
                 }
                 else
@@ -635,6 +761,8 @@ public class DataTable
     public void emptyRows()
     {
         mRows = new ArrayList<FieldRow>();
+        if (mColumnStore != null)
+            mColumnStore = new DataColumnStore(mColumns);
     }
 
     /**
@@ -644,7 +772,10 @@ public class DataTable
     {
         mFeatures.clear();
         mColumns = new DataBag();
+        mOffsetNameMap = null;
         mRows = new ArrayList<FieldRow>();
+        if (mColumnStore != null)
+            mColumnStore = new DataColumnStore(mColumns);
     }
 
     /**
@@ -657,6 +788,119 @@ public class DataTable
         return mRows.size();
     }
 
+    /**
+     * Returns <i>true</i> if the rows of this table are backed by a
+     * typed {@link DataColumnStore} or <i>false</i> otherwise.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isColumnar()
+    {
+        return mColumnStore != null;
+    }
+
+    /**
+     * Returns the column store backing the rows of this table.
+     *
+     * @return Column store or <i>null</i> if the table is row based.
+     */
+    public DataColumnStore getColumnStore()
+    {
+        return mColumnStore;
+    }
+
+    /**
+     * Converts the table to columnar storage.  Integer, long, float,
+     * double and date/time columns are stored as primitive arrays and
+     * all other columns as dictionary encoded text.  The rows of the
+     * table become views over the column store, so the existing
+     * <code>getRow()</code> and <code>getValueByName()</code> methods
+     * continue to work while filters and sorts operate on native values.
+     * <p>
+     * <b>Note:</b> Cells returned by <code>FieldRow.getCellValue()</code>
+     * and lists returned by <code>FieldRow.getValues()</code> are copies
+     * once the table is columnar - use the <i>FieldRow</i> or table
+     * setter methods to update cells.
+     * </p>
+     */
+    public void enableColumnStore()
+    {
+        if (mColumnStore == null)
+        {
+            populateOffsetNameMap();
+            DataColumnStore columnStore = new DataColumnStore(mColumns);
+            ArrayList<FieldRow> columnRows = new ArrayList<FieldRow>(mRows.size());
+            for (FieldRow fieldRow : mRows)
+                columnRows.add(columnStore.appendRow(fieldRow));
+            mColumnStore = columnStore;
+            mRows = columnRows;
+        }
+    }
+
+    /**
+     * Replaces the rows of the table with views over the column store
+     * parameter.  This is used to adopt a store that was restored from
+     * a binary snapshot without materializing a <i>CellValue</i> per cell.
+     *
+     * @param aStore Column store (must match the table columns).
+     */
+    public void setColumnStore(DataColumnStore aStore)
+    {
+        if ((aStore != null) && (aStore.columnCount() == columnCount()))
+        {
+            populateOffsetNameMap();
+            mColumnStore = aStore;
+            mRows = aStore.createRowViews();
+            mNewRow = null;
+            int colCount = aStore.columnCount();
+            for (int col = 0; col < colCount; col++)
+            {
+                if (aStore.getColumn(col).assignedCount() > 0)
+                    markColumnAssigned(col);
+            }
+        }
+    }
+
+    /**
+     * Converts a columnar table back to row based storage where each
+     * cell is held in its own <i>CellValue</i> instance.
+     */
+    public void disableColumnStore()
+    {
+        if (mColumnStore != null)
+        {
+            ArrayList<FieldRow> fieldRows = new ArrayList<FieldRow>(mRows.size());
+            for (FieldRow fieldRow : mRows)
+                fieldRows.add(new FieldRow(fieldRow));
+            mColumnStore = null;
+            mRows = fieldRows;
+        }
+    }
+
+    private int columnRowId(FieldRow aRow)
+    {
+        if ((mColumnStore != null) && (aRow instanceof DataColumnRow))
+        {
+            DataColumnRow columnRow = (DataColumnRow) aRow;
+            if (columnRow.getStore() == mColumnStore)
+                return columnRow.getRowId();
+        }
+
+        return -1;
+    }
+
+    private DataColumn nativeColumn(int aColOffset)
+    {
+        if ((mColumnStore != null) && (aColOffset >= 0))
+        {
+            DataColumn dataColumn = mColumnStore.getColumn(aColOffset);
+            if ((dataColumn != null) && (dataColumn.getStorage() != DataColumn.Storage.TEXT))
+                return dataColumn;
+        }
+
+        return null;
+    }
+
     /**
      * Convenience method that identifies the offset of the column that
      * has a field name matching the parameter name.
@@ -670,15 +914,40 @@ public class DataTable
         if (StringUtils.isNotEmpty(aName))
         {
             populateOffsetNameMap();
-            for (int offset = 0; offset < mColumnCount; offset++)
-            {
-                if (mOffsetNameMap[offset].equals(aName))
-                    return offset;
-            }
+            Integer colOffset = mOffsetNameMap.get(aName);
+            if (colOffset != null)
+                return colOffset;
         }
         return -1;
     }
 
+    /**
+     * Returns the offset of the column that has a field name matching
+     * the parameter name.  Hot loops can resolve a column offset once
+     * and then use the <i>ByColumn</i> accessor methods for each row.
+     *
+     * @param aName Field name of column.
+     *
+     * @return Offset of field column or -1 if not found.
+     */
+    public int getOffsetByName(String aName)
+    {
+        return offsetByName(aName);
+    }
+
+    /**
+     * Returns the offset of the column that has a field name matching
+     * the parameter name (case insensitive).
+     *
+     * @param aName Field name of column.
+     *
+     * @return Offset of field column or -1 if not found.
+     */
+    public int getOffsetByNameIgnoreCase(String aName)
+    {
+        return mColumns.getOffsetByNameIgnoreCase(aName);
+    }
+
     private void markColumnAssigned(int aCol)
     {
         if ((aCol >= 0) && (aCol < mColumnCount))
@@ -767,6 +1036,62 @@ public class DataTable
         }
     }
 
+    /**
+     * Returns the cell value of the field row identified by the column
+     * offset (see <code>getOffsetByName()</code>).
+     *
+     * @param aRow Field row instance.
+     * @param aCol Offset into the columns of the table.
+     *
+     * @return Cell value.
+     */
+    public String getValueByColumn(FieldRow aRow, int aCol)
+    {
+        return aRow.getValue(aCol);
+    }
+
+    /**
+     * Returns the cell values of the field row identified by the column
+     * offset (see <code>getOffsetByName()</code>).
+     *
+     * @param aRow Field row instance.
+     * @param aCol Offset into the columns of the table.
+     *
+     * @return List of cell values.
+     */
+    public ArrayList<String> getValuesByColumn(FieldRow aRow, int aCol)
+    {
+        return aRow.getValues(aCol);
+    }
+
+    /**
+     * Assigns a value to the cell of the field row identified by the
+     * column offset (see <code>getOffsetByName()</code>).
+     *
+     * @param aRow Field row instance.
+     * @param aCol Offset into the columns of the table.
+     * @param aValue Value to assign.
+     */
+    public void setValueByColumn(FieldRow aRow, int aCol, String aValue)
+    {
+        markColumnAssigned(aCol);
+        aRow.setValue(aCol, aValue);
+    }
+
+    /**
+     * Assigns a list of values to the cell of the field row identified
+     * by the column offset (see <code>getOffsetByName()</code>).
+     *
+     * @param aRow Field row instance.
+     * @param aCol Offset into the columns of the table.
+     * @param aValues List of values to assign.
+     */
+    public void setValuesByColumn(FieldRow aRow, int aCol, ArrayList<String> aValues)
+    {
+        markColumnAssigned(aCol);
+        aRow.setValues(aCol, aValues);
+    }
+
     /**
      * Returns a newly created data field from the cell at location
      * row, column.
@@ -1704,6 +2029,7 @@ public class DataTable
                                          int aValue1, int aValue2)
     {
         int nativeValue;
+        int rowId;
         FieldRow fieldRow;
         ArrayList<FieldRow> matchingRows = new ArrayList<FieldRow>();
 
@@ -1712,6 +2038,7 @@ public class DataTable
         if ((colOffset != -1) && (rowCount > 0))
         {
             DataField dataField = mColumns.getByOffset(colOffset);
+            DataColumn nativeColumn = nativeColumn(colOffset);
 
             for (int row = 0; row < rowCount; row++)
             {
@@ -1719,7 +2046,11 @@ public class DataTable
 
                 if (dataField.isTypeNumber())
                 {
-                    nativeValue = Field.createInt(fieldRow.getValue(colOffset));
+                    rowId = columnRowId(fieldRow);
+                    if ((nativeColumn != null) && (rowId != -1))
+                        nativeValue = nativeColumn.getInt(rowId);
+                    else
+                        nativeValue = Field.createInt(fieldRow.getValue(colOffset));
                     switch (anOperator)
                     {
                         case EQUAL:
@@ -1789,6 +2120,7 @@ public class DataTable
                                          long aValue1, long aValue2)
     {
         long nativeValue;
+        int rowId;
         FieldRow fieldRow;
         ArrayList<FieldRow> matchingRows = new ArrayList<FieldRow>();
 
@@ -1797,6 +2129,7 @@ public class DataTable
         if ((colOffset != -1) && (rowCount > 0))
         {
             DataField dataField = mColumns.getByOffset(colOffset);
+            DataColumn nativeColumn = nativeColumn(colOffset);
 
             for (int row = 0; row < rowCount; row++)
             {
@@ -1804,7 +2137,11 @@ public class DataTable
 
                 if ((dataField.isTypeNumber()) || (dataField.isTypeDateOrTime()))
                 {
-                    nativeValue = Field.createLong(fieldRow.getValue(colOffset));
+                    rowId = columnRowId(fieldRow);
+                    if ((nativeColumn != null) && (rowId != -1))
+                        nativeValue = nativeColumn.getLong(rowId);
+                    else
+                        nativeValue = Field.createLong(fieldRow.getValue(colOffset));
                     switch (anOperator)
                     {
                         case EQUAL:
@@ -1874,6 +2211,7 @@ public class DataTable
                                          Date aValue1, Date aValue2)
     {
         long nativeValue;
+        int rowId;
         FieldRow fieldRow;
         long longValue1 = aValue1.getTime();
         long longValue2 = aValue2.getTime();
@@ -1884,6 +2222,7 @@ public class DataTable
         if ((colOffset != -1) && (rowCount > 0))
         {
             DataField dataField = mColumns.getByOffset(colOffset);
+            DataColumn nativeColumn = nativeColumn(colOffset);
 
             for (int row = 0; row < rowCount; row++)
             {
@@ -1891,7 +2230,11 @@ public class DataTable
 
                 if (dataField.isTypeDateOrTime())
                 {
-                    nativeValue = Field.createDate(fieldRow.getValue(colOffset)).getTime();
+                    rowId = columnRowId(fieldRow);
+                    if ((nativeColumn != null) && (rowId != -1))
+                        nativeValue = nativeColumn.getLong(rowId);
+                    else
+                        nativeValue = Field.createDate(fieldRow.getValue(colOffset)).getTime();
                     switch (anOperator)
                     {
                         case EQUAL:
@@ -1961,6 +2304,7 @@ public class DataTable
                                          double aValue1, double aValue2)
     {
         double nativeValue;
+        int rowId;
         FieldRow fieldRow;
         ArrayList<FieldRow> matchingRows = new ArrayList<FieldRow>();
 
@@ -1969,6 +2313,7 @@ public class DataTable
         if ((colOffset != -1) && (rowCount > 0))
         {
             DataField dataField = mColumns.getByOffset(colOffset);
+            DataColumn nativeColumn = nativeColumn(colOffset);
 
             for (int row = 0; row < rowCount; row++)
             {
@@ -1976,7 +2321,11 @@ public class DataTable
 
                 if (dataField.isTypeNumber())
                 {
-                    nativeValue = Field.createDouble(fieldRow.getValue(colOffset));
+                    rowId = columnRowId(fieldRow);
+                    if ((nativeColumn != null) && (rowId != -1))
+                        nativeValue = nativeColumn.getDouble(rowId);
+                    else
+                        nativeValue = Field.createDouble(fieldRow.getValue(colOffset));
                     switch (anOperator)
                     {
                         case EQUAL:
@@ -2073,92 +2422,6 @@ public class DataTable
         return findValue(aName, anOperator, doubleValue1, doubleValue2);
     }
 
-    final Comparator<FieldRow> ROW_SORT_ASCENDING = new Comparator<FieldRow>()
-    {
-        public int compare(FieldRow aRow1, FieldRow aRow2)
-        {
-            int colOffset = offsetByName(mSortFieldName);
-            DataField dataField = mColumns.getByOffset(colOffset);
-            String cellValue1 = aRow1.getValue(colOffset);
-            String cellValue2 = aRow2.getValue(colOffset);
-
-            switch (dataField.getType())
-            {
-                case Integer:
-                    Integer integerValue1 = Integer.valueOf(cellValue1);
-                    Integer integerValue2 = Integer.valueOf(cellValue2);
-                    return integerValue1.compareTo(integerValue2);
-                case Long:
-                    Long longValue1 = Long.valueOf(cellValue1);
-                    Long longValue2 = Long.valueOf(cellValue2);
-                    return longValue1.compareTo(longValue2);
-                case Float:
-                    Float floatValue1 = Float.valueOf(cellValue1);
-                    Float floatValue2 = Float.valueOf(cellValue2);
-                    return floatValue1.compareTo(floatValue2);
-                case Double:
-                    Double doubleValue1 = Double.valueOf(cellValue1);
-                    Double doubleValue2 = Double.valueOf(cellValue2);
-                    return doubleValue1.compareTo(doubleValue2);
-                case Boolean:
-                    Boolean booleanValue1 = Field.isValueTrue(cellValue1);
-                    Boolean booleanValue2 = Field.isValueTrue(cellValue2);
-                    return booleanValue1.compareTo(booleanValue2);
-                case Date:
-                case Time:
-                case DateTime:
-                    Date dateValue1 = Field.createDate(cellValue1);
-                    Date dateValue2 = Field.createDate(cellValue2);
-                    return dateValue1.compareTo(dateValue2);
-                default:
-                    return cellValue1.compareToIgnoreCase(cellValue2);
-            }
-        }
-    };
-
-    final Comparator<FieldRow> ROW_SORT_DESCENDING = new Comparator<FieldRow>()
-    {
-        public int compare(FieldRow aRow1, FieldRow aRow2)
-        {
-            int colOffset = offsetByName(mSortFieldName);
-            DataField dataField = mColumns.getByOffset(colOffset);
-            String cellValue1 = aRow1.getValue(colOffset);
-            String cellValue2 = aRow2.getValue(colOffset);
-
-            switch (dataField.getType())
-            {
-                case Integer:
-                    Integer integerValue1 = Integer.valueOf(cellValue1);
-                    Integer integerValue2 = Integer.valueOf(cellValue2);
-                    return integerValue2.compareTo(integerValue1);
-                case Long:
-                    Long longValue1 = Long.valueOf(cellValue1);
-                    Long longValue2 = Long.valueOf(cellValue2);
-                    return longValue2.compareTo(longValue1);
-                case Float:
-                    Float floatValue1 = Float.valueOf(cellValue1);
-                    Float floatValue2 = Float.valueOf(cellValue2);
-                    return floatValue2.compareTo(floatValue1);
-                case Double:
-                    Double doubleValue1 = Double.valueOf(cellValue1);
-                    Double doubleValue2 = Double.valueOf(cellValue2);
-                    return doubleValue2.compareTo(doubleValue1);
-                case Boolean:
-                    Boolean booleanValue1 = Field.isValueTrue(cellValue1);
-                    Boolean booleanValue2 = Field.isValueTrue(cellValue2);
-                    return booleanValue2.compareTo(booleanValue1);
-                case Date:
-                case Time:
-                case DateTime:
-                    Date dateValue1 = Field.createDate(cellValue1);
-                    Date dateValue2 = Field.createDate(cellValue2);
-                    return dateValue2.compareTo(dateValue1);
-                default:
-                    return cellValue2.compareToIgnoreCase(cellValue1);
-            }
-        }
-    };
-
     /**
      * Sorts the rows of the table based on the column name and sort
      * order parameters.
@@ -2167,19 +2430,67 @@ public class DataTable
      * @param anOrder Sort order (ascending, descending).
      */
     public void sortByColumn(String aName, Field.Order anOrder)
+    {
+        sortByColumn(aName, anOrder, false);
+    }
+
+    /**
+     * Sorts the rows of the table based on the column name and sort
+     * order parameters.  The sort key of each row is decoded once
+     * prior to the sort, so no cell parsing occurs during comparisons.
+     *
+     * @param aName Column name.
+     * @param anOrder Sort order (ascending, descending).
+     * @param anIsParallel If <i>true</i>, then the sort will be performed
+     *                     across multiple threads (useful for large tables).
+     */
+    public void sortByColumn(String aName, Field.Order anOrder, boolean anIsParallel)
     {
         int rowCount = rowCount();
         int colOffset = offsetByName(aName);
 
         if ((colOffset != -1) && (rowCount > 1) && (anOrder != Field.Order.UNDEFINED))
         {
-            mSortFieldName = aName;
+            DataRowSorter rowSorter = new DataRowSorter(this);
+            rowSorter.setParallel(anIsParallel);
+            rowSorter.add(aName, anOrder);
+            rowSorter.sort();
+        }
+    }
 
-            if (anOrder == Field.Order.ASCENDING)
-                Collections.sort(mRows, ROW_SORT_ASCENDING);
-            else
-                Collections.sort(mRows, ROW_SORT_DESCENDING);
-            mSortFieldName = StringUtils.EMPTY;
+    /**
+     * Sorts the rows of the table based on the column names and sort
+     * orders in the map parameter.  The map should preserve insertion
+     * order (e.g. <i>LinkedHashMap</i>), since the first column is the
+     * primary sort key and later columns break ties.
+     *
+     * @param aSortColumns Map of column names to sort orders.
+     */
+    public void sortByColumns(Map<String, Field.Order> aSortColumns)
+    {
+        sortByColumns(aSortColumns, false);
+    }
+
+    /**
+     * Sorts the rows of the table based on the column names and sort
+     * orders in the map parameter.  The map should preserve insertion
+     * order (e.g. <i>LinkedHashMap</i>), since the first column is the
+     * primary sort key and later columns break ties.  Columns that are
+     * not defined in the table are ignored.
+     *
+     * @param aSortColumns Map of column names to sort orders.
+     * @param anIsParallel If <i>true</i>, then the sort will be performed
+     *                     across multiple threads (useful for large tables).
+     */
+    public void sortByColumns(Map<String, Field.Order> aSortColumns, boolean anIsParallel)
+    {
+        if ((aSortColumns != null) && (rowCount() > 1))
+        {
+            DataRowSorter rowSorter = new DataRowSorter(this);
+            rowSorter.setParallel(anIsParallel);
+            for (Map.Entry<String, Field.Order> sortEntry : aSortColumns.entrySet())
+                rowSorter.add(sortEntry.getKey(), sortEntry.getValue());
+            rowSorter.sort();
         }
     }
 
@@ -0,0 +1,60 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.base.io;
+
+import com.nridge.core.base.field.data.DataBag;
+
+import java.io.IOException;
+
+/**
+ * The TableStreamInterface receives the rows of a table one at a
+ * time, so that large result sets can be written or processed
+ * without first being materialized as a <i>DataTable</i>.
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public interface TableStreamInterface
+{
+    /**
+     * Starts the stream.  The column bag describes the fields that
+     * rows may contain - a row may be missing some of them.
+     *
+     * @param aColumnBag Column definitions bag.
+     *
+     * @throws IOException I/O related exception.
+     */
+    public void begin(DataBag aColumnBag) throws IOException;
+
+    /**
+     * Accepts the next row in the stream.  The row bag may be reused
+     * by the caller once this method returns.
+     *
+     * @param aRowBag Row bag instance.
+     *
+     * @throws IOException I/O related exception.
+     */
+    public void write(DataBag aRowBag) throws IOException;
+
+    /**
+     * Ends the stream.
+     *
+     * @throws IOException I/O related exception.
+     */
+    public void end() throws IOException;
+}
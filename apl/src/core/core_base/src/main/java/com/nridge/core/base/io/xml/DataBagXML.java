@@ -17,6 +17,7 @@
 
 package com.nridge.core.base.io.xml;
 
+import com.nridge.core.base.field.Field;
 import com.nridge.core.base.field.data.DataBag;
 import com.nridge.core.base.field.data.DataField;
 import com.nridge.core.base.io.IO;
@@ -123,9 +124,11 @@ public class DataBagXML implements DOMInterface
             IOXML.writeAttrNameValue(aPW, featureEntry.getKey(), featureEntry.getValue());
         aPW.printf(">%n");
 
+// A field whose content was spooled to a file has no value but must keep its file reference.
+
         for (DataField dataField : mBag.getFields())
         {
-            if (dataField.isAssigned())
+            if ((dataField.isAssigned()) || (StringUtils.isNotEmpty(dataField.getFeature(Field.FEATURE_CONTENT_FILE))))
             {
                 mDataFieldXML.saveNode(aPW, anIndentAmount + 1);
                 mDataFieldXML.saveAttr(aPW, dataField);
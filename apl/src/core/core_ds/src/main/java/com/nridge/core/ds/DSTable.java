@@ -24,6 +24,7 @@ import com.nridge.core.base.field.data.DataBag;
 import com.nridge.core.base.field.data.DataTable;
 import com.nridge.core.base.io.xml.DataBagXML;
 import com.nridge.core.ds.io.xml.SmartGWTXML;
+import com.nridge.core.io.bin.DataTableBinary;
 import com.nridge.core.io.csv.DataTableCSV;
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.SAXException;
@@ -392,7 +393,8 @@ public abstract class DSTable
      * Saves the content of the internally managed cache table
      * to an XML file.  The name of the file is derived from
      * the data of the data source and the location of the
-     * file is specified as a parameter.
+     * file is specified as a parameter.  If the file name ends with
+     * a <i>.bin</i> extension, then a binary snapshot is written instead.
      *
      * @param aPathFileName Path/File name where the file should be written.
      *
@@ -402,15 +404,24 @@ public abstract class DSTable
     public void saveCache(String aPathFileName)
         throws IOException, DSException
     {
-        DataTableCSV dataTableCSV = new DataTableCSV(mCacheTable);
-        dataTableCSV.save(aPathFileName, true);
+        if (StringUtils.endsWithIgnoreCase(aPathFileName, "." + DataTableBinary.FILE_EXTENSION))
+        {
+            DataTableBinary dataTableBinary = new DataTableBinary(mCacheTable);
+            dataTableBinary.save(aPathFileName);
+        }
+        else
+        {
+            DataTableCSV dataTableCSV = new DataTableCSV(mCacheTable);
+            dataTableCSV.save(aPathFileName, true);
+        }
     }
 
     /**
      * Loads the data source cache table (formatted in XML) into
      * memory. The name of the file is derived from the data of
      * the data source and the location of the file is specified
-     * as a parameter.
+     * as a parameter.  If the file name ends with a <i>.bin</i>
+     * extension, then it is loaded as a binary snapshot.
      *
      * @param aPathFileName Path/File name where the XML file should be
      *                      loaded from.
@@ -421,8 +432,16 @@ public abstract class DSTable
     public void loadCache(String aPathFileName)
         throws IOException, DSException
     {
-        DataTableCSV dataTableCSV = new DataTableCSV(mCacheTable);
-        dataTableCSV.load(aPathFileName, true);
+        if (StringUtils.endsWithIgnoreCase(aPathFileName, "." + DataTableBinary.FILE_EXTENSION))
+        {
+            DataTableBinary dataTableBinary = new DataTableBinary(mCacheTable);
+            dataTableBinary.load(aPathFileName);
+        }
+        else
+        {
+            DataTableCSV dataTableCSV = new DataTableCSV(mCacheTable);
+            dataTableCSV.load(aPathFileName, true);
+        }
     }
 
 // Override this if you have a specialized scenario
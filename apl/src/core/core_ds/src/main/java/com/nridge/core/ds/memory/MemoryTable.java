@@ -19,6 +19,8 @@ package com.nridge.core.ds.memory;
 
 import com.nridge.core.app.mgr.AppMgr;
 import com.nridge.core.base.ds.DSCriteria;
+import com.nridge.core.base.ds.DSCriteriaEvaluator;
+import com.nridge.core.base.ds.DSCriterion;
 import com.nridge.core.base.ds.DSCriterionEntry;
 import com.nridge.core.base.ds.DSException;
 import com.nridge.core.base.field.Field;
@@ -27,12 +29,22 @@ import com.nridge.core.base.field.data.DataBag;
 import com.nridge.core.base.field.data.DataField;
 import com.nridge.core.base.field.data.DataTable;
 import com.nridge.core.ds.DSTable;
+import com.nridge.core.io.bin.DataTableBinary;
 import com.nridge.core.io.csv.DataTableCSV;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The MemoryTable data source manages a row x column matrix of
@@ -51,6 +63,13 @@ public class MemoryTable extends DSTable
     private final String DS_TYPE_NAME = "MemoryTable";
 
     protected DataTable mValueTable;
+    private int mSequenceValue;
+    private int mSequenceRowCount;
+    private boolean mIsSequenceCurrent;
+    private ArrayList<FieldRow> mSequenceRows;
+    private long mNextRowOrdinal;
+    private HashMap<String, MemoryTableIndex> mIndexes = new HashMap<String, MemoryTableIndex>();
+    private IdentityHashMap<FieldRow, Long> mRowOrdinals = new IdentityHashMap<FieldRow, Long>();
 
     /**
      * Constructor accepts an application manager parameter and initializes
@@ -105,6 +124,14 @@ public class MemoryTable extends DSTable
     {
         super(anAppMgr, aSrcDS);
         mValueTable = new DataTable(aSrcDS.mValueTable);
+        DataBag valueBag = mValueTable.getColumnBag();
+        for (MemoryTableIndex srcIndex : aSrcDS.mIndexes.values())
+        {
+            DataField dataField = valueBag.getFieldByName(srcIndex.getFieldName());
+            if (dataField != null)
+                mIndexes.put(dataField.getName(), new MemoryTableIndex(dataField, srcIndex.getType()));
+        }
+        rebuildIndexes();
     }
 
     /**
@@ -131,6 +158,14 @@ public class MemoryTable extends DSTable
      * derived from the data of the data source and the location of
      * the file is specified as a parameter.
      *
+     * <p>
+     * <b>Note:</b> If a binary snapshot (see <code>saveSnapshot()</code>)
+     * exists in the path and it is more recent than the CSV file, then
+     * the snapshot will be loaded instead.  When the modification times
+     * are equal (file systems often record them in whole seconds), the
+     * CSV file is treated as the authoritative source.
+     * </p>
+     *
      * @param aPathName Path name where the XML file should be
      *                  loaded from.
      * @throws java.io.IOException                 I/O related exception.
@@ -140,12 +175,61 @@ public class MemoryTable extends DSTable
         throws IOException, DSException
     {
         String pathFileName = createValuePathFileName(aPathName, "csv");
-        if (mValueTable.columnCount() == 0)
-            mValueTable = new DataTable(getCacheBag());
+        File csvFile = new File(pathFileName);
+        File snapshotFile = new File(createValuePathFileName(aPathName, DataTableBinary.FILE_EXTENSION));
+        if ((snapshotFile.exists()) && ((! csvFile.exists()) || (snapshotFile.lastModified() > csvFile.lastModified())))
+            loadSnapshot(aPathName);
         else
-            mValueTable.emptyRows();
-        DataTableCSV tableCSV = new DataTableCSV(mValueTable);
-        tableCSV.load(pathFileName, true);
+        {
+            if (mValueTable.columnCount() == 0)
+                mValueTable = new DataTable(getCacheBag());
+            else
+                mValueTable.emptyRows();
+            DataTableCSV tableCSV = new DataTableCSV(mValueTable);
+            tableCSV.load(pathFileName, true);
+            rebuildIndexes();
+        }
+    }
+
+    /**
+     * Stores the values of the underlying data source as a binary
+     * snapshot (see {@link DataTableBinary}) to the file system.  The
+     * name of the file is derived from the data of the data source
+     * and the location of the file is specified as a parameter.
+     *
+     * @param aPathName Path name where the file should be written.
+     * @throws java.io.IOException                 I/O related exception.
+     * @throws com.nridge.core.base.ds.DSException Data source related exception.
+     */
+    public void saveSnapshot(String aPathName)
+        throws IOException, DSException
+    {
+        String pathFileName = createValuePathFileName(aPathName, DataTableBinary.FILE_EXTENSION);
+        DataTableBinary tableBinary = new DataTableBinary(mValueTable);
+        tableBinary.save(pathFileName);
+    }
+
+    /**
+     * Loads the binary snapshot of a (formally saved) data source
+     * into memory.  The snapshot file is memory mapped and its column
+     * blocks are copied directly into a columnar value table, so this
+     * method is considerably faster than <code>loadValues()</code> for
+     * large tables.
+     *
+     * @param aPathName Path name where the snapshot file should be
+     *                  loaded from.
+     * @throws java.io.IOException                 I/O related exception.
+     * @throws com.nridge.core.base.ds.DSException Data source related exception.
+     */
+    public void loadSnapshot(String aPathName)
+        throws IOException, DSException
+    {
+        String pathFileName = createValuePathFileName(aPathName, DataTableBinary.FILE_EXTENSION);
+        DataTable valueTable = new DataTable(getCacheBag());
+        DataTableBinary tableBinary = new DataTableBinary(valueTable);
+        tableBinary.load(pathFileName);
+        mValueTable = valueTable;
+        rebuildIndexes();
     }
 
     /**
@@ -159,6 +243,7 @@ public class MemoryTable extends DSTable
         {
             mValueTable = new DataTable(aBag);
             setDefinedFlag(true);
+            rebuildIndexes();
         }
     }
 
@@ -174,6 +259,7 @@ public class MemoryTable extends DSTable
             setCacheBag(aTable.getColumnBag());
             mValueTable = new DataTable(aTable);
             setDefinedFlag(true);
+            rebuildIndexes();
         }
     }
 
@@ -218,65 +304,320 @@ public class MemoryTable extends DSTable
         return mValueTable;
     }
 
-    private DataTable query(DSCriteria aDSCriteria)
+    /**
+     * Creates a secondary index over the column identified by the field
+     * name parameter.  A <i>HASH</i> index accelerates <i>EQUAL</i> and
+     * <i>IN</i> criteria, while a <i>SORTED</i> index also accelerates
+     * the <i>GREATER_THAN</i>, <i>LESS_THAN</i> and <i>BETWEEN</i>
+     * family of operators.  Indexes are maintained by the add, update
+     * and delete methods and used by the query related count and
+     * fetch methods.
+     * <p>
+     * <b>Note:</b> The primary key field is always hash indexed and
+     * fields with the <i>Field.FEATURE_IS_INDEXED</i> feature enabled
+     * are indexed automatically.  If you change the rows of the value
+     * table directly, then you must call <code>rebuildIndexes()</code>
+     * (which also resets the primary key sequence).
+     * </p>
+     *
+     * @param aFieldName Name of the column to index.
+     * @param aType Index type.
+     *
+     * @throws DSException If the column is not defined in the value table.
+     */
+    public void createIndex(String aFieldName, MemoryTableIndex.Type aType)
         throws DSException
     {
-        DataTable dataTable;
-        Logger appLogger = mAppMgr.getLogger(this, "query");
+        DataField dataField = mValueTable.getColumnBag().getFieldByName(aFieldName);
+        if (dataField == null)
+            throw new DSException(String.format("%s: Unable to index undefined field '%s'.", DS_TYPE_NAME, aFieldName));
 
-        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+        MemoryTableIndex tableIndex = new MemoryTableIndex(dataField, aType);
+        tableIndex.rebuild(mValueTable);
+        mIndexes.put(aFieldName, tableIndex);
+    }
+
+    /**
+     * Removes the secondary index for the column identified by the
+     * field name parameter.
+     *
+     * @param aFieldName Name of the indexed column.
+     */
+    public void dropIndex(String aFieldName)
+    {
+        mIndexes.remove(aFieldName);
+    }
+
+    /**
+     * Returns the secondary index for the column identified by the
+     * field name parameter.
+     *
+     * @param aFieldName Name of the indexed column.
+     *
+     * @return Memory table index or <i>null</i> if the column is not indexed.
+     */
+    public MemoryTableIndex getIndex(String aFieldName)
+    {
+        return mIndexes.get(aFieldName);
+    }
+
+    /**
+     * Rebuilds every secondary index from the current rows of the value
+     * table.  Indexes over columns that are no longer defined are
+     * dropped and indexes declared by field features are added.  The
+     * primary key sequence is recalculated on its next use.
+     */
+    public void rebuildIndexes()
+    {
+        DataField dataField;
+        MemoryTableIndex tableIndex;
+
+        mIsSequenceCurrent = false;
 
-        if ((aDSCriteria != null) && (aDSCriteria.isSimple()))
+        mRowOrdinals.clear();
+        for (FieldRow fieldRow : mValueTable.getRows())
+            mRowOrdinals.put(fieldRow, mNextRowOrdinal++);
+
+        DataBag valueBag = mValueTable.getColumnBag();
+        Iterator<MemoryTableIndex> indexIterator = mIndexes.values().iterator();
+        while (indexIterator.hasNext())
         {
-            DataField dataField;
-            ArrayList<FieldRow> fieldRows;
-            dataTable = new DataTable(getValueTable());
+            tableIndex = indexIterator.next();
+            dataField = valueBag.getFieldByName(tableIndex.getFieldName());
+            if (dataField == null)
+                indexIterator.remove();
+            else
+                tableIndex.rebuild(mValueTable);
+        }
 
-            for (DSCriterionEntry ce : aDSCriteria.getCriterionEntries())
+        for (DataField bagField : valueBag.getFields())
+        {
+            if (mIndexes.containsKey(bagField.getName()))
+                continue;
+            if (bagField.isFeatureTrue(Field.FEATURE_IS_PRIMARY_KEY))
+                tableIndex = new MemoryTableIndex(bagField, MemoryTableIndex.Type.HASH);
+            else if (bagField.isFeatureTrue(Field.FEATURE_IS_INDEXED))
             {
-                dataField = ce.getField();
-                switch (dataField.getType())
-                {
-                    case Integer:
-                        fieldRows = dataTable.findValue(dataField.getName(), ce.getLogicalOperator(),
-                                                        dataField.getValueAsInt(), 0);
-                        break;
-                    case Long:
-                        fieldRows = dataTable.findValue(dataField.getName(), ce.getLogicalOperator(),
-                                                        dataField.getValueAsLong(), 0);
-                        break;
-                    case Float:
-                        fieldRows = dataTable.findValue(dataField.getName(), ce.getLogicalOperator(),
-                                                        dataField.getValueAsFloat(), 0.0);
-                        break;
-                    case Double:
-                        fieldRows = dataTable.findValue(dataField.getName(), ce.getLogicalOperator(),
-                                                        dataField.getValueAsDouble(), 0.0);
-                        break;
-                    case Date:
-                    case DateTime:
-                        fieldRows = dataTable.findValue(dataField.getName(), ce.getLogicalOperator(),
-                                                        dataField.getValueAsDate(), null);
-                        break;
-                    default:
-                        if (ce.isCaseInsensitive())
-                            fieldRows = dataTable.findValueInsensitive(dataField.getName(), ce.getLogicalOperator(),
-                                                                       dataField.getValue());
-                        else
-                            fieldRows = dataTable.findValue(dataField.getName(), ce.getLogicalOperator(),
-                                                            dataField.getValue());
-                        break;
-                }
+                if ((bagField.isTypeNumber()) || (bagField.isTypeDateOrTime()))
+                    tableIndex = new MemoryTableIndex(bagField, MemoryTableIndex.Type.SORTED);
+                else
+                    tableIndex = new MemoryTableIndex(bagField, MemoryTableIndex.Type.HASH);
+            }
+            else
+                continue;
+            tableIndex.rebuild(mValueTable);
+            mIndexes.put(bagField.getName(), tableIndex);
+        }
+    }
+
+    private void indexRow(FieldRow aRow)
+    {
+        for (MemoryTableIndex tableIndex : mIndexes.values())
+            tableIndex.add(aRow, mValueTable.getValueByName(aRow, tableIndex.getFieldName()));
+    }
+
+    private void unindexRow(FieldRow aRow)
+    {
+        for (MemoryTableIndex tableIndex : mIndexes.values())
+            tableIndex.remove(aRow, mValueTable.getValueByName(aRow, tableIndex.getFieldName()));
+    }
+
+    private void appendedRow(FieldRow aRow)
+    {
+        mSequenceRowCount = mValueTable.rowCount();
+        mRowOrdinals.put(aRow, mNextRowOrdinal++);
+        if (mIndexes.size() > 0)
+            indexRow(aRow);
+    }
+
+    private FieldRow locateRow(DataField aPrimaryKeyField, String aValue)
+    {
+        ArrayList<FieldRow> fieldRows;
+
+        MemoryTableIndex tableIndex = mIndexes.get(aPrimaryKeyField.getName());
+        if (tableIndex != null)
+            fieldRows = tableIndex.lookup(Field.Operator.EQUAL, new ArrayList<String>(Collections.singletonList(aValue)));
+        else
+            fieldRows = mValueTable.findValue(aPrimaryKeyField.getName(), Field.Operator.EQUAL, aValue);
+
+        if ((fieldRows != null) && (fieldRows.size() == 1))
+            return fieldRows.get(0);
+        else
+            return null;
+    }
+
+/* Rows are assigned ascending ordinals as they are appended and deletes preserve the
+order of the remaining rows, so the value rows are sorted by ordinal and a row can be
+located with a binary search.  Rows added directly to the value table (without a call
+to rebuildIndexes()) have no ordinal, in which case the row is located with a scan. */
+
+    private int rowOffset(FieldRow aRow, Long aRowOrdinal)
+    {
+        Long midOrdinal;
+        FieldRow midRow;
+
+        ArrayList<FieldRow> valueRows = mValueTable.getRows();
+        if (aRowOrdinal != null)
+        {
+            int midOffset;
+            int lowOffset = 0;
+            int highOffset = valueRows.size() - 1;
+            while (lowOffset <= highOffset)
+            {
+                midOffset = (lowOffset + highOffset) >>> 1;
+                midRow = valueRows.get(midOffset);
+                midOrdinal = mRowOrdinals.get(midRow);
+                if (midOrdinal == null)
+                    break;
+                else if (midOrdinal < aRowOrdinal)
+                    lowOffset = midOffset + 1;
+                else if (midOrdinal > aRowOrdinal)
+                    highOffset = midOffset - 1;
+                else if (midRow == aRow)
+                    return midOffset;
+                else
+                    break;
+            }
+        }
 
-                if (fieldRows != null)
+        int rowCount = valueRows.size();
+        for (int row = rowCount - 1; row >= 0; row--)
+        {
+            if (valueRows.get(row) == aRow)
+                return row;
+        }
+
+        return -1;
+    }
+
+/* A columnar value table compacts its store as rows are removed, which replaces its
+row instances, so the indexes are rebuilt whenever that happens. */
+
+    private void removeValueRow(FieldRow aRow)
+    {
+        int rowOffset = rowOffset(aRow, mRowOrdinals.remove(aRow));
+        if (rowOffset != -1)
+        {
+            ArrayList<FieldRow> valueRows = mValueTable.getRows();
+            mValueTable.removeRow(rowOffset);
+            if (mValueTable.getRows() != valueRows)
+                rebuildIndexes();
+            mIsSequenceCurrent = false;
+        }
+    }
+
+    private ArrayList<FieldRow> indexedRows(DSCriteria aDSCriteria)
+    {
+        DSCriterion dsCriterion;
+        MemoryTableIndex tableIndex;
+        ArrayList<FieldRow> candidateRows = null;
+        ArrayList<FieldRow> fieldRows;
+
+        for (DSCriterionEntry ce : aDSCriteria.getCriterionEntries())
+        {
+            dsCriterion = ce.getCriterion();
+            tableIndex = mIndexes.get(dsCriterion.getName());
+            if ((tableIndex == null) || (dsCriterion.isCaseInsensitive()) ||
+                (! tableIndex.isSupported(dsCriterion.getLogicalOperator())))
+                continue;
+
+            fieldRows = tableIndex.lookup(dsCriterion.getLogicalOperator(), dsCriterion.getValues());
+            if (fieldRows == null)
+                continue;
+            if (candidateRows == null)
+                candidateRows = fieldRows;
+            else
+            {
+                ArrayList<FieldRow> smallRows, largeRows;
+                if (fieldRows.size() < candidateRows.size())
                 {
-                    dataTable.setRows(fieldRows);
-                    if (fieldRows.size() == 0)
-                        break;
+                    smallRows = fieldRows;
+                    largeRows = candidateRows;
                 }
                 else
-                    break;
+                {
+                    smallRows = candidateRows;
+                    largeRows = fieldRows;
+                }
+                Set<FieldRow> largeSet = Collections.newSetFromMap(new IdentityHashMap<FieldRow, Boolean>(largeRows.size()));
+                largeSet.addAll(largeRows);
+                candidateRows = new ArrayList<FieldRow>();
+                for (FieldRow fieldRow : smallRows)
+                {
+                    if (largeSet.contains(fieldRow))
+                        candidateRows.add(fieldRow);
+                }
             }
+            if (candidateRows.size() == 0)
+                break;
+        }
+
+        return candidateRows;
+    }
+
+    private DataTable candidateTable(DSCriteria aDSCriteria)
+    {
+        ArrayList<FieldRow> candidateRows = null;
+        if (aDSCriteria.isSimple())
+            candidateRows = indexedRows(aDSCriteria);
+        if (candidateRows == null)
+            return mValueTable;
+
+// Index lookups return rows in key order, so the candidates are restored to table order (by row ordinal) to keep paging identical to a scan.
+
+        DataTable candidateTable = new DataTable(mValueTable.getColumnBag());
+        if ((candidateRows.size() > 1) && (! mRowOrdinals.keySet().containsAll(candidateRows)))
+        {
+            Set<FieldRow> candidateSet = Collections.newSetFromMap(new IdentityHashMap<FieldRow, Boolean>(candidateRows.size()));
+            candidateSet.addAll(candidateRows);
+            ArrayList<FieldRow> orderedRows = candidateTable.getRows();
+            for (FieldRow fieldRow : mValueTable.getRows())
+            {
+                if (candidateSet.contains(fieldRow))
+                    orderedRows.add(fieldRow);
+            }
+        }
+        else
+        {
+            if (candidateRows.size() > 1)
+            {
+                Collections.sort(candidateRows, new Comparator<FieldRow>()
+                {
+                    @Override
+                    public int compare(FieldRow aRow1, FieldRow aRow2)
+                    {
+                        return Long.compare(mRowOrdinals.get(aRow1), mRowOrdinals.get(aRow2));
+                    }
+                });
+            }
+            candidateTable.getRows().addAll(candidateRows);
+        }
+
+        return candidateTable;
+    }
+
+    private BitSet evaluate(DataTable aCandidateTable, DSCriteria aDSCriteria)
+        throws DSException
+    {
+        DSCriteriaEvaluator criteriaEvaluator = new DSCriteriaEvaluator(mValueTable.getColumnBag(), aDSCriteria);
+        return criteriaEvaluator.evaluate(aCandidateTable);
+    }
+
+    private DataTable query(DSCriteria aDSCriteria, int anOffset, int aLimit)
+        throws DSException
+    {
+        DataTable dataTable;
+        Logger appLogger = mAppMgr.getLogger(this, "query");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+// The matching rows are returned as copy-on-write views, so only the requested page is wrapped.
+
+        if (aDSCriteria != null)
+        {
+            DataTable candidateTable = candidateTable(aDSCriteria);
+            dataTable = candidateTable.createView(evaluate(candidateTable, aDSCriteria), anOffset, aLimit);
+            dataTable.setName(mValueTable.getName());
         }
         else
             dataTable = new DataTable(getCacheBag());
@@ -309,7 +650,8 @@ public class MemoryTable extends DSTable
 
     /**
      * Returns a count of rows that match the <i>DSCriteria</i> specified
-     * in the parameter.
+     * in the parameter.  The count is the cardinality of the matching
+     * row bitmap, so no rows are materialized.
      *
      * @param aDSCriteria Data source criteria.
      *
@@ -321,15 +663,17 @@ public class MemoryTable extends DSTable
     public int count(DSCriteria aDSCriteria)
         throws DSException
     {
+        int rowCount = 0;
         Logger appLogger = mAppMgr.getLogger(this, "count");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        mCacheTable = query(aDSCriteria);
+        if (aDSCriteria != null)
+            rowCount = evaluate(candidateTable(aDSCriteria), aDSCriteria).cardinality();
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 
-        return mCacheTable.rowCount();
+        return rowCount;
     }
 
     /**
@@ -389,7 +733,7 @@ public class MemoryTable extends DSTable
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        mCacheTable = query(aDSCriteria);
+        mCacheTable = new DataTable(query(aDSCriteria, 0, Integer.MAX_VALUE));
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 
@@ -402,6 +746,13 @@ public class MemoryTable extends DSTable
      * addition, this method offers a paging mechanism where the
      * starting offset and a fetch limit can be applied to each
      * content fetch query.
+     * <p>
+     * <b>Note:</b> The rows of the returned table are copy-on-write
+     * views of the stored rows (see <code>DataTable.createView()</code>),
+     * so a page costs time proportional to its limit rather than the
+     * number of matching rows.  Rows changed by the caller are copied
+     * and never alter the stored rows.
+     * </p>
      *
      * @param aDSCriteria Data source criteria.
      * @param anOffset    Starting offset into the matching content rows.
@@ -421,28 +772,92 @@ public class MemoryTable extends DSTable
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        fetch(aDSCriteria);
+        mCacheTable = query(aDSCriteria, anOffset, aLimit);
 
-        anOffset = Math.max(anOffset, 0);
-        aLimit = Math.min(anOffset+aLimit, mCacheTable.rowCount());
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 
-        ArrayList<FieldRow> allRows = mCacheTable.getRows();
-        ArrayList<FieldRow> newRows = new ArrayList<FieldRow>();
+        return mCacheTable;
+    }
 
-        for (int row = anOffset; row < aLimit; row++)
-            newRows.add(allRows.get(row));
+    private int sequenceFeature(DataField aPrimaryKeyField, String aName)
+    {
+        if (aPrimaryKeyField.isFeatureAssigned(aName))
+            return aPrimaryKeyField.getFeatureAsInt(aName);
+        else
+            return 1;
+    }
 
-        mCacheTable.setRows(newRows);
+/* The sequence is recalculated from the value rows whenever it has been invalidated
+by a delete, a load or rebuildIndexes(), or when the row list or its size no longer
+matches the one the sequence last saw (i.e. the value table was changed directly). */
 
-        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    private int nextSequenceValue(DataField aPrimaryKeyField)
+    {
+        int increment = sequenceFeature(aPrimaryKeyField, Field.FEATURE_SEQUENCE_INCREMENT);
+        if ((! mIsSequenceCurrent) || (mValueTable.getRows() != mSequenceRows) ||
+            (mValueTable.rowCount() != mSequenceRowCount))
+        {
+            String cellValue;
 
-        return mCacheTable;
+            int maxValue = 0;
+            boolean isEmpty = true;
+            int colOffset = mValueTable.getColumnBag().getOffsetByName(aPrimaryKeyField.getName());
+            for (FieldRow fieldRow : mValueTable.getRows())
+            {
+                cellValue = fieldRow.getValue(colOffset);
+                if (StringUtils.isNotEmpty(cellValue))
+                {
+                    try
+                    {
+                        if (isEmpty)
+                            maxValue = Integer.parseInt(cellValue);
+                        else
+                            maxValue = Math.max(maxValue, Integer.parseInt(cellValue));
+                        isEmpty = false;
+                    }
+                    catch (NumberFormatException ignored)
+                    {
+                    }
+                }
+            }
+            if (isEmpty)
+                mSequenceValue = sequenceFeature(aPrimaryKeyField, Field.FEATURE_SEQUENCE_SEED) - increment;
+            else
+                mSequenceValue = maxValue;
+            mSequenceRows = mValueTable.getRows();
+            mSequenceRowCount = mValueTable.rowCount();
+            mIsSequenceCurrent = true;
+        }
+        mSequenceValue += increment;
+
+        return mSequenceValue;
+    }
+
+    private void appendBag(DataBag aBag, DataField aPrimaryKeyField)
+    {
+        if (aPrimaryKeyField != null)
+        {
+            DataField primaryKeyField = aBag.getPrimaryKeyField();
+            if (primaryKeyField != null)
+                primaryKeyField.setValue(nextSequenceValue(aPrimaryKeyField));
+        }
+
+        mValueTable.addRow(aBag);
+        appendedRow(mValueTable.getRow(mValueTable.rowCount() - 1));
     }
 
     /**
      * Adds the field values captured in the <i>DataBag</i> to
      * the content source.  The fields must be derived from the
      * same collection defined in the cache schema definition.
+     * <p>
+     * <b>Note:</b> If a primary key field is designated, then it is
+     * assigned the next value of a sequence that honors the
+     * <i>Field.FEATURE_SEQUENCE_SEED</i> and <i>Field.FEATURE_SEQUENCE_INCREMENT</i>
+     * features.  The sequence is tracked incrementally and is only
+     * recalculated after rows are deleted, the value table is replaced
+     * or loaded, or its rows are changed directly.
+     * </p>
      *
      * @param aBag Bag of field values to store.
      *
@@ -456,27 +871,86 @@ public class MemoryTable extends DSTable
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-// Calculate our max primary key value.
+        appendBag(aBag, mValueTable.getColumnBag().getPrimaryKeyField());
 
-        DataBag persistBag = mValueTable.getColumnBag();
-        DataField primaryKeyField = persistBag.getPrimaryKeyField();
-        if (primaryKeyField != null)
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    /**
+     * Adds the field values captured in the list of <i>DataBag</i>
+     * instances to the content source.  The primary key sequence is
+     * resolved once for the entire list, so each bag is appended in
+     * constant time.
+     *
+     * @param aBags List of bags of field values to store.
+     *
+     * @throws com.nridge.core.base.ds.DSException Data source related exception.
+     */
+    public void addAll(List<DataBag> aBags)
+        throws DSException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "addAll");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        if (aBags != null)
         {
-            int maxPrimaryValue = 0;
-            DataField persistField;
-            int rowCount = mValueTable.rowCount();
-            for (int row = 0; row < rowCount; row++)
+            DataField primaryKeyField = mValueTable.getColumnBag().getPrimaryKeyField();
+            for (DataBag dataBag : aBags)
+                appendBag(dataBag, primaryKeyField);
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    /**
+     * Adds the rows of the <i>DataTable</i> to the content source.
+     * Columns are matched by name and source columns that are not
+     * defined in the value table are ignored.  If the value table
+     * designates a primary key field, then each appended row is
+     * assigned the next value of the sequence.
+     *
+     * @param aTable Table of field values to store.
+     *
+     * @throws com.nridge.core.base.ds.DSException Data source related exception.
+     */
+    public void addAll(DataTable aTable)
+        throws DSException
+    {
+        FieldRow fieldRow;
+        Logger appLogger = mAppMgr.getLogger(this, "addAll");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        if (aTable != null)
+        {
+            DataBag valueBag = mValueTable.getColumnBag();
+            DataBag srcBag = aTable.getColumnBag();
+            int colCount = valueBag.count();
+            int[] srcOffsets = new int[colCount];
+            for (int col = 0; col < colCount; col++)
+                srcOffsets[col] = srcBag.getOffsetByName(valueBag.getByOffset(col).getName());
+
+            int pkOffset = -1;
+            DataField primaryKeyField = valueBag.getPrimaryKeyField();
+            if (primaryKeyField != null)
+                pkOffset = valueBag.getOffsetByName(primaryKeyField.getName());
+
+            for (FieldRow srcRow : aTable.getRows())
             {
-                persistField = mValueTable.getFieldByRowName(row, primaryKeyField.getName());
-                maxPrimaryValue = Math.max(maxPrimaryValue, persistField.getValueAsInt());
+                fieldRow = mValueTable.newRow();
+                for (int col = 0; col < colCount; col++)
+                {
+                    if ((srcOffsets[col] != -1) && (srcRow.cellValueCount(srcOffsets[col]) > 0))
+                        fieldRow.setValues(col, srcRow.getValues(srcOffsets[col]));
+                }
+                if (pkOffset != -1)
+                    fieldRow.setValue(pkOffset, Integer.toString(nextSequenceValue(primaryKeyField)));
+                mValueTable.addRow(fieldRow);
+                appendedRow(mValueTable.getRow(mValueTable.rowCount() - 1));
             }
-            primaryKeyField = aBag.getPrimaryKeyField();
-            if (primaryKeyField != null)
-                primaryKeyField.setValue(maxPrimaryValue+1);
         }
 
-        mValueTable.addRow(aBag);
-
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
@@ -487,7 +961,9 @@ public class MemoryTable extends DSTable
      * <p>
      * <b>Note:</b> The bag must designate a field as a primary
      * key and that value must be assigned prior to using this
-     * method.
+     * method.  The stored row is replaced by an updated copy, so
+     * rows of tables previously returned by the fetch methods are
+     * never changed by an update.
      * </p>
      *
      * @param aBag Bag of field values to update.
@@ -506,13 +982,24 @@ public class MemoryTable extends DSTable
         DataField primaryKeyField = aBag.getPrimaryKeyField();
         if (primaryKeyField != null)
         {
-            ArrayList<FieldRow> fieldRows = mValueTable.findValue(primaryKeyField.getName(), Field.Operator.EQUAL, aBag.getValueAsString(primaryKeyField.getName()));
-            if ((fieldRows != null) && (fieldRows.size() == 1))
+            FieldRow fieldRow = locateRow(primaryKeyField, aBag.getValueAsString(primaryKeyField.getName()));
+            if (fieldRow != null)
             {
-                FieldRow fieldRow = fieldRows.get(0);
-                for (DataField dataField : aBag.getFields())
-                    mValueTable.setValueByName(fieldRow, dataField.getName(), dataField.getValue());
-                isUpdated = true;
+                Long rowOrdinal = mRowOrdinals.get(fieldRow);
+                int rowOffset = rowOffset(fieldRow, rowOrdinal);
+                if (rowOffset != -1)
+                {
+                    FieldRow updatedRow = new FieldRow(fieldRow);
+                    for (DataField dataField : aBag.getFields())
+                        mValueTable.setValueByName(updatedRow, dataField.getName(), dataField.getValue());
+                    unindexRow(fieldRow);
+                    mValueTable.getRows().set(rowOffset, updatedRow);
+                    mRowOrdinals.remove(fieldRow);
+                    if (rowOrdinal != null)
+                        mRowOrdinals.put(updatedRow, rowOrdinal);
+                    indexRow(updatedRow);
+                    isUpdated = true;
+                }
             }
         }
 
@@ -549,11 +1036,11 @@ public class MemoryTable extends DSTable
         DataField primaryKeyField = aBag.getPrimaryKeyField();
         if (primaryKeyField != null)
         {
-            ArrayList<FieldRow> fieldRows = mValueTable.findValue(primaryKeyField.getName(), Field.Operator.EQUAL, aBag.getValueAsString(primaryKeyField.getName()));
-            if ((fieldRows != null) && (fieldRows.size() == 1))
+            FieldRow fieldRow = locateRow(primaryKeyField, aBag.getValueAsString(primaryKeyField.getName()));
+            if (fieldRow != null)
             {
-                FieldRow fieldRow = fieldRows.get(0);
-                mValueTable.removeRow(fieldRow);
+                unindexRow(fieldRow);
+                removeValueRow(fieldRow);
                 isDeleted = true;
             }
         }
@@ -0,0 +1,433 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.ds.memory;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.FieldRow;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.field.data.DataTable;
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A MemoryTableIndex is a secondary index over a single column of a
+ * {@link MemoryTable}.  A <i>HASH</i> index maps each cell value to
+ * its rows and resolves <i>EQUAL</i> and <i>IN</i> criteria.  Both
+ * index types key numeric, boolean and date cells by their native
+ * value, so "007" and "7" share a key just as they compare equal
+ * in a criteria evaluation.  A
+ * <i>SORTED</i> index keys each row by the native value of the
+ * column (numbers, dates or text) and additionally resolves the
+ * <i>GREATER_THAN</i>, <i>LESS_THAN</i> and <i>BETWEEN</i> family of
+ * operators.
+ * <p>
+ * <b>Note:</b> Rows are tracked by reference, so the index must be
+ * maintained through the owning memory table's add, update and
+ * delete methods.  Rows resolved through an index are returned in
+ * index order (the owning table restores its own row order).
+ * </p>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class MemoryTableIndex
+{
+    public static enum Type
+    {
+        HASH, SORTED
+    }
+
+    private Type mType;
+    private String mFieldName;
+    private Field.Type mFieldType;
+    private HashMap<Object, ArrayList<FieldRow>> mHashMap;
+    private TreeMap<Object, ArrayList<FieldRow>> mSortedMap;
+    private transient SimpleDateFormat mDateFormat;
+
+    /**
+     * Constructor accepts the column field and index type parameters
+     * and initializes the index accordingly.
+     *
+     * @param aField Column field.
+     * @param aType Index type.
+     */
+    public MemoryTableIndex(DataField aField, Type aType)
+    {
+        mType = aType;
+        mFieldName = aField.getName();
+        mFieldType = aField.getType();
+        if (mType == Type.HASH)
+            mHashMap = new HashMap<Object, ArrayList<FieldRow>>();
+        else
+            mSortedMap = new TreeMap<Object, ArrayList<FieldRow>>();
+    }
+
+    /**
+     * Returns a string summary representation of the index.
+     *
+     * @return String summary representation of the index.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s [%s, %d keys]", mFieldName, mType.name(), keyCount());
+    }
+
+    /**
+     * Returns the name of the indexed column.
+     *
+     * @return Field name.
+     */
+    public String getFieldName()
+    {
+        return mFieldName;
+    }
+
+    /**
+     * Returns the index type.
+     *
+     * @return Index type.
+     */
+    public Type getType()
+    {
+        return mType;
+    }
+
+    /**
+     * Returns the count of unique keys in the index.
+     *
+     * @return Key count.
+     */
+    public int keyCount()
+    {
+        if (mType == Type.HASH)
+            return mHashMap.size();
+        else
+            return mSortedMap.size();
+    }
+
+    /**
+     * Returns <i>true</i> if the index can resolve the logical
+     * operator parameter or <i>false</i> otherwise.
+     *
+     * @param anOperator Logical operator.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isSupported(Field.Operator anOperator)
+    {
+        switch (anOperator)
+        {
+            case EQUAL:
+            case IN:
+                return true;
+            case GREATER_THAN:
+            case GREATER_THAN_EQUAL:
+            case LESS_THAN:
+            case LESS_THAN_EQUAL:
+            case BETWEEN:
+            case BETWEEN_INCLUSIVE:
+                return (mType == Type.SORTED);
+            default:
+                return false;
+        }
+    }
+
+    private Object sortKey(String aValue)
+    {
+        if (StringUtils.isEmpty(aValue))
+            return null;
+
+        try
+        {
+            switch (mFieldType)
+            {
+                case Integer:
+                case Long:
+                    return Long.valueOf(aValue);
+                case Boolean:
+                    return Field.isValueTrue(aValue) ? 1L : 0L;
+                case Float:
+                case Double:
+                    return Double.valueOf(aValue);
+                case Date:
+                case Time:
+                case DateTime:
+                    if (mDateFormat == null)
+                        mDateFormat = new SimpleDateFormat(Field.FORMAT_DATETIME_DEFAULT);
+                    Date dateValue = mDateFormat.parse(aValue, new ParsePosition(0));
+                    if (dateValue == null)
+                        return null;
+                    else
+                        return dateValue.getTime();
+                default:
+                    return aValue;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+/* Cells that do not resolve to a native key (e.g. empty or malformed numbers) are
+hashed by their text, which can never collide with a native key object. */
+
+    private Object hashKey(String aValue)
+    {
+        Object sortKey = sortKey(aValue);
+        if (sortKey == null)
+            return StringUtils.defaultString(aValue);
+        else
+            return sortKey;
+    }
+
+/* A comparison value of a native column that does not resolve to a key is left to
+the table scan, which applies its own parsing rules. */
+
+    private Object lookupKey(String aValue)
+    {
+        switch (mFieldType)
+        {
+            case Integer:
+            case Long:
+            case Float:
+            case Double:
+            case Boolean:
+            case Date:
+            case Time:
+            case DateTime:
+                return sortKey(aValue);
+            default:
+                return StringUtils.defaultString(aValue);
+        }
+    }
+
+    /**
+     * Adds the field row to the index using the cell value parameter
+     * as its key.
+     *
+     * @param aRow Field row.
+     * @param aValue Cell value of the indexed column.
+     */
+    public void add(FieldRow aRow, String aValue)
+    {
+        ArrayList<FieldRow> fieldRows;
+
+        if (mType == Type.HASH)
+        {
+            Object hashKey = hashKey(aValue);
+            fieldRows = mHashMap.get(hashKey);
+            if (fieldRows == null)
+            {
+                fieldRows = new ArrayList<FieldRow>(1);
+                mHashMap.put(hashKey, fieldRows);
+            }
+            fieldRows.add(aRow);
+        }
+        else
+        {
+            Object sortKey = sortKey(aValue);
+            if (sortKey != null)
+            {
+                fieldRows = mSortedMap.get(sortKey);
+                if (fieldRows == null)
+                {
+                    fieldRows = new ArrayList<FieldRow>(1);
+                    mSortedMap.put(sortKey, fieldRows);
+                }
+                fieldRows.add(aRow);
+            }
+        }
+    }
+
+    private void removeRow(Map<?, ArrayList<FieldRow>> aMap, Object aKey, FieldRow aRow)
+    {
+        ArrayList<FieldRow> fieldRows = aMap.get(aKey);
+        if (fieldRows != null)
+        {
+            int rowCount = fieldRows.size();
+            for (int row = 0; row < rowCount; row++)
+            {
+                if (fieldRows.get(row) == aRow)
+                {
+                    fieldRows.remove(row);
+                    break;
+                }
+            }
+            if (fieldRows.size() == 0)
+                aMap.remove(aKey);
+        }
+    }
+
+    /**
+     * Removes the field row from the index.  The cell value parameter
+     * must match the value that was used when the row was added.
+     *
+     * @param aRow Field row.
+     * @param aValue Cell value of the indexed column.
+     */
+    public void remove(FieldRow aRow, String aValue)
+    {
+        if (mType == Type.HASH)
+            removeRow(mHashMap, hashKey(aValue), aRow);
+        else
+        {
+            Object sortKey = sortKey(aValue);
+            if (sortKey != null)
+                removeRow(mSortedMap, sortKey, aRow);
+        }
+    }
+
+    /**
+     * Removes all rows from the index.
+     */
+    public void clear()
+    {
+        if (mType == Type.HASH)
+            mHashMap.clear();
+        else
+            mSortedMap.clear();
+    }
+
+    /**
+     * Clears the index and then adds every row of the table parameter.
+     *
+     * @param aTable Data table whose column should be indexed.
+     */
+    public void rebuild(DataTable aTable)
+    {
+        clear();
+        for (FieldRow fieldRow : aTable.getRows())
+            add(fieldRow, aTable.getValueByName(fieldRow, mFieldName));
+    }
+
+    private void collectRows(Collection<ArrayList<FieldRow>> aRowLists, ArrayList<FieldRow> aMatchingRows)
+    {
+        for (ArrayList<FieldRow> fieldRows : aRowLists)
+            aMatchingRows.addAll(fieldRows);
+    }
+
+    /**
+     * Returns the field rows whose indexed cell satisfies the logical
+     * operator and values parameters.  The <i>BETWEEN</i> operators
+     * expect two values and the <i>IN</i> operator one or more values.
+     *
+     * @param anOperator Logical operator.
+     * @param aValues Comparison values.
+     *
+     * @return Array list of matching field rows or <i>null</i> if the
+     * operator is not supported by this index or a value cannot be
+     * resolved to an index key.
+     */
+    public ArrayList<FieldRow> lookup(Field.Operator anOperator, ArrayList<String> aValues)
+    {
+        ArrayList<FieldRow> fieldRows;
+
+        if ((! isSupported(anOperator)) || (aValues == null) || (aValues.size() == 0))
+            return null;
+
+        ArrayList<FieldRow> matchingRows = new ArrayList<FieldRow>();
+        if (mType == Type.HASH)
+        {
+            Object hashKey;
+            for (String value : new LinkedHashSet<String>(aValues))
+            {
+                hashKey = lookupKey(value);
+                if (hashKey == null)
+                    return null;
+                fieldRows = mHashMap.get(hashKey);
+                if (fieldRows != null)
+                    matchingRows.addAll(fieldRows);
+                if (anOperator == Field.Operator.EQUAL)
+                    break;
+            }
+            return matchingRows;
+        }
+
+// A comparison value that does not parse as a key is left to the table scan, which applies its own rules.
+
+        Object sortKey1 = sortKey(aValues.get(0));
+        if (sortKey1 == null)
+            return null;
+        switch (anOperator)
+        {
+            case EQUAL:
+                fieldRows = mSortedMap.get(sortKey1);
+                if (fieldRows != null)
+                    matchingRows.addAll(fieldRows);
+                break;
+            case IN:
+                Object sortKey;
+                for (String value : new LinkedHashSet<String>(aValues))
+                {
+                    sortKey = sortKey(value);
+                    if (sortKey == null)
+                        return null;
+                    fieldRows = mSortedMap.get(sortKey);
+                    if (fieldRows != null)
+                        matchingRows.addAll(fieldRows);
+                }
+                break;
+            case GREATER_THAN:
+                collectRows(mSortedMap.tailMap(sortKey1, false).values(), matchingRows);
+                break;
+            case GREATER_THAN_EQUAL:
+                collectRows(mSortedMap.tailMap(sortKey1, true).values(), matchingRows);
+                break;
+            case LESS_THAN:
+                collectRows(mSortedMap.headMap(sortKey1, false).values(), matchingRows);
+                break;
+            case LESS_THAN_EQUAL:
+                collectRows(mSortedMap.headMap(sortKey1, true).values(), matchingRows);
+                break;
+            case BETWEEN:
+            case BETWEEN_INCLUSIVE:
+                Object sortKey2 = null;
+                if (aValues.size() > 1)
+                    sortKey2 = sortKey(aValues.get(1));
+                if (sortKey2 == null)
+                    return null;
+                else
+                {
+                    boolean isInclusive = (anOperator == Field.Operator.BETWEEN_INCLUSIVE);
+                    try
+                    {
+                        collectRows(mSortedMap.subMap(sortKey1, isInclusive, sortKey2, isInclusive).values(),
+                                    matchingRows);
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        // The lower bound exceeds the upper bound, so the range is empty.
+                    }
+                }
+                break;
+        }
+
+        return matchingRows;
+    }
+}
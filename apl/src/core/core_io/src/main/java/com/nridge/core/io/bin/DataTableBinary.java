@@ -0,0 +1,239 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.io.bin;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.FieldRow;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataColumnRow;
+import com.nridge.core.base.field.data.DataColumnStore;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.field.data.DataTable;
+import com.nridge.core.base.std.BufUtl;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * The DataTableBinary provides a collection of methods that can
+ * save/load a compact binary snapshot of a <i>DataTable</i> object.
+ * <p>
+ * A snapshot consists of a header (operation code and version), the
+ * schema (table name and each column's name, type, title and features)
+ * and one typed block per column.  Numeric and date/time columns are
+ * written as primitive arrays and text columns as a string dictionary
+ * followed by an array of dictionary codes.  Loading memory maps the
+ * file and bulk copies each block into a {@link DataColumnStore}, so
+ * the table rows are lightweight views rather than per-cell objects.
+ * </p>
+ * <p>
+ * <b>Note:</b> Loaded tables are columnar (see
+ * <code>DataTable.enableColumnStore()</code>) and snapshot files are
+ * limited to 2GB.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataTableBinary
+{
+    public static final int SNAPSHOT_OPCODE = 0x4E524454;
+    public static final int SNAPSHOT_VERSION = 1;
+    public static final String FILE_EXTENSION = "bin";
+
+    private final int HEADER_SIZE = BufUtl.getSize(0) * 2;
+
+    private DataTable mDataTable;
+
+    /**
+     * Constructor that identifies a table prior to a save or load operation.
+     *
+     * @param aDataTable Data table of fields.
+     */
+    public DataTableBinary(DataTable aDataTable)
+    {
+        mDataTable = aDataTable;
+    }
+
+    /**
+     * Return an instance to the internally managed data table.
+     *
+     * @return Data table instance.
+     */
+    public DataTable getTable()
+    {
+        return mDataTable;
+    }
+
+    private int schemaSize(DataBag aBag)
+    {
+        int byteSize = HEADER_SIZE;
+        byteSize += BufUtl.getSize(mDataTable.getName());
+        byteSize += BufUtl.getSize(aBag.count());
+        for (DataField dataField : aBag.getFields())
+        {
+            byteSize += BufUtl.getSize(dataField.getName());
+            byteSize += BufUtl.getSize(dataField.getType().name());
+            byteSize += BufUtl.getSize(dataField.getTitle());
+            byteSize += BufUtl.getSize(0);
+            for (Map.Entry<String, String> featureEntry : dataField.getFeatures().entrySet())
+            {
+                byteSize += BufUtl.getSize(featureEntry.getKey());
+                byteSize += BufUtl.getSize(featureEntry.getValue());
+            }
+        }
+
+        return byteSize;
+    }
+
+    private void putString(ByteBuffer aBuffer, String aString)
+    {
+        BufUtl.putString(aBuffer, StringUtils.defaultString(aString));
+    }
+
+    private DataColumnStore snapshotStore()
+    {
+        DataColumnStore columnStore = mDataTable.getColumnStore();
+        ArrayList<FieldRow> fieldRows = mDataTable.getRows();
+        int rowCount = fieldRows.size();
+
+// The store can be written as-is only when the table rows map to store row ids 0..n-1.
+
+        boolean isContiguous = ((columnStore != null) && (columnStore.rowCount() == rowCount));
+        for (int row = 0; (row < rowCount) && isContiguous; row++)
+        {
+            FieldRow fieldRow = fieldRows.get(row);
+            isContiguous = ((fieldRow instanceof DataColumnRow) &&
+                            (((DataColumnRow) fieldRow).getStore() == columnStore) &&
+                            (((DataColumnRow) fieldRow).getRowId() == row));
+        }
+        if (! isContiguous)
+        {
+            columnStore = new DataColumnStore(mDataTable.getColumnBag());
+            for (FieldRow fieldRow : fieldRows)
+                columnStore.appendRow(fieldRow);
+        }
+
+        return columnStore;
+    }
+
+    /**
+     * Saves the previous assigned table (e.g. via constructor) to the
+     * path/file name specified as a parameter.
+     *
+     * @param aPathFileName Absolute file name (e.g. 'data_table.bin').
+     *
+     * @throws IOException I/O related exception.
+     */
+    public void save(String aPathFileName)
+        throws IOException
+    {
+        DataBag columnBag = mDataTable.getColumnBag();
+        ByteBuffer schemaBuffer = ByteBuffer.allocate(schemaSize(columnBag));
+        BufUtl.setHeader(schemaBuffer, SNAPSHOT_OPCODE, SNAPSHOT_VERSION);
+        schemaBuffer.position(HEADER_SIZE);
+        putString(schemaBuffer, mDataTable.getName());
+        schemaBuffer.putInt(columnBag.count());
+        for (DataField dataField : columnBag.getFields())
+        {
+            putString(schemaBuffer, dataField.getName());
+            putString(schemaBuffer, dataField.getType().name());
+            putString(schemaBuffer, dataField.getTitle());
+            Map<String, String> fieldFeatures = dataField.getFeatures();
+            schemaBuffer.putInt(fieldFeatures.size());
+            for (Map.Entry<String, String> featureEntry : fieldFeatures.entrySet())
+            {
+                putString(schemaBuffer, featureEntry.getKey());
+                putString(schemaBuffer, featureEntry.getValue());
+            }
+        }
+        schemaBuffer.flip();
+
+        Path filePath = Paths.get(aPathFileName);
+        try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                                        StandardOpenOption.WRITE))
+        {
+            while (schemaBuffer.hasRemaining())
+                fileChannel.write(schemaBuffer);
+            snapshotStore().save(fileChannel);
+        }
+    }
+
+    /**
+     * Loads the data table from the binary snapshot identified by the
+     * path/file name parameter.  Any existing rows and columns of the
+     * table are replaced by the contents of the snapshot.
+     *
+     * @param aPathFileName Absolute file name (e.g. 'data_table.bin').
+     *
+     * @throws IOException I/O related exception.
+     */
+    public void load(String aPathFileName)
+        throws IOException
+    {
+        MappedByteBuffer mappedBuffer;
+
+        Path filePath = Paths.get(aPathFileName);
+        try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ))
+        {
+            long fileSize = fileChannel.size();
+            if (fileSize < HEADER_SIZE)
+                throw new IOException(String.format("%s: Not a data table snapshot.", aPathFileName));
+            if (fileSize > Integer.MAX_VALUE)
+                throw new IOException(String.format("%s: Snapshot exceeds the 2GB mapping limit.", aPathFileName));
+            mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+
+        if (BufUtl.getOpCode(mappedBuffer) != SNAPSHOT_OPCODE)
+            throw new IOException(String.format("%s: Not a data table snapshot.", aPathFileName));
+        int versionId = BufUtl.getVersion(mappedBuffer);
+        if (versionId != SNAPSHOT_VERSION)
+            throw new IOException(String.format("%s: Unsupported snapshot version %d.", aPathFileName, versionId));
+        mappedBuffer.position(HEADER_SIZE);
+
+        String tableName = BufUtl.getString(mappedBuffer);
+        int colCount = mappedBuffer.getInt();
+        DataBag columnBag = new DataBag(tableName);
+        for (int col = 0; col < colCount; col++)
+        {
+            String fieldName = BufUtl.getString(mappedBuffer);
+            Field.Type fieldType = Field.stringToType(BufUtl.getString(mappedBuffer));
+            String fieldTitle = BufUtl.getString(mappedBuffer);
+            DataField dataField = new DataField(fieldType, fieldName, fieldTitle);
+            int featureCount = mappedBuffer.getInt();
+            for (int feature = 0; feature < featureCount; feature++)
+                dataField.addFeature(BufUtl.getString(mappedBuffer), BufUtl.getString(mappedBuffer));
+            columnBag.add(dataField);
+        }
+
+        mDataTable.emptyRows();
+        mDataTable.setColumns(columnBag);
+        if (StringUtils.isNotEmpty(tableName))
+            mDataTable.setName(tableName);
+        mDataTable.setColumnStore(new DataColumnStore(columnBag, mappedBuffer));
+    }
+}
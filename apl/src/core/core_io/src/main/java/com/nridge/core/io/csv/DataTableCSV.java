@@ -93,7 +93,7 @@ public class DataTableCSV
         return totalCount;
     }
 
-    private String dataFieldToColumnName(DataField aDataField, boolean anIsTitleOnly)
+    static String dataFieldToColumnName(DataField aDataField, boolean anIsTitleOnly)
     {
         if (anIsTitleOnly)
         {
@@ -0,0 +1,161 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2015.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.io.csv;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.io.TableStreamInterface;
+import org.apache.commons.lang3.StringUtils;
+import org.supercsv.io.CsvListWriter;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * The DataTableCSVStream writes a CSV representation of table rows as
+ * they are received, so a large result set can be saved without first
+ * being materialized as a <i>DataTable</i>.  The output matches the
+ * format produced by <i>DataTableCSV</i> - row cells are matched to the
+ * columns by field name and hidden columns are skipped.
+ * <p>
+ * <b>Note:</b> The print writer is flushed when the stream ends, but
+ * it remains open - the caller is responsible for closing it.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataTableCSVStream implements TableStreamInterface
+{
+    private String[] mRowCells;
+    private final PrintWriter mPW;
+    private final boolean mWithHeaders;
+    private final boolean mIsTitleOnly;
+    private boolean mIsFieldNamePreferred;
+    private CsvListWriter mCsvListWriter;
+    private ArrayList<DataField> mColumns;
+
+    /**
+     * Constructor that identifies the output stream and header options.
+     *
+     * @param aPW Print writer output stream.
+     * @param aWithHeaders If <i>true</i>, then column headers will be stored
+     *                     in the CSV file.
+     * @param anIsTitleOnly Limit the column headers to just title strings.
+     */
+    public DataTableCSVStream(PrintWriter aPW, boolean aWithHeaders, boolean anIsTitleOnly)
+    {
+        mPW = aPW;
+        mWithHeaders = aWithHeaders;
+        mIsTitleOnly = anIsTitleOnly;
+        mColumns = new ArrayList<DataField>();
+    }
+
+    /**
+     * If assigned to <i>true</i>, then the field names will be used
+     * for the header row.
+     *
+     * @param aIsFieldNamePreferred Field name preference flag.
+     */
+    public void setFieldNamePreferred(boolean aIsFieldNamePreferred)
+    {
+        mIsFieldNamePreferred = aIsFieldNamePreferred;
+    }
+
+    /**
+     * Starts the stream and writes the header row (if enabled).
+     *
+     * @param aColumnBag Column definitions bag.
+     *
+     * @throws IOException I/O related exception.
+     */
+    @Override
+    public void begin(DataBag aColumnBag)
+        throws IOException
+    {
+        mColumns = new ArrayList<DataField>();
+        for (DataField dataField : aColumnBag.getFields())
+        {
+            if (dataField.isFeatureFalse(Field.FEATURE_IS_HIDDEN))
+                mColumns.add(dataField);
+        }
+        mRowCells = new String[mColumns.size()];
+        mCsvListWriter = new CsvListWriter(mPW, CsvPreference.EXCEL_PREFERENCE);
+
+        if (mWithHeaders)
+        {
+            int colOffset = 0;
+            String[] headerColumns = new String[mColumns.size()];
+            for (DataField dataField : mColumns)
+            {
+                if (mIsFieldNamePreferred)
+                    headerColumns[colOffset++] = dataField.getName();
+                else
+                    headerColumns[colOffset++] = DataTableCSV.dataFieldToColumnName(dataField, mIsTitleOnly);
+            }
+            mCsvListWriter.writeHeader(headerColumns);
+        }
+    }
+
+    /**
+     * Writes the row to the CSV stream.
+     *
+     * @param aRowBag Row bag instance.
+     *
+     * @throws IOException I/O related exception.
+     */
+    @Override
+    public void write(DataBag aRowBag)
+        throws IOException
+    {
+        DataField rowField;
+
+        if (mCsvListWriter == null)
+            throw new IOException("The CSV stream has not been started.");
+
+        int colOffset = 0;
+        for (DataField dataField : mColumns)
+        {
+            rowField = aRowBag.getFieldByName(dataField.getName());
+            if (rowField == null)
+                mRowCells[colOffset++] = StringUtils.EMPTY;
+            else
+                mRowCells[colOffset++] = rowField.collapse();
+        }
+        mCsvListWriter.write(mRowCells);
+    }
+
+    /**
+     * Ends the stream and flushes the print writer.
+     *
+     * @throws IOException I/O related exception.
+     */
+    @Override
+    public void end()
+        throws IOException
+    {
+        if (mCsvListWriter != null)
+        {
+            mCsvListWriter.flush();
+            mCsvListWriter = null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.core.io.gson;
+
+import com.google.gson.stream.JsonWriter;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.io.IO;
+import com.nridge.core.base.io.TableStreamInterface;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * The DataTableJSONStream writes a JSON representation of table rows as
+ * they are received, so a large result set can be saved without first
+ * being materialized as a <i>DataTable</i>.  The output can be loaded
+ * by <i>DataTableJSON</i> - it omits the dimensions member since the
+ * row count is not known until the stream ends.
+ * <p>
+ * <b>Note:</b> The JSON writer is flushed when the stream ends, but
+ * it remains open - the caller is responsible for closing it.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class DataTableJSONStream implements TableStreamInterface
+{
+    private boolean mIsStarted;
+    private final JsonWriter mWriter;
+    private ArrayList<DataField> mColumns;
+
+    /**
+     * Constructor that identifies the output stream.
+     *
+     * @param aWriter Json writer stream instance.
+     */
+    public DataTableJSONStream(JsonWriter aWriter)
+    {
+        mWriter = aWriter;
+        mColumns = new ArrayList<DataField>();
+    }
+
+    /**
+     * Starts the stream and writes the table members and column bag.
+     *
+     * @param aColumnBag Column definitions bag.
+     *
+     * @throws IOException I/O related exception.
+     */
+    @Override
+    public void begin(DataBag aColumnBag)
+        throws IOException
+    {
+        mColumns = new ArrayList<DataField>(aColumnBag.getFields());
+
+        mWriter.beginObject();
+        IOJSON.writeNameValue(mWriter, IO.JSON_NAME_MEMBER_NAME, aColumnBag.getName());
+        IOJSON.writeNameValue(mWriter, IO.JSON_VERSION_MEMBER_NAME, IO.DATATABLE_JSON_FORMAT_VERSION);
+        DataBagJSON dataBagJSON = new DataBagJSON(aColumnBag);
+        dataBagJSON.save(mWriter, true);
+        mWriter.name(IO.JSON_ROWS_ARRAY_NAME).beginArray();
+        mIsStarted = true;
+    }
+
+    /**
+     * Writes the row to the JSON stream.
+     *
+     * @param aRowBag Row bag instance.
+     *
+     * @throws IOException I/O related exception.
+     */
+    @Override
+    public void write(DataBag aRowBag)
+        throws IOException
+    {
+        DataField rowField;
+
+        if (! mIsStarted)
+            throw new IOException("The JSON stream has not been started.");
+
+        mWriter.beginObject();
+        for (DataField dataField : mColumns)
+        {
+            rowField = aRowBag.getFieldByName(dataField.getName());
+            if (rowField == null)
+                mWriter.name(IO.JSON_CELL_MEMBER_NAME).value(StringUtils.EMPTY);
+            else
+                mWriter.name(IO.JSON_CELL_MEMBER_NAME).value(rowField.collapse());
+        }
+        mWriter.endObject();
+    }
+
+    /**
+     * Ends the stream and flushes the JSON writer.
+     *
+     * @throws IOException I/O related exception.
+     */
+    @Override
+    public void end()
+        throws IOException
+    {
+        if (mIsStarted)
+        {
+            mWriter.endArray();
+            mWriter.endObject();
+            mWriter.flush();
+            mIsStarted = false;
+        }
+    }
+}
@@ -22,7 +22,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -172,7 +171,7 @@ public class IOJSON
      *
      * @throws IOException I/O related exception.
      */
-    public static void writeNameValue(JsonWriter aWriter, String aName, HashMap<String, String> aValue)
+    public static void writeNameValue(JsonWriter aWriter, String aName, Map<String, String> aValue)
         throws IOException
     {
         if (aValue.size() > 0)
@@ -35,8 +35,12 @@ public class Content
 
     public static final String CFG_CONTENT_LIMIT = "content_limit";
     public static final String CFG_CONTENT_ENCODING = "content_encoding";
+    public static final String CFG_CONTENT_STREAMING = "content_streaming";
+    public static final String CFG_CONTENT_MEMORY_LIMIT = "content_memory_limit";
 
     public static final int CONTENT_LIMIT_DEFAULT = 250000;
+    public static final int CONTENT_MEMORY_LIMIT_DEFAULT = 1048576;
+    public static final String CONTENT_SPOOL_FILE_EXTENSION = "txt";
 
     public static final String CONTENT_TYPE_HTML = "text/html";
     public static final String CONTENT_TYPE_UNKNOWN = "Unknown";
@@ -24,12 +24,14 @@ import com.nridge.core.base.field.data.DataField;
 import com.nridge.core.base.field.data.DataTextField;
 import com.nridge.core.base.std.NSException;
 import com.nridge.core.base.std.StrUtl;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.tika.Tika;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.detect.Detector;
 import org.apache.tika.fork.ForkParser;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
@@ -48,6 +50,20 @@ import java.nio.file.Paths;
  * interface to allow you to easily parse over a thousand different file
  * types. Tika is useful for search engine indexing, content analysis,
  * translation, and much more.
+ * <p>
+ * The Tika detector and parser instances are thread-safe, so they are
+ * created once and shared by all instances of this class.  The same
+ * is true of the optional <i>ForkParser</i> and its pool of child JVMs
+ * (see {@link #shutdownForkParser()}).
+ * </p>
+ * <p>
+ * When the <code>content_streaming</code> property is enabled, content
+ * extracted into a field is held in memory only up to the
+ * <code>content_memory_limit</code> character count - larger content is
+ * spooled to a file (see {@link ContentSpoolWriter}).  A
+ * <code>content_limit</code> that does not exceed the memory limit is
+ * ignored while streaming, since it would prevent any spooling.
+ * </p>
  *
  * @see <a href="http://tika.apache.org/">Apache Tika</a>
  * @see <a href="http://www.massapi.com/class/org/apache/tika/fork/ForkParser.html">Apache Tika ForkParser</a>
@@ -58,10 +74,61 @@ import java.nio.file.Paths;
  */
 public class ContentExtractor
 {
+    private static final String TYPE_HINT_KEY = "X-NSD-Type-Hint";
+
+    private static final Detector mDetector = new DefaultDetector();
+    private static final Tika mTikaFacade = new Tika(mDetector);
+    private static final AutoDetectParser mAutoDetectParser = new AutoDetectParser(new TypeHintDetector(mDetector));
+    private static final Parser mMetadataParser = new RecursiveMetadataParser(mAutoDetectParser);
+    private static final Object mForkParserLock = new Object();
+    private static ForkParser mForkParser;
+
     private DataBag mBag;
     private final AppMgr mAppMgr;
+    private String mSpoolPathName;
     private String mCfgPropertyPrefix = Content.CFG_PROPERTY_PREFIX;
 
+/* Honors a content type that was already detected by the caller so that a file
+is not run through detection a second time.  The hint is passed under a private
+metadata key and consumed by the first detection, so the detector (which the
+parser also applies to embedded documents) never returns it for an attachment.
+A generic hint falls back to the wrapped detector. */
+
+    private static class TypeHintDetector implements Detector
+    {
+        static final long serialVersionUID = 1L;
+
+        private final Detector mDetector;
+
+        private TypeHintDetector(Detector aDetector)
+        {
+            mDetector = aDetector;
+        }
+
+        @Override
+        public MediaType detect(InputStream anInputStream, Metadata aMetaData)
+            throws IOException
+        {
+            String contentType = aMetaData.get(TYPE_HINT_KEY);
+            if (StringUtils.isNotEmpty(contentType))
+            {
+                aMetaData.remove(TYPE_HINT_KEY);
+                MediaType mediaType = MediaType.parse(contentType);
+                if ((mediaType != null) && (! isGeneric(mediaType)))
+                    return mediaType;
+            }
+
+            return mDetector.detect(anInputStream, aMetaData);
+        }
+
+        private boolean isGeneric(MediaType aMediaType)
+        {
+            MediaType baseType = aMediaType.getBaseType();
+
+            return ((MediaType.OCTET_STREAM.equals(baseType)) || (MediaType.TEXT_PLAIN.equals(baseType)));
+        }
+    }
+
     /**
      * Constructor accepts an application manager parameter and initializes
      * the content extractor accordingly.
@@ -106,6 +173,31 @@ public class ContentExtractor
         mCfgPropertyPrefix = aPropertyPrefix;
     }
 
+    /**
+     * Returns the path name where large extracted content is spooled
+     * to when the <code>content_streaming</code> property is enabled.
+     *
+     * @return Spool path name or <i>null</i> if unassigned.
+     */
+    public String getSpoolPathName()
+    {
+        return mSpoolPathName;
+    }
+
+    /**
+     * Assigns the path name where large extracted content is spooled
+     * to when the <code>content_streaming</code> property is enabled.
+     * The owner of the path is responsible for removing the spool files
+     * once the content has been published.  If unassigned, the system
+     * temporary folder is used.
+     *
+     * @param aPathName Spool path name.
+     */
+    public void setSpoolPathName(String aPathName)
+    {
+        mSpoolPathName = aPathName;
+    }
+
     /**
      * Convenience method that returns the value of an application
      * manager configuration property using the concatenation of
@@ -240,10 +332,9 @@ public class ContentExtractor
 
         if (isFileValid(aFile))
         {
-            Tika tikaFacade = new Tika();
             try
             {
-                contentType = tikaFacade.detect(aFile);
+                contentType = mTikaFacade.detect(aFile);
             }
             catch (IOException e)
             {
@@ -278,10 +369,9 @@ public class ContentExtractor
 
         if (aURL != null)
         {
-            Tika tikaFacade = new Tika();
             try
             {
-                contentType = tikaFacade.detect(aURL);
+                contentType = mTikaFacade.detect(aURL);
             }
             catch (IOException e)
             {
@@ -321,8 +411,7 @@ public class ContentExtractor
 
         if (StringUtils.isNotEmpty(aName))
         {
-            Tika tikaFacade = new Tika();
-            contentType = tikaFacade.detect(aName);
+            contentType = mTikaFacade.detect(aName);
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -346,96 +435,178 @@ public class ContentExtractor
     }
 
     /**
-     * This method will extract the textual content from the input file
-     * and write it to the writer stream.  If a bag instance has been
-     * registered with the class, then meta data fields will dynamically
-     * be assigned as they are discovered.
-     *
-     * @param anInFile Input file instance.
-     * @param aWriter Output writer stream.
-     *
-     * @throws NSException Thrown when IOExceptions are detected.
+     * Returns the parser that should be used for content extraction.
+     * When the <code>tika_fork_parser</code> property is enabled, a
+     * single <i>ForkParser</i> (and its pool of child JVMs) is created
+     * on first use and shared by all extractor instances until
+     * {@link #shutdownForkParser()} is invoked.  Its pool size and Java
+     * command are taken from the configuration of the first caller.
+     *
+     * @return Tika parser instance.
      */
-    @SuppressWarnings("deprecation")
-    public void process(File anInFile, Writer aWriter)
-        throws NSException
+    private Parser contentParser()
     {
-        Logger appLogger = mAppMgr.getLogger(this, "process");
-
-        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
-
-        if (isFileValid(anInFile))
+        if (isCfgStringTrue("tika_fork_parser"))
         {
-            appLogger.debug(String.format("[%s] %s", detectType(anInFile), anInFile.getAbsolutePath()));
-
-            ForkParser forkParser = null;
-            Metadata tikaMetaData = new Metadata();
-            tikaMetaData.set(Metadata.RESOURCE_NAME_KEY, anInFile.getName());
-            int contentLimit = getCfgInteger("content_limit", Content.CONTENT_LIMIT_DEFAULT);
-
-            InputStream inputStream = null;
-            try
+            synchronized (mForkParserLock)
             {
-                Parser tikaParser;
-                ParseContext parseContext;
-
-                inputStream = TikaInputStream.get(anInFile.toPath());
-                if (isCfgStringTrue("tika_fork_parser"))
+                if (mForkParser == null)
                 {
-                    forkParser = new ForkParser(ContentExtractor.class.getClassLoader(), new AutoDetectParser());
+                    ForkParser forkParser = new ForkParser(ContentExtractor.class.getClassLoader(),
+                                                           new AutoDetectParser(new TypeHintDetector(new DefaultDetector())));
                     String javaCmdStr = getCfgString("tika_fork_java_cmd");
                     if (StringUtils.isNotEmpty(javaCmdStr))
                         forkParser.setJavaCommand(javaCmdStr);
                     int poolSize = getCfgInteger("tika_fork_pool_size", 5);
                     if (poolSize > 0)
                         forkParser.setPoolSize(poolSize);
-                    tikaParser = forkParser;
-                    parseContext = new ParseContext();
-                }
-                else
-                {
-                    tikaParser = new AutoDetectParser();
-                    parseContext = new ParseContext();
-                    Parser recursiveMetadataParser = new RecursiveMetadataParser(tikaParser);
-                    parseContext.set(Parser.class, recursiveMetadataParser);
+                    mForkParser = forkParser;
                 }
-
-                WriteOutContentHandler writeOutContentHandler = new WriteOutContentHandler(aWriter, contentLimit);
-                tikaParser.parse(inputStream, writeOutContentHandler, tikaMetaData, parseContext);
+                return mForkParser;
             }
-            catch (Exception e)
+        }
+        else
+            return mAutoDetectParser;
+    }
+
+    /**
+     * Closes the shared <i>ForkParser</i> (if one was created), which
+     * terminates its pool of child JVMs.  This method should be invoked
+     * when the service is being shutdown - a subsequent extraction will
+     * simply create a new fork parser.
+     */
+    public static void shutdownForkParser()
+    {
+        synchronized (mForkParserLock)
+        {
+            if (mForkParser != null)
             {
-                String eMsg = e.getMessage();
-                String msgStr = String.format("%s: %s", anInFile.getAbsolutePath(), eMsg);
+                mForkParser.close();
+                mForkParser = null;
+            }
+        }
+    }
+
+    private void parse(InputStream anInputStream, String aDocumentName, Metadata aMetaData, Writer aWriter)
+        throws NSException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "parse");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        int contentLimit = getCfgInteger(Content.CFG_CONTENT_LIMIT, Content.CONTENT_LIMIT_DEFAULT);
+
+/* A content limit at or below the memory limit of a spool writer would stop the
+extraction before the content could ever be spooled, so it is lifted. */
+
+        if (aWriter instanceof ContentSpoolWriter)
+        {
+            ContentSpoolWriter spoolWriter = (ContentSpoolWriter) aWriter;
+            if ((contentLimit >= 0) && (contentLimit <= spoolWriter.getMemoryLimit()))
+                contentLimit = -1;
+        }
+
+        try
+        {
+            Parser tikaParser = contentParser();
+            ParseContext parseContext = new ParseContext();
+            if (tikaParser == mAutoDetectParser)
+                parseContext.set(Parser.class, mMetadataParser);
+
+            WriteOutContentHandler writeOutContentHandler = new WriteOutContentHandler(aWriter, contentLimit);
+            tikaParser.parse(anInputStream, writeOutContentHandler, aMetaData, parseContext);
+        }
+        catch (Exception e)
+        {
+            String eMsg = e.getMessage();
+            String msgStr = String.format("%s: %s", aDocumentName, eMsg);
 
 /* The following logic checks to see if this exception was triggered simply because
 the total character limit threshold was hit.  If that is all it was, then return true. */
 
-                if (StringUtils.startsWith(eMsg, "Your document contained more than"))
-                    appLogger.warn(msgStr);
-                else
-                    throw new NSException(msgStr);
-            }
-            finally
+            if (StringUtils.startsWith(eMsg, "Your document contained more than"))
+                appLogger.warn(msgStr);
+            else
+                throw new NSException(msgStr);
+        }
+        appLogger.debug(String.format("[%s] %s", aMetaData.get(Metadata.CONTENT_TYPE), aDocumentName));
+
+        if ((mBag != null) && (isCfgStringTrue("content_metadata")))
+        {
+            String mdValue;
+            String[] metaDataNames = aMetaData.names();
+            for (String mdName : metaDataNames)
             {
-                if (inputStream != null)
-                    IOUtils.closeQuietly(inputStream);
+                mdValue = aMetaData.get(mdName);
+                if (StringUtils.isNotEmpty(mdValue))
+                    addAssignField(Content.CONTENT_FIELD_METADATA + mdName, mdValue);
             }
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
+    private Metadata createMetadata(String aResourceName, String aContentType)
+    {
+        Metadata tikaMetaData = new Metadata();
+        if (StringUtils.isNotEmpty(aResourceName))
+            tikaMetaData.set(Metadata.RESOURCE_NAME_KEY, aResourceName);
+        if ((StringUtils.isNotEmpty(aContentType)) && (! StringUtils.equals(aContentType, Content.CONTENT_TYPE_UNKNOWN)))
+            tikaMetaData.set(TYPE_HINT_KEY, aContentType);
+
+        return tikaMetaData;
+    }
 
-            if ((mBag != null) && (isCfgStringTrue("content_metadata")))
+    /**
+     * This method will extract the textual content from the input file
+     * and write it to the writer stream.  If a bag instance has been
+     * registered with the class, then meta data fields will dynamically
+     * be assigned as they are discovered.
+     *
+     * @param anInFile Input file instance.
+     * @param aWriter Output writer stream.
+     *
+     * @throws NSException Thrown when IOExceptions are detected.
+     */
+    public void process(File anInFile, Writer aWriter)
+        throws NSException
+    {
+        process(anInFile, null, aWriter);
+    }
+
+    /**
+     * This method will extract the textual content from the input file
+     * and write it to the writer stream.  If the content type parameter
+     * is provided (e.g. from an earlier call to {@link #detectType(File)}),
+     * then it is used in place of a second type detection pass.  If a bag
+     * instance has been registered with the class, then meta data fields
+     * will dynamically be assigned as they are discovered.
+     *
+     * @param anInFile Input file instance.
+     * @param aContentType Content type previously detected or <i>null</i>.
+     * @param aWriter Output writer stream.
+     *
+     * @throws NSException Thrown when IOExceptions are detected.
+     */
+    public void process(File anInFile, String aContentType, Writer aWriter)
+        throws NSException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "process");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        if (isFileValid(anInFile))
+        {
+            String pathFileName = anInFile.getAbsolutePath();
+            Metadata tikaMetaData = createMetadata(anInFile.getName(), aContentType);
+            try (InputStream inputStream = TikaInputStream.get(anInFile.toPath()))
             {
-                String mdValue;
-                String[] metaDataNames = tikaMetaData.names();
-                for (String mdName : metaDataNames)
-                {
-                    mdValue = tikaMetaData.get(mdName);
-                    if (StringUtils.isNotEmpty(mdValue))
-                        addAssignField(Content.CONTENT_FIELD_METADATA + mdName, mdValue);
-                }
+                parse(inputStream, pathFileName, tikaMetaData, aWriter);
+            }
+            catch (IOException e)
+            {
+                throw new NSException(String.format("%s: %s", pathFileName, e.getMessage()));
             }
-
-            if (forkParser != null)
-                forkParser.close();
         }
         else
         {
@@ -457,9 +628,28 @@ the total character limit threshold was hit.  If that is all it was, then return
      *
      * @throws NSException Thrown when IOExceptions are detected.
      */
-    @SuppressWarnings("deprecation")
     public void process(URL aURL, Writer aWriter)
         throws NSException
+    {
+        process(aURL, null, aWriter);
+    }
+
+    /**
+     * This method will extract the textual content from the URL
+     * and write it to the writer stream.  If the content type parameter
+     * is provided (e.g. from an earlier call to {@link #detectType(URL)}),
+     * then it is used in place of a second type detection pass.  If a bag
+     * instance has been registered with the class, then meta data fields
+     * will dynamically be assigned as they are discovered.
+     *
+     * @param aURL URL of the resource.
+     * @param aContentType Content type previously detected or <i>null</i>.
+     * @param aWriter Output writer stream.
+     *
+     * @throws NSException Thrown when IOExceptions are detected.
+     */
+    public void process(URL aURL, String aContentType, Writer aWriter)
+        throws NSException
     {
         Logger appLogger = mAppMgr.getLogger(this, "process");
 
@@ -469,70 +659,14 @@ the total character limit threshold was hit.  If that is all it was, then return
             throw new NSException("One or more parameters are null.");
 
         String documentName = aURL.toString();
-        appLogger.debug(String.format("[%s] %s", detectType(aURL), documentName));
-
-        Metadata tikaMetaData = new Metadata();
-        int contentLimit = getCfgInteger("content_limit", Content.CONTENT_LIMIT_DEFAULT);
-
-        InputStream inputStream = null;
-        try
-        {
-            Parser tikaParser;
-            ParseContext parseContext;
-
-            inputStream = TikaInputStream.get(aURL);
-            if (isCfgStringTrue("tika_fork_parser"))
-            {
-                ForkParser forkParser = new ForkParser(ContentExtractor.class.getClassLoader(), new AutoDetectParser());
-                String javaCmdStr = getCfgString("tika_fork_java_cmd");
-                if (StringUtils.isNotEmpty(javaCmdStr))
-                    forkParser.setJavaCommand(javaCmdStr);
-                int poolSize = getCfgInteger("tika_fork_pool_size", 5);
-                if (poolSize > 0)
-                    forkParser.setPoolSize(poolSize);
-                tikaParser = forkParser;
-                parseContext = new ParseContext();
-            }
-            else
-            {
-                tikaParser = new AutoDetectParser();
-                parseContext = new ParseContext();
-                Parser recursiveMetadataParser = new RecursiveMetadataParser(tikaParser);
-                parseContext.set(Parser.class, recursiveMetadataParser);
-            }
-
-            WriteOutContentHandler writeOutContentHandler = new WriteOutContentHandler(aWriter, contentLimit);
-            tikaParser.parse(inputStream, writeOutContentHandler, tikaMetaData, parseContext);
-        }
-        catch (Exception e)
-        {
-            String eMsg = e.getMessage();
-            String msgStr = String.format("%s: %s", documentName, eMsg);
-
-/* The following logic checks to see if this exception was triggered simply because
-the total character limit threshold was hit.  If that is all it was, then return true. */
-
-            if (StringUtils.startsWith(eMsg, "Your document contained more than"))
-                appLogger.warn(msgStr);
-            else
-                throw new NSException(msgStr);
-        }
-        finally
+        Metadata tikaMetaData = createMetadata(null, aContentType);
+        try (InputStream inputStream = TikaInputStream.get(aURL))
         {
-            if (inputStream != null)
-                IOUtils.closeQuietly(inputStream);
+            parse(inputStream, documentName, tikaMetaData, aWriter);
         }
-
-        if ((mBag != null) && (isCfgStringTrue("content_metadata")))
+        catch (IOException e)
         {
-            String mdValue;
-            String[] metaDataNames = tikaMetaData.names();
-            for (String mdName : metaDataNames)
-            {
-                mdValue = tikaMetaData.get(mdName);
-                if (StringUtils.isNotEmpty(mdValue))
-                    addAssignField(Content.CONTENT_FIELD_METADATA + mdName, mdValue);
-            }
+            throw new NSException(String.format("%s: %s", documentName, e.getMessage()));
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -610,6 +744,26 @@ the total character limit threshold was hit.  If that is all it was, then return
      */
     public String process(File anInFile)
         throws NSException
+    {
+        return process(anInFile, (String) null);
+    }
+
+    /**
+     * This method will extract the textual content from the input file
+     * and capture it in a string.  If the content type parameter is
+     * provided, then it is used in place of a second type detection
+     * pass.  If a bag instance has been registered with the class, then
+     * meta data fields will dynamically be assigned as they are discovered.
+     *
+     * @param anInFile Input file instance.
+     * @param aContentType Content type previously detected or <i>null</i>.
+     *
+     * @return String representation of the textual content.
+     *
+     * @throws NSException Thrown when IOExceptions are detected.
+     */
+    public String process(File anInFile, String aContentType)
+        throws NSException
     {
         Logger appLogger = mAppMgr.getLogger(this, "process");
 
@@ -618,7 +772,7 @@ the total character limit threshold was hit.  If that is all it was, then return
         StringWriter stringWriter = new StringWriter();
         try (PrintWriter printWriter = new PrintWriter(stringWriter))
         {
-            process(anInFile, printWriter);
+            process(anInFile, aContentType, printWriter);
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -640,6 +794,26 @@ the total character limit threshold was hit.  If that is all it was, then return
      */
     public String process(URL aURL)
         throws NSException
+    {
+        return process(aURL, (String) null);
+    }
+
+    /**
+     * This method will extract the textual content from the URL and
+     * capture it in a string.  If the content type parameter is
+     * provided, then it is used in place of a second type detection
+     * pass.  If a bag instance has been registered with the class, then
+     * meta data fields will dynamically be assigned as they are discovered.
+     *
+     * @param aURL URL of the resource.
+     * @param aContentType Content type previously detected or <i>null</i>.
+     *
+     * @return String representation of the textual content.
+     *
+     * @throws NSException Thrown when IOExceptions are detected.
+     */
+    public String process(URL aURL, String aContentType)
+        throws NSException
     {
         Logger appLogger = mAppMgr.getLogger(this, "process");
 
@@ -648,7 +822,7 @@ the total character limit threshold was hit.  If that is all it was, then return
         StringWriter stringWriter = new StringWriter();
         try (PrintWriter printWriter = new PrintWriter(stringWriter))
         {
-            process(aURL, printWriter);
+            process(aURL, aContentType, printWriter);
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -695,6 +869,25 @@ the total character limit threshold was hit.  If that is all it was, then return
      */
     public void process(String anInputPathFileName, DataField aContentField)
         throws NSException
+    {
+        process(anInputPathFileName, null, aContentField);
+    }
+
+    /**
+     * This method will extract the textual content from the input file
+     * and capture it in the content field.  If the content type parameter
+     * is provided, then it is used in place of a second type detection
+     * pass.  If a bag instance has been registered with the class, then
+     * meta data fields will dynamically be assigned as they are discovered.
+     *
+     * @param anInputPathFileName Input path/file name.
+     * @param aContentType Content type previously detected or <i>null</i>.
+     * @param aContentField Content data field instance.
+     *
+     * @throws NSException Thrown when IOExceptions are detected.
+     */
+    public void process(String anInputPathFileName, String aContentType, DataField aContentField)
+        throws NSException
     {
         Logger appLogger = mAppMgr.getLogger(this, "process");
 
@@ -703,9 +896,48 @@ the total character limit threshold was hit.  If that is all it was, then return
         if (aContentField == null)
             throw new NSException("Content data field is null.");
 
-        String contentString = process(anInputPathFileName);
-        if (StringUtils.isNotEmpty(contentString))
-            aContentField.setValue(contentString);
+        File inFile = new File(anInputPathFileName);
+        if (isCfgStringTrue(Content.CFG_CONTENT_STREAMING))
+        {
+
+// Content beyond the memory limit is spooled to a file that the field references.
+
+            String spoolPathName = mSpoolPathName;
+            if (StringUtils.isEmpty(spoolPathName))
+                spoolPathName = System.getProperty("java.io.tmpdir");
+            String spoolFileName = String.format("%s.%s", Content.hashId(inFile.getAbsolutePath()),
+                                                 Content.CONTENT_SPOOL_FILE_EXTENSION);
+            int memoryLimit = getCfgInteger(Content.CFG_CONTENT_MEMORY_LIMIT, Content.CONTENT_MEMORY_LIMIT_DEFAULT);
+            ContentSpoolWriter spoolWriter = new ContentSpoolWriter(new File(spoolPathName, spoolFileName), memoryLimit);
+            boolean isAssigned = false;
+            try (Writer contentWriter = spoolWriter)
+            {
+                process(inFile, aContentType, contentWriter);
+                contentWriter.close();
+                spoolWriter.assignTo(aContentField);
+                isAssigned = true;
+            }
+            catch (IOException e)
+            {
+                throw new NSException(String.format("%s: %s", spoolWriter.getSpoolFile().getAbsolutePath(),
+                                                    e.getMessage()));
+            }
+            finally
+            {
+                if ((! isAssigned) && (! spoolWriter.delete()))
+                    appLogger.warn(String.format("%s: Unable to delete the content spool file.",
+                                                 spoolWriter.getSpoolFile().getAbsolutePath()));
+            }
+            if (spoolWriter.isSpooled())
+                appLogger.debug(String.format("%s: Content spooled to %s", anInputPathFileName,
+                                              spoolWriter.getSpoolFile().getAbsolutePath()));
+        }
+        else
+        {
+            String contentString = process(inFile, aContentType);
+            if (StringUtils.isNotEmpty(contentString))
+                aContentField.setValue(contentString);
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -0,0 +1,246 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.ds.content.ds_content;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The ContentSpoolWriter captures extracted text in memory until it
+ * exceeds a character limit, at which point the text captured so far
+ * and everything written afterwards is spooled to a UTF-8 file.  This
+ * bounds the heap consumed by the extraction of very large documents.
+ * <p>
+ * Once closed, {@link #assignTo(DataField)} stores the text in a
+ * content field - either as the field value (in memory) or as a
+ * reference to the spool file via the <code>Field.FEATURE_CONTENT_FILE</code>
+ * feature, which publishers stream from without loading it.
+ * </p>
+ *
+ * @author Al Cole
+ * @since 1.0
+ */
+public class ContentSpoolWriter extends Writer
+{
+    private final int mMemoryLimit;
+    private final File mSpoolFile;
+    private Writer mSpoolWriter;
+    private StringBuilder mContent;
+
+    /**
+     * Constructor accepts the spool file that should be used if the
+     * memory limit is exceeded.  The file is only created when needed.
+     *
+     * @param aSpoolFile Spool file instance.
+     * @param aMemoryLimit Maximum number of characters held in memory.
+     */
+    public ContentSpoolWriter(File aSpoolFile, int aMemoryLimit)
+    {
+        super();
+        mSpoolFile = aSpoolFile;
+        mMemoryLimit = Math.max(0, aMemoryLimit);
+        mContent = new StringBuilder();
+    }
+
+    /**
+     * Returns <i>true</i> if the content has been spooled to a file
+     * or <i>false</i> if it is held in memory.
+     *
+     * @return <i>true</i> or <i>false</i>
+     */
+    public boolean isSpooled()
+    {
+        return mSpoolWriter != null;
+    }
+
+    /**
+     * Returns the maximum number of characters held in memory before
+     * the content is spooled to a file.
+     *
+     * @return Memory limit (in characters).
+     */
+    public int getMemoryLimit()
+    {
+        return mMemoryLimit;
+    }
+
+    /**
+     * Returns the spool file instance.
+     *
+     * @return Spool file instance.
+     */
+    public File getSpoolFile()
+    {
+        return mSpoolFile;
+    }
+
+    /**
+     * Returns the content held in memory.  If the content was
+     * spooled, then an empty string is returned.
+     *
+     * @return Content string.
+     */
+    public String getContent()
+    {
+        if (mContent == null)
+            return StringUtils.EMPTY;
+        else
+            return mContent.toString();
+    }
+
+    private void spool()
+        throws IOException
+    {
+        mSpoolWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mSpoolFile),
+                                                                 StandardCharsets.UTF_8));
+        mSpoolWriter.append(mContent);
+        mContent = null;
+    }
+
+    /**
+     * Writes a portion of an array of characters.
+     *
+     * @param aBuffer Buffer of characters.
+     * @param anOffset Offset from which to start writing characters.
+     * @param aLength Number of characters to write.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void write(char[] aBuffer, int anOffset, int aLength)
+        throws IOException
+    {
+        if ((mSpoolWriter == null) && (mContent.length() + aLength > mMemoryLimit))
+            spool();
+
+        if (mSpoolWriter == null)
+            mContent.append(aBuffer, anOffset, aLength);
+        else
+            mSpoolWriter.write(aBuffer, anOffset, aLength);
+    }
+
+    /**
+     * Flushes the spool file (if one is open).
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        if (mSpoolWriter != null)
+            mSpoolWriter.flush();
+    }
+
+    /**
+     * Closes the spool file (if one is open).
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (mSpoolWriter != null)
+            mSpoolWriter.close();
+    }
+
+    /**
+     * Closes the writer and deletes the spool file (if one was created).
+     * This should be invoked when the content will not be assigned to a
+     * field, for example because the extraction failed.
+     *
+     * @return <i>true</i> if there is no spool file left behind or
+     * <i>false</i> otherwise.
+     */
+    public boolean delete()
+    {
+        try
+        {
+            close();
+        }
+        catch (IOException ignored)
+        {
+        }
+
+        return (! mSpoolFile.exists()) || (mSpoolFile.delete());
+    }
+
+    /**
+     * Deletes the spool files referenced by the content fields of the
+     * bag.  This should be invoked when a document whose content was
+     * spooled is discarded instead of being published.
+     *
+     * @param aBag Data bag instance.
+     *
+     * @return <i>true</i> if every referenced spool file was deleted or
+     * <i>false</i> otherwise.
+     */
+    public static boolean deleteSpoolFiles(DataBag aBag)
+    {
+        String contentPathFileName;
+        boolean isDeleted = true;
+
+        for (DataField dataField : aBag.getFields())
+        {
+            contentPathFileName = dataField.getFeature(Field.FEATURE_CONTENT_FILE);
+            if (StringUtils.isNotEmpty(contentPathFileName))
+            {
+                File contentFile = new File(contentPathFileName);
+                if ((contentFile.exists()) && (! contentFile.delete()))
+                    isDeleted = false;
+            }
+        }
+
+        return isDeleted;
+    }
+
+    /**
+     * Assigns the captured content to the field parameter.  In-memory
+     * content becomes the field value, while spooled content is
+     * referenced by the field's <code>Field.FEATURE_CONTENT_FILE</code>
+     * feature.  This method should be invoked after the writer has
+     * been closed.
+     *
+     * @param aField Content field instance.
+     */
+    public void assignTo(DataField aField)
+    {
+        if (isSpooled())
+        {
+            aField.clearValues();
+            aField.addFeature(Field.FEATURE_CONTENT_FILE, mSpoolFile.getAbsolutePath());
+        }
+        else
+        {
+            aField.disableFeature(Field.FEATURE_CONTENT_FILE);
+            if (mContent.length() > 0)
+                aField.setValue(mContent.toString());
+        }
+    }
+}
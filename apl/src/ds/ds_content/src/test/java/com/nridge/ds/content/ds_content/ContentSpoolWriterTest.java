@@ -0,0 +1,149 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.ds.content.ds_content;
+
+import com.nridge.core.base.doc.Document;
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.io.xml.DocumentXML;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The ContentSpoolWriterTest class verifies that content assigned
+ * by a ContentSpoolWriter survives the XML queue file round trip.
+ */
+public class ContentSpoolWriterTest
+{
+    private File mSpoolFile;
+
+    @Before
+    public void setup()
+        throws IOException
+    {
+        mSpoolFile = File.createTempFile("nsd_spool_", ".txt");
+    }
+
+    private Document roundTrip(Document aDocument)
+        throws Exception
+    {
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(stringWriter))
+        {
+            DocumentXML documentXML = new DocumentXML(aDocument);
+            documentXML.save(printWriter);
+        }
+        DocumentXML documentXML = new DocumentXML();
+        documentXML.load(new ByteArrayInputStream(stringWriter.toString().getBytes(StandardCharsets.UTF_8)));
+
+        return documentXML.getDocument();
+    }
+
+    private Document createDocument(ContentSpoolWriter aSpoolWriter)
+    {
+        DataBag dataBag = new DataBag("Spool Test");
+        DataField idField = new DataField(Field.Type.Text, "nsd_id", "Id", "1");
+        idField.enableFeature(Field.FEATURE_IS_PRIMARY_KEY);
+        dataBag.add(idField);
+        DataField contentField = new DataField(Field.Type.Text, "nsd_content", "Content");
+        contentField.enableFeature(Field.FEATURE_IS_CONTENT);
+        aSpoolWriter.assignTo(contentField);
+        dataBag.add(contentField);
+
+        return new Document("Spool Test", dataBag);
+    }
+
+    @Test
+    public void spooledContentSurvivesRoundTrip()
+        throws Exception
+    {
+        ContentSpoolWriter spoolWriter = new ContentSpoolWriter(mSpoolFile, 8);
+        spoolWriter.write("This content exceeds the memory limit.");
+        spoolWriter.close();
+        assertTrue(spoolWriter.isSpooled());
+
+        Document document = roundTrip(createDocument(spoolWriter));
+        DataField contentField = document.getBag().getFieldByName("nsd_content");
+        assertNotNull(contentField);
+        assertEquals(mSpoolFile.getAbsolutePath(), contentField.getFeature(Field.FEATURE_CONTENT_FILE));
+        assertTrue(StringUtils.isEmpty(contentField.getValue()));
+    }
+
+    @Test
+    public void memoryContentSurvivesRoundTrip()
+        throws Exception
+    {
+        ContentSpoolWriter spoolWriter = new ContentSpoolWriter(mSpoolFile, 1024);
+        spoolWriter.write("Small content.");
+        spoolWriter.close();
+        assertFalse(spoolWriter.isSpooled());
+
+        Document document = roundTrip(createDocument(spoolWriter));
+        DataField contentField = document.getBag().getFieldByName("nsd_content");
+        assertNotNull(contentField);
+        assertEquals("Small content.", contentField.getValue());
+        assertNull(contentField.getFeature(Field.FEATURE_CONTENT_FILE));
+    }
+
+    @Test
+    public void discardedContentDeletesSpoolFile()
+        throws Exception
+    {
+        ContentSpoolWriter spoolWriter = new ContentSpoolWriter(mSpoolFile, 8);
+        spoolWriter.write("This content exceeds the memory limit.");
+        spoolWriter.close();
+        assertTrue(mSpoolFile.exists());
+
+        Document document = createDocument(spoolWriter);
+        assertTrue(ContentSpoolWriter.deleteSpoolFiles(document.getBag()));
+        assertFalse(mSpoolFile.exists());
+    }
+
+    @Test
+    public void failedExtractionDeletesSpoolFile()
+        throws Exception
+    {
+        ContentSpoolWriter spoolWriter = new ContentSpoolWriter(mSpoolFile, 8);
+        spoolWriter.write("This content exceeds the memory limit.");
+        assertTrue(spoolWriter.delete());
+        assertFalse(mSpoolFile.exists());
+    }
+
+    @After
+    public void cleanup()
+    {
+        if (mSpoolFile != null)
+            mSpoolFile.delete();
+    }
+}
@@ -45,6 +45,12 @@ public class Solr
     public static final int QUERY_PAGESIZE_DEFAULT = 10;
 
     public static final String QUERY_REQUEST_HANDLER_DEFAULT = "/select";
+    public static final String QUERY_REQUEST_HANDLER_EXPORT = "/export";
+
+    public static final int STREAM_PAGE_SIZE_DEFAULT = 1000;
+
+    public static final int QUERY_CACHE_SIZE_DEFAULT = 500;
+    public static final int QUERY_CACHE_TTL_DEFAULT = 60;
 
     public static final int RESPONSE_STATUS_SUCCESS = 0;
 
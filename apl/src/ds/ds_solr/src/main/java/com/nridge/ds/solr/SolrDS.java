@@ -28,6 +28,7 @@ import com.nridge.core.base.field.Field;
 import com.nridge.core.base.field.data.DataBag;
 import com.nridge.core.base.field.data.DataField;
 import com.nridge.core.base.field.data.DataTable;
+import com.nridge.core.base.io.TableStreamInterface;
 import com.nridge.core.base.std.NSException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.*;
@@ -35,14 +36,30 @@ import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.impl.ClusterStateProvider;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.impl.ZkClientClusterStateProvider;
+import org.apache.solr.client.solrj.io.SolrClientCache;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.SolrStream;
+import org.apache.solr.client.solrj.io.stream.StreamContext;
+import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.slf4j.Logger;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -65,6 +82,7 @@ public class SolrDS extends DSDocument
 
     private SolrClient mSolrClient;
     private boolean mIncludeChildren;
+    private SolrQueryCache mSolrQueryCache;
     private SolrQueryBuilder mSolrQueryBuilder;
     private String mBaseSolrURL = StringUtils.EMPTY;
     private String mSolrIdentity = StringUtils.EMPTY;
@@ -237,7 +255,7 @@ public class SolrDS extends DSDocument
         return solrClient;
     }
 
-    private void initialize()
+    private synchronized void initialize()
         throws DSException
     {
         Logger appLogger = mAppMgr.getLogger(this, "initialize");
@@ -249,6 +267,9 @@ public class SolrDS extends DSDocument
             mSolrQueryBuilder = new SolrQueryBuilder(mAppMgr);
             mSolrQueryBuilder.setCfgPropertyPrefix(getCfgPropertyPrefix());
             mSolrClient = createSolrClient();
+            if (isCfgStringTrue("query_cache_enabled"))
+                mSolrQueryCache = new SolrQueryCache(getCfgInteger("query_cache_size", Solr.QUERY_CACHE_SIZE_DEFAULT),
+                                                     getCfgInteger("query_cache_ttl", Solr.QUERY_CACHE_TTL_DEFAULT));
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -425,6 +446,8 @@ public class SolrDS extends DSDocument
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
+        initialize();
+
         String propertyName = getCfgPropertyPrefix() + ".request_method";
         String requestMethod = mAppMgr.getString(propertyName);
 
@@ -613,6 +636,20 @@ public class SolrDS extends DSDocument
 
         initialize();
 
+        String cacheKey = null;
+        long cacheGeneration = 0L;
+        if (mSolrQueryCache != null)
+        {
+            cacheKey = mSolrQueryCache.createKey(aDSCriteria, -1, -1);
+            cacheGeneration = mSolrQueryCache.getGeneration();
+            solrDocument = mSolrQueryCache.get(cacheKey);
+            if (solrDocument != null)
+            {
+                appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+                return solrDocument;
+            }
+        }
+
         SolrQuery solrQuery = mSolrQueryBuilder.create(aDSCriteria);
 
         appLogger.debug(String.format("%s: %s %s", aDSCriteria.getName(),
@@ -637,6 +674,8 @@ public class SolrDS extends DSDocument
             SolrParentChild solrParentChild = new SolrParentChild(mAppMgr, this);
             solrParentChild.expand(solrDocument, aDSCriteria);
         }
+        if (mSolrQueryCache != null)
+            mSolrQueryCache.put(cacheKey, solrDocument, cacheGeneration);
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 
@@ -675,6 +714,20 @@ public class SolrDS extends DSDocument
 
         initialize();
 
+        String cacheKey = null;
+        long cacheGeneration = 0L;
+        if (mSolrQueryCache != null)
+        {
+            cacheKey = mSolrQueryCache.createKey(aDSCriteria, anOffset, aLimit);
+            cacheGeneration = mSolrQueryCache.getGeneration();
+            solrDocument = mSolrQueryCache.get(cacheKey);
+            if (solrDocument != null)
+            {
+                appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+                return solrDocument;
+            }
+        }
+
         SolrQuery solrQuery = mSolrQueryBuilder.create(aDSCriteria);
         solrQuery.setStart(anOffset);
         solrQuery.setRows(aLimit);
@@ -696,63 +749,313 @@ public class SolrDS extends DSDocument
             SolrParentChild solrParentChild = new SolrParentChild(mAppMgr, this);
             solrParentChild.expand(solrDocument, aDSCriteria);
         }
+        if (mSolrQueryCache != null)
+            mSolrQueryCache.put(cacheKey, solrDocument, cacheGeneration);
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
 
         return solrDocument;
     }
 
-    private SolrInputDocument toSolrInputDocument(DataBag aBag)
-        throws NSException
+    private void invalidateQueryCache()
     {
-        String fieldValueString;
-        Logger appLogger = mAppMgr.getLogger(this, "toSolrInputDocument");
+        if (mSolrQueryCache != null)
+            mSolrQueryCache.invalidate();
+    }
+
+    /**
+     * Returns the query result cache statistics (hit, miss, eviction,
+     * expiration and invalidation counts) or <i>null</i> if the cache
+     * was not enabled via the <i>query_cache_enabled</i> property.
+     *
+     * @return Data bag of cache statistics or <i>null</i>.
+     *
+     * @throws DSException Data source related exception.
+     */
+    public DataBag getQueryCacheStatistics()
+        throws DSException
+    {
+        initialize();
+
+        if (mSolrQueryCache == null)
+            return null;
+        else
+            return mSolrQueryCache.getStatistics();
+    }
+
+    private String streamPrimaryKeyName()
+        throws DSException
+    {
+        DataField pkField = null;
+        DataBag schemaBag = getSchema();
+        if (schemaBag != null)
+            pkField = schemaBag.getPrimaryKeyField();
+        if (pkField == null)
+            throw new DSException("Streaming requires a schema with a primary key field.");
+
+        return pkField.getName();
+    }
+
+    private long streamCursor(DSCriteria aDSCriteria, int aPageSize, TableStreamInterface aTableStream)
+        throws DSException, IOException
+    {
+        DataTable pageTable;
+        String nextCursorMark;
+        QueryResponse queryResponse;
+        Logger appLogger = mAppMgr.getLogger(this, "streamCursor");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
-        SolrInputDocument solrInputDocument = new SolrInputDocument();
+        SolrQuery solrQuery = mSolrQueryBuilder.create(aDSCriteria);
+        solrQuery.setStart(Solr.QUERY_OFFSET_DEFAULT);
+        solrQuery.setRows(aPageSize);
+
+// A cursor requires the sort to end with the unique key as a tie breaker.
+
+        String pkName = streamPrimaryKeyName();
+        boolean isSortedByKey = false;
+        for (SolrQuery.SortClause sortClause : solrQuery.getSorts())
+        {
+            if (StringUtils.equals(sortClause.getItem(), pkName))
+                isSortedByKey = true;
+        }
+        if (! isSortedByKey)
+            solrQuery.addSort(pkName, SolrQuery.ORDER.asc);
+
+        appLogger.debug(String.format("%s: %s %s", aDSCriteria.getName(),
+                                      mSolrIdentity, solrQuery.toString()));
+
+        long rowCount = 0L;
+        aTableStream.begin(getSchema());
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        do
+        {
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            queryResponse = queryExecute(solrQuery);
+            SolrResponseBuilder solrResponseBuilder = createResponseBuilder();
+            pageTable = getResultTable(solrResponseBuilder.extract(queryResponse, Solr.QUERY_OFFSET_DEFAULT, aPageSize));
+            if (pageTable != null)
+            {
+                int pageRowCount = pageTable.rowCount();
+                for (int row = 0; row < pageRowCount; row++)
+                    aTableStream.write(pageTable.getRowAsBag(row));
+                rowCount += pageRowCount;
+            }
+            nextCursorMark = queryResponse.getNextCursorMark();
+            if ((nextCursorMark == null) || (nextCursorMark.equals(cursorMark)))
+                break;
+            cursorMark = nextCursorMark;
+        }
+        while (true);
+        aTableStream.end();
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+
+        return rowCount;
+    }
+
+    private void tupleToBag(Tuple aTuple, DataBag aRowBag)
+    {
+        Object tupleValue;
+        DataField dataField;
+        ArrayList<String> fieldValues;
+
+        aRowBag.resetValues();
+        Map<?,?> tupleMap = aTuple.getMap();
+        for (Map.Entry<?,?> tupleEntry : tupleMap.entrySet())
+        {
+            tupleValue = tupleEntry.getValue();
+            dataField = aRowBag.getFieldByName(String.valueOf(tupleEntry.getKey()));
+            if ((dataField != null) && (tupleValue != null))
+            {
+                if (tupleValue instanceof List)
+                {
+                    fieldValues = new ArrayList<String>();
+                    for (Object listValue : (List<?>) tupleValue)
+                        fieldValues.add(String.valueOf(listValue));
+                    dataField.setValues(fieldValues);
+                }
+                else
+                    dataField.setValue(String.valueOf(tupleValue));
+            }
+        }
+    }
+
+    private long streamExport(DSCriteria aDSCriteria, TableStreamInterface aTableStream)
+        throws DSException, IOException
+    {
+        Tuple solrTuple;
+        Logger appLogger = mAppMgr.getLogger(this, "streamExport");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+/* The export handler streams the entire result set in a single response, but
+it requires an explicit field list and sort - every field must have docValues. */
+
+        DataBag schemaBag = getSchema();
+        String pkName = streamPrimaryKeyName();
+        ModifiableSolrParams exportParams = new ModifiableSolrParams(mSolrQueryBuilder.create(aDSCriteria));
+        exportParams.remove(CommonParams.START);
+        exportParams.remove(CommonParams.ROWS);
+        exportParams.set(CommonParams.QT, Solr.QUERY_REQUEST_HANDLER_EXPORT);
+        if (StringUtils.isEmpty(exportParams.get(CommonParams.FL)))
+        {
+            ArrayList<String> fieldNames = new ArrayList<String>();
+            for (DataField dataField : schemaBag.getFields())
+                fieldNames.add(dataField.getName());
+            exportParams.set(CommonParams.FL, StringUtils.join(fieldNames, StrUtl.CHAR_COMMA));
+        }
+        if (StringUtils.isEmpty(exportParams.get(CommonParams.SORT)))
+            exportParams.set(CommonParams.SORT, String.format("%s asc", pkName));
+
+        String exportURL = getBaseURL(true);
+        appLogger.debug(String.format("%s: %s %s", aDSCriteria.getName(), exportURL, exportParams.toString()));
+
+        long rowCount = 0L;
+        DataBag rowBag = new DataBag(schemaBag);
+        SolrClientCache solrClientCache = new SolrClientCache();
+        StreamContext streamContext = new StreamContext();
+        streamContext.setSolrClientCache(solrClientCache);
+        SolrStream solrStream = new SolrStream(exportURL, exportParams);
+        solrStream.setStreamContext(streamContext);
+        try
+        {
+            solrStream.open();
+            aTableStream.begin(schemaBag);
+            solrTuple = solrStream.read();
+            while (! solrTuple.EOF)
+            {
+                tupleToBag(solrTuple, rowBag);
+                aTableStream.write(rowBag);
+                rowCount++;
+                solrTuple = solrStream.read();
+            }
+            aTableStream.end();
+        }
+        finally
+        {
+            solrStream.close();
+            solrClientCache.close();
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+
+        return rowCount;
+    }
+
+    /**
+     * Streams the documents that match the <i>DSCriteria</i> to the
+     * table stream one row at a time, so that memory is bounded to a
+     * single page regardless of the size of the result set.  This is
+     * intended for bulk exports and synchronizations where deep
+     * offset paging would degrade.
+     * <p>
+     * By default, the result set is paged with a Solr cursor (sized
+     * by the <i>stream_page_size</i> property) and the unique key is
+     * appended to the sort order.  If the <i>stream_export</i> property
+     * is <i>true</i>, then the <code>/export</code> request handler is
+     * used instead - it requires every exported field to have docValues
+     * and it reads from the base URL (standalone or single shard).
+     * </p>
+     * <p>
+     * <b>Note:</b> Parent/child expansion is not applied and a schema
+     * with a primary key field must be assigned.
+     * </p>
+     *
+     * @param aDSCriteria Data source criteria.
+     * @param aTableStream Table stream that receives the rows.
+     *
+     * @return Count of rows streamed.
+     *
+     * @throws DSException Data source related exception.
+     *
+     * @see <a href="https://lucene.apache.org/solr/guide/7_6/pagination-of-results.html">Solr Cursor Pagination</a>
+     * @see <a href="https://lucene.apache.org/solr/guide/7_6/exporting-result-sets.html">Solr Exporting Result Sets</a>
+     */
+    public long stream(DSCriteria aDSCriteria, TableStreamInterface aTableStream)
+        throws DSException
+    {
+        long rowCount;
+        Logger appLogger = mAppMgr.getLogger(this, "stream");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        initialize();
+
+        try
+        {
+            if (isCfgStringTrue("stream_export"))
+                rowCount = streamExport(aDSCriteria, aTableStream);
+            else
+                rowCount = streamCursor(aDSCriteria, Math.max(getCfgInteger("stream_page_size", Solr.STREAM_PAGE_SIZE_DEFAULT), 1),
+                                        aTableStream);
+        }
+        catch (IOException e)
+        {
+            appLogger.error(e.getMessage(), e);
+            throw new DSException(e.getMessage());
+        }
+
+        appLogger.debug(String.format("%s: %d rows streamed.", aDSCriteria.getName(), rowCount));
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+
+        return rowCount;
+    }
+
+    private void validateBag(DataBag aBag)
+        throws NSException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "validateBag");
 
         DataField primaryKeyField = aBag.getPrimaryKeyField();
         if ((primaryKeyField == null) || (! primaryKeyField.isAssigned()))
             throw new NSException("Primary field is undefined or unpopulated.");
-        if (aBag.count() > 0)
+        if ((aBag.count() > 0) && (! aBag.isValid()))
         {
-            if (aBag.isValid())
+            ArrayList<String> msgList = aBag.getValidationMessages();
+            if (msgList.size() > 0)
             {
-                for (DataField dataField : aBag.getFields())
+                StringBuilder stringBuilder = new StringBuilder();
+                for (String message : msgList)
                 {
-                    if ((dataField.isAssigned()) && (dataField.isFeatureFalse(Field.FEATURE_IS_HIDDEN)))
-                    {
-                        fieldValueString = dataField.getValue();
-                        if (StringUtils.isNotEmpty(fieldValueString))
-                        {
-                            if (dataField.isMultiValue())
-                            {
-                                ArrayList<String> fieldValues = dataField.getValues();
-                                for (String fieldValue : fieldValues)
-                                    solrInputDocument.addField(dataField.getName(), fieldValue);
-                            }
-                            else
-                                solrInputDocument.addField(dataField.getName(), dataField.getValueAsObject());
-                        }
-                    }
+                    if (stringBuilder.length() > 0)
+                        stringBuilder.append(StrUtl.CHAR_COMMA);
+                    stringBuilder.append(message);
                 }
+                appLogger.error(stringBuilder.toString());
             }
-            else
+            throw new DSException("The data bag is not valid and cannot be added to Solr index.");
+        }
+    }
+
+    private SolrInputDocument toSolrInputDocument(DataBag aBag)
+        throws NSException
+    {
+        String fieldValueString;
+        Logger appLogger = mAppMgr.getLogger(this, "toSolrInputDocument");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        validateBag(aBag);
+
+        SolrInputDocument solrInputDocument = new SolrInputDocument();
+        for (DataField dataField : aBag.getFields())
+        {
+            if ((dataField.isAssigned()) && (dataField.isFeatureFalse(Field.FEATURE_IS_HIDDEN)))
             {
-                ArrayList<String> msgList = aBag.getValidationMessages();
-                if (msgList.size() > 0)
+                fieldValueString = dataField.getValue();
+                if (StringUtils.isNotEmpty(fieldValueString))
                 {
-                    StringBuilder stringBuilder = new StringBuilder();
-                    for (String message : msgList)
+                    if (dataField.isMultiValue())
                     {
-                        if (stringBuilder.length() > 0)
-                            stringBuilder.append(StrUtl.CHAR_COMMA);
-                        stringBuilder.append(message);
+                        ArrayList<String> fieldValues = dataField.getValues();
+                        for (String fieldValue : fieldValues)
+                            solrInputDocument.addField(dataField.getName(), fieldValue);
                     }
-                    appLogger.error(stringBuilder.toString());
+                    else
+                        solrInputDocument.addField(dataField.getName(), dataField.getValueAsObject());
                 }
-                throw new DSException("The data bag is not valid and cannot be added to Solr index.");
             }
         }
 
@@ -781,6 +1084,127 @@ public class SolrDS extends DSDocument
         return solrInputDocument;
     }
 
+    private boolean isContentFileReferenced(DataBag aBag)
+    {
+        for (DataField dataField : aBag.getFields())
+        {
+            if (StringUtils.isNotEmpty(dataField.getFeature(Field.FEATURE_CONTENT_FILE)))
+                return true;
+        }
+
+        return false;
+    }
+
+    private boolean isContentFileReferenced(Document aDocument)
+    {
+        if (isContentFileReferenced(aDocument.getBag()))
+            return true;
+        if (mIncludeChildren)
+        {
+            for (Relationship relationship : aDocument.getRelationships())
+            {
+                if (isContentFileReferenced(relationship.getBag()))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void validateDocument(Document aDocument)
+        throws NSException
+    {
+        validateBag(aDocument.getBag());
+        if (mIncludeChildren)
+        {
+            for (Relationship relationship : aDocument.getRelationships())
+                validateBag(relationship.getBag());
+        }
+    }
+
+    private void deleteContentFiles(DataBag aBag)
+    {
+        String contentPathFileName;
+        Logger appLogger = mAppMgr.getLogger(this, "deleteContentFiles");
+
+        for (DataField dataField : aBag.getFields())
+        {
+            contentPathFileName = dataField.getFeature(Field.FEATURE_CONTENT_FILE);
+            if (StringUtils.isNotEmpty(contentPathFileName))
+            {
+                File contentFile = new File(contentPathFileName);
+                if ((contentFile.exists()) && (! contentFile.delete()))
+                    appLogger.warn(String.format("%s: Unable to delete the content spool file.", contentPathFileName));
+            }
+        }
+    }
+
+    private void deleteContentFiles(ArrayList<Document> aDocuments)
+    {
+        for (Document document : aDocuments)
+        {
+            deleteContentFiles(document.getBag());
+            for (Relationship relationship : document.getRelationships())
+                deleteContentFiles(relationship.getBag());
+        }
+    }
+
+/* Documents whose content was spooled to a file are sent as an XML update message
+that is written to a temporary file and streamed to Solr, so the content is never
+materialized as a string. */
+
+    private UpdateResponse addStreamed(ArrayList<Document> aDocuments, int aCommitWithinMS)
+        throws IOException, SolrServerException
+    {
+        UpdateResponse updateResponse;
+        Logger appLogger = mAppMgr.getLogger(this, "addStreamed");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        File updateFile = File.createTempFile("nsd_update_", ".xml");
+        try
+        {
+            try (PrintWriter printWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(updateFile),
+                                                                                                     StandardCharsets.UTF_8))))
+            {
+                SolrDocumentXML solrDocumentXML = new SolrDocumentXML(mAppMgr, Solr.DOC_OPERATION_ADD, printWriter);
+                solrDocumentXML.setIncludeChildrenFlag(mIncludeChildren);
+                solrDocumentXML.writeHeader();
+                solrDocumentXML.writeContent(aDocuments, 1);
+                solrDocumentXML.writeTrailer();
+            }
+            ContentStreamUpdateRequest updateRequest = new ContentStreamUpdateRequest("/update");
+            updateRequest.addFile(updateFile, "application/xml; charset=UTF-8");
+            updateRequest.setCommitWithin(aCommitWithinMS);
+            updateResponse = updateRequest.process(mSolrClient);
+            appLogger.debug(String.format("Streamed %d document(s) from %s", aDocuments.size(),
+                                          updateFile.getAbsolutePath()));
+        }
+        finally
+        {
+            if (! updateFile.delete())
+                updateFile.deleteOnExit();
+        }
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+
+        return updateResponse;
+    }
+
+    private void checkUpdateResponse(UpdateResponse anUpdateResponse)
+        throws DSException
+    {
+        Logger appLogger = mAppMgr.getLogger(this, "checkUpdateResponse");
+
+        if ((anUpdateResponse != null) && (anUpdateResponse.getStatus() != Solr.RESPONSE_STATUS_SUCCESS))
+        {
+            String msgStr = String.format("%s: Response contained non success status code of %d.",
+                                          anUpdateResponse.getRequestUrl(), anUpdateResponse.getStatus());
+            appLogger.error(msgStr);
+            throw new DSException(msgStr);
+        }
+    }
+
     /**
      * Adds the field values captured in the <i>Document</i> to
      * the content source.  The fields must be derived from the
@@ -808,6 +1232,15 @@ public class SolrDS extends DSDocument
         if (aDocument == null)
             throw new DSException("Document is null.");
 
+        if (isContentFileReferenced(aDocument))
+        {
+            ArrayList<Document> documentList = new ArrayList<Document>();
+            documentList.add(aDocument);
+            add(documentList, -1);
+            appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+            return;
+        }
+
         initialize();
 
         ArrayList<SolrInputDocument> solrInputDocuments = new ArrayList<SolrInputDocument>();
@@ -821,6 +1254,10 @@ public class SolrDS extends DSDocument
             appLogger.error(e.getMessage(), e);
             throw new DSException(e.getMessage());
         }
+        finally
+        {
+            invalidateQueryCache();
+        }
 
         if (updateResponse.getStatus() != Solr.RESPONSE_STATUS_SUCCESS)
         {
@@ -851,6 +1288,35 @@ public class SolrDS extends DSDocument
     @Override
     public void add(ArrayList<Document> aDocuments)
         throws DSException
+    {
+        add(aDocuments, -1);
+    }
+
+    /**
+     * Adds the field values captured in the array of <i>Document</i>
+     * to the content source and asks Solr to make them visible to
+     * searches within the time limit parameter.  The fields must be
+     * derived from the same collection defined in the schema definition.
+     * <p>
+     * <b>Note:</b> This method may be invoked concurrently from multiple
+     * threads, which allows a publisher to keep several update requests
+     * in flight.
+     * </p>
+     * <p>
+     * Documents with content spooled to a file (see
+     * <code>Field.FEATURE_CONTENT_FILE</code>) are streamed to Solr
+     * as an XML update message instead of being loaded into memory.
+     * Their spool files are deleted once Solr accepts the update.
+     * </p>
+     *
+     * @param aDocuments An array of Documents to store.
+     * @param aCommitWithinMS Commit within time limit in milliseconds
+     *                        (a value of -1 relies on explicit commits).
+     *
+     * @throws com.nridge.core.base.ds.DSException Data source related exception.
+     */
+    public void add(ArrayList<Document> aDocuments, int aCommitWithinMS)
+        throws DSException
     {
         UpdateResponse updateResponse;
         Logger appLogger = mAppMgr.getLogger(this, "add");
@@ -862,27 +1328,42 @@ public class SolrDS extends DSDocument
 
         initialize();
 
+        UpdateResponse streamResponse = null;
+        ArrayList<Document> streamDocuments = new ArrayList<Document>();
         ArrayList<SolrInputDocument> solrInputDocuments = new ArrayList<SolrInputDocument>();
         try
         {
             for (Document document : aDocuments)
-                solrInputDocuments.add(toSolrInputDocument(document));
-            updateResponse = mSolrClient.add(solrInputDocuments);
+            {
+                if (isContentFileReferenced(document))
+                {
+                    validateDocument(document);
+                    streamDocuments.add(document);
+                }
+                else
+                    solrInputDocuments.add(toSolrInputDocument(document));
+            }
+            if ((solrInputDocuments.size() > 0) || (streamDocuments.size() == 0))
+                updateResponse = mSolrClient.add(solrInputDocuments, aCommitWithinMS);
+            else
+                updateResponse = null;
+            if (streamDocuments.size() > 0)
+                streamResponse = addStreamed(streamDocuments, aCommitWithinMS);
         }
         catch (Exception e)
         {
             appLogger.error(e.getMessage(), e);
-            throw new DSException(e.getMessage());
+            throw new DSException(e.getMessage(), e);
         }
-
-        if (updateResponse.getStatus() != Solr.RESPONSE_STATUS_SUCCESS)
+        finally
         {
-            String msgStr = String.format("%s: Response contained non success status code of %d.",
-                                          updateResponse.getRequestUrl(),updateResponse.getStatus());
-            appLogger.error(msgStr);
-            throw new DSException(msgStr);
+            invalidateQueryCache();
         }
 
+        checkUpdateResponse(updateResponse);
+        checkUpdateResponse(streamResponse);
+        deleteContentFiles(streamDocuments);
+
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
@@ -1050,6 +1531,10 @@ public class SolrDS extends DSDocument
             appLogger.error(e.getMessage(), e);
             throw new DSException(e.getMessage());
         }
+        finally
+        {
+            invalidateQueryCache();
+        }
 
         if (updateResponse.getStatus() != Solr.RESPONSE_STATUS_SUCCESS)
         {
@@ -1101,6 +1586,10 @@ public class SolrDS extends DSDocument
             appLogger.error(e.getMessage(), e);
             throw new DSException(e.getMessage());
         }
+        finally
+        {
+            invalidateQueryCache();
+        }
 
         if (updateResponse.getStatus() != Solr.RESPONSE_STATUS_SUCCESS)
         {
@@ -1149,6 +1638,10 @@ public class SolrDS extends DSDocument
             appLogger.error(e.getMessage(), e);
             throw new DSException(e.getMessage());
         }
+        finally
+        {
+            invalidateQueryCache();
+        }
 
         if (updateResponse.getStatus() != Solr.RESPONSE_STATUS_SUCCESS)
         {
@@ -1191,6 +1684,10 @@ public class SolrDS extends DSDocument
             appLogger.error(e.getMessage(), e);
             throw new DSException(e.getMessage());
         }
+        finally
+        {
+            invalidateQueryCache();
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -1225,6 +1722,10 @@ public class SolrDS extends DSDocument
             appLogger.error(e.getMessage(), e);
             throw new DSException(e.getMessage());
         }
+        finally
+        {
+            invalidateQueryCache();
+        }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
@@ -0,0 +1,204 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.ds.solr;
+
+import com.nridge.core.base.field.Field;
+import com.nridge.core.base.field.data.DataColumn;
+import com.nridge.core.base.field.data.DataColumnRow;
+import com.nridge.core.base.field.data.DataColumnStore;
+import com.nridge.core.base.field.data.DataField;
+import com.nridge.core.base.field.data.DataTable;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The SolrDocumentDecoder class decodes a <i>SolrDocumentList</i> into
+ * the rows of a <i>DataTable</i>.  Each Solr field name is resolved to
+ * its column offset (and date/time type) once per decoder, a single
+ * date formatter and multi-value buffer are reused across cells, and
+ * a columnar table (see <code>DataTable.enableColumnStore()</code>)
+ * receives integer, long, double and date values natively rather
+ * than as formatted strings.
+ * <p>
+ * <b>Note:</b> The table columns must be established before the
+ * decoder is created and a decoder instance is not thread-safe.
+ * </p>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class SolrDocumentDecoder
+{
+    private final DataTable mTable;
+    private final DataColumnStore mColumnStore;
+    private final SimpleDateFormat mDateFormat;
+    private final ArrayList<String> mValueBuffer;
+    private final HashMap<String, ColumnBinding> mBindings;
+
+    private static class ColumnBinding
+    {
+        private final int mOffset;
+        private final DataColumn mColumn;
+        private final boolean mIsDateOrTime;
+
+        private ColumnBinding(int anOffset, DataColumn aColumn, boolean anIsDateOrTime)
+        {
+            mOffset = anOffset;
+            mColumn = aColumn;
+            mIsDateOrTime = anIsDateOrTime;
+        }
+    }
+
+    /**
+     * Constructor accepts the table that decoded rows will be added to.
+     *
+     * @param aTable Data table instance.
+     */
+    public SolrDocumentDecoder(DataTable aTable)
+    {
+        mTable = aTable;
+        mColumnStore = aTable.getColumnStore();
+        mValueBuffer = new ArrayList<String>();
+        mBindings = new HashMap<String, ColumnBinding>();
+        mDateFormat = new SimpleDateFormat(Field.FORMAT_DATETIME_DEFAULT);
+    }
+
+    private ColumnBinding bind(String aName)
+    {
+        ColumnBinding columnBinding = mBindings.get(aName);
+        if (columnBinding == null)
+        {
+            DataField dataField = null;
+            DataColumn dataColumn = null;
+            int colOffset = mTable.getOffsetByName(aName);
+            if (colOffset != -1)
+            {
+                dataField = mTable.getColumnBag().getByOffset(colOffset);
+                if (mColumnStore != null)
+                    dataColumn = mColumnStore.getColumn(colOffset);
+            }
+            columnBinding = new ColumnBinding(colOffset, dataColumn, (dataField != null) && (dataField.isTypeDateOrTime()));
+            mBindings.put(aName, columnBinding);
+        }
+
+        return columnBinding;
+    }
+
+    private String toCellValue(ColumnBinding aBinding, Object anObject)
+    {
+        if ((aBinding.mIsDateOrTime) && (anObject instanceof Date))
+            return mDateFormat.format((Date) anObject);
+        else
+            return anObject.toString();
+    }
+
+    private ArrayList<String> toCellValues(ColumnBinding aBinding, Collection<?> anObjects)
+    {
+        mValueBuffer.clear();
+        for (Object cellObject : anObjects)
+        {
+            if (cellObject != null)
+                mValueBuffer.add(toCellValue(aBinding, cellObject));
+        }
+
+        return mValueBuffer;
+    }
+
+    private void decodeRowCell(ColumnBinding aBinding, Object anObject)
+    {
+        if (anObject instanceof Collection)
+            mTable.setValuesByColumn(aBinding.mOffset, toCellValues(aBinding, (Collection<?>) anObject));
+        else
+        {
+            String cellValue = toCellValue(aBinding, anObject);
+            if (StringUtils.isNotEmpty(cellValue))
+                mTable.setValueByColumn(aBinding.mOffset, cellValue);
+        }
+    }
+
+    private void decodeColumnCell(ColumnBinding aBinding, int aRowId, Object anObject)
+    {
+        DataColumn dataColumn = aBinding.mColumn;
+
+        if (anObject instanceof Collection)
+            dataColumn.setValues(aRowId, toCellValues(aBinding, (Collection<?>) anObject));
+        else if (anObject instanceof Integer)
+            dataColumn.setInt(aRowId, (Integer) anObject);
+        else if (anObject instanceof Long)
+            dataColumn.setLong(aRowId, (Long) anObject);
+        else if (anObject instanceof Double)
+            dataColumn.setDouble(aRowId, (Double) anObject);
+        else if ((aBinding.mIsDateOrTime) && (anObject instanceof Date))
+            dataColumn.setDate(aRowId, (Date) anObject);
+        else
+        {
+            String cellValue = anObject.toString();
+            if (StringUtils.isNotEmpty(cellValue))
+                dataColumn.setValue(aRowId, cellValue);
+        }
+    }
+
+    /**
+     * Decodes each Solr document in the list into a new row of the
+     * table.  Solr fields that do not match a table column are ignored.
+     *
+     * @param aSolrDocumentList Solr document list.
+     */
+    public void decode(SolrDocumentList aSolrDocumentList)
+    {
+        Object cellObject;
+        ColumnBinding columnBinding;
+
+        for (SolrDocument solrDocument : aSolrDocumentList)
+        {
+            if (mColumnStore == null)
+            {
+                mTable.newRow();
+                for (Map.Entry<String,Object> entry : solrDocument.entrySet())
+                {
+                    cellObject = entry.getValue();
+                    columnBinding = bind(entry.getKey());
+                    if ((cellObject != null) && (columnBinding.mOffset != -1))
+                        decodeRowCell(columnBinding, cellObject);
+                }
+                mTable.addRow();
+            }
+            else
+            {
+                DataColumnRow columnRow = mColumnStore.appendRow();
+                int rowId = columnRow.getRowId();
+                for (Map.Entry<String,Object> entry : solrDocument.entrySet())
+                {
+                    cellObject = entry.getValue();
+                    columnBinding = bind(entry.getKey());
+                    if ((cellObject != null) && (columnBinding.mColumn != null))
+                        decodeColumnCell(columnBinding, rowId, cellObject);
+                }
+                mTable.addRow(columnRow);
+            }
+        }
+    }
+}
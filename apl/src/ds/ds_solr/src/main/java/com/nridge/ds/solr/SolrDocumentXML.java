@@ -30,13 +30,23 @@ import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
 /**
  * The SolrDocumentXML provides a collection of methods to generate
  * an XML Solr document feed file suitable for uploading to the index
  * server.
+ * <p>
+ * <b>Note:</b> Fields whose content was spooled to a file (identified
+ * by the <code>Field.FEATURE_CONTENT_FILE</code> feature) are copied from
+ * that file in chunks rather than loaded into memory.
+ * </p>
  *
  * @see <a href="http://wiki.apache.org/solr/UpdateXmlMessages">Apache Solr XML Messages</a>
  *
@@ -46,6 +56,7 @@ import java.util.ArrayList;
 public class SolrDocumentXML
 {
     private final boolean FIELD_UPDATE_DISABLED = false;
+    private final int CONTENT_CHUNK_SIZE = 8192;
 
     private AppMgr mAppMgr;
     private String mOperation;
@@ -85,11 +96,59 @@ public class SolrDocumentXML
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
+    private void writeContentFile(DataField aField, String aPathFileName, boolean anIsUpdate,
+                                  int anIndentAmount)
+    {
+        int readCount, charCount;
+        Logger appLogger = mAppMgr.getLogger(this, "writeContentFile");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+
+        IOXML.indentLine(mPrintWriter, anIndentAmount);
+        if (anIsUpdate)
+            mPrintWriter.printf("<field name=\"%s\" update=\"set\">", aField.getName());
+        else
+            mPrintWriter.printf("<field name=\"%s\">", aField.getName());
+
+/* The content is copied in chunks, so it is never held in memory as a whole.  A
+trailing high surrogate is carried into the next chunk to keep its pair intact. */
+
+        int carryCount = 0;
+        char[] charBuffer = new char[CONTENT_CHUNK_SIZE];
+        try (BufferedReader bufferedReader = Files.newBufferedReader(Paths.get(aPathFileName), StandardCharsets.UTF_8))
+        {
+            while ((readCount = bufferedReader.read(charBuffer, carryCount, charBuffer.length - carryCount)) != -1)
+            {
+                charCount = carryCount + readCount;
+                if (Character.isHighSurrogate(charBuffer[charCount-1]))
+                {
+                    charCount--;
+                    carryCount = 1;
+                }
+                else
+                    carryCount = 0;
+                mPrintWriter.print(StringEscapeUtils.escapeXml10(new String(charBuffer, 0, charCount)));
+                if (carryCount > 0)
+                    charBuffer[0] = charBuffer[charCount];
+            }
+        }
+        catch (IOException e)
+        {
+            appLogger.error(String.format("%s: %s", aPathFileName, e.getMessage()));
+        }
+        mPrintWriter.printf("</field>%n");
+
+        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
+    }
+
     private void writeField(DataField aField, boolean anIsUpdate, int anIndentAmount)
     {
         String fieldValueString;
 
-        if ((aField.isAssigned()) && (aField.isFeatureFalse(Field.FEATURE_IS_HIDDEN)))
+        String contentPathFileName = aField.getFeature(Field.FEATURE_CONTENT_FILE);
+        if ((StringUtils.isNotEmpty(contentPathFileName)) && (aField.isFeatureFalse(Field.FEATURE_IS_HIDDEN)))
+            writeContentFile(aField, contentPathFileName, anIsUpdate, anIndentAmount);
+        else if ((aField.isAssigned()) && (aField.isFeatureFalse(Field.FEATURE_IS_HIDDEN)))
         {
             if (Field.isDateOrTime(aField.getType()))
                 fieldValueString = aField.getValueFormatted(Solr.DOC_DATETIME_FORMAT);
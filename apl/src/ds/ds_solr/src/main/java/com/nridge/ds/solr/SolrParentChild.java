@@ -33,6 +33,8 @@ import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 
 /**
  * The SolrParentChild provides a collection of methods that can expand
@@ -55,6 +57,9 @@ public class SolrParentChild
     private final String FIELD_NSD_IS_EXPANDED_NAME = "nsd_is_expanded";
 
     private final String PROPERTY_HASH_MAP_NAME = "IdRowHashMap";
+    private final String PROPERTY_CHILD_MAP_NAME = "ParentChildHashMap";
+
+    private final int PARENT_BATCH_SIZE = 250;
 
     private final String FIELD_FETCH_LIMIT_DEFAULT = "5";
     private final String FIELD_FETCH_OFFSET_DEFAULT = "0";
@@ -312,29 +317,145 @@ public class SolrParentChild
         return parentTable;
     }
 
-    private DSCriteria createChildCriteria(DataTable aResponseTable, String aPrimaryKeyFieldName,
-                                           String aParentId)
+    /* Collects the unique ids of the parent rows in the table (in row order). */
+
+    private void collectParentIds(DataTable aTable, LinkedHashSet<String> aParentIds)
+    {
+        String parentId;
+        DataField isParentField;
+
+        if (aTable != null)
+        {
+            int rowCount = aTable.rowCount();
+            for (int row = 0; row < rowCount; row++)
+            {
+                isParentField = aTable.getFieldByRowName(row, FIELD_NSD_IS_PARENT_NAME);
+                if ((isParentField != null) && (isParentField.isValueTrue()))
+                {
+                    parentId = aTable.getValueByName(row, FIELD_NSD_ID_NAME);
+                    if (StringUtils.isNotEmpty(parentId))
+                        aParentIds.add(parentId);
+                }
+            }
+        }
+    }
+
+    /* Maps each parent id to the ids of its children that are already present in the table. */
+
+    private void collectChildIds(DataTable aTable, HashMap<String,ArrayList<String>> aChildIdMap)
+    {
+        String docId, parentId;
+        ArrayList<String> childIdList;
+
+        if (aTable != null)
+        {
+            int rowCount = aTable.rowCount();
+            for (int row = 0; row < rowCount; row++)
+            {
+                parentId = aTable.getValueByName(row, FIELD_NSD_PARENT_ID_NAME);
+                docId = aTable.getValueByName(row, FIELD_NSD_ID_NAME);
+                if ((StringUtils.isNotEmpty(parentId)) && (StringUtils.isNotEmpty(docId)))
+                {
+                    childIdList = aChildIdMap.get(parentId);
+                    if (childIdList == null)
+                    {
+                        childIdList = new ArrayList<String>();
+                        aChildIdMap.put(parentId, childIdList);
+                    }
+                    childIdList.add(docId);
+                }
+            }
+        }
+    }
+
+    private DataField createParamField(String aName, String aValue)
+    {
+        DataField paramField = new DataTextField(Solr.FIELD_PARAM_NAME, Field.nameToTitle(Solr.FIELD_PARAM_NAME));
+        paramField.setMultiValueFlag(true);
+        paramField.addValue(aName);
+        paramField.addValue(aValue);
+
+        return paramField;
+    }
+
+/* The children of a batch of parents are fetched with a single grouped query -
+the group offset and limit apply the expansion window to each parent. */
+
+    private DSCriteria createChildCriteria(ArrayList<String> aParentIds, HashMap<String,ArrayList<String>> aChildIdMap,
+                                           int anOffset, int aLimit)
     {
-        String primaryKeyId;
+        ArrayList<String> childIdList;
         DSCriteria childCriteria = new DSCriteria("Child Criteria");
         childCriteria.add(Solr.FIELD_QUERY_NAME, Field.Operator.EQUAL, Solr.QUERY_ALL_DOCUMENTS);
-        childCriteria.add(FIELD_NSD_PARENT_ID_NAME, Field.Operator.EQUAL, aParentId);
+        childCriteria.add(FIELD_NSD_PARENT_ID_NAME, Field.Operator.IN, StrUtl.convertToMulti(aParentIds));
 
-        DataField excludeChildIds = new DataTextField("child_ids", "Child Ids");
-        excludeChildIds.setMultiValueFlag(true);
-        ArrayList<FieldRow> childRows = aResponseTable.findValue(FIELD_NSD_PARENT_ID_NAME, Field.Operator.EQUAL, aParentId);
-        for (FieldRow childRow : childRows)
+        ArrayList<String> excludeChildIds = new ArrayList<String>();
+        for (String parentId : aParentIds)
         {
-            primaryKeyId = aResponseTable.getValueByName(childRow, aPrimaryKeyFieldName);
-            excludeChildIds.addValueUnique(primaryKeyId);
+            childIdList = aChildIdMap.get(parentId);
+            if (childIdList != null)
+                excludeChildIds.addAll(childIdList);
         }
-        if (excludeChildIds.valueCount() > 0)
+        if (excludeChildIds.size() > 0)
+            childCriteria.add(FIELD_NSD_ID_NAME, Field.Operator.NOT_IN, StrUtl.convertToMulti(excludeChildIds));
+
+        childCriteria.add(createParamField("group", StrUtl.STRING_TRUE));
+        childCriteria.add(createParamField("group.field", FIELD_NSD_PARENT_ID_NAME));
+        childCriteria.add(createParamField("group.offset", Integer.toString(anOffset)));
+        childCriteria.add(createParamField("group.limit", Integer.toString(aLimit)));
+
+        return childCriteria;
+    }
+
+    private HashMap<String,ArrayList<DataBag>> getChildHashMap(DataTable aTable)
+    {
+        return (HashMap<String,ArrayList<DataBag>>) aTable.getProperty(PROPERTY_CHILD_MAP_NAME);
+    }
+
+    /* Adds the children of each group to the child table and distributes them by parent id. */
+
+    private DataTable addGroupChildren(DataTable aChildTable, Relationship aGroupRelationship)
+    {
+        DataBag childBag;
+        String parentId;
+        DataTable groupTable;
+        Relationship groupDocRelationship;
+        ArrayList<DataBag> childBagList;
+
+        DataTable childTable = aChildTable;
+        for (Document groupCollection : aGroupRelationship.getDocuments())
         {
-            String[] excludeValues = StrUtl.convertToMulti(excludeChildIds.getValues());
-            childCriteria.add(aPrimaryKeyFieldName, Field.Operator.NOT_IN, excludeValues);
+            groupDocRelationship = groupCollection.getFirstRelationship(Solr.RESPONSE_GROUP_DOCUMENT);
+            if ((groupDocRelationship != null) && (groupDocRelationship.count() > 0))
+            {
+                groupTable = groupDocRelationship.getDocuments().get(0).getTable();
+                if (childTable == null)
+                {
+                    childTable = new DataTable(groupTable.getColumnBag());
+                    createTableHashMap(childTable);
+                    childTable.addProperty(PROPERTY_CHILD_MAP_NAME, new HashMap<String,ArrayList<DataBag>>());
+                }
+                HashMap<String,ArrayList<DataBag>> childBagMap = getChildHashMap(childTable);
+                int childRowCount = groupTable.rowCount();
+                for (int childRow = 0; childRow < childRowCount; childRow++)
+                {
+                    childBag = groupTable.getRowAsBag(childRow);
+                    if (addRowUniqueToTable(childTable, childBag))
+                    {
+                        parentId = childBag.getValueAsString(FIELD_NSD_PARENT_ID_NAME);
+                        childBagList = childBagMap.get(parentId);
+                        if (childBagList == null)
+                        {
+                            childBagList = new ArrayList<DataBag>();
+                            childBagMap.put(parentId, childBagList);
+                        }
+                        childBagList.add(childBag);
+                    }
+                }
+            }
         }
 
-        return childCriteria;
+        return childTable;
     }
 
     /* This method will ensure that all possible children are in returned table. */
@@ -343,19 +464,13 @@ public class SolrParentChild
                                      DataField anExpansionField)
         throws DSException
     {
-        String parentId;
-        DataBag childBag;
-        DataField isParentField;
-        DSCriteria childCriteria;
-        DataTable childResponseTable;
-        int offset, limit, childRowCount;
+        int offset, limit;
         Logger appLogger = mAppMgr.getLogger(this, "expandChildren");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
         DataTable childTable = null;
 
-        int resultRowCount = aResponseTable.rowCount();
         if ((anExpansionField != null) && (anExpansionField.valueCount() == 2))
         {
             offset = Integer.parseInt(anExpansionField.getValue(0));
@@ -367,69 +482,30 @@ public class SolrParentChild
             limit = Solr.QUERY_PAGESIZE_DEFAULT;
         }
 
-// First, we will review the parents of the response table.
+// Gather the parents of the response and parent tables along with the children we already have.
 
-        for (int resultRow = 0; resultRow < resultRowCount; resultRow++)
-        {
-            isParentField = aResponseTable.getFieldByRowName(resultRow, FIELD_NSD_IS_PARENT_NAME);
-            if ((isParentField != null) && (isParentField.isValueTrue()))
-            {
-                parentId = aResponseTable.getValueByName(resultRow, FIELD_NSD_ID_NAME);
-                if (StringUtils.isNotEmpty(parentId))
-                {
-                    childCriteria = createChildCriteria(aResponseTable, FIELD_NSD_ID_NAME, parentId);
-                    Document solrDocument = mSolrDS.fetch(childCriteria, offset, limit);
-                    if (Solr.isResponsePopulated(solrDocument))
-                    {
-                        childResponseTable = Solr.getResponse(solrDocument);
-                        if (childTable == null)
-                        {
-                            childTable = new DataTable(childResponseTable.getColumnBag());
-                            createTableHashMap(childTable);
-                        }
-                        childRowCount = childResponseTable.rowCount();
-                        for (int childRow = 0; childRow < childRowCount; childRow++)
-                        {
-                            childBag = childResponseTable.getRowAsBag(childRow);
-                            addRowUniqueToTable(childTable, childBag);
-                        }
-                    }
-                }
-            }
-        }
+        LinkedHashSet<String> parentIds = new LinkedHashSet<String>();
+        collectParentIds(aResponseTable, parentIds);
+        collectParentIds(aParentTable, parentIds);
+
+        HashMap<String,ArrayList<String>> childIdMap = new HashMap<String,ArrayList<String>>();
+        collectChildIds(aResponseTable, childIdMap);
+        collectChildIds(aParentTable, childIdMap);
 
-// Next, we will review the parents of the parent table.
+// Fetch the missing children in batches of parents - one Solr round trip per batch.
 
-        if (aParentTable != null)
+        ArrayList<String> batchParentIds = new ArrayList<String>();
+        Iterator<String> parentIdIterator = parentIds.iterator();
+        while (parentIdIterator.hasNext())
         {
-            int parentCount = aParentTable.rowCount();
-            for (int parentRow = 0; parentRow < parentCount; parentRow++)
+            batchParentIds.add(parentIdIterator.next());
+            if ((batchParentIds.size() == PARENT_BATCH_SIZE) || (! parentIdIterator.hasNext()))
             {
-                isParentField = aParentTable.getFieldByRowName(parentRow, FIELD_NSD_IS_PARENT_NAME);
-                if ((isParentField != null) && (isParentField.isValueTrue()))
-                {
-                    parentId = aParentTable.getValueByName(parentRow, FIELD_NSD_ID_NAME);
-                    if (StringUtils.isNotEmpty(parentId))
-                    {
-                        childCriteria = createChildCriteria(aParentTable, FIELD_NSD_ID_NAME, parentId);
-                        Document solrDocument = mSolrDS.fetch(childCriteria, offset, limit);
-                        if (Solr.isResponsePopulated(solrDocument))
-                        {
-                            childResponseTable = Solr.getResponse(solrDocument);
-                            if (childTable == null)
-                            {
-                                childTable = new DataTable(childResponseTable.getColumnBag());
-                                createTableHashMap(childTable);
-                            }
-                            childRowCount = childResponseTable.rowCount();
-                            for (int childRow = 0; childRow < childRowCount; childRow++)
-                            {
-                                childBag = childResponseTable.getRowAsBag(childRow);
-                                addRowUniqueToTable(childTable, childBag);
-                            }
-                        }
-                    }
-                }
+                DSCriteria childCriteria = createChildCriteria(batchParentIds, childIdMap, offset, limit);
+                Document solrDocument = mSolrDS.fetch(childCriteria, Solr.QUERY_OFFSET_DEFAULT, batchParentIds.size());
+                if (Solr.isGroupsPopulated(solrDocument))
+                    childTable = addGroupChildren(childTable, Solr.getGroups(solrDocument));
+                batchParentIds.clear();
             }
         }
 
@@ -516,14 +592,13 @@ public class SolrParentChild
             if (childBag != null)
                 childBagList.add(childBag);
         }
-        childRows = aChildTable.findValue(FIELD_NSD_PARENT_ID_NAME, Field.Operator.EQUAL, anId);
-        for (FieldRow childRow : childRows)
+        ArrayList<DataBag> expandedBagList = getChildHashMap(aChildTable).get(anId);
+        if (expandedBagList != null)
         {
-            childBag = aResponseTable.getRowAsBag(childRow);
-            if (childBag != null)
+            for (DataBag expandedBag : expandedBagList)
             {
-                childBag.setValueByName(FIELD_NSD_IS_EXPANDED_NAME, true);
-                childBagList.add(childBag);
+                expandedBag.setValueByName(FIELD_NSD_IS_EXPANDED_NAME, true);
+                childBagList.add(expandedBag);
             }
         }
 
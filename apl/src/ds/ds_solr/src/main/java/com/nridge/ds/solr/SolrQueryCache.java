@@ -0,0 +1,290 @@
+/*
+ * NorthRidge Software, LLC - Copyright (c) 2019.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.nridge.ds.solr;
+
+import com.nridge.core.base.doc.Document;
+import com.nridge.core.base.ds.DSCriteria;
+import com.nridge.core.base.ds.DSCriterion;
+import com.nridge.core.base.ds.DSCriterionEntry;
+import com.nridge.core.base.field.data.DataBag;
+import com.nridge.core.base.field.data.DataField;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SolrQueryCache class holds recently extracted Solr response
+ * documents keyed by a canonical form of the <i>DSCriteria</i> and
+ * its offset/limit values.  The cache is bounded by both a maximum
+ * number of entries (least recently used entries are evicted first)
+ * and a time-to-live for each entry.
+ * <p>
+ * <b>Note:</b> Callers routinely decorate the documents returned
+ * by a fetch (e.g. parent/child expansion), so the cache stores and
+ * returns independent copies of each response document.
+ * </p>
+ *
+ * @since 1.0
+ * @author Al Cole
+ */
+public class SolrQueryCache
+{
+    private final char KEY_SEPARATOR = '\u001F';
+    private final char KEY_ENTRY_SEPARATOR = '\u001E';
+
+    private final int mCapacity;
+    private final long mTimeToLiveNanos;
+    private final LinkedHashMap<String, CacheEntry> mEntries;
+    private long mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mExpirationCount;
+    private long mInvalidationCount;
+
+    private static class CacheEntry
+    {
+        private final Document mDocument;
+        private final long mExpiresAt;
+
+        private CacheEntry(Document aDocument, long anExpiresAt)
+        {
+            mDocument = aDocument;
+            mExpiresAt = anExpiresAt;
+        }
+    }
+
+    /**
+     * Constructor accepts the maximum number of cached responses and
+     * the number of seconds a cached response remains valid.
+     *
+     * @param aCapacity Maximum number of cached responses.
+     * @param aTimeToLiveSeconds Time-to-live (in seconds) of each entry.
+     */
+    public SolrQueryCache(int aCapacity, int aTimeToLiveSeconds)
+    {
+        mCapacity = Math.max(1, aCapacity);
+        mTimeToLiveNanos = TimeUnit.SECONDS.toNanos(Math.max(1, aTimeToLiveSeconds));
+        mEntries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> anEldest)
+            {
+                boolean isRemoved = size() > mCapacity;
+                if (isRemoved)
+                    mEvictionCount++;
+                return isRemoved;
+            }
+        };
+    }
+
+    private void appendField(StringBuilder aStringBuilder, DataField aField)
+    {
+        aStringBuilder.append(aField.getName()).append(KEY_SEPARATOR);
+        aStringBuilder.append(aField.getType().name()).append(KEY_SEPARATOR);
+        aStringBuilder.append(aField.getValues().size()).append(KEY_SEPARATOR);
+        for (String fieldValue : aField.getValues())
+            aStringBuilder.append(fieldValue).append(KEY_SEPARATOR);
+        aStringBuilder.append(new TreeMap<String, String>(aField.getFeatures()));
+    }
+
+    /**
+     * Creates a canonical cache key from the criteria, offset and limit
+     * values.  Two criteria that would generate the same Solr query map
+     * to the same key regardless of their names or the order their
+     * features were assigned in.
+     *
+     * @param aDSCriteria Data source criteria.
+     * @param anOffset Starting offset into the matching content rows.
+     * @param aLimit Limit on the total number of rows to extract.
+     *
+     * @return Canonical cache key.
+     */
+    public String createKey(DSCriteria aDSCriteria, int anOffset, int aLimit)
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(anOffset).append(KEY_SEPARATOR).append(aLimit).append(KEY_ENTRY_SEPARATOR);
+        stringBuilder.append(new TreeMap<String, String>(aDSCriteria.getFeatures())).append(KEY_ENTRY_SEPARATOR);
+        for (DSCriterionEntry ce : aDSCriteria.getCriterionEntries())
+        {
+            stringBuilder.append(ce.getBooleanOperator()).append(KEY_SEPARATOR);
+            for (DSCriterion dsCriterion : ce.getCriterions())
+            {
+                stringBuilder.append(dsCriterion.getLogicalOperator()).append(KEY_SEPARATOR);
+                stringBuilder.append(dsCriterion.isCaseInsensitive()).append(KEY_SEPARATOR);
+                appendField(stringBuilder, dsCriterion.getField());
+            }
+            stringBuilder.append(KEY_ENTRY_SEPARATOR);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Returns the current invalidation generation.  Capture this value
+     * before executing a query and pass it to <i>put()</i> so that a
+     * response that raced with an update is not cached.
+     *
+     * @return Invalidation generation.
+     */
+    public synchronized long getGeneration()
+    {
+        return mGeneration;
+    }
+
+    /**
+     * Returns a copy of the cached response document for the key or
+     * <i>null</i> if it is not cached or has expired.
+     *
+     * @param aKey Canonical cache key.
+     *
+     * @return Response document instance or <i>null</i>.
+     */
+    public synchronized Document get(String aKey)
+    {
+        CacheEntry cacheEntry = mEntries.get(aKey);
+        if (cacheEntry == null)
+        {
+            mMissCount++;
+            return null;
+        }
+        if (System.nanoTime() - cacheEntry.mExpiresAt >= 0L)
+        {
+            mEntries.remove(aKey);
+            mExpirationCount++;
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+
+        return new Document(cacheEntry.mDocument);
+    }
+
+    /**
+     * Stores a copy of the response document under the key, provided
+     * the cache has not been invalidated since the generation was
+     * captured.
+     *
+     * @param aKey Canonical cache key.
+     * @param aDocument Response document instance.
+     * @param aGeneration Generation captured before the query executed.
+     */
+    public synchronized void put(String aKey, Document aDocument, long aGeneration)
+    {
+        if ((aDocument != null) && (aGeneration == mGeneration))
+            mEntries.put(aKey, new CacheEntry(new Document(aDocument), System.nanoTime() + mTimeToLiveNanos));
+    }
+
+    /**
+     * Removes all cached responses.  This should be called whenever
+     * the underlying index is changed through the data source.
+     */
+    public synchronized void invalidate()
+    {
+        mGeneration++;
+        if (mEntries.size() > 0)
+        {
+            mEntries.clear();
+            mInvalidationCount++;
+        }
+    }
+
+    /**
+     * Returns the number of responses currently cached.
+     *
+     * @return Count of cached responses.
+     */
+    public synchronized int size()
+    {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the number of lookups that were satisfied by the cache.
+     *
+     * @return Hit count.
+     */
+    public synchronized long getHitCount()
+    {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of lookups that were not satisfied by the
+     * cache (including expired entries).
+     *
+     * @return Miss count.
+     */
+    public synchronized long getMissCount()
+    {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of entries evicted to honor the capacity.
+     *
+     * @return Eviction count.
+     */
+    public synchronized long getEvictionCount()
+    {
+        return mEvictionCount;
+    }
+
+    /**
+     * Returns the number of entries discarded because their
+     * time-to-live elapsed.
+     *
+     * @return Expiration count.
+     */
+    public synchronized long getExpirationCount()
+    {
+        return mExpirationCount;
+    }
+
+    /**
+     * Returns the number of times a populated cache was cleared by
+     * an index update.
+     *
+     * @return Invalidation count.
+     */
+    public synchronized long getInvalidationCount()
+    {
+        return mInvalidationCount;
+    }
+
+    /**
+     * Returns a bag summarizing the cache statistics.
+     *
+     * @return Data bag instance.
+     */
+    public synchronized DataBag getStatistics()
+    {
+        DataBag statsBag = new DataBag("Solr Query Cache Statistics");
+        statsBag.add(new DataField("size", "Size", mEntries.size()));
+        statsBag.add(new DataField("capacity", "Capacity", mCapacity));
+        statsBag.add(new DataField("hit_count", "Hit Count", mHitCount));
+        statsBag.add(new DataField("miss_count", "Miss Count", mMissCount));
+        statsBag.add(new DataField("eviction_count", "Eviction Count", mEvictionCount));
+        statsBag.add(new DataField("expiration_count", "Expiration Count", mExpirationCount));
+        statsBag.add(new DataField("invalidation_count", "Invalidation Count", mInvalidationCount));
+
+        return statsBag;
+    }
+}
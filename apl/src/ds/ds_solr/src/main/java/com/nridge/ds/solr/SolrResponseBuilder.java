@@ -33,6 +33,8 @@ import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,7 @@ public class SolrResponseBuilder
     private Document mDocument;
     private final AppMgr mAppMgr;
     private boolean mIsSchemaStatic;
+    private HashMap<String, FieldRow> mResultRowMap;
     private String mCfgPropertyPrefix = StringUtils.EMPTY;
 
     /**
@@ -471,16 +474,12 @@ public class SolrResponseBuilder
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
-    @SuppressWarnings("unchecked")
     private void populateDocument(Document aDocument, SolrDocumentList aSolrDocumentList)
     {
-        Date entryDate;
         DataBag resultBag;
         Object entryObject;
         DataField dataField;
-        String cellName, cellValue;
-        ArrayList<Object> objectArrayList;
-        ArrayList<String> stringArrayList;
+        String cellName;
         Logger appLogger = mAppMgr.getLogger(this, "populateDocument");
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
@@ -496,60 +495,30 @@ public class SolrResponseBuilder
                 resultTable.empty();
                 resultBag = resultTable.getColumnBag();
                 resultBag.setTitle("Document Table");
+                HashSet<String> cellNames = new HashSet<String>();
                 for (SolrDocument solrDocument : aSolrDocumentList)
                 {
                     for (Map.Entry<String,Object> entry : solrDocument.entrySet())
                     {
                         cellName = entry.getKey();
-                        dataField = resultBag.getFieldByName(cellName);
-                        if (dataField == null)
-                        {
-                            entryObject = entry.getValue();
-                            dataField = new DataField(Field.getTypeField(entryObject), cellName, Field.nameToTitle(cellName));
-                            if (Solr.isSolrReservedFieldName(cellName))
-                                dataField.addFeature(Field.FEATURE_IS_VISIBLE, StrUtl.STRING_FALSE);
-                            resultBag.add(dataField);
-                        }
-                    }
-                }
-            }
-            resultBag = resultTable.getColumnBag();
-            for (SolrDocument solrDocument : aSolrDocumentList)
-            {
-                resultTable.newRow();
-                for (Map.Entry<String,Object> entry : solrDocument.entrySet())
-                {
-                    cellName = entry.getKey();
-                    entryObject = entry.getValue();
-                    if (entryObject instanceof ArrayList)
-                    {
-                        stringArrayList = new ArrayList<String>();
-                        objectArrayList = (ArrayList<Object>) entryObject;
-                        for (Object alo : objectArrayList)
-                        {
-                            cellValue = alo.toString();
-                            stringArrayList.add(cellValue);
-                        }
-                        resultTable.setValuesByName(cellName, stringArrayList);
-                    }
-                    else
-                    {
-                        cellValue = entryObject.toString();
-                        if (StringUtils.isNotEmpty(cellValue))
+                        if (cellNames.add(cellName))
                         {
                             dataField = resultBag.getFieldByName(cellName);
-                            if ((dataField != null) && (dataField.isTypeDateOrTime()))
+                            if (dataField == null)
                             {
-                                entryDate = (Date) entryObject;
-                                resultTable.setValueByName(cellName, entryDate);
+                                entryObject = entry.getValue();
+                                dataField = new DataField(Field.getTypeField(entryObject), cellName, Field.nameToTitle(cellName));
+                                if (Solr.isSolrReservedFieldName(cellName))
+                                    dataField.addFeature(Field.FEATURE_IS_VISIBLE, StrUtl.STRING_FALSE);
+                                resultBag.add(dataField);
                             }
-                            else
-                                resultTable.setValueByName(cellName, cellValue);
                         }
                     }
                 }
-                resultTable.addRow();
+                resultTable.emptyRows();    // sizes a column store (if any) to the discovered columns
             }
+            SolrDocumentDecoder solrDocumentDecoder = new SolrDocumentDecoder(resultTable);
+            solrDocumentDecoder.decode(aSolrDocumentList);
         }
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
@@ -562,6 +531,7 @@ public class SolrResponseBuilder
 
         appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
 
+        mResultRowMap = null;
         Relationship documentRelationship = mDocument.getFirstRelationship(Solr.RESPONSE_DOCUMENT);
         if (documentRelationship != null)
         {
@@ -574,6 +544,8 @@ dropped from the result table via the collapseUnusedColumns() method. */
             DataBag resultBag = new DataBag(mBag);
             resultBag.setAssignedFlagAll(false);
             DataTable resultTable = new DataTable(resultBag);
+            if (StrUtl.stringToBoolean(getCfgString("response_columnar")))
+                resultTable.enableColumnStore();
             Document responseDocument = new Document(Solr.RESPONSE_DOCUMENT, resultTable);
             populateDocument(responseDocument, aQueryResponse.getResults());
             documentRelationship.add(responseDocument);
@@ -1190,18 +1162,39 @@ dropped from the result table via the collapseUnusedColumns() method. */
         appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
-    private void assignHighlightingToResults(DataTable aResultTable, DataField aPrimaryKeyField,
-                                             String aDocId, String aFieldName, ArrayList<String> aHighlight)
+/* Per-document response sections (e.g. highlighting) are keyed by the primary
+key of the result row they decorate.  The map below is built once per response
+so that merging a section is a single pass rather than a table scan for every
+document and field entry. */
+
+    private HashMap<String, FieldRow> getResultRowMap(DataTable aResultTable, DataField aPrimaryKeyField)
     {
-        Logger appLogger = mAppMgr.getLogger(this, "populateHighlighting");
+        String pkValue;
+        FieldRow fieldRow;
 
-        appLogger.trace(mAppMgr.LOGMSG_TRACE_ENTER);
+        if (mResultRowMap == null)
+        {
+            int rowCount = aResultTable.rowCount();
+            mResultRowMap = new HashMap<String, FieldRow>(Math.max(16, rowCount * 2));
+            String pkName = aPrimaryKeyField.getName();
+            for (int row = 0; row < rowCount; row++)
+            {
+                fieldRow = aResultTable.getRow(row);
+                pkValue = aResultTable.getValueByName(fieldRow, pkName);
+                if ((StringUtils.isNotEmpty(pkValue)) && (! mResultRowMap.containsKey(pkValue)))
+                    mResultRowMap.put(pkValue, fieldRow);
+            }
+        }
+
+        return mResultRowMap;
+    }
 
-        FieldRow fieldRow = Field.firstFieldRow(aResultTable.findValue(aPrimaryKeyField.getName(), Field.Operator.EQUAL, aDocId));
+    private void assignHighlightingToResults(DataTable aResultTable, HashMap<String, FieldRow> aRowMap,
+                                             String aDocId, String aFieldName, ArrayList<String> aHighlight)
+    {
+        FieldRow fieldRow = aRowMap.get(aDocId);
         if (fieldRow != null)
             aResultTable.setValuesByName(fieldRow, aFieldName, aHighlight);
-
-        appLogger.trace(mAppMgr.LOGMSG_TRACE_DEPART);
     }
 
     private void populateHighlighting(QueryResponse aQueryResponse)
@@ -1228,6 +1221,7 @@ dropped from the result table via the collapseUnusedColumns() method. */
                 Map<String,Map<String,List<String>>> mapHighlighting = aQueryResponse.getHighlighting();
                 if (mapHighlighting != null)
                 {
+                    HashMap<String, FieldRow> resultRowMap = getResultRowMap(resultTable, dfPrimaryKey);
                     for (Map.Entry<String,Map<String,List<String>>> entry1 : mapHighlighting.entrySet())
                     {
                         docId = entry1.getKey();
@@ -1241,7 +1235,7 @@ dropped from the result table via the collapseUnusedColumns() method. */
                                 if (entryValues != null)
                                 {
                                     fieldValues = new ArrayList<>(entryValues);
-                                    assignHighlightingToResults(resultTable, dfPrimaryKey, docId, fieldName, fieldValues);
+                                    assignHighlightingToResults(resultTable, resultRowMap, docId, fieldName, fieldValues);
                                     if (! isHighlighted)
                                         isHighlighted = true;
                                 }